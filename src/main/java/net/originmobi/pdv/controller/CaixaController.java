@@ -3,7 +3,6 @@ package net.originmobi.pdv.controller;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpHeaders;
@@ -25,11 +24,9 @@ import net.originmobi.pdv.enumerado.caixa.TipoLancamento;
 import net.originmobi.pdv.filter.CaixaFilter;
 import net.originmobi.pdv.model.Caixa;
 import net.originmobi.pdv.model.CaixaLancamento;
-import net.originmobi.pdv.model.Usuario;
+import net.originmobi.pdv.security.UsuarioAtual;
 import net.originmobi.pdv.service.CaixaLancamentoService;
 import net.originmobi.pdv.service.CaixaService;
-import net.originmobi.pdv.service.UsuarioService;
-import net.originmobi.pdv.singleton.Aplicacao;
 
 @Controller
 @RequestMapping("/caixa")
@@ -48,7 +45,7 @@ public class CaixaController {
 	private CaixaLancamentoService lancamentos;
 
 	@Autowired
-	private UsuarioService usuarios;
+	private UsuarioAtual usuarioAtual;
 
 	@GetMapping("/form")
 	public ModelAndView form() {
@@ -111,14 +108,8 @@ public class CaixaController {
 		String retorno = "";
 
 		try {
-			Optional<Caixa> caixa = caixas.busca(codCaixa);
-			Aplicacao aplicacao = Aplicacao.getInstancia();
-			Usuario usuario = usuarios.buscaUsuario(aplicacao.getUsuarioAtual());
-
-			CaixaLancamento lancamento = new CaixaLancamento(observacao, valor, TipoLancamento.SUPRIMENTO,
-					EstiloLancamento.ENTRADA, caixa.get(), usuario);
-
-			retorno = lancamentos.lancamento(lancamento);
+			retorno = lancamentos.lancamento(codCaixa, observacao, valor, TipoLancamento.SUPRIMENTO,
+					EstiloLancamento.ENTRADA);
 		} catch (Exception e) {
 			e.getStackTrace();
 		}
@@ -135,13 +126,8 @@ public class CaixaController {
 		String retorno = "";
 
 		try {
-			Optional<Caixa> caixa = caixas.busca(codCaixa);
-			Aplicacao aplicacao = Aplicacao.getInstancia();
-			Usuario usuario = usuarios.buscaUsuario(aplicacao.getUsuarioAtual());
-
-			CaixaLancamento lancamento = new CaixaLancamento(observacao, valor, TipoLancamento.SANGRIA,
-					EstiloLancamento.SAIDA, caixa.get(), usuario);
-			retorno = lancamentos.lancamento(lancamento);
+			retorno = lancamentos.lancamento(codCaixa, observacao, valor, TipoLancamento.SANGRIA,
+					EstiloLancamento.SAIDA);
 		} catch (Exception e) {
 			e.getStackTrace();
 		}
@@ -166,8 +152,7 @@ public class CaixaController {
 	
 	@ModelAttribute("usuarioAtual")
 	public String usuarioAtual() {
-		Aplicacao aplicacao = Aplicacao.getInstancia();
-		return aplicacao.getUsuarioAtual();
+		return usuarioAtual.getLogin();
 	}
 
 	@ModelAttribute("caixatipo")
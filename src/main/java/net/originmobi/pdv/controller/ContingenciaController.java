@@ -0,0 +1,42 @@
+package net.originmobi.pdv.controller;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+import net.originmobi.pdv.service.contingencia.ContingenciaService;
+import net.originmobi.pdv.service.contingencia.SincronizacaoContingencia;
+
+@Controller
+@RequestMapping("/contingencia")
+public class ContingenciaController {
+
+	@Autowired
+	private ContingenciaService contingencia;
+
+	@Autowired
+	private SincronizacaoContingencia sincronizacao;
+
+	@GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
+	public @ResponseBody Map<String, Object> situacao() {
+		Map<String, Object> situacao = new LinkedHashMap<>();
+		situacao.put("ativa", contingencia.isAtiva());
+		situacao.put("pendentes", contingencia.qtdPendentes());
+		situacao.put("conflitos", sincronizacao.conflitos());
+		return situacao;
+	}
+
+	@PostMapping("/sincroniza")
+	public @ResponseBody String sincroniza() {
+		int gravadas = sincronizacao.sincroniza();
+		return gravadas + " operações sincronizadas, " + contingencia.qtdPendentes() + " pendentes";
+	}
+
+}
@@ -0,0 +1,118 @@
+package net.originmobi.pdv.controller;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.util.Optional;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.format.annotation.DateTimeFormat.ISO;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+
+import net.originmobi.pdv.service.exportacao.Exportacao;
+import net.originmobi.pdv.service.exportacao.ExportacaoService;
+import net.originmobi.pdv.service.exportacao.FormatoExportacao;
+import net.originmobi.pdv.service.notafiscal.ExportacaoXmlNfe;
+import net.originmobi.pdv.service.notafiscal.NotaFiscalService;
+
+/**
+ * Exportação de vendas, lançamentos de caixa e parcelas a receber e a pagar
+ * em CSV ou XLSX, ex.: /exportacao/vendas?formato=xlsx&inicio=2026-01-01&fim=2026-12-31&situacao=FECHADA,
+ * e dos XMLs das notas emitidas
+ */
+@Controller
+@RequestMapping("/exportacao")
+public class ExportacaoController {
+
+	@Autowired
+	private ExportacaoService exportacoes;
+
+	@Autowired
+	private ExportacaoXmlNfe exportacaoXml;
+
+	/*
+	 * Zip com os XMLs das notas emitidas e o manifesto, ex.:
+	 * /exportacao/xml-nfe?inicio=2026-09-01&fim=2026-09-30&serie=1
+	 */
+	@GetMapping("/xml-nfe")
+	public void exportaXmlNfe(
+			@RequestParam(value = "inicio", required = false) @DateTimeFormat(iso = ISO.DATE) LocalDate inicio,
+			@RequestParam(value = "fim", required = false) @DateTimeFormat(iso = ISO.DATE) LocalDate fim,
+			@RequestParam(value = "serie", required = false) Integer serie, HttpServletResponse response)
+			throws IOException {
+		ExportacaoXmlNfe.Consulta consulta;
+
+		try {
+			consulta = exportacaoXml.consulta(inicio, fim, serie);
+		} catch (IllegalArgumentException e) {
+			response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+			return;
+		}
+
+		StringBuilder arquivo = new StringBuilder("xml-nfe");
+		if (serie != null)
+			arquivo.append("-serie-").append(serie);
+
+		response.setContentType("application/zip");
+		response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+				"attachment; filename=\"" + arquivo(arquivo.toString(), inicio, fim, "zip") + "\"");
+
+		try (OutputStream saida = response.getOutputStream()) {
+			exportacaoXml.exporta(consulta, NotaFiscalService.arquivoXml(), saida);
+		}
+	}
+
+	@GetMapping("/{exportacao}")
+	public void exporta(@PathVariable("exportacao") String nome,
+			@RequestParam(value = "formato", defaultValue = "csv") String formatoInformado,
+			@RequestParam(value = "inicio", required = false) @DateTimeFormat(iso = ISO.DATE) LocalDate inicio,
+			@RequestParam(value = "fim", required = false) @DateTimeFormat(iso = ISO.DATE) LocalDate fim,
+			@RequestParam(value = "situacao", required = false) String situacao, HttpServletResponse response)
+			throws IOException {
+		Optional<Exportacao> exportacao = Exportacao.doNome(nome);
+		if (!exportacao.isPresent()) {
+			response.sendError(HttpServletResponse.SC_NOT_FOUND, "Exportação " + nome + " não encontrada");
+			return;
+		}
+
+		FormatoExportacao formato;
+		ExportacaoService.Consulta consulta;
+
+		try {
+			formato = FormatoExportacao.valueOf(formatoInformado.toUpperCase());
+			consulta = exportacoes.consulta(exportacao.get(), inicio, fim, situacao);
+		} catch (IllegalArgumentException e) {
+			response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+			return;
+		}
+
+		response.setContentType(formato.getTipoConteudo());
+		response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+				"attachment; filename=\"" + arquivo(nome, inicio, fim, formato.getExtensao()) + "\"");
+
+		try (OutputStream saida = response.getOutputStream()) {
+			exportacoes.exporta(consulta, formato, saida);
+		}
+	}
+
+	private static String arquivo(String nome, LocalDate inicio, LocalDate fim, String extensao) {
+		StringBuilder arquivo = new StringBuilder(nome);
+
+		if (inicio != null)
+			arquivo.append("-de-").append(inicio);
+
+		if (fim != null)
+			arquivo.append("-ate-").append(fim);
+
+		return arquivo.append('.').append(extensao).toString();
+	}
+
+}
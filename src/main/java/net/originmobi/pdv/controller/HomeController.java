@@ -4,11 +4,9 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.servlet.ModelAndView;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
-import net.originmobi.pdv.service.PagarParcelaService;
-import net.originmobi.pdv.service.ReceberService;
-import net.originmobi.pdv.service.VendaService;
-import net.originmobi.pdv.service.notafiscal.NotaFiscalService;
+import net.originmobi.pdv.service.painel.ContadoresPainel;
 
 @Controller
 public class HomeController {
@@ -16,31 +14,27 @@ public class HomeController {
 	private static final String DASHBOARD_DASHBOARD = "dashboard/dashboard";
 
 	@Autowired
-	private VendaService vendas;
-
-	@Autowired
-	private ReceberService receberServ;
-
-	@Autowired
-	private PagarParcelaService pagarServ;
-
-	@Autowired
-	private NotaFiscalService notas;
+	private ContadoresPainel painel;
 
 	@GetMapping({ "", "/" })
 	public ModelAndView home() {
 		ModelAndView mv = new ModelAndView(DASHBOARD_DASHBOARD);
-		mv.addObject("pedidosAberto", vendas.qtdAbertos());
-		mv.addObject("total_a_receber", receberServ.total_a_receber());
-		mv.addObject("total_a_pagar", pagarServ.totalParagarAberto());
-		mv.addObject("total_notas_emitidas", notas.totalNotaFiscalEmitidas());
+		mv.addAllObjects(painel.valores());
 
 		return mv;
 	}
 
+	/*
+	 * Números do painel enviados a cada alteração, no lugar de recarregar a página
+	 */
+	@GetMapping("/painel/eventos")
+	public SseEmitter eventos() {
+		return painel.inscreve();
+	}
+
 	@GetMapping("/login")
 	public String login() {
 		return "login/login";
 	}
-	
+
 }
@@ -6,10 +6,12 @@ import java.util.Map;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.ModelAttribute;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
@@ -25,9 +27,11 @@ import net.originmobi.pdv.model.Pessoa;
 import net.originmobi.pdv.model.Produto;
 import net.originmobi.pdv.service.PessoaService;
 import net.originmobi.pdv.service.ProdutoService;
+import net.originmobi.pdv.service.notafiscal.EmissaoLoteNfe;
 import net.originmobi.pdv.service.notafiscal.FreteTipoService;
 import net.originmobi.pdv.service.notafiscal.NotaFiscalItemService;
 import net.originmobi.pdv.service.notafiscal.NotaFiscalService;
+import net.originmobi.pdv.xml.nfe.CredenciaisAssinatura;
 
 @Controller
 @RequestMapping("/notafiscal")
@@ -52,6 +56,9 @@ public class NotaFiscalController {
 	@Autowired
 	private FreteTipoService fretes;
 
+	@Autowired
+	private EmissaoLoteNfe emissaoLote;
+
 	@GetMapping("/form")
 	public ModelAndView form() {
 		ModelAndView mv = new ModelAndView(NOTAFISCAL_FORM);
@@ -101,6 +108,22 @@ public class NotaFiscalController {
 		return "ok";
 	}
 	
+	/*
+	 * Emite um lote das notas ainda sem chave de acesso
+	 */
+	@PostMapping(value = "/lote", produces = MediaType.APPLICATION_JSON_VALUE)
+	public @ResponseBody Map<String, Object> emitirLote() {
+		return emissaoLote.emitePendentes();
+	}
+
+	/*
+	 * Validade do certificado em uso na assinatura, para acompanhar o vencimento
+	 */
+	@GetMapping(value = "/certificado", produces = MediaType.APPLICATION_JSON_VALUE)
+	public @ResponseBody Map<String, Object> certificado() {
+		return CredenciaisAssinatura.PADRAO.estatisticas();
+	}
+
 	@GetMapping
 	public ModelAndView lista() {
 		System.out.println("veio aqui");
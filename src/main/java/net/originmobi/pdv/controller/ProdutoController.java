@@ -121,6 +121,7 @@ public class ProdutoController {
 		String vlTributacao = request.get("tributacao");
 		String codModbc = request.get("modBcIcms");
 		String vendavel = request.get("vendavel");
+		String codigoBarras = request.get("codigo_barras");
 
 		Long codigoprod = prod.isEmpty() ? 0 : Long.decode(prod);
 		Double valorCusto = vlcusto.isEmpty() ? 0.0 : Double.valueOf(vlcusto.replace(",", "."));
@@ -147,7 +148,7 @@ public class ProdutoController {
 		System.out.println(controleEstoque);
 		mensagem = produtos.merger(codigoprod, codforne, categoria, grupo, usaBalanca, descricao, valorCusto,
 				valorVenda, dataValidade, controleEstoque, situacao.toString(), unitario, substituicao, ncm, cest, tributacao,
-				modbc, vendavel);
+				modbc, vendavel, codigoBarras);
 
 		attributes.addFlashAttribute("mensagem", mensagem);
 		
@@ -0,0 +1,36 @@
+package net.originmobi.pdv.controller;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+import net.originmobi.pdv.service.ProdutoService;
+import net.originmobi.pdv.service.produto.ProdutoCatalogo;
+
+/**
+ * Busca de produtos da leitura do scanner e da tela de venda. Fica fora do
+ * ProdutoController para não executar os @ModelAttribute do cadastro, que
+ * consultam o banco a cada requisição.
+ */
+@Controller
+@RequestMapping("/produto")
+public class ProdutoLookupController {
+
+	private static final int LIMITE_MAXIMO = 100;
+
+	@Autowired
+	private ProdutoService produtos;
+
+	@GetMapping(value = "/lookup", produces = MediaType.APPLICATION_JSON_VALUE)
+	public @ResponseBody List<ProdutoCatalogo> lookup(@RequestParam("q") String termo,
+			@RequestParam(value = "limite", defaultValue = "20") int limite) {
+		return produtos.lookup(termo, Math.min(Math.max(limite, 1), LIMITE_MAXIMO));
+	}
+
+}
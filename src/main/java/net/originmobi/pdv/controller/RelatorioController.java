@@ -1,29 +1,113 @@
 package net.originmobi.pdv.controller;
 
+import java.net.URI;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Optional;
 
-import javax.servlet.http.HttpServletResponse;
-
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.async.DeferredResult;
 
+import net.originmobi.pdv.relatorios.FilaRelatorios;
 import net.originmobi.pdv.relatorios.GerarRelatorio;
+import net.originmobi.pdv.relatorios.RelatorioJob;
 
 @Controller
 @RequestMapping("/relatorio")
 public class RelatorioController {
-	
+
+	@Autowired
+	private GerarRelatorio relatorio;
+
+	@Autowired
+	private FilaRelatorios fila;
+
 	@GetMapping
-	public String relatorio(HttpServletResponse response) {
-		GerarRelatorio relatorio = new GerarRelatorio();
+	public DeferredResult<ResponseEntity<Resource>> relatorio() {
 		Map<String, Object> parametros = new HashMap<>();
 		parametros.put("codvenda", 1);
-		
-		relatorio.gerar("comanda.jrxml", response, parametros);
-		
-		return "relatorio";
+
+		return fila.envia("comanda.jrxml", parametros);
+	}
+
+	/*
+	 * Coloca o relatório na fila e devolve o job, acompanhado em /relatorio/job/{codigo}
+	 */
+	@PostMapping(value = "/job", produces = MediaType.APPLICATION_JSON_VALUE)
+	public ResponseEntity<Map<String, Object>> agenda(@RequestParam("relatorio") String nome,
+			@RequestParam Map<String, String> valores) {
+		Map<String, Object> parametros;
+
+		try {
+			parametros = relatorio.parametros(nome, valores);
+		} catch (IllegalArgumentException e) {
+			Map<String, Object> erro = new HashMap<>();
+			erro.put("erro", e.getMessage());
+			return ResponseEntity.badRequest().body(erro);
+		}
+
+		RelatorioJob job = fila.agenda(nome, parametros);
+		HttpStatus status = job.getSituacao() == RelatorioJob.Situacao.ERRO ? HttpStatus.SERVICE_UNAVAILABLE
+				: HttpStatus.ACCEPTED;
+
+		return ResponseEntity.status(status).location(URI.create("/relatorio/job/" + job.getCodigo()))
+				.body(job.resumo());
+	}
+
+	@GetMapping(value = "/job/{codigo}", produces = MediaType.APPLICATION_JSON_VALUE)
+	public ResponseEntity<Map<String, Object>> job(@PathVariable("codigo") String codigo) {
+		return fila.job(codigo).map(job -> ResponseEntity.ok(job.resumo()))
+				.orElseGet(() -> ResponseEntity.notFound().build());
+	}
+
+	/*
+	 * PDF do job concluído, antes disso responde com a situação dele
+	 */
+	@GetMapping("/job/{codigo}/pdf")
+	public ResponseEntity<?> pdf(@PathVariable("codigo") String codigo) {
+		Optional<RelatorioJob> job = fila.job(codigo);
+
+		if (!job.isPresent())
+			return ResponseEntity.notFound().build();
+
+		if (job.get().getSituacao() != RelatorioJob.Situacao.CONCLUIDO)
+			return ResponseEntity.status(HttpStatus.ACCEPTED).contentType(MediaType.APPLICATION_JSON)
+					.body(job.get().resumo());
+
+		Optional<ResponseEntity<Resource>> resposta = fila.resposta(job.get().getResultado().join());
+
+		// removido do cache depois de concluído, precisa ser pedido de novo
+		if (!resposta.isPresent())
+			return ResponseEntity.status(HttpStatus.GONE).build();
+
+		// liberado no fim da requisição se um erro impedir o envio de fechar o arquivo
+		RequestContextHolder.currentRequestAttributes().registerDestructionCallback("pdf." + codigo,
+				() -> FilaRelatorios.libera(resposta.get()), RequestAttributes.SCOPE_REQUEST);
+
+		return resposta.get();
+	}
+
+	@GetMapping(value = "/memoria", produces = MediaType.APPLICATION_JSON_VALUE)
+	public @ResponseBody Map<String, Object> memoria() {
+		return relatorio.estatisticas();
+	}
+
+	@GetMapping(value = "/fila", produces = MediaType.APPLICATION_JSON_VALUE)
+	public @ResponseBody Map<String, Object> fila() {
+		return fila.estatisticas();
 	}
 
 }
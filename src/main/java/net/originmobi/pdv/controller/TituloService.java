@@ -1,6 +1,9 @@
 package net.originmobi.pdv.controller;
 
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import org.springframework.beans.factory.annotation.Autowired;
@@ -23,6 +26,19 @@ public class TituloService {
 		return titulos.findById(codigo);
 	}
 
+	/*
+	 * Busca os títulos com o tipo e a máquina de cartão em uma única consulta,
+	 * indexados pelo código
+	 */
+	public Map<Long, Titulo> buscaTitulos(Collection<Long> codigos) {
+		Map<Long, Titulo> resultado = new HashMap<>();
+
+		if (!codigos.isEmpty())
+			titulos.buscaTitulos(codigos).forEach(titulo -> resultado.put(titulo.getCodigo(), titulo));
+
+		return resultado;
+	}
+
 	public void cadastro(Titulo titulo) {
 		try {
 			titulos.save(titulo);
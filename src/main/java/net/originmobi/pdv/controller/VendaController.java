@@ -1,6 +1,7 @@
 package net.originmobi.pdv.controller;
 
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -25,16 +26,13 @@ import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import net.originmobi.pdv.enumerado.VendaSituacao;
 import net.originmobi.pdv.filter.VendaFilter;
-import net.originmobi.pdv.model.PagamentoTipo;
-import net.originmobi.pdv.model.Pessoa;
-import net.originmobi.pdv.model.Produto;
 import net.originmobi.pdv.model.Titulo;
 import net.originmobi.pdv.model.Venda;
 import net.originmobi.pdv.service.PagamentoTipoService;
 import net.originmobi.pdv.service.PessoaService;
 import net.originmobi.pdv.service.ProdutoService;
-import net.originmobi.pdv.service.VendaProdutoService;
 import net.originmobi.pdv.service.VendaService;
+import net.originmobi.pdv.service.contingencia.ContingenciaService;
 
 @Controller
 @RequestMapping("/venda")
@@ -53,19 +51,20 @@ public class VendaController {
 	@Autowired
 	private ProdutoService produtos;
 
-	@Autowired
-	private VendaProdutoService vendaProdutos;
-
 	@Autowired
 	private PagamentoTipoService pagamentoTipos;
 
 	@Autowired
 	private TituloService titulos;
 
+	@Autowired
+	private ContingenciaService contingencia;
+
 	@GetMapping("/form")
 	public ModelAndView form() {
 		ModelAndView mv = new ModelAndView(VENDA_FORM);
 		mv.addObject(new Venda());
+		mv.addAllObjects(dadosFormulario());
 		return mv;
 	}
 
@@ -90,9 +89,11 @@ public class VendaController {
 	}
 
 	@PostMapping
-	public String abrirVenda(@Validated Venda venda, Errors errors, RedirectAttributes attributes) {
-		if (errors.hasErrors())
+	public String abrirVenda(@Validated Venda venda, Errors errors, RedirectAttributes attributes, Model model) {
+		if (errors.hasErrors()) {
+			model.addAllAttributes(dadosFormulario());
 			return VENDA_FORM;
+		}
 
 		Long codigo = null;
 
@@ -108,10 +109,13 @@ public class VendaController {
 	}
 
 	@GetMapping("{codigo}")
-	public ModelAndView buscaVenda(@PathVariable("codigo") Venda venda) {
+	public ModelAndView buscaVenda(@PathVariable("codigo") Long codigo) {
+		Venda venda = vendas.buscaVenda(codigo);
+
 		ModelAndView mv = new ModelAndView(VENDA_FORM);
 		mv.addObject("venda", venda);
-		mv.addObject("produtosVenda", vendaProdutos.listaProdutosVenda(venda));
+		mv.addObject("produtosVenda", vendas.listaProdutosVenda(venda));
+		mv.addAllObjects(dadosFormulario());
 		return mv;
 	}
 
@@ -120,11 +124,29 @@ public class VendaController {
 		Long codVen = Long.decode(request.get("codigoVen"));
 		Long codPro = Long.decode(request.get("codigoPro"));
 		Double vlBalanca = Double.valueOf(request.get("valorBalanca"));
+		String qtd = request.get("qtd");
+		int quantidade = qtd == null || qtd.isEmpty() ? 1 : Integer.parseInt(qtd);
 
 		String mensagem = "";
 
 		try {
-			mensagem = vendas.addProduto(codVen, codPro, vlBalanca);
+			mensagem = vendas.addProduto(codVen, codPro, vlBalanca, quantidade);
+		} catch (Exception e) {
+			e.getStackTrace();
+		}
+
+		return mensagem;
+	}
+
+	@RequestMapping(value = "/addcodigobarras", method = RequestMethod.POST)
+	public @ResponseBody String addCodigoBarras(@RequestParam Map<String, String> request) {
+		Long codVen = Long.decode(request.get("codigoVen"));
+		String codigoBarras = request.get("codigoBarras");
+
+		String mensagem = "";
+
+		try {
+			mensagem = vendas.addCodigoBarras(codVen, codigoBarras);
 		} catch (Exception e) {
 			e.getStackTrace();
 		}
@@ -167,12 +189,7 @@ public class VendaController {
 
 	@RequestMapping(value = "/titulos", method = RequestMethod.GET, produces = MediaType.APPLICATION_JSON_VALUE)
 	public @ResponseBody List<Titulo> titulos() {
-		return titulos.lista();
-	}
-
-	@ModelAttribute("clientes")
-	public List<Pessoa> clientes() {
-		return pessoas.lista();
+		return contingencia.referencia("titulos", titulos::lista);
 	}
 
 	@ModelAttribute("situacoes")
@@ -180,18 +197,17 @@ public class VendaController {
 		return Arrays.asList(VendaSituacao.values());
 	}
 
-	@ModelAttribute("produtos")
-	public List<Produto> produtos() {
-		return produtos.listar();
-	}
-	
-	@ModelAttribute("produtosVendaveis")
-	public List<Produto> produtosVendaveis() {
-		return produtos.listaProdutosVendaveis();
-	}
-
-	@ModelAttribute("formaPagamento")
-	public List<PagamentoTipo> pagamentoTipo() {
-		return pagamentoTipos.listar();
+	/*
+	 * Listas usadas somente pelo formulário da venda, carregadas apenas nas
+	 * views que o renderizam e não nas requisições ajax. Os produtos vêm do
+	 * catálogo em memória do ProdutoService e, sem o banco, clientes e formas
+	 * de pagamento da última consulta
+	 */
+	private Map<String, Object> dadosFormulario() {
+		Map<String, Object> dados = new HashMap<>();
+		dados.put("clientes", contingencia.referencia("clientes", pessoas::lista));
+		dados.put("produtosVendaveis", produtos.catalogoVenda().getProdutos());
+		dados.put("formaPagamento", contingencia.referencia("formaPagamento", pagamentoTipos::listar));
+		return dados;
 	}
 }
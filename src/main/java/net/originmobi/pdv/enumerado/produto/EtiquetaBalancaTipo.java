@@ -0,0 +1,6 @@
+package net.originmobi.pdv.enumerado.produto;
+
+public enum EtiquetaBalancaTipo {
+
+	PRECO, PESO;
+}
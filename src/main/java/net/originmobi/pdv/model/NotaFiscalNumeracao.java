@@ -0,0 +1,36 @@
+package net.originmobi.pdv.model;
+
+import java.io.Serializable;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+@Entity
+@Table(name = "nota_fiscal_numeracao")
+public class NotaFiscalNumeracao implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	@Id
+	private Integer serie;
+
+	private Long ultimo;
+
+	public Integer getSerie() {
+		return serie;
+	}
+
+	public void setSerie(Integer serie) {
+		this.serie = serie;
+	}
+
+	public Long getUltimo() {
+		return ultimo;
+	}
+
+	public void setUltimo(Long ultimo) {
+		this.ultimo = ultimo;
+	}
+
+}
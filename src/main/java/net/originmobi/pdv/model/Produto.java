@@ -68,6 +68,9 @@ public class Produto implements Serializable {
 	@Enumerated(EnumType.ORDINAL)
 	private ProdutoSubstTributaria subtributaria;
 
+	@Size(max = 14, message = "Código de barras deve conter no máximo 14 dígitos")
+	private String codigo_barras;
+
 	@Size(max = 8)
 	private String ncm;
 
@@ -209,6 +212,14 @@ public class Produto implements Serializable {
 		this.subtributaria = subtributaria;
 	}
 
+	public String getCodigo_barras() {
+		return codigo_barras;
+	}
+
+	public void setCodigo_barras(String codigo_barras) {
+		this.codigo_barras = codigo_barras;
+	}
+
 	public String getNcm() {
 		return ncm;
 	}
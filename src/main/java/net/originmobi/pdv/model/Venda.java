@@ -14,6 +14,7 @@ import javax.persistence.JoinColumn;
 import javax.persistence.JoinTable;
 import javax.persistence.ManyToMany;
 import javax.persistence.ManyToOne;
+import javax.persistence.Transient;
 
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.format.annotation.NumberFormat;
@@ -33,6 +34,13 @@ public class Venda implements Serializable {
 	@NumberFormat(pattern = "##,##0.00")
 	private Double valor_produtos;
 
+	/*
+	 * valor_produtos somado aos itens do carrinho que ainda não foram gravados
+	 */
+	@Transient
+	@NumberFormat(pattern = "##,##0.00")
+	private Double valor_produtos_atual;
+
 	@NumberFormat(pattern = "##,##0.00")
 	private Double valor_desconto;
 
@@ -116,6 +124,14 @@ public class Venda implements Serializable {
 		this.valor_produtos = valor_produtos;
 	}
 
+	public Double getValor_produtos_atual() {
+		return valor_produtos_atual == null ? valor_produtos : valor_produtos_atual;
+	}
+
+	public void setValor_produtos_atual(Double valor_produtos_atual) {
+		this.valor_produtos_atual = valor_produtos_atual;
+	}
+
 	public Double getValor_desconto() {
 		return valor_desconto;
 	}
@@ -38,14 +38,29 @@ public class VendaProduto implements Serializable {
 	@NumberFormat(pattern = "#,##0.00")
 	private Double valor_balanca;
 
+	private Integer qtd;
+
+	/*
+	 * valor de venda do produto no momento em que foi inserido na venda
+	 */
+	@Column(name = "valor_unitario")
+	@NumberFormat(pattern = "#,##0.00")
+	private Double valor_unitario;
+
 	public VendaProduto() {
 	}
 
 	public VendaProduto(Long produto, Long venda, Double valor_balanca) {
+		this(produto, venda, valor_balanca, 1, null);
+	}
+
+	public VendaProduto(Long produto, Long venda, Double valor_balanca, Integer qtd, Double valor_unitario) {
 		super();
 		this.produto = produto;
 		this.valor_balanca = valor_balanca;
 		this.venda = venda;
+		this.qtd = qtd;
+		this.valor_unitario = valor_unitario;
 	}
 
 	public Long getCodigo() {
@@ -80,4 +95,20 @@ public class VendaProduto implements Serializable {
 		this.valor_balanca = valor_balanca;
 	}
 
+	public Integer getQtd() {
+		return qtd;
+	}
+
+	public void setQtd(Integer qtd) {
+		this.qtd = qtd;
+	}
+
+	public Double getValor_unitario() {
+		return valor_unitario;
+	}
+
+	public void setValor_unitario(Double valor_unitario) {
+		this.valor_unitario = valor_unitario;
+	}
+
 }
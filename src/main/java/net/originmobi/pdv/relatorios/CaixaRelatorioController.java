@@ -3,28 +3,27 @@ package net.originmobi.pdv.relatorios;
 import java.util.HashMap;
 import java.util.Map;
 
-import javax.servlet.http.HttpServletResponse;
-
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.Resource;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
-import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.context.request.async.DeferredResult;
 
 @Controller
 @RequestMapping("/caixa/relatorio")
 public class CaixaRelatorioController {
 	
-	private GerarRelatorio relatorio;
+	@Autowired
+	private FilaRelatorios fila;
 	
 	@GetMapping("/caixa/{codigo}")
-	public @ResponseBody String caixa(@PathVariable("codigo") Integer codigo, HttpServletResponse response) {
+	public DeferredResult<ResponseEntity<Resource>> caixa(@PathVariable("codigo") Integer codigo) {
 		Map<String, Object> parametros = new HashMap<>();
 		parametros.put("codcaixa", codigo);
 
-		relatorio = new GerarRelatorio();
-		relatorio.gerar("caixa.jrxml", response, parametros);
-		
-		return "ok";
+		return fila.envia("caixa.jrxml", parametros);
 	}
 }
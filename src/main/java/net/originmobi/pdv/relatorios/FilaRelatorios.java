@@ -0,0 +1,535 @@
+package net.originmobi.pdv.relatorios;
+
+import java.io.BufferedOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.Resource;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.async.DeferredResult;
+
+/**
+ * Fila dos relatórios, gerados fora das threads das requisições por um
+ * número fixo de threads, com uma fila limitada de pedidos.
+ *
+ * Os PDFs gerados ficam em um cache em disco, cada um em um arquivo com o
+ * hash do relatório, dos parâmetros e da versão dos dados lidos por ele.
+ * Um pedido igual com os dados inalterados recebe o mesmo arquivo sem gerar
+ * o relatório de novo. Relatórios de caixa fechado e de venda encerrada não
+ * mudam mais, depois de gerados são servidos sem consultar a versão.
+ *
+ * Acima do tamanho máximo do cache os PDFs menos usados são removidos, menos
+ * os que estão sendo enviados em alguma resposta: o arquivo é aberto quando a
+ * resposta é montada e só pode sair do cache depois que ela o fecha ou que a
+ * requisição termina, o que vier primeiro.
+ */
+@Component
+public class FilaRelatorios {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(FilaRelatorios.class);
+
+	private static final String EXTENSAO = ".pdf";
+	private static final String EXTENSAO_PARCIAL = ".parcial";
+
+	private static final int MAX_JOBS = 1000;
+	private static final int MAX_DEFINITIVOS = 10_000;
+
+	private static final String VERSAO_CAIXA = "select c.data_fechamento, c.data_alteracao, "
+			+ "count(cl.codigo) as lancamentos, max(cl.data_alteracao) as ultimo_lancamento "
+			+ "from caixa c left join caixa_lancamento cl on cl.caixa_codigo = c.codigo "
+			+ "where c.codigo = ? group by c.codigo";
+
+	private static final String VERSAO_VENDA = "select v.situacao, v.valor_produtos, v.valor_desconto, "
+			+ "v.observacao, v.pessoa_codigo, count(vp.codigo) as itens, max(vp.codigo) as ultimo_item, "
+			+ "sum(vp.qtd) as quantidade "
+			+ "from venda v left join venda_produtos vp on vp.venda_codigo = v.codigo "
+			+ "where v.codigo = ? group by v.codigo";
+
+	private static final Map<String, ConsultaVersao> VERSOES = Map.of(
+			"caixa.jrxml", new ConsultaVersao("codcaixa", VERSAO_CAIXA, linha -> linha.get("data_fechamento") != null),
+			"comanda.jrxml", new ConsultaVersao("codvenda", VERSAO_VENDA, FilaRelatorios::vendaEncerrada),
+			"controle.jrxml", new ConsultaVersao("codvenda", VERSAO_VENDA, FilaRelatorios::vendaEncerrada));
+
+	private final GerarRelatorio gerar;
+	private final JdbcTemplate jdbc;
+	private final Path diretorio;
+	private final long maxBytes;
+	private final ThreadPoolExecutor executor;
+
+	private final Map<String, RelatorioJob> jobs = limitado(MAX_JOBS);
+
+	// job de cada chave ainda sendo gerada
+	private final Map<String, RelatorioJob> emAndamento = new ConcurrentHashMap<>();
+
+	// chave do PDF dos relatórios cujos dados não mudam mais
+	private final Map<String, String> definitivos = limitado(MAX_DEFINITIVOS);
+
+	// arquivos do cache e seus tamanhos, do menos para o mais usado
+	private final LinkedHashMap<String, Long> arquivos = new LinkedHashMap<>(16, 0.75f, true);
+	private long bytesEmCache;
+
+	// respostas com o arquivo de cada chave aberto, não sai do cache enquanto houver
+	private final Map<String, Integer> emUso = new HashMap<>();
+
+	private final AtomicLong acertos = new AtomicLong();
+	private final AtomicLong gerados = new AtomicLong();
+
+	public FilaRelatorios(GerarRelatorio gerar, JdbcTemplate jdbc,
+			@Value("${pdv.relatorio.fila.threads:2}") int threads,
+			@Value("${pdv.relatorio.fila.tamanho:20}") int tamanhoFila,
+			@Value("${pdv.relatorio.cache.diretorio:${java.io.tmpdir}/pdv-relatorios}") String diretorio,
+			@Value("${pdv.relatorio.cache.max-megabytes:256}") long maxMegabytes) {
+		this.gerar = gerar;
+		this.jdbc = jdbc;
+		this.diretorio = Paths.get(diretorio);
+		this.maxBytes = maxMegabytes << 20;
+
+		AtomicInteger numero = new AtomicInteger();
+		this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(Math.max(tamanhoFila, 1)), tarefa -> {
+					Thread thread = new Thread(tarefa, "relatorio-" + numero.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				});
+	}
+
+	/*
+	 * Recupera os PDFs que já estavam no cache, descartando os incompletos
+	 */
+	@PostConstruct
+	public void inicia() {
+		try {
+			Files.createDirectories(diretorio);
+
+			List<Path> existentes;
+			try (Stream<Path> lista = Files.list(diretorio)) {
+				existentes = lista.collect(Collectors.toList());
+			}
+
+			existentes.stream().filter(arquivo -> arquivo.toString().endsWith(EXTENSAO_PARCIAL))
+					.forEach(FilaRelatorios::remove);
+
+			existentes.stream().filter(arquivo -> arquivo.toString().endsWith(EXTENSAO))
+					.sorted(Comparator.comparing(arquivo -> arquivo.toFile().lastModified()))
+					.forEach(arquivo -> guarda(chave(arquivo), arquivo.toFile().length()));
+		} catch (IOException e) {
+			throw new UncheckedIOException("Erro ao ler o cache de relatórios " + diretorio, e);
+		}
+	}
+
+	@PreDestroy
+	public void encerra() {
+		executor.shutdownNow();
+	}
+
+	/*
+	 * Coloca o relatório na fila, ou devolve um job já concluído quando o PDF
+	 * com os mesmos dados está no cache. Com a fila cheia o job volta com erro
+	 */
+	public RelatorioJob agenda(String relatorio, Map<String, Object> parametros) {
+		Map<String, Object> ordenados = new TreeMap<>(parametros);
+		String identificacao = relatorio + ordenados;
+
+		String definitiva = definitivos.get(identificacao);
+		if (definitiva != null && emCache(definitiva))
+			return doCache(relatorio, definitiva);
+
+		Versao versao = versao(relatorio, ordenados);
+		String chave = hash(identificacao + "|" + versao.valor);
+
+		if (emCache(chave)) {
+			if (versao.definitiva)
+				definitivos.put(identificacao, chave);
+
+			return doCache(relatorio, chave);
+		}
+
+		RelatorioJob novo = new RelatorioJob(relatorio, chave);
+		RelatorioJob job = emAndamento.putIfAbsent(chave, novo);
+		if (job != null)
+			return job;
+
+		jobs.put(novo.getCodigo(), novo);
+
+		try {
+			executor.execute(() -> gera(novo, ordenados, versao.definitiva ? identificacao : null));
+		} catch (RejectedExecutionException e) {
+			emAndamento.remove(chave);
+			novo.falhou(new RejectedExecutionException("Fila de relatórios cheia, tente novamente", e));
+		}
+
+		return novo;
+	}
+
+	public Optional<RelatorioJob> job(String codigo) {
+		return Optional.ofNullable(jobs.get(codigo));
+	}
+
+	/*
+	 * PDF do relatório para a resposta, sem prender a thread da requisição
+	 * enquanto ele é gerado. Se o PDF saiu do cache antes de ser aberto, o
+	 * pedido é feito de novo
+	 */
+	public CompletableFuture<ResponseEntity<Resource>> pdf(String relatorio, Map<String, Object> parametros) {
+		return agenda(relatorio, parametros).getResultado().handle((arquivo, erro) -> {
+			if (erro == null)
+				return resposta(arquivo).map(CompletableFuture::completedFuture)
+						.orElseGet(() -> pdf(relatorio, parametros));
+
+			Throwable causa = erro instanceof CompletionException ? erro.getCause() : erro;
+			if (causa instanceof RejectedExecutionException)
+				return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+						.<Resource>build());
+
+			throw new CompletionException(causa);
+		}).thenCompose(Function.identity());
+	}
+
+	/*
+	 * Resposta com o PDF já aberto, que fica no cache até a resposta fechar o
+	 * arquivo. Vazio quando o PDF já foi removido do cache
+	 */
+	public Optional<ResponseEntity<Resource>> resposta(Path arquivo) {
+		String chave = chave(arquivo);
+		InputStream pdf;
+		long tamanho;
+
+		synchronized (this) {
+			if (!arquivos.containsKey(chave))
+				return Optional.empty();
+
+			try {
+				pdf = Files.newInputStream(arquivo);
+				tamanho = Files.size(arquivo);
+			} catch (NoSuchFileException e) {
+				bytesEmCache -= arquivos.remove(chave);
+				return Optional.empty();
+			} catch (IOException e) {
+				throw new UncheckedIOException("Erro ao abrir o relatório " + arquivo, e);
+			}
+
+			emUso.merge(chave, 1, Integer::sum);
+		}
+
+		Resource corpo = new PdfDoCache(new Uso(chave, pdf), tamanho, arquivo.getFileName().toString());
+
+		return Optional.of(ResponseEntity.ok().contentType(MediaType.APPLICATION_PDF).body(corpo));
+	}
+
+	/*
+	 * PDF para os controllers. O arquivo aberto para a resposta é liberado no
+	 * fim da requisição, tenha ela enviado o PDF, expirado ou terminado com
+	 * erro, e também quando o PDF só fica pronto depois de ela ter expirado
+	 */
+	public DeferredResult<ResponseEntity<Resource>> envia(String relatorio, Map<String, Object> parametros) {
+		CompletableFuture<ResponseEntity<Resource>> resposta = pdf(relatorio, parametros);
+		DeferredResult<ResponseEntity<Resource>> resultado = new DeferredResult<>();
+
+		resultado.onCompletion(() -> resposta.thenAccept(FilaRelatorios::libera));
+		resposta.whenComplete((pdf, erro) -> {
+			if (erro == null)
+				resultado.setResult(pdf);
+			else
+				resultado.setErrorResult(erro instanceof CompletionException ? erro.getCause() : erro);
+		});
+
+		return resultado;
+	}
+
+	/*
+	 * Fecha o arquivo da resposta e o libera para sair do cache, se o envio
+	 * ainda não o fechou
+	 */
+	public static void libera(ResponseEntity<?> resposta) {
+		if (resposta != null && resposta.getBody() instanceof PdfDoCache)
+			((PdfDoCache) resposta.getBody()).uso.libera();
+	}
+
+	public Map<String, Object> estatisticas() {
+		Map<String, Object> estatisticas = new LinkedHashMap<>();
+		estatisticas.put("naFila", executor.getQueue().size());
+		estatisticas.put("gerando", executor.getActiveCount());
+		estatisticas.put("gerados", gerados.get());
+		estatisticas.put("acertosCache", acertos.get());
+
+		synchronized (this) {
+			estatisticas.put("arquivosEmCache", arquivos.size());
+			estatisticas.put("bytesEmCache", bytesEmCache);
+		}
+
+		return estatisticas;
+	}
+
+	private void gera(RelatorioJob job, Map<String, Object> parametros, String identificacao) {
+		Path parcial = null;
+
+		try {
+			job.gerando();
+			parcial = Files.createTempFile(diretorio, job.getChave(), EXTENSAO_PARCIAL);
+
+			try (OutputStream saida = new BufferedOutputStream(Files.newOutputStream(parcial))) {
+				gerar.exporta(job.getRelatorio(), parametros, saida);
+			}
+
+			Path arquivo = arquivo(job.getChave());
+			Files.move(parcial, arquivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			guarda(job.getChave(), Files.size(arquivo));
+			gerados.incrementAndGet();
+
+			if (identificacao != null)
+				definitivos.put(identificacao, job.getChave());
+
+			job.concluido(arquivo);
+		} catch (IOException | RuntimeException e) {
+			LOGGER.error("Erro ao gerar o relatório {}", job.getRelatorio(), e);
+
+			if (parcial != null)
+				remove(parcial);
+
+			job.falhou(e);
+		} finally {
+			emAndamento.remove(job.getChave());
+		}
+	}
+
+	private RelatorioJob doCache(String relatorio, String chave) {
+		acertos.incrementAndGet();
+
+		RelatorioJob job = new RelatorioJob(relatorio, chave);
+		jobs.put(job.getCodigo(), job);
+		job.concluido(arquivo(chave));
+		return job;
+	}
+
+	/*
+	 * Sem consulta de versão para o relatório, cada pedido é gerado de novo
+	 */
+	private Versao versao(String relatorio, Map<String, Object> parametros) {
+		ConsultaVersao consulta = VERSOES.get(relatorio);
+		if (consulta == null)
+			return new Versao(UUID.randomUUID().toString(), false);
+
+		try {
+			Map<String, Object> linha = jdbc.queryForMap(consulta.sql, parametros.get(consulta.parametro));
+			return new Versao(linha.values().toString(), consulta.definitiva.test(linha));
+		} catch (EmptyResultDataAccessException e) {
+			return new Versao("inexistente", false);
+		}
+	}
+
+	private synchronized boolean emCache(String chave) {
+		if (arquivos.get(chave) == null)
+			return false;
+
+		if (Files.exists(arquivo(chave)))
+			return true;
+
+		bytesEmCache -= arquivos.remove(chave);
+		return false;
+	}
+
+	/*
+	 * Guarda o arquivo no índice e remove os menos usados acima do limite,
+	 * mantendo sempre o último gerado e os que estão sendo enviados
+	 */
+	private synchronized void guarda(String chave, long tamanho) {
+		Long anterior = arquivos.put(chave, tamanho);
+		bytesEmCache += tamanho - (anterior == null ? 0 : anterior);
+
+		Iterator<Map.Entry<String, Long>> menosUsados = arquivos.entrySet().iterator();
+		while (bytesEmCache > maxBytes && menosUsados.hasNext()) {
+			Map.Entry<String, Long> menosUsado = menosUsados.next();
+			if (menosUsado.getKey().equals(chave) || emUso.containsKey(menosUsado.getKey()))
+				continue;
+
+			bytesEmCache -= menosUsado.getValue();
+			menosUsados.remove();
+			remove(arquivo(menosUsado.getKey()));
+		}
+	}
+
+	private synchronized void liberaUso(String chave) {
+		emUso.computeIfPresent(chave, (arquivo, respostas) -> respostas > 1 ? respostas - 1 : null);
+	}
+
+	private Path arquivo(String chave) {
+		return diretorio.resolve(chave + EXTENSAO);
+	}
+
+	private static String chave(Path arquivo) {
+		String nome = arquivo.getFileName().toString();
+		return nome.substring(0, nome.length() - EXTENSAO.length());
+	}
+
+	private static void remove(Path arquivo) {
+		try {
+			Files.deleteIfExists(arquivo);
+		} catch (IOException e) {
+			LOGGER.warn("Não foi possível remover {} do cache de relatórios", arquivo, e);
+		}
+	}
+
+	private static boolean vendaEncerrada(Map<String, Object> linha) {
+		Object situacao = linha.get("situacao");
+		return "FECHADA".equals(situacao) || "CANCELADA".equals(situacao);
+	}
+
+	private static String hash(String texto) {
+		try {
+			byte[] hash = MessageDigest.getInstance("SHA-256").digest(texto.getBytes(StandardCharsets.UTF_8));
+
+			StringBuilder hexa = new StringBuilder(hash.length * 2);
+			for (byte b : hash)
+				hexa.append(String.format("%02x", b));
+
+			return hexa.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static <V> Map<String, V> limitado(int maximo) {
+		return Collections.synchronizedMap(new LinkedHashMap<String, V>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, V> maisAntiga) {
+				return size() > maximo;
+			}
+		});
+	}
+
+	/*
+	 * Arquivo aberto por uma resposta, liberado uma vez só: ao ser fechado pelo
+	 * envio ou por libera, o que vier primeiro
+	 */
+	private final class Uso {
+
+		private final String chave;
+		private final InputStream pdf;
+		private final AtomicBoolean liberado = new AtomicBoolean();
+
+		Uso(String chave, InputStream pdf) {
+			this.chave = chave;
+			this.pdf = pdf;
+		}
+
+		void libera() {
+			if (!liberado.compareAndSet(false, true))
+				return;
+
+			try {
+				pdf.close();
+			} catch (IOException e) {
+				LOGGER.warn("Erro ao fechar o relatório {}", chave, e);
+			} finally {
+				liberaUso(chave);
+			}
+		}
+
+	}
+
+	private static final class PdfDoCache extends InputStreamResource {
+
+		private final Uso uso;
+		private final long tamanho;
+		private final String nome;
+
+		PdfDoCache(Uso uso, long tamanho, String nome) {
+			super(new FilterInputStream(uso.pdf) {
+				@Override
+				public void close() {
+					uso.libera();
+				}
+			});
+			this.uso = uso;
+			this.tamanho = tamanho;
+			this.nome = nome;
+		}
+
+		@Override
+		public long contentLength() {
+			return tamanho;
+		}
+
+		@Override
+		public String getFilename() {
+			return nome;
+		}
+
+	}
+
+	private static class ConsultaVersao {
+
+		private final String parametro;
+		private final String sql;
+		private final Predicate<Map<String, Object>> definitiva;
+
+		ConsultaVersao(String parametro, String sql, Predicate<Map<String, Object>> definitiva) {
+			this.parametro = parametro;
+			this.sql = sql;
+			this.definitiva = definitiva;
+		}
+
+	}
+
+	private static class Versao {
+
+		private final String valor;
+		private final boolean definitiva;
+
+		Versao(String valor, boolean definitiva) {
+			this.valor = valor;
+			this.definitiva = definitiva;
+		}
+
+	}
+
+}
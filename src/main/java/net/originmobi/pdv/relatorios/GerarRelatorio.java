@@ -1,63 +1,288 @@
 package net.originmobi.pdv.relatorios;
 
-import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
-import javax.servlet.http.HttpServletResponse;
+import javax.annotation.PostConstruct;
 import javax.sql.DataSource;
 
-import net.originmobi.pdv.utilitarios.ConexaoJDBC;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import net.sf.jasperreports.engine.DefaultJasperReportsContext;
+import net.sf.jasperreports.engine.JRDataSource;
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JRParameter;
 import net.sf.jasperreports.engine.JasperCompileManager;
-import net.sf.jasperreports.engine.JasperExportManager;
-import net.sf.jasperreports.engine.JasperFillManager;
 import net.sf.jasperreports.engine.JasperPrint;
 import net.sf.jasperreports.engine.JasperReport;
+import net.sf.jasperreports.engine.export.JRPdfExporter;
+import net.sf.jasperreports.engine.fill.FillListener;
+import net.sf.jasperreports.engine.fill.JRFiller;
+import net.sf.jasperreports.engine.fill.JRSwapFileVirtualizer;
+import net.sf.jasperreports.engine.fill.ReportFiller;
+import net.sf.jasperreports.engine.util.JRLoader;
+import net.sf.jasperreports.engine.util.JRSwapFile;
+import net.sf.jasperreports.export.SimpleExporterInput;
+import net.sf.jasperreports.export.SimpleOutputStreamExporterOutput;
+import net.sf.jasperreports.export.SimplePdfReportConfiguration;
 
+/**
+ * Gera os relatórios em PDF.
+ *
+ * Os relatórios são compilados uma única vez, na inicialização, e ficam em
+ * memória. Um .jasper já compilado em relatorios/ no classpath é usado no
+ * lugar do .jrxml de mesmo nome. O preenchimento usa uma conexão do pool da
+ * aplicação, devolvida ao final de cada relatório.
+ *
+ * Durante o preenchimento só as últimas páginas ficam em memória, as demais
+ * vão para um arquivo temporário e voltam uma a uma durante a exportação,
+ * que escreve o PDF direto na saída. Assim a memória de um relatório grande,
+ * como o histórico de um mês de caixa, não cresce com o número de páginas.
+ *
+ * A exportação só começa depois do preenchimento inteiro: o exportador de PDF
+ * do Jasper lê um JasperPrint completo, com o total de páginas já conhecido.
+ * O primeiro byte do PDF sai quando a última página foi preenchida, o que
+ * limita a memória e não o tempo até a resposta.
+ */
+@Component
 public class GerarRelatorio {
-	private String contexto;
-	private ConexaoJDBC conexao;
 
-	public void gerar(String relatorio, HttpServletResponse resposta, Map<String, Object> parametros) {
+	private static final Logger LOGGER = LoggerFactory.getLogger(GerarRelatorio.class);
 
-		try {
-			contexto = new File(".").getCanonicalPath();
-		} catch (IOException e1) {
-			e1.printStackTrace();
-			System.out.println("Erro ao pegar path da aplicação");
+	private static final String PASTA = "relatorios/";
+
+	private static final List<String> RELATORIOS = Arrays.asList("caixa.jrxml", "comanda.jrxml", "controle.jrxml");
+
+	// blocos do arquivo temporário, que cresce conforme a necessidade
+	private static final int TAMANHO_BLOCO_SWAP = 4096;
+	private static final int BLOCOS_POR_AUMENTO = 256;
+
+	private static final MemoryMXBean MEMORIA = ManagementFactory.getMemoryMXBean();
+
+	private final DataSource dataSource;
+	private final int paginasMemoria;
+	private final String diretorioTemporario;
+
+	private final Map<String, JasperReport> compilados = new ConcurrentHashMap<>();
+
+	private final AtomicLong relatoriosGerados = new AtomicLong();
+	private final AtomicLong paginasGeradas = new AtomicLong();
+	private final AtomicLong picoMemoria = new AtomicLong();
+	private volatile long ultimoPicoMemoria;
+
+	public GerarRelatorio(DataSource dataSource, @Value("${pdv.relatorio.paginas-memoria:20}") int paginasMemoria,
+			@Value("${pdv.relatorio.diretorio-temporario:${java.io.tmpdir}}") String diretorioTemporario) {
+		this.dataSource = dataSource;
+		this.paginasMemoria = Math.max(paginasMemoria, 1);
+		this.diretorioTemporario = diretorioTemporario;
+	}
+
+	/*
+	 * Uma falha aqui não impede a aplicação de subir, o relatório é compilado
+	 * de novo no primeiro uso e o erro aparece para quem o pediu
+	 */
+	@PostConstruct
+	public void compila() {
+		for (String relatorio : RELATORIOS) {
+			try {
+				relatorio(relatorio);
+			} catch (RuntimeException e) {
+				LOGGER.error("Erro ao compilar o relatório {}", relatorio, e);
+			}
 		}
+	}
+
+	public JasperReport relatorio(String relatorio) {
+		return compilados.computeIfAbsent(relatorio, nome -> {
+			try {
+				long inicio = System.currentTimeMillis();
+				JasperReport compilado = carrega(nome);
+				LOGGER.info("Relatório {} carregado em {} ms", nome, System.currentTimeMillis() - inicio);
+				return compilado;
+			} catch (JRException | IOException e) {
+				throw new IllegalStateException("Erro ao compilar o relatório " + nome, e);
+			}
+		});
+	}
+
+	/*
+	 * Converte os parâmetros recebidos como texto para os tipos declarados no
+	 * relatório, ignorando os que ele não declara
+	 */
+	public Map<String, Object> parametros(String relatorio, Map<String, String> valores) {
+		if (!RELATORIOS.contains(relatorio))
+			throw new IllegalArgumentException("Relatório " + relatorio + " não encontrado");
 
-		String jrxml = contexto.toString().replace("/bin", "") + "/webapps/pdv/WEB-INF/classes/relatorios/" + relatorio;
-		
-		conexao = new ConexaoJDBC();
-		DataSource dataSource = conexao.abre();
+		Map<String, Object> parametros = new HashMap<>();
 
-		JasperReport report;
-		JasperPrint print = null;
+		for (JRParameter parametro : relatorio(relatorio).getParameters()) {
+			String valor = valores.get(parametro.getName());
+			if (parametro.isSystemDefined() || valor == null)
+				continue;
+
+			parametros.put(parametro.getName(), converte(parametro, valor.trim()));
+		}
+
+		return parametros;
+	}
+
+	/*
+	 * Preenche o relatório com a consulta dele e escreve o PDF na saída
+	 */
+	public void exporta(String relatorio, Map<String, Object> parametros, OutputStream saida) {
+		try (Connection conexao = dataSource.getConnection()) {
+			exporta(relatorio, parametros, saida, (filler, parametrosFill) -> filler.fill(parametrosFill, conexao));
+		} catch (SQLException e) {
+			throw new IllegalStateException("Erro ao gerar o relatório " + relatorio, e);
+		}
+	}
+
+	/*
+	 * Preenche o relatório com os dados informados, no lugar da consulta
+	 */
+	public void exporta(String relatorio, Map<String, Object> parametros, JRDataSource dados, OutputStream saida) {
+		exporta(relatorio, parametros, saida, (filler, parametrosFill) -> filler.fill(parametrosFill, dados));
+	}
+
+	/*
+	 * Memória estimada dos relatórios: o heap ocupado acima do que estava em
+	 * uso no início de cada relatório, medido a cada página preenchida e
+	 * exportada. Inclui o que outras requisições alocaram no mesmo período
+	 */
+	public Map<String, Object> estatisticas() {
+		Map<String, Object> estatisticas = new LinkedHashMap<>();
+		estatisticas.put("relatoriosGerados", relatoriosGerados.get());
+		estatisticas.put("paginasGeradas", paginasGeradas.get());
+		estatisticas.put("paginasEmMemoria", paginasMemoria);
+		estatisticas.put("picoMemoria", picoMemoria.get());
+		estatisticas.put("ultimoPicoMemoria", ultimoPicoMemoria);
+		return estatisticas;
+	}
+
+	private void exporta(String relatorio, Map<String, Object> parametros, OutputStream saida,
+			Preenchimento preenchimento) {
+		JasperReport compilado = relatorio(relatorio);
+		long inicio = System.currentTimeMillis();
+		Medicao medicao = new Medicao();
+
+		JRSwapFileVirtualizer virtualizador = new JRSwapFileVirtualizer(paginasMemoria,
+				new JRSwapFile(diretorioTemporario, TAMANHO_BLOCO_SWAP, BLOCOS_POR_AUMENTO), true);
 
 		try {
-			report = JasperCompileManager.compileReport(jrxml);
+			// o Jasper acrescenta os parâmetros internos no mapa recebido
+			Map<String, Object> parametrosFill = new HashMap<>(parametros);
+			parametrosFill.put(JRParameter.REPORT_VIRTUALIZER, virtualizador);
+
+			ReportFiller filler = JRFiller.createReportFiller(DefaultJasperReportsContext.getInstance(), compilado);
+			filler.addFillListener(medicao);
 
-			print = JasperFillManager.fillReport(report, parametros, dataSource.getConnection());
+			// preenche todas as páginas antes de exportar a primeira
+			JasperPrint print = preenchimento.preenche(filler, parametrosFill);
 
-			dataSource.getConnection().close();
-		} catch (Exception e) {
-			System.out.println(e);
+			// as páginas não mudam mais, voltam do arquivo sem serem regravadas
+			virtualizador.setReadOnly(true);
+
+			SimplePdfReportConfiguration configuracao = new SimplePdfReportConfiguration();
+			configuracao.setProgressMonitor(medicao::amostra);
+
+			JRPdfExporter exportador = new JRPdfExporter();
+			exportador.setExporterInput(new SimpleExporterInput(print));
+			exportador.setExporterOutput(new SimpleOutputStreamExporterOutput(saida));
+			exportador.setConfiguration(configuracao);
+			exportador.exportReport();
+
+			registra(relatorio, print.getPages().size(), medicao.pico, inicio);
+		} catch (JRException e) {
+			throw new IllegalStateException("Erro ao gerar o relatório " + relatorio, e);
+		} finally {
+			virtualizador.cleanup();
 		}
-		
+	}
+
+	private void registra(String relatorio, int paginas, long pico, long inicio) {
+		relatoriosGerados.incrementAndGet();
+		paginasGeradas.addAndGet(paginas);
+		picoMemoria.accumulateAndGet(pico, Math::max);
+		ultimoPicoMemoria = pico;
+
+		LOGGER.info("Relatório {} gerado com {} páginas em {} ms, pico de memória estimado de {} KB", relatorio,
+				paginas, System.currentTimeMillis() - inicio, pico / 1024);
+	}
+
+	private static Object converte(JRParameter parametro, String valor) {
+		Class<?> tipo = parametro.getValueClass();
+
 		try {
-			OutputStream saida = resposta.getOutputStream();
-			
-			resposta.setContentType("application/pdf");
-			
-			JasperExportManager.exportReportToPdfStream(print, saida);
-			
-			saida.flush();
-			saida.close();
-		} catch (Exception e) {
-			System.out.println(e);
+			if (tipo == Integer.class)
+				return Integer.valueOf(valor);
+			if (tipo == Long.class)
+				return Long.valueOf(valor);
+			if (tipo == String.class)
+				return valor;
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Valor inválido para o parâmetro " + parametro.getName(), e);
 		}
 
+		throw new IllegalArgumentException("Parâmetro " + parametro.getName() + " não pode ser informado");
 	}
+
+	private JasperReport carrega(String relatorio) throws JRException, IOException {
+		ClassLoader classLoader = GerarRelatorio.class.getClassLoader();
+
+		try (InputStream jasper = classLoader.getResourceAsStream(PASTA + relatorio.replaceFirst("\\.jrxml$", ".jasper"))) {
+			if (jasper != null)
+				return (JasperReport) JRLoader.loadObject(jasper);
+		}
+
+		try (InputStream jrxml = classLoader.getResourceAsStream(PASTA + relatorio)) {
+			if (jrxml == null)
+				throw new JRException("Relatório " + relatorio + " não encontrado");
+
+			return JasperCompileManager.compileReport(jrxml);
+		}
+	}
+
+	@FunctionalInterface
+	private interface Preenchimento {
+		JasperPrint preenche(ReportFiller filler, Map<String, Object> parametros) throws JRException;
+	}
+
+	/*
+	 * Heap em uso acima do início do relatório, amostrado a cada página
+	 */
+	private static class Medicao implements FillListener {
+
+		private final long inicial = MEMORIA.getHeapMemoryUsage().getUsed();
+		private long pico;
+
+		void amostra() {
+			pico = Math.max(pico, MEMORIA.getHeapMemoryUsage().getUsed() - inicial);
+		}
+
+		@Override
+		public void pageGenerated(JasperPrint print, int pagina) {
+			amostra();
+		}
+
+		@Override
+		public void pageUpdated(JasperPrint print, int pagina) {
+		}
+
+	}
+
 }
@@ -0,0 +1,88 @@
+package net.originmobi.pdv.relatorios;
+
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Um pedido de relatório na fila. Pedidos iguais enquanto o relatório é
+ * gerado recebem o mesmo job.
+ */
+public class RelatorioJob {
+
+	public enum Situacao {
+		NA_FILA, GERANDO, CONCLUIDO, ERRO
+	}
+
+	private final String codigo = UUID.randomUUID().toString();
+	private final String relatorio;
+	private final String chave;
+	private final long cadastro = System.currentTimeMillis();
+	private final CompletableFuture<Path> resultado = new CompletableFuture<>();
+
+	private volatile Situacao situacao = Situacao.NA_FILA;
+	private volatile String erro;
+	private volatile long conclusao;
+
+	RelatorioJob(String relatorio, String chave) {
+		this.relatorio = relatorio;
+		this.chave = chave;
+	}
+
+	void gerando() {
+		situacao = Situacao.GERANDO;
+	}
+
+	void concluido(Path arquivo) {
+		conclusao = System.currentTimeMillis();
+		situacao = Situacao.CONCLUIDO;
+		resultado.complete(arquivo);
+	}
+
+	void falhou(Throwable causa) {
+		conclusao = System.currentTimeMillis();
+		erro = causa.getMessage();
+		situacao = Situacao.ERRO;
+		resultado.completeExceptionally(causa);
+	}
+
+	public String getCodigo() {
+		return codigo;
+	}
+
+	public String getRelatorio() {
+		return relatorio;
+	}
+
+	public String getChave() {
+		return chave;
+	}
+
+	public Situacao getSituacao() {
+		return situacao;
+	}
+
+	public String getErro() {
+		return erro;
+	}
+
+	/*
+	 * Arquivo do PDF no cache, quando concluído
+	 */
+	public CompletableFuture<Path> getResultado() {
+		return resultado;
+	}
+
+	public Map<String, Object> resumo() {
+		Map<String, Object> resumo = new LinkedHashMap<>();
+		resumo.put("codigo", codigo);
+		resumo.put("relatorio", relatorio);
+		resumo.put("situacao", situacao);
+		resumo.put("erro", erro);
+		resumo.put("tempo", conclusao == 0 ? null : conclusao - cadastro);
+		return resumo;
+	}
+
+}
@@ -3,37 +3,45 @@ package net.originmobi.pdv.relatorios;
 import java.util.HashMap;
 import java.util.Map;
 
-import javax.servlet.http.HttpServletResponse;
-
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.Resource;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
-import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import net.originmobi.pdv.service.venda.CarrinhoVendaService;
 
 @Controller
 @RequestMapping("/venda/relatorio")
 public class VendaRelatorioController {
 	
-	GerarRelatorio relatorio;
+	@Autowired
+	private FilaRelatorios fila;
+
+	@Autowired
+	private CarrinhoVendaService carrinhos;
 
 	@GetMapping("/controle/{codigo}")
-	public void controle(@PathVariable("codigo") Integer codigo, HttpServletResponse response) {
+	public DeferredResult<ResponseEntity<Resource>> controle(@PathVariable("codigo") Integer codigo) {
 		Map<String, Object> parametros = new HashMap<>();
 		parametros.put("codvenda", codigo);
 
-		relatorio = new GerarRelatorio();
-		relatorio.gerar("controle.jrxml", response, parametros);
+		// o relatório lê venda_produtos, então grava o que estiver no carrinho
+		carrinhos.grava(codigo.longValue());
+
+		return fila.envia("controle.jrxml", parametros);
 	}
 	
 	@GetMapping("/comanda/{codigo}")
-	public @ResponseBody String comanda(@PathVariable("codigo") Integer codigo, HttpServletResponse response) {
+	public DeferredResult<ResponseEntity<Resource>> comanda(@PathVariable("codigo") Integer codigo) {
 		Map<String, Object> parametros = new HashMap<>();
 		parametros.put("codvenda", codigo);
+
+		carrinhos.grava(codigo.longValue());
 		
-		relatorio = new GerarRelatorio();
-		relatorio.gerar("comanda.jrxml", response, parametros);
-		
-		return "ok";
+		return fila.envia("comanda.jrxml", parametros);
 	} 
 }
@@ -5,8 +5,10 @@ import java.util.List;
 import java.util.Optional;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 import net.originmobi.pdv.enumerado.caixa.CaixaTipo;
 import net.originmobi.pdv.model.Caixa;
@@ -39,6 +41,17 @@ public interface CaixaRepository extends JpaRepository<Caixa, Long> {
 	@Query("select c from Caixa c where c.tipo = ?1 and c.data_fechamento is null")
 	public List<Caixa> buscaCaixaTipo(CaixaTipo tipo);
 
+	/*
+	 * Soma a entrada e a saída aos valores do caixa, a saída só é aplicada se o
+	 * caixa tiver saldo para ela, o retorno é zero quando não tiver
+	 */
+	@Transactional
+	@Modifying
+	@Query(value = "update caixa set valor_entrada = coalesce(valor_entrada, 0) + :entrada, valor_saida = coalesce(valor_saida, 0) + :saida, "
+			+ "valor_total = coalesce(valor_total, 0) + :entrada - :saida "
+			+ "where codigo = :codigo and (:saida = 0 or coalesce(valor_total, 0) >= :saida)", nativeQuery = true)
+	public int lancaValores(@Param("codigo") Long codigo, @Param("entrada") Double entrada, @Param("saida") Double saida);
+
 	@Query("select c from Caixa c where c.tipo = :tipo and c.data_cadastro = :data_cadastro order by c.codigo desc")
 	public List<Caixa> buscaCaixaTipoData(@Param("tipo") CaixaTipo tipo, @Param("data_cadastro") Date data_cadastro);
 
@@ -15,4 +15,13 @@ public interface PermissoesRespository extends JpaRepository<Permissoes, Long> {
 	@Query(value = "select * from permissoes p, permissoes_grupo_usuario pgu where pgu.permissoes_codigo = p.codigo "
 			+ "and pgu.grupo_usuario_codigo = ?1 order by pgu.permissoes_codigo", nativeQuery = true)
 	List<Permissoes> listaPermissoesDoGrupo(Long codigo);
+
+	/*
+	 * Grupos do usuário com as permissões de cada um; grupo sem permissões vem
+	 * em uma linha com o nome nulo
+	 */
+	@Query(value = "select ug.grupo_usuario_codigo, p.nome from usuario_grupousuario ug "
+			+ "left join permissoes_grupo_usuario pgu on pgu.grupo_usuario_codigo = ug.grupo_usuario_codigo "
+			+ "left join permissoes p on p.codigo = pgu.permissoes_codigo where ug.usuario_codigo = ?1", nativeQuery = true)
+	List<Object[]> permissoesDoUsuario(Long codUsuario);
 }
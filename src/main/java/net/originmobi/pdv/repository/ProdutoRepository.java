@@ -12,6 +12,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.transaction.annotation.Transactional;
 
 import net.originmobi.pdv.model.Produto;
+import net.originmobi.pdv.service.produto.ProdutoCatalogo;
 
 public interface ProdutoRepository extends JpaRepository<Produto, Long> {
 
@@ -22,23 +23,24 @@ public interface ProdutoRepository extends JpaRepository<Produto, Long> {
 	@Transactional
 	@Modifying
 	@Query(value = "insert into produto (fornecedor_codigo, categoria_codigo, grupo_codigo, balanca, descricao, valor_custo, valor_venda, "
-			+ "data_validade, controla_estoque, ativo, unidade, subtributaria, data_cadastro, ncm, cest, tributacao_codigo, bc_icms_codigo, vendavel) "
+			+ "data_validade, controla_estoque, ativo, unidade, subtributaria, data_cadastro, ncm, cest, tributacao_codigo, bc_icms_codigo, vendavel, codigo_barras) "
 			+ "values (:codforne, :categoria, :grupo, :balanca, :descricao, :vlcusto, :vlvenda, :validade, :controleEstoque, :ativo, :unidade, "
-			+ ":subtribu, :dataCadastro, :ncm, :cest, :tributacao, :modbc, :vendavel)", nativeQuery = true)
+			+ ":subtribu, :dataCadastro, :ncm, :cest, :tributacao, :modbc, :vendavel, :codigoBarras)", nativeQuery = true)
 	public void insere(@Param("codforne") Long codforne, @Param("categoria") Long codcategoria,
 			@Param("grupo") Long codgrupo, @Param("balanca") int balanca, @Param("descricao") String descricao,
 			@Param("vlcusto") Double valorCusto, @Param("vlvenda") Double valorVenda,
 			@Param("validade") Date dataValidade, @Param("controleEstoque") String controleEstoque,
 			@Param("ativo") String situacao, @Param("unidade") String unitario, @Param("subtribu") int subtribu,
 			@Param("dataCadastro") java.sql.Date cadastro, @Param("ncm") String ncm, @Param("cest") String cest,
-			@Param("tributacao") Long tributacao, @Param("modbc") Long modbc, @Param("vendavel") String vendavel);
+			@Param("tributacao") Long tributacao, @Param("modbc") Long modbc, @Param("vendavel") String vendavel,
+			@Param("codigoBarras") String codigoBarras);
 
 	@Transactional
 	@Modifying
 	@Query(value = "update produto set fornecedor_codigo = :fornecedor, categoria_codigo = :categoria, grupo_codigo = :grupo, balanca = :balanca, "
 			+ "descricao = :descricao, valor_custo = :vlcusto, valor_venda = :vlvenda, data_validade = :validade, controla_estoque = :controleEstoque, ativo = :ativo, "
-			+ "unidade = :unidade, subtributaria = :subtribu, ncm = :ncm, cest = :cest, tributacao_codigo = :tributacao, bc_icms_codigo = :modbc, vendavel = :vendavel "
-			+ "where codigo = :codprod", nativeQuery = true)
+			+ "unidade = :unidade, subtributaria = :subtribu, ncm = :ncm, cest = :cest, tributacao_codigo = :tributacao, bc_icms_codigo = :modbc, vendavel = :vendavel, "
+			+ "codigo_barras = :codigoBarras where codigo = :codprod", nativeQuery = true)
 	public void atualiza(@Param("codprod") Long codprod, @Param("fornecedor") Long codforne,
 			@Param("categoria") Long codcategoria, @Param("grupo") Long codgrupo, @Param("balanca") int balanca,
 			@Param("descricao") String descricao, @Param("vlcusto") Double valorCusto,
@@ -46,7 +48,10 @@ public interface ProdutoRepository extends JpaRepository<Produto, Long> {
 			@Param("controleEstoque") String controleEstoque, @Param("ativo") String situacao,
 			@Param("unidade") String unitario, @Param("subtribu") int subtribu, @Param("ncm") String ncm,
 			@Param("cest") String cest, @Param("tributacao") Long tributacao, @Param("modbc") Long modbc,
-			@Param("vendavel") String vendavel);
+			@Param("vendavel") String vendavel, @Param("codigoBarras") String codigoBarras);
+
+	@Query("select p.codigo from Produto p where p.codigo_barras = :codigoBarras")
+	public Long codigoPorCodigoBarras(@Param("codigoBarras") String codigoBarras);
 
 	@Transactional
 	@Modifying
@@ -55,10 +60,75 @@ public interface ProdutoRepository extends JpaRepository<Produto, Long> {
 	public void movimentaEstoque(@Param("codprod") Long codprod, @Param("tipo") String tipo, @Param("qtd") int qtd,
 			@Param("origem") String origem, @Param("data_movimentacao") java.sql.Date data_movimentacao);
 
+	@Transactional
+	@Modifying
+	@Query(value = "update produto_estoque set qtd = qtd + :qtd where produto_codigo = :codprod and qtd + :qtd >= 0", nativeQuery = true)
+	public int atualizaSaldoEstoque(@Param("codprod") Long codprod, @Param("qtd") int qtd);
+
+	@Query(value = "select distinct vp.produto_codigo from venda_produtos vp inner join produto p on p.codigo = vp.produto_codigo "
+			+ "where vp.venda_codigo = :codvenda and p.controla_estoque = 'SIM'", nativeQuery = true)
+	public List<Object> produtosEstoqueVenda(@Param("codvenda") Long codvenda);
+
+	/*
+	 * Bloqueia as linhas de estoque dos produtos na ordem do código, duas vendas
+	 * com os mesmos produtos esperam uma pela outra aqui em vez de travarem
+	 * cada uma com parte das linhas, o que aconteceria bloqueando na ordem em
+	 * que os itens foram lançados
+	 */
+	@Query(value = "select produto_codigo from produto_estoque where produto_codigo in (:codigos) "
+			+ "order by produto_codigo for update", nativeQuery = true)
+	public List<Object> travaEstoque(@Param("codigos") List<Long> codigos);
+
+	/*
+	 * Quantidade vendida de cada produto da venda que controla estoque e o saldo
+	 * atual, lido com bloqueio depois de travaEstoque
+	 */
+	@Query(value = "select p.codigo, p.descricao, sum(vp.qtd) as qtd_venda, pe.qtd as qtd_estoque from venda_produtos vp "
+			+ "inner join produto p on p.codigo = vp.produto_codigo "
+			+ "inner join produto_estoque pe on pe.produto_codigo = p.codigo "
+			+ "where vp.venda_codigo = :codvenda and p.controla_estoque = 'SIM' "
+			+ "group by p.codigo, p.descricao, pe.qtd for update", nativeQuery = true)
+	public List<Object[]> saldoEstoqueVenda(@Param("codvenda") Long codvenda);
+
+	/*
+	 * Baixa todos os produtos da venda de uma vez, só altera o saldo que cobre a
+	 * quantidade vendida, o retorno é o número de produtos baixados
+	 */
+	@Transactional
+	@Modifying
+	@Query(value = "update produto_estoque pe inner join (select vp.produto_codigo, sum(vp.qtd) as qtd from venda_produtos vp "
+			+ "inner join produto p on p.codigo = vp.produto_codigo "
+			+ "where vp.venda_codigo = :codvenda and p.controla_estoque = 'SIM' group by vp.produto_codigo) v "
+			+ "on v.produto_codigo = pe.produto_codigo "
+			+ "set pe.qtd = pe.qtd - v.qtd where pe.qtd >= v.qtd", nativeQuery = true)
+	public int baixaEstoqueVenda(@Param("codvenda") Long codvenda);
+
+	@Transactional
+	@Modifying
+	@Query(value = "update produto_estoque pe inner join (select vp.produto_codigo, sum(vp.qtd) as qtd from venda_produtos vp "
+			+ "inner join produto p on p.codigo = vp.produto_codigo "
+			+ "where vp.venda_codigo = :codvenda and p.controla_estoque = 'SIM' group by vp.produto_codigo) v "
+			+ "on v.produto_codigo = pe.produto_codigo "
+			+ "set pe.qtd = pe.qtd + v.qtd", nativeQuery = true)
+	public int estornaEstoqueVenda(@Param("codvenda") Long codvenda);
+
+	@Transactional
+	@Modifying
+	@Query(value = "insert into estoque_movimentacao (produto_codigo, tipo, qtd, origem_operacao, data_movimentacao) "
+			+ "select vp.produto_codigo, :tipo, sum(vp.qtd), :origem, :data_movimentacao from venda_produtos vp "
+			+ "inner join produto p on p.codigo = vp.produto_codigo "
+			+ "where vp.venda_codigo = :codvenda and p.controla_estoque = 'SIM' group by vp.produto_codigo", nativeQuery = true)
+	public int movimentaEstoqueVenda(@Param("codvenda") Long codvenda, @Param("tipo") String tipo,
+			@Param("origem") String origem, @Param("data_movimentacao") java.sql.Date data_movimentacao);
+
 	@Query(value = "select pe.qtd from produto p, produto_estoque pe where pe.produto_codigo = p.codigo and p.codigo = :codprod", nativeQuery = true)
 	public int saldoEstoque(@Param("codprod") Long codprod);
 
 	@Query("select p from Produto p where p.vendavel = 'SIM'")
 	public List<Produto> produtosVendaveis();
 
+	@Query("select new net.originmobi.pdv.service.produto.ProdutoCatalogo(p.codigo, p.codigo_barras, p.descricao, p.valor_venda, p.balanca) "
+			+ "from Produto p where p.vendavel = 'SIM' order by p.descricao")
+	public List<ProdutoCatalogo> catalogoVenda();
+
 }
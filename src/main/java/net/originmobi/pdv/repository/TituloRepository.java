@@ -1,9 +1,17 @@
 package net.originmobi.pdv.repository;
 
+import java.util.Collection;
+import java.util.List;
+
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import net.originmobi.pdv.model.Titulo;
 
 public interface TituloRepository extends JpaRepository<Titulo, Long> {
 
+	@Query("select t from Titulo t join fetch t.tipo left join fetch t.maquina where t.codigo in :codigos")
+	public List<Titulo> buscaTitulos(@Param("codigos") Collection<Long> codigos);
+
 }
@@ -10,8 +10,6 @@ public interface UsuarioRepository extends JpaRepository<Usuario, Long> {
 
 	public Usuario findByUserEquals(String user);
 
-	public Usuario findByUserContaining(String usuario);
-
 	public Usuario findByCodigoIn(Long codigo);
 	
 }
@@ -20,7 +20,8 @@ public interface VendaProdutosRepository extends JpaRepository<VendaProduto, Lon
 	 * ao mexer na ordem do dados, tem que alterar na tela tabProdutos.html da
 	 * venda
 	 */
-	@Query(value = "select p.codigo as cod_prod, p.descricao, p.valor_venda, vp.codigo, p.balanca, vp.valor_balanca from produto p, venda_produtos vp "
+	@Query(value = "select p.codigo as cod_prod, p.descricao, coalesce(vp.valor_unitario, p.valor_venda) as valor_venda, vp.codigo, p.balanca, "
+			+ "vp.valor_balanca, vp.qtd from produto p, venda_produtos vp "
 			+ "where p.codigo = vp.produto_codigo and vp.venda_codigo = ?1", nativeQuery = true)
 	public List<Object> findByProdutosDaVenda(Long codigoVen);
 
@@ -30,12 +31,23 @@ public interface VendaProdutosRepository extends JpaRepository<VendaProduto, Lon
 
 	public VendaProduto findByCodigoIn(Long codigo);
 
+	/*
+	 * Subtrai do total da venda o valor em que o item foi vendido, deve ser
+	 * chamado antes de remover o item
+	 */
+	@Transactional
+	@Modifying
+	@Query(value = "update venda set valor_produtos = coalesce(valor_produtos, 0) - (select case when vp.valor_balanca > 0 "
+			+ "then vp.valor_balanca else coalesce(vp.valor_unitario, 0) end * vp.qtd from venda_produtos vp where vp.codigo = :codigo) "
+			+ "where codigo = (select vp.venda_codigo from venda_produtos vp where vp.codigo = :codigo)", nativeQuery = true)
+	public void estornaValorProduto(@Param("codigo") Long codigo);
+
 	@Transactional
 	@Modifying
 	@Query("delete from VendaProduto where codigo = :codigo")
 	public void removeProduto(@Param("codigo") Long codigo);
 
-	@Query(value = "select produto_codigo, count(produto_codigo) from venda_produtos where venda_codigo = ?1 "
+	@Query(value = "select produto_codigo, sum(qtd) from venda_produtos where venda_codigo = ?1 "
 			+ "group by produto_codigo", nativeQuery = true)
 	public List<Object[]> buscaQtdProduto(Long codvenda);
 
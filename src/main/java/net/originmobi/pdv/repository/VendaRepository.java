@@ -28,6 +28,13 @@ public interface VendaRepository extends JpaRepository<Venda, Long> {
 	@Query("select v.situacao from Venda v where v.codigo = ?1")
 	public String verificaSituacao(Long codigo);
 
+	/*
+	 * Trava a linha da venda até o fim da transação, quem grava itens nela
+	 * espera o fechamento em andamento e lê a situação já confirmada
+	 */
+	@Query(value = "select situacao from venda where codigo = ?1 for update", nativeQuery = true)
+	public String travaSituacao(Long codigo);
+
 	@Query("select v.valor_produtos from Venda v where v.codigo = ?1")
 	public Double verificaValorProdutos(Long codVen);
 
@@ -36,6 +43,11 @@ public interface VendaRepository extends JpaRepository<Venda, Long> {
 	@Query("update Venda v set v.valor_produtos = :valorProdutos where v.codigo = :codigo")
 	public void atualizaValorProdutos(@Param("valorProdutos") Double vlProdutos, @Param("codigo") Long codigo);
 
+	@Transactional
+	@Modifying
+	@Query(value = "update venda set valor_produtos = coalesce(valor_produtos, 0) + :valor where codigo = :codigo", nativeQuery = true)
+	public void somaValorProdutos(@Param("codigo") Long codigo, @Param("valor") Double valor);
+
 	@Query("select v from Venda v where v.situacao = ?1")
 	public Page<Venda> findBySituacaoEquals(VendaSituacao situacao, Pageable pageable);
 
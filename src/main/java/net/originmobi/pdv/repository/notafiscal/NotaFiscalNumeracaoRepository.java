@@ -0,0 +1,31 @@
+package net.originmobi.pdv.repository.notafiscal;
+
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.Repository;
+
+import net.originmobi.pdv.model.NotaFiscalNumeracao;
+
+public interface NotaFiscalNumeracaoRepository extends Repository<NotaFiscalNumeracao, Integer> {
+
+	/*
+	 * Trava a linha da série até o fim da transação, devolve 0 se a série
+	 * ainda não tem linha
+	 */
+	@Modifying
+	@Query(value = "update nota_fiscal_numeracao set ultimo = ultimo + 1 where serie = ?1", nativeQuery = true)
+	int incrementa(int serie);
+
+	@Query(value = "select ultimo from nota_fiscal_numeracao where serie = ?1", nativeQuery = true)
+	Long ultimo(int serie);
+
+	/*
+	 * Primeira nota da série, a partir das notas que já existirem nela. Duas
+	 * transações criando a mesma série ao mesmo tempo ficam com uma linha só
+	 */
+	@Modifying
+	@Query(value = "insert ignore into nota_fiscal_numeracao (serie, ultimo) "
+			+ "select ?1, coalesce(max(numero), 0) from nota_fiscal where serie = ?1", nativeQuery = true)
+	int inicia(int serie);
+
+}
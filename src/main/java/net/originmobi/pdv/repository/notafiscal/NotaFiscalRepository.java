@@ -1,9 +1,12 @@
 package net.originmobi.pdv.repository.notafiscal;
 
 import java.sql.Date;
+import java.util.List;
 
 import javax.transaction.Transactional;
 
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
@@ -27,10 +30,14 @@ public interface NotaFiscalRepository extends JpaRepository<NotaFiscal, Long> {
 	@Query("select n.totais from NotaFiscal n where n.codigo = ?1")
 	NotaFiscalTotais buscaTotaisDaNota(Long codigo);
 
-	@Query(value = "select coalesce(max(numero),0) + 1 from nota_fiscal where serie = ?1", nativeQuery = true)
-	Long buscaUltimaNota(int serie);
-	
 	@Query(value = "select count(*) from nota_fiscal", nativeQuery = true)
 	int totalNotaFiscalEmitidas();
 
+	@Query("select n.codigo from NotaFiscal n where n.chave_acesso is null order by n.codigo")
+	List<Long> buscaPendentesEmissao(Pageable lote);
+
+	@EntityGraph(attributePaths = { "itens", "itens.impostos" })
+	@Query("select distinct n from NotaFiscal n where n.codigo in ?1 order by n.codigo")
+	List<NotaFiscal> buscaParaEmissao(List<Long> codigos);
+
 }
@@ -0,0 +1,127 @@
+package net.originmobi.pdv.security;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import net.originmobi.pdv.repository.PermissoesRespository;
+
+/**
+ * Permissões de cada grupo e grupos de cada usuário, guardados em memória
+ * para que o login não consulte o banco por grupo.
+ *
+ * Quando o usuário ou algum dos grupos dele não está em memória, os grupos e
+ * as permissões são lidos juntos, com uma única consulta. Quem altera as
+ * permissões de um grupo ou os grupos de um usuário invalida a entrada
+ * correspondente depois da confirmação da transação, e a próxima leitura
+ * consulta o banco de novo. Usuários já logados continuam com as permissões
+ * do login até entrarem novamente.
+ */
+@Component
+public class AutorizacoesCache {
+
+	@Autowired
+	private PermissoesRespository permissoes;
+
+	private final Map<Long, Set<GrantedAuthority>> permissoesPorGrupo = new ConcurrentHashMap<>();
+
+	private final Map<Long, List<Long>> gruposPorUsuario = new ConcurrentHashMap<>();
+
+	// incrementada a cada invalidação, descarta o que foi lido antes dela
+	private final AtomicLong versao = new AtomicLong();
+
+	public Collection<GrantedAuthority> doUsuario(Long codUsuario) {
+		List<Long> codGrupos = gruposPorUsuario.get(codUsuario);
+
+		if (codGrupos != null) {
+			Set<GrantedAuthority> autorizacoes = new LinkedHashSet<>();
+
+			for (Long codGrupo : codGrupos) {
+				Set<GrantedAuthority> doGrupo = permissoesPorGrupo.get(codGrupo);
+				if (doGrupo == null)
+					return carrega(codUsuario);
+
+				autorizacoes.addAll(doGrupo);
+			}
+
+			return autorizacoes;
+		}
+
+		return carrega(codUsuario);
+	}
+
+	public void invalidaGrupo(Long codGrupo) {
+		aoConfirmar(() -> permissoesPorGrupo.remove(codGrupo));
+	}
+
+	public void invalidaUsuario(Long codUsuario) {
+		aoConfirmar(() -> gruposPorUsuario.remove(codUsuario));
+	}
+
+	/*
+	 * Antes da confirmação o banco ainda tem os dados antigos para as outras
+	 * transações, e uma leitura nesse intervalo guardaria de novo o que foi
+	 * invalidado
+	 */
+	private void aoConfirmar(Runnable invalidacao) {
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			invalida(invalidacao);
+			return;
+		}
+
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+			@Override
+			public void afterCommit() {
+				invalida(invalidacao);
+			}
+		});
+	}
+
+	private void invalida(Runnable invalidacao) {
+		versao.incrementAndGet();
+		invalidacao.run();
+	}
+
+	private Set<GrantedAuthority> carrega(Long codUsuario) {
+		long lida = versao.get();
+		Map<Long, Set<GrantedAuthority>> carregados = new LinkedHashMap<>();
+
+		// grupo sem permissões também fica em memória, com o conjunto vazio
+		for (Object[] linha : permissoes.permissoesDoUsuario(codUsuario)) {
+			Set<GrantedAuthority> doGrupo = carregados.computeIfAbsent(((Number) linha[0]).longValue(),
+					codGrupo -> new LinkedHashSet<>());
+
+			if (linha[1] != null)
+				doGrupo.add(new SimpleGrantedAuthority("ROLE_" + linha[1]));
+		}
+
+		List<Long> codGrupos = Collections.unmodifiableList(new ArrayList<>(carregados.keySet()));
+		gruposPorUsuario.put(codUsuario, codGrupos);
+		carregados.forEach((codGrupo, doGrupo) -> permissoesPorGrupo.put(codGrupo,
+				Collections.unmodifiableSet(doGrupo)));
+
+		if (versao.get() != lida) {
+			gruposPorUsuario.remove(codUsuario, codGrupos);
+			carregados.keySet().forEach(permissoesPorGrupo::remove);
+		}
+
+		Set<GrantedAuthority> autorizacoes = new LinkedHashSet<>();
+		carregados.values().forEach(autorizacoes::addAll);
+		return autorizacoes;
+	}
+
+}
@@ -0,0 +1,53 @@
+package net.originmobi.pdv.security;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+
+import net.originmobi.pdv.model.Usuario;
+import net.originmobi.pdv.service.UsuarioService;
+
+/**
+ * Usuário da requisição atual, lido do SecurityContext da thread que atende
+ * a requisição. Cada operador vê o próprio usuário mesmo com várias
+ * requisições simultâneas.
+ *
+ * O Usuario é carregado uma única vez no login e fica no
+ * {@link UsuarioSistema} da sessão, sem consulta ao banco a cada operação.
+ * Só uma autenticação feita fora do login, como a da sincronização da
+ * contingência, consulta o usuário pelo login.
+ */
+@Component
+public class UsuarioAtual {
+
+	@Autowired
+	private UsuarioService usuarios;
+
+	public String getLogin() {
+		return autenticacao().getName();
+	}
+
+	public Usuario getUsuario() {
+		Authentication autenticacao = autenticacao();
+
+		if (autenticacao.getPrincipal() instanceof UsuarioSistema) {
+			Usuario usuario = ((UsuarioSistema) autenticacao.getPrincipal()).getUsuario();
+
+			if (usuario != null)
+				return usuario;
+		}
+
+		return usuarios.buscaUsuario(autenticacao.getName());
+	}
+
+	private static Authentication autenticacao() {
+		Authentication autenticacao = SecurityContextHolder.getContext().getAuthentication();
+
+		if (autenticacao == null)
+			throw new IllegalStateException("Nenhum usuário autenticado");
+
+		return autenticacao;
+	}
+
+}
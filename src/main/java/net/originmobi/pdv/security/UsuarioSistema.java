@@ -6,17 +6,42 @@ import java.util.Collection;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.userdetails.User;
 
+import net.originmobi.pdv.model.Usuario;
+
 public class UsuarioSistema extends User implements Serializable {
 
 	private static final long serialVersionUID = 1L;
 
 	private String nome;
 
+	/*
+	 * só o código e o login do usuário, o suficiente para vinculá-lo às
+	 * vendas, caixas e lançamentos sem levar a entidade inteira para a sessão
+	 */
+	private final Usuario usuario;
+
 	public UsuarioSistema(String nome, String username, String password,
 			Collection<? extends GrantedAuthority> authorities) {
+		this(nome, username, password, authorities, null);
+	}
+
+	public UsuarioSistema(String nome, String username, String password,
+			Collection<? extends GrantedAuthority> authorities, Usuario usuario) {
 		super(username, password, authorities);
 
 		this.nome = nome;
+
+		if (usuario == null) {
+			this.usuario = null;
+		} else {
+			this.usuario = new Usuario();
+			this.usuario.setCodigo(usuario.getCodigo());
+			this.usuario.setUser(usuario.getUser());
+		}
+	}
+
+	public Usuario getUsuario() {
+		return usuario;
 	}
 
 	public String getNome() {
@@ -17,7 +17,7 @@ import net.originmobi.pdv.enumerado.ajuste.AjusteStatus;
 import net.originmobi.pdv.filter.AjusteFilter;
 import net.originmobi.pdv.model.Ajuste;
 import net.originmobi.pdv.repository.AjusteRepository;
-import net.originmobi.pdv.singleton.Aplicacao;
+import net.originmobi.pdv.security.UsuarioAtual;
 
 @Service
 public class AjusteService {
@@ -26,12 +26,14 @@ public class AjusteService {
 
     private final AjusteRepository ajustes;
     private final ProdutoService produtos;
+    private final UsuarioAtual usuarioAtual;
 
     private LocalDate dataAtual;
 
-    public AjusteService(AjusteRepository ajustes, ProdutoService produtos) {
+    public AjusteService(AjusteRepository ajustes, ProdutoService produtos, UsuarioAtual usuarioAtual) {
         this.ajustes = ajustes;
         this.produtos = produtos;
+        this.usuarioAtual = usuarioAtual;
     }
 
     public Page<Ajuste> lista(Pageable pageable, AjusteFilter filter) {
@@ -47,11 +49,10 @@ public class AjusteService {
 
     public Long novo() {
         dataAtual = LocalDate.now();
-        Aplicacao aplicacao = Aplicacao.getInstancia();
 
         Ajuste ajuste = new Ajuste(
                 AjusteStatus.APROCESSAR,
-                aplicacao.getUsuarioAtual(),
+                usuarioAtual.getLogin(),
                 Date.valueOf(dataAtual)
         );
 
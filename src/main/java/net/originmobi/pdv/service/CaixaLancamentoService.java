@@ -1,19 +1,28 @@
 package net.originmobi.pdv.service;
 
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.util.List;
-import java.util.Optional;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import net.originmobi.pdv.enumerado.caixa.EstiloLancamento;
 import net.originmobi.pdv.enumerado.caixa.TipoLancamento;
 import net.originmobi.pdv.model.Caixa;
 import net.originmobi.pdv.model.CaixaLancamento;
+import net.originmobi.pdv.model.Usuario;
 import net.originmobi.pdv.repository.CaixaLancamentoRepository;
+import net.originmobi.pdv.repository.CaixaRepository;
+import net.originmobi.pdv.security.UsuarioAtual;
+import net.originmobi.pdv.service.contingencia.ContingenciaService;
 
 @Service
 public class CaixaLancamentoService {
@@ -22,13 +31,49 @@ public class CaixaLancamentoService {
 	private CaixaLancamentoRepository caixaLancamento;
 
 	@Autowired
-	UsuarioService usuarios;
+	private CaixaRepository caixas;
+
+	@Autowired
+	private UsuarioAtual usuarioAtual;
+
+	@Autowired
+	private JdbcTemplate jdbc;
+
+	@Autowired
+	private ContingenciaService contingencia;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
 
 	private Timestamp dataHoraAtual;
 
 	public CaixaLancamentoService() {
 	}
 
+	/*
+	 * Suprimento e sangria feitos na tela do caixa. Sem o banco o lançamento
+	 * vai para o diário de contingência e é gravado na sincronização
+	 */
+	public String lancamento(Long codCaixa, String observacao, Double valor, TipoLancamento tipo,
+			EstiloLancamento estilo) {
+		if (!contingencia.isAtiva()) {
+			try {
+				return new TransactionTemplate(transactionManager).execute(status -> {
+					Caixa caixa = caixas.findById(codCaixa)
+							.orElseThrow(() -> new RuntimeException("Nenhum caixa aberto"));
+					Usuario usuario = usuarioAtual.getUsuario();
+
+					return lancamento(new CaixaLancamento(observacao, valor, tipo, estilo, caixa, usuario));
+				});
+			} catch (RuntimeException e) {
+				if (!contingencia.registraFalha(e))
+					throw e;
+			}
+		}
+
+		return contingencia.lancamento(codCaixa, observacao, valor, tipo, estilo);
+	}
+
 	@Transactional(readOnly = false, propagation = Propagation.REQUIRED)
 	public String lancamento(CaixaLancamento lancamento) {
 		dataHoraAtual = new Timestamp(System.currentTimeMillis());
@@ -41,16 +86,6 @@ public class CaixaLancamentoService {
 				throw new RuntimeException("Nenhum caixa aberto");
 			}
 
-			// se for realizar uma saida de caixa, verifica se tem saldo
-			// suficiente para isso
-			if (lancamento.getEstilo().equals(EstiloLancamento.SAIDA)) {
-				Optional<Double> vlTotalCaixa = lancamento.getCaixa().map(Caixa::getValor_total);
-				
-				if (lancamento.getValor() > vlTotalCaixa.get()) {
-					return "Saldo insuficiente para realizar esta operação";
-				}
-			}
-
 			// se for do tipo SAIDA, converte o valor que vier para negativo
 			if (lancamento.getEstilo().equals(EstiloLancamento.SAIDA) && lancamento.getValor() > 0) {
 				Double valorNegativo = (lancamento.getValor() * -1);
@@ -75,6 +110,16 @@ public class CaixaLancamentoService {
 			throw new RuntimeException();
 		}
 
+		// atualiza os valores do caixa com um único update, na saída o próprio
+		// update confere se o caixa tem saldo suficiente
+		Long codCaixa = lancamento.getCaixa().map(Caixa::getCodigo)
+				.orElseThrow(() -> new RuntimeException("Nenhum caixa aberto"));
+		Double entrada = lancamento.getEstilo().equals(EstiloLancamento.ENTRADA) ? lancamento.getValor() : 0.0;
+		Double saida = lancamento.getEstilo().equals(EstiloLancamento.SAIDA) ? -lancamento.getValor() : 0.0;
+
+		if (caixas.lancaValores(codCaixa, entrada, saida) == 0)
+			return "Saldo insuficiente para realizar esta operação";
+
 		try {
 			caixaLancamento.save(lancamento);
 		} catch (Exception e) {
@@ -85,6 +130,50 @@ public class CaixaLancamentoService {
 		return "Lançamento realizado com sucesso";
 	}
 
+	/*
+	 * Grava lançamentos de entrada de um mesmo caixa com um único update dos
+	 * valores do caixa e um único lote de inserts
+	 */
+	@Transactional(readOnly = false, propagation = Propagation.REQUIRED)
+	public void lancamentoLote(Caixa caixa, List<CaixaLancamento> entradas) {
+		if (entradas.isEmpty())
+			return;
+
+		Timestamp dataCadastro = new Timestamp(System.currentTimeMillis());
+		double total = 0.0;
+
+		for (CaixaLancamento lancamento : entradas) {
+			if (!lancamento.getEstilo().equals(EstiloLancamento.ENTRADA))
+				throw new IllegalArgumentException("O lote aceita apenas lançamentos de entrada");
+
+			lancamento.setData_cadastro(dataCadastro);
+			total += lancamento.getValor();
+		}
+
+		caixas.lancaValores(caixa.getCodigo(), total, 0.0);
+
+		jdbc.batchUpdate("insert into caixa_lancamento (valor, observacao, tipo, estilo, caixa_codigo, usuario_codigo, data_cadastro) "
+				+ "values (?, ?, ?, ?, ?, ?, ?)", new BatchPreparedStatementSetter() {
+
+					@Override
+					public void setValues(PreparedStatement ps, int i) throws SQLException {
+						CaixaLancamento lancamento = entradas.get(i);
+						ps.setDouble(1, lancamento.getValor());
+						ps.setString(2, lancamento.getObservacao());
+						ps.setString(3, lancamento.getTipo().toString());
+						ps.setString(4, lancamento.getEstilo().toString());
+						ps.setLong(5, caixa.getCodigo());
+						ps.setLong(6, lancamento.getUsuario().getCodigo());
+						ps.setTimestamp(7, lancamento.getData_cadastro());
+					}
+
+					@Override
+					public int getBatchSize() {
+						return entradas.size();
+					}
+				});
+	}
+
 	public List<CaixaLancamento> lancamentosDoCaixa(Caixa caixa) {
 		return caixaLancamento.findByCaixaEquals(caixa);
 	}
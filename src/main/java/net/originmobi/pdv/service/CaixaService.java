@@ -22,7 +22,7 @@ import net.originmobi.pdv.model.Caixa;
 import net.originmobi.pdv.model.CaixaLancamento;
 import net.originmobi.pdv.model.Usuario;
 import net.originmobi.pdv.repository.CaixaRepository;
-import net.originmobi.pdv.singleton.Aplicacao;
+import net.originmobi.pdv.security.UsuarioAtual;
 
 @Service
 public class CaixaService {
@@ -32,11 +32,14 @@ public class CaixaService {
     private final CaixaRepository caixas;
     private final UsuarioService usuarios;
     private final CaixaLancamentoService lancamentos;
+    private final UsuarioAtual usuarioAtual;
 
-    public CaixaService(CaixaRepository caixas, UsuarioService usuarios, CaixaLancamentoService lancamentos) {
+    public CaixaService(CaixaRepository caixas, UsuarioService usuarios, CaixaLancamentoService lancamentos,
+            UsuarioAtual usuarioAtual) {
         this.caixas = caixas;
         this.usuarios = usuarios;
         this.lancamentos = lancamentos;
+        this.usuarioAtual = usuarioAtual;
     }
 
     @Transactional(readOnly = false, propagation = Propagation.REQUIRED)
@@ -69,14 +72,13 @@ public class CaixaService {
     }
 
     private void prepararDadosDoCaixa(Caixa caixa) {
-        Aplicacao aplicacao = Aplicacao.getInstancia();
-        Usuario usuarioAtual = usuarios.buscaUsuario(aplicacao.getUsuarioAtual());
+        Usuario usuario = usuarioAtual.getUsuario();
 
         double valorAbertura = caixa.getValor_abertura() == null ? 0.0 : caixa.getValor_abertura();
         caixa.setValor_abertura(valorAbertura);
 
         caixa.setDescricao(gerarDescricaoPadrao(caixa));
-        caixa.setUsuario(usuarioAtual);
+        caixa.setUsuario(usuario);
         caixa.setData_cadastro(Date.valueOf(LocalDate.now()));
 
         if (caixa.getTipo() == CaixaTipo.BANCO) {
@@ -130,16 +132,13 @@ public class CaixaService {
             	throw new IllegalArgumentException("Tipo de caixa inválido: " + caixa.getTipo());
             }
 
-            Aplicacao aplicacao = Aplicacao.getInstancia();
-            Usuario usuarioAtual = usuarios.buscaUsuario(aplicacao.getUsuarioAtual());
-
             CaixaLancamento lancamento = new CaixaLancamento(
                     obs,
                     caixa.getValor_abertura(),
                     TipoLancamento.SALDOINICIAL,
                     EstiloLancamento.ENTRADA,
                     caixa,
-                    usuarioAtual
+                    usuarioAtual.getUsuario()
             );
 
             lancamentos.lancamento(lancamento);
@@ -156,8 +155,8 @@ public class CaixaService {
             return "Favor informar a senha";
         }
 
-        Aplicacao aplicacao = Aplicacao.getInstancia();
-        Usuario usuario = usuarios.buscaUsuario(aplicacao.getUsuarioAtual());
+        // a senha não fica na sessão, é conferida com a gravada no banco
+        Usuario usuario = usuarios.buscaUsuario(usuarioAtual.getLogin());
 
         BCryptPasswordEncoder encoder = new BCryptPasswordEncoder();
 
@@ -0,0 +1,24 @@
+package net.originmobi.pdv.service;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Lançada quando um ou mais produtos da venda não têm saldo para a quantidade
+ * vendida, a mensagem lista todos eles de uma vez.
+ */
+public class EstoqueInsuficienteException extends VendaException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final List<Long> produtos;
+
+    public EstoqueInsuficienteException(String message, List<Long> produtos) {
+        super(message);
+        this.produtos = Collections.unmodifiableList(produtos);
+    }
+
+    public List<Long> getProdutos() {
+        return produtos;
+    }
+}
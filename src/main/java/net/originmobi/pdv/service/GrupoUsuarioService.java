@@ -9,6 +9,7 @@ import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 import net.originmobi.pdv.model.GrupoUsuario;
 import net.originmobi.pdv.model.Usuario;
 import net.originmobi.pdv.repository.GrupoUsuarioRepository;
+import net.originmobi.pdv.security.AutorizacoesCache;
 
 @Service
 public class GrupoUsuarioService {
@@ -16,6 +17,9 @@ public class GrupoUsuarioService {
 	@Autowired
 	private GrupoUsuarioRepository grupousuarios;
 
+	@Autowired
+	private AutorizacoesCache autorizacoes;
+
 	public List<GrupoUsuario> buscaGrupos(Usuario usuario) {
 		return grupousuarios.findByUsuarioIn(usuario);
 	}
@@ -56,6 +60,7 @@ public class GrupoUsuarioService {
 
 		try {
 			grupousuarios.deleteById(codigo);
+			autorizacoes.invalidaGrupo(codigo);
 		} catch (Exception e) {
 			System.out.println(e);
 		}
@@ -72,6 +77,7 @@ public class GrupoUsuarioService {
 
 		try {
 			grupousuarios.addPermissao(codgrupo, codpermissao);
+			autorizacoes.invalidaGrupo(codgrupo);
 		} catch (Exception e) {
 			System.out.println(e);
 			throw new RuntimeException("Erro ao tentar adicionar permissão, chame o suporte");
@@ -83,6 +89,7 @@ public class GrupoUsuarioService {
 	public String removePermissao(Long codigo, Long codgrupo) {
 		try {
 			grupousuarios.removePermissao(codigo, codgrupo);
+			autorizacoes.invalidaGrupo(codgrupo);
 		} catch (Exception e) {
 			throw new RuntimeException("Erro ao tentar remover permissão, chame o suporte");
 		}
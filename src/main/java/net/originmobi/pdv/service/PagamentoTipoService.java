@@ -3,12 +3,15 @@ package net.originmobi.pdv.service;
 import java.sql.Date;
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import net.originmobi.pdv.model.PagamentoTipo;
 import net.originmobi.pdv.repository.PagamentoTipoRespository;
+import net.originmobi.pdv.service.pagamento.PlanoParcelamento;
 
 @Service
 public class PagamentoTipoService {
@@ -16,16 +19,23 @@ public class PagamentoTipoService {
 	@Autowired
 	private PagamentoTipoRespository pagamentotipo;
 
-	private LocalDate dataAtual = LocalDate.now();
+	/*
+	 * planos já montados por código do PagamentoTipo, descartado ao salvar o
+	 * PagamentoTipo
+	 */
+	private final Map<Long, PlanoParcelamento> planos = new ConcurrentHashMap<>();
 
 	public void cadastrar(PagamentoTipo tipo) {
-		tipo.setData_cadastro(Date.valueOf(dataAtual));
-		
-		String[] quantidade = tipo.getFormaPagamento().replaceAll("/", " ").split(" ");
-		
-		tipo.setQtd_parcelas(quantidade.length);
+		tipo.setData_cadastro(Date.valueOf(LocalDate.now()));
+
+		PlanoParcelamento plano = PlanoParcelamento.compila(tipo.getFormaPagamento());
+
+		tipo.setQtd_parcelas(plano.getQtdParcelas());
 
 		pagamentotipo.save(tipo);
+
+		if (tipo.getCodigo() != null)
+			planos.remove(tipo.getCodigo());
 	}
 
 	public List<PagamentoTipo> listar() {
@@ -36,6 +46,24 @@ public class PagamentoTipoService {
 		return pagamentotipo.findByCodigoIn(codigo);
 	}
 
+	/*
+	 * Plano de parcelamento do PagamentoTipo, montado na primeira vez. Se a
+	 * forma de pagamento mudou por fora do cadastrar o plano é montado de novo
+	 */
+	public PlanoParcelamento plano(PagamentoTipo tipo) {
+		if (tipo.getCodigo() == null)
+			return PlanoParcelamento.compila(tipo.getFormaPagamento());
+
+		PlanoParcelamento plano = planos.get(tipo.getCodigo());
+
+		if (plano == null || !plano.getFormaPagamento().equals(tipo.getFormaPagamento())) {
+			plano = PlanoParcelamento.compila(tipo.getFormaPagamento());
+			planos.put(tipo.getCodigo(), plano);
+		}
+
+		return plano;
+	}
+
 	public String qtdParcelas(Long codigo) {
 		String qtd = pagamentotipo.quantidadeParcelar(codigo);
 		return qtd;
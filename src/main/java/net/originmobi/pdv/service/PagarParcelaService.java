@@ -13,6 +13,8 @@ import net.originmobi.pdv.filter.PagarParcelaFilter;
 import net.originmobi.pdv.model.Pagar;
 import net.originmobi.pdv.model.PagarParcela;
 import net.originmobi.pdv.repository.PagarParcelaRespository;
+import net.originmobi.pdv.service.painel.ContadoresPainel;
+import net.originmobi.pdv.utilitarios.Dinheiro;
 
 @Service
 public class PagarParcelaService {
@@ -20,6 +22,9 @@ public class PagarParcelaService {
 	@Autowired
 	private PagarParcelaRespository parcelas;
 
+	@Autowired
+	private ContadoresPainel painel;
+
 	public void cadastrar(Double vltotal, Double vlrestante, int quitado, Timestamp cadastro, LocalDate vencimento,
 			Pagar pagar) {
 		try {
@@ -28,6 +33,9 @@ public class PagarParcelaService {
 			e.getStackTrace();
 			throw new RuntimeException();
 		}
+
+		if (quitado == 0)
+			painel.somaPagar(Dinheiro.de(vlrestante));
 	}
 
 	public PagarParcela merger(PagarParcela parcela) {
@@ -45,8 +53,4 @@ public class PagarParcelaService {
 		return parcelas.findById(codigo);
 	}
 
-	public String totalParagarAberto() {
-		return parcelas.valorDespesasAbertas();
-	}
-
 }
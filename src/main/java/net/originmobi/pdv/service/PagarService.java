@@ -1,6 +1,5 @@
 package net.originmobi.pdv.service;
 
-import java.text.DecimalFormat;
 import java.time.LocalDate;
 import java.util.List;
 import java.util.Optional;
@@ -20,8 +19,10 @@ import net.originmobi.pdv.model.PagarParcela;
 import net.originmobi.pdv.model.PagarTipo;
 import net.originmobi.pdv.model.Usuario;
 import net.originmobi.pdv.repository.PagarRepository;
-import net.originmobi.pdv.singleton.Aplicacao;
+import net.originmobi.pdv.security.UsuarioAtual;
+import net.originmobi.pdv.service.painel.ContadoresPainel;
 import net.originmobi.pdv.utilitarios.DataAtual;
+import net.originmobi.pdv.utilitarios.Dinheiro;
 
 @Service
 public class PagarService {
@@ -39,11 +40,14 @@ public class PagarService {
 	private CaixaService caixas;
 
 	@Autowired
-	private UsuarioService usuarios;
+	private UsuarioAtual usuarioAtual;
 
 	@Autowired
 	private CaixaLancamentoService lancamentos;
 
+	@Autowired
+	private ContadoresPainel painel;
+
 	public List<Pagar> listar() {
 		return pagarRepo.findAll();
 	}
@@ -82,26 +86,27 @@ public class PagarService {
 
 		Optional<PagarParcela> parcela = pagarParcelaServ.busca(codparcela);
 
-		DecimalFormat df = new DecimalFormat("#0.00");
+		Dinheiro pago = Dinheiro.de(vlPago);
+		Dinheiro desconto = Dinheiro.de(vldesc);
+		Dinheiro acrescimo = Dinheiro.de(vlacre);
+		Dinheiro restante = Dinheiro.de(parcela.map(PagarParcela::getValor_restante).get());
 
-		if (vlPago > Double.valueOf(df.format(parcela.map(PagarParcela::getValor_restante).get()).replace(",", ".")))
+		if (pago.maiorQue(restante))
 			throw new RuntimeException("Valor de pagamento inválido");
 
-		Double vlquitado = (vlPago + vlacre) + parcela.map(PagarParcela::getValor_pago).get();
-		Double vlRestante = (parcela.map(PagarParcela::getValor_restante).get() - (vlPago + vldesc));
-		Double vlDesconto = parcela.map(PagarParcela::getValor_desconto).get() + vldesc;
-		Double vlAcrescimo = parcela.map(PagarParcela::getValor_acrescimo).get() + vlacre;
+		Dinheiro vlquitado = pago.mais(acrescimo).mais(Dinheiro.de(parcela.map(PagarParcela::getValor_pago).get()));
+		Dinheiro vlRestante = restante.menos(pago.mais(desconto)).naoNegativo();
+		Dinheiro vlDesconto = Dinheiro.de(parcela.map(PagarParcela::getValor_desconto).get()).mais(desconto);
+		Dinheiro vlAcrescimo = Dinheiro.de(parcela.map(PagarParcela::getValor_acrescimo).get()).mais(acrescimo);
 
-		vlRestante = vlRestante < 0 ? 0.0 : vlRestante;
-
-		int quitado = Double.valueOf(df.format(vlRestante).replace(",", ".")) <= 0 ? 1 : 0;
+		int quitado = vlRestante.isZero() ? 1 : 0;
 
 		DataAtual dataAtual = new DataAtual();
 
-		parcela.get().setValor_pago(vlquitado);
-		parcela.get().setValor_restante(vlRestante);
-		parcela.get().setValor_desconto(vlDesconto);
-		parcela.get().setValor_acrescimo(vlAcrescimo);
+		parcela.get().setValor_pago(vlquitado.doubleValue());
+		parcela.get().setValor_restante(vlRestante.doubleValue());
+		parcela.get().setValor_desconto(vlDesconto.doubleValue());
+		parcela.get().setValor_acrescimo(vlAcrescimo.doubleValue());
 		parcela.get().setQuitado(quitado);
 		parcela.get().setData_pagamento(dataAtual.dataAtualTimeStamp());
 
@@ -112,16 +117,18 @@ public class PagarService {
 			throw new RuntimeException("Ocorreu um erro ao realizar o pagamento, chame o suporte");
 		}
 
-		Aplicacao aplicacao = Aplicacao.getInstancia();
+		painel.somaPagar(vlRestante.menos(restante));
 
-		Usuario usuario = usuarios.buscaUsuario(aplicacao.getUsuarioAtual());
+		Usuario usuario = usuarioAtual.getUsuario();
 		Optional<Caixa> caixa = caixas.busca(codCaixa);
 
-		if (vlPago + vlacre > caixa.map(Caixa::getValor_total).get())
+		Dinheiro vlSaida = pago.mais(acrescimo);
+
+		if (vlSaida.maiorQue(Dinheiro.de(caixa.map(Caixa::getValor_total).get())))
 			throw new RuntimeException("Saldo insuficiente para realizar este pagamento");
 
 		try {
-			CaixaLancamento lancamento = new CaixaLancamento("Referente a pagamento de despesas", vlPago + vlacre,
+			CaixaLancamento lancamento = new CaixaLancamento("Referente a pagamento de despesas", vlSaida.doubleValue(),
 					TipoLancamento.PAGAMENTO, EstiloLancamento.SAIDA, caixa.get(), usuario);
 
 			// vincula a parcela do pagar ao caixa_lancametno
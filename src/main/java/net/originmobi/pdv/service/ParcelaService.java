@@ -1,19 +1,24 @@
 package net.originmobi.pdv.service;
 
 import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
 import java.sql.Timestamp;
-import java.text.DecimalFormat;
 import java.util.List;
 import java.util.Optional;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 
 import net.originmobi.pdv.filter.ClienteFilter;
 import net.originmobi.pdv.model.Parcela;
 import net.originmobi.pdv.model.Receber;
 import net.originmobi.pdv.repository.ParcelaRepository;
+import net.originmobi.pdv.service.painel.ContadoresPainel;
 import net.originmobi.pdv.utilitarios.DataAtual;
+import net.originmobi.pdv.utilitarios.Dinheiro;
 
 @Service
 public class ParcelaService {
@@ -21,10 +26,60 @@ public class ParcelaService {
 	@Autowired
 	private ParcelaRepository parcelas;
 
+	@Autowired
+	private JdbcTemplate jdbc;
+
+	@Autowired
+	private ContadoresPainel painel;
+
 	public void gerarParcela(Double total, Double desconto, Double acrescimo, Double recebido, Double restante,
 			Receber receber, int quitado, int sequencia, Timestamp cadastro, Date vencimento) {
 		parcelas.gerarparcela(total, desconto, acrescimo, recebido, restante, receber, quitado, sequencia, cadastro,
 				vencimento);
+
+		if (quitado == 0)
+			painel.somaReceber(Dinheiro.de(restante));
+	}
+
+	/*
+	 * Grava as parcelas em um único lote, com rewriteBatchedStatements na url
+	 * do datasource o driver envia um único insert
+	 */
+	public void gerarParcelas(List<Parcela> novas) {
+		if (novas.isEmpty())
+			return;
+
+		jdbc.batchUpdate("insert into parcela (valor_total, valor_desconto, valor_acrescimo, valor_recebido, valor_restante, "
+				+ "receber_codigo, quitado, sequencia, data_cadastro, data_vencimento) values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)",
+				new BatchPreparedStatementSetter() {
+
+					@Override
+					public void setValues(PreparedStatement ps, int i) throws SQLException {
+						Parcela parcela = novas.get(i);
+						ps.setDouble(1, parcela.getValor_total());
+						ps.setDouble(2, parcela.getValor_desconto());
+						ps.setDouble(3, parcela.getValor_acrescimo());
+						ps.setDouble(4, parcela.getValor_recebido());
+						ps.setDouble(5, parcela.getValor_restante());
+						ps.setLong(6, parcela.getReceber().getCodigo());
+						ps.setInt(7, parcela.getQuitado());
+						ps.setInt(8, parcela.getSequencia());
+						ps.setTimestamp(9, parcela.getData_cadastro());
+						ps.setDate(10, parcela.getData_vencimento());
+					}
+
+					@Override
+					public int getBatchSize() {
+						return novas.size();
+					}
+				});
+
+		Dinheiro aReceber = Dinheiro.ZERO;
+		for (Parcela parcela : novas)
+			if (parcela.getQuitado() == 0)
+				aReceber = aReceber.mais(Dinheiro.de(parcela.getValor_restante()));
+
+		painel.somaReceber(aReceber);
 	}
 
 	public List<Parcela> lista() {
@@ -51,24 +106,29 @@ public class ParcelaService {
 		if (parcelaAtual.map(Parcela::getQuitado).get().equals(1))
 			return "Parcela " + parcela + " já esta quitada";
 
-		DecimalFormat df = new DecimalFormat("#.00");
+		Dinheiro pago = Dinheiro.de(totalPago);
+		Dinheiro vlAcrescimoPago = Dinheiro.de(acrescimo);
+		Dinheiro vlDescontoDado = Dinheiro.de(desconto);
 
-		Double vlRecebido = (totalPago + acrescimo) + parcelaAtual.map(Parcela::getValor_recebido).get();
-		Double vlRestante = (parcelaAtual.map(Parcela::getValor_restante).get() - (totalPago + desconto));
-		Double vlDesconto = (parcelaAtual.map(Parcela::getValor_desconto)).get() + desconto;
-		Double vlAcrescimo = (parcelaAtual.map(Parcela::getValor_acrescimo)).get() + acrescimo;
+		// em centavos, o restante zera exatamente quando a parcela foi paga
+		Dinheiro vlRecebido = pago.mais(vlAcrescimoPago).mais(Dinheiro.de(parcelaAtual.get().getValor_recebido()));
+		Dinheiro vlRestante = Dinheiro.de(parcelaAtual.get().getValor_restante()).menos(pago.mais(vlDescontoDado))
+				.naoNegativo();
+		Dinheiro vlDesconto = Dinheiro.de(parcelaAtual.get().getValor_desconto()).mais(vlDescontoDado);
+		Dinheiro vlAcrescimo = Dinheiro.de(parcelaAtual.get().getValor_acrescimo()).mais(vlAcrescimoPago);
 
-		vlRestante = vlRestante < 0 ? 0.00 : vlRestante;
-		int quitado = Double.valueOf(df.format(vlRestante).replace(",", ".")) <= 0 ? 1 : 0;
+		int quitado = vlRestante.isZero() ? 1 : 0;
 
 		try {
-			parcelas.receber(vlDesconto, vlAcrescimo, vlRecebido, vlRestante, quitado, dataAtual.dataAtualTimeStamp(),
-					parcela);
+			parcelas.receber(vlDesconto.doubleValue(), vlAcrescimo.doubleValue(), vlRecebido.doubleValue(),
+					vlRestante.doubleValue(), quitado, dataAtual.dataAtualTimeStamp(), parcela);
 		} catch (Exception e) {
 			e.getMessage();
 			throw new RuntimeException();
 		}
 
+		painel.somaReceber(vlRestante.menos(Dinheiro.de(parcelaAtual.get().getValor_restante())));
+
 		return "ok";
 	}
 
@@ -1,14 +1,34 @@
 package net.originmobi.pdv.service;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.sql.Date;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import net.originmobi.pdv.enumerado.EntradaSaida;
 import net.originmobi.pdv.enumerado.produto.ProdutoControleEstoque;
@@ -16,15 +36,45 @@ import net.originmobi.pdv.enumerado.produto.ProdutoSubstTributaria;
 import net.originmobi.pdv.filter.ProdutoFilter;
 import net.originmobi.pdv.model.Produto;
 import net.originmobi.pdv.repository.ProdutoRepository;
+import net.originmobi.pdv.service.produto.CatalogoVenda;
+import net.originmobi.pdv.service.produto.CodigoBarras;
+import net.originmobi.pdv.service.produto.EtiquetaBalanca;
+import net.originmobi.pdv.service.produto.LeituraCodigoBarras;
+import net.originmobi.pdv.service.produto.LeituraEtiqueta;
+import net.originmobi.pdv.service.produto.ProdutoCatalogo;
+import net.originmobi.pdv.utilitarios.Dinheiro;
 
 @Service
 public class ProdutoService {
 
+	private static final Logger LOGGER = LoggerFactory.getLogger(ProdutoService.class);
+
 	@Autowired
 	private ProdutoRepository produtos;
 
 	@Autowired
-	private VendaProdutoService vendaProdutos;
+	private EtiquetaBalanca etiquetas;
+
+	@Value("${pdv.produto.catalogo.max-produtos:50000}")
+	private int maxProdutosCatalogo;
+
+	@Value("${pdv.produto.catalogo.segundos-validade:600}")
+	private long segundosValidadeCatalogo;
+
+	// pasta da cópia em disco do catálogo, usada se o banco cair
+	@Value("${pdv.contingencia.diretorio:}")
+	private String diretorioContingencia;
+
+	/*
+	 * versão atual do catálogo de venda, incrementada a cada alteração de
+	 * produto. Uma cópia carregada em versão anterior é descartada
+	 */
+	private final AtomicLong versaoCatalogo = new AtomicLong();
+
+	private volatile CatalogoVenda catalogo;
+
+	// último catálogo carregado, entregue mesmo vencido enquanto o banco está fora
+	private volatile CatalogoVenda ultimoCatalogo;
 
 	private LocalDate dataAtual = LocalDate.now();
 
@@ -36,6 +86,174 @@ public class ProdutoService {
 		return produtos.produtosVendaveis();
 	}
 
+	/*
+	 * Produtos vendáveis para a tela de venda. A cópia em memória é
+	 * recarregada quando algum produto é alterado ou quando vence, e não é
+	 * guardada se o catálogo passar do limite de produtos.
+	 *
+	 * Sem o banco entrega o último catálogo carregado ou, logo após iniciar, a
+	 * cópia gravada em disco
+	 */
+	public CatalogoVenda catalogoVenda() {
+		CatalogoVenda atual = catalogo;
+
+		if (atual != null && atual.getVersao() == versaoCatalogo.get()
+				&& !atual.isVencido(System.currentTimeMillis()))
+			return atual;
+
+		synchronized (versaoCatalogo) {
+			long versao = versaoCatalogo.get();
+			long agora = System.currentTimeMillis();
+
+			atual = catalogo;
+			if (atual != null && atual.getVersao() == versao && !atual.isVencido(agora))
+				return atual;
+
+			List<ProdutoCatalogo> vendaveis;
+			try {
+				vendaveis = produtos.catalogoVenda();
+			} catch (DataAccessException | TransactionException e) {
+				CatalogoVenda reserva = ultimoCatalogo != null ? ultimoCatalogo : leCopiaCatalogo();
+
+				if (reserva == null)
+					throw e;
+
+				LOGGER.warn("Banco indisponível, usando o catálogo de venda anterior com {} produtos",
+						reserva.getTamanho());
+				return reserva;
+			}
+
+			CatalogoVenda novo = new CatalogoVenda(versao, agora + segundosValidadeCatalogo * 1000, vendaveis);
+
+			if (vendaveis.size() > maxProdutosCatalogo) {
+				LOGGER.warn("Catálogo de venda com {} produtos passa do limite de {}, não será mantido em memória",
+						vendaveis.size(), maxProdutosCatalogo);
+				catalogo = null;
+				return novo;
+			}
+
+			// só guarda se nenhum produto foi alterado durante a consulta
+			if (versaoCatalogo.get() == versao)
+				catalogo = novo;
+
+			ultimoCatalogo = novo;
+			gravaCopiaCatalogo(vendaveis);
+
+			return novo;
+		}
+	}
+
+	private Path copiaCatalogo() {
+		return diretorioContingencia == null || diretorioContingencia.isEmpty() ? null
+				: Paths.get(diretorioContingencia, "catalogo-venda.ser");
+	}
+
+	private void gravaCopiaCatalogo(List<ProdutoCatalogo> vendaveis) {
+		Path copia = copiaCatalogo();
+		if (copia == null)
+			return;
+
+		try {
+			Files.createDirectories(copia.getParent());
+			Path temporaria = Files.createTempFile(copia.getParent(), "catalogo-venda", ".tmp");
+
+			try (OutputStream saida = Files.newOutputStream(temporaria);
+					ObjectOutputStream objetos = new ObjectOutputStream(saida)) {
+				objetos.writeObject(new ArrayList<>(vendaveis));
+			}
+
+			Files.move(temporaria, copia, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			LOGGER.warn("Erro ao gravar a cópia do catálogo de venda em {}", copia, e);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private CatalogoVenda leCopiaCatalogo() {
+		Path copia = copiaCatalogo();
+		if (copia == null || !Files.exists(copia))
+			return null;
+
+		try (InputStream entrada = Files.newInputStream(copia);
+				ObjectInputStream objetos = new ObjectInputStream(entrada)) {
+			// versão -1 e já vencido, é substituído assim que o banco voltar
+			CatalogoVenda lido = new CatalogoVenda(-1, 0, (List<ProdutoCatalogo>) objetos.readObject());
+			ultimoCatalogo = lido;
+			return lido;
+		} catch (IOException | ClassNotFoundException e) {
+			LOGGER.warn("Erro ao ler a cópia do catálogo de venda em {}", copia, e);
+			return null;
+		}
+	}
+
+	/*
+	 * Descarta o catálogo de venda. Dentro de uma transação descarta de novo
+	 * após o commit, para que uma consulta feita antes do commit não fique
+	 * guardada com os dados antigos
+	 */
+	public void invalidaCatalogo() {
+		versaoCatalogo.incrementAndGet();
+		catalogo = null;
+
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				@Override
+				public void afterCommit() {
+					versaoCatalogo.incrementAndGet();
+					catalogo = null;
+				}
+			});
+		}
+	}
+
+	/*
+	 * Busca da tela de venda e do scanner somente no catálogo em memória: um
+	 * número é procurado como código de barras e depois como código do
+	 * produto, e o que não for encontrado assim é pesquisado pelo início das
+	 * palavras da descrição
+	 */
+	public List<ProdutoCatalogo> lookup(String termo, int limite) {
+		String texto = termo == null ? "" : termo.trim();
+
+		if (texto.isEmpty())
+			return Collections.emptyList();
+
+		CatalogoVenda atual = catalogoVenda();
+
+		if (CodigoBarras.isNumerico(texto) && texto.length() <= 18) {
+			Optional<ProdutoCatalogo> produto = atual.buscaCodigoBarras(texto);
+
+			if (!produto.isPresent())
+				produto = atual.busca(Long.valueOf(texto));
+
+			if (produto.isPresent())
+				return Collections.singletonList(produto.get());
+		}
+
+		return atual.pesquisa(texto, limite);
+	}
+
+	/*
+	 * Leitura do scanner no catálogo em memória. A etiqueta da balança é
+	 * procurada na tabela de PLU e traz o valor do item; os demais códigos, e
+	 * a etiqueta sem PLU cadastrado, são procurados como código de barras
+	 */
+	public Optional<LeituraCodigoBarras> leCodigoBarras(String codigo) {
+		CatalogoVenda atual = catalogoVenda();
+
+		Optional<LeituraEtiqueta> etiqueta = etiquetas.le(codigo);
+
+		if (etiqueta.isPresent()) {
+			Optional<ProdutoCatalogo> produto = atual.buscaPlu(etiqueta.get().getPlu());
+
+			if (produto.isPresent())
+				return Optional.of(new LeituraCodigoBarras(produto.get(),
+						etiqueta.get().valorItem(produto.get().getValor_venda())));
+		}
+
+		return atual.buscaCodigoBarras(codigo).map(produto -> new LeituraCodigoBarras(produto, Dinheiro.ZERO));
+	}
+
 	public Produto busca(Long codigoProduto) {
 		return produtos.findByCodigoIn(codigoProduto);
 	}
@@ -51,23 +269,39 @@ public class ProdutoService {
 
 	public String merger(Long codprod, Long codforne, Long codcategoria, Long codgrupo, int balanca, String descricao,
 			Double valorCusto, Double valorVenda, java.util.Date dataValidade, String controleEstoque, String situacao,
-			String unitario, ProdutoSubstTributaria subtribu, String ncm, String cest, Long tributacao, Long modbc, String vendavel) {
+			String unitario, ProdutoSubstTributaria subtribu, String ncm, String cest, Long tributacao, Long modbc, String vendavel,
+			String codigoBarras) {
+
+		String barras = CodigoBarras.normaliza(codigoBarras);
+
+		if (barras != null) {
+			if (!CodigoBarras.isValido(barras))
+				return "Código de barras " + barras + " inválido, verifique";
+
+			Long produtoDoCodigo = produtos.codigoPorCodigoBarras(barras);
+			if (produtoDoCodigo != null && !produtoDoCodigo.equals(codprod))
+				return "Código de barras " + barras + " já cadastrado no produto " + produtoDoCodigo;
+		}
 
 		if (codprod == 0) {
 			try {
 				produtos.insere(codforne, codcategoria, codgrupo, balanca, descricao, valorCusto, valorVenda,
 						dataValidade, controleEstoque, situacao, unitario, subtribu.ordinal(), Date.valueOf(dataAtual),
-						ncm, cest, tributacao, modbc, vendavel);
+						ncm, cest, tributacao, modbc, vendavel, barras);
 			} catch (Exception e) {
 				System.out.println(e.getMessage());
 				return "Erro a cadastrar produto, chame o suporte";
 			}
+
+			invalidaCatalogo();
 		} else {
 
 			try {
 				produtos.atualiza(codprod, codforne, codcategoria, codgrupo, balanca, descricao, valorCusto, valorVenda,
 						dataValidade, controleEstoque, situacao, unitario, subtribu.ordinal(), ncm, cest, tributacao,
-						modbc, vendavel);
+						modbc, vendavel, barras);
+
+				invalidaCatalogo();
 
 				return "Produto atualizado com sucesso";
 			} catch (Exception e) {
@@ -80,42 +314,86 @@ public class ProdutoService {
 		return "Produdo cadastrado com sucesso";
 	}
 
-	@SuppressWarnings("static-access")
+	/*
+	 * Movimenta o estoque de todos os produtos da venda com poucos comandos:
+	 * bloqueia os saldos na ordem do código, na saída confere todos os
+	 * produtos de uma vez, listando os que não têm estoque suficiente, e só
+	 * então baixa e registra a movimentação em comandos únicos para a venda
+	 * inteira
+	 */
+	@Transactional
 	public void movimentaEstoque(Long codvenda, EntradaSaida tipo) {
-		List<Object[]> resultado = vendaProdutos.buscaQtdProduto(codvenda);
+		String origem_operacao = "Venda " + codvenda.toString();
 
-		for (int i = 0; i < resultado.size(); i++) {
-			Long codprod = Long.decode(resultado.get(i)[0].toString());
-			int qtd = Integer.parseInt(resultado.get(i)[1].toString());
+		travaEstoqueVenda(codvenda);
 
-			Produto produto = produtos.findByCodigoIn(codprod);
+		if (tipo == EntradaSaida.SAIDA) {
+			List<Object[]> saldos = produtos.saldoEstoqueVenda(codvenda);
 
-			if (produto.getControla_estoque().equals(ProdutoControleEstoque.SIM)) {
+			List<Long> semEstoque = new ArrayList<>();
+			StringBuilder mensagem = new StringBuilder();
 
-				// estoque atual do produto
-				int qtd_estoque = produtos.saldoEstoque(codprod);
-				String origem_operacao = "Venda " + codvenda.toString();
+			for (Object[] saldo : saldos) {
+				int qtd_venda = ((Number) saldo[2]).intValue();
+				int qtd_estoque = ((Number) saldo[3]).intValue();
 
-				if (qtd <= qtd_estoque) {
-					produtos.movimentaEstoque(codprod, tipo.SAIDA.toString(), qtd, origem_operacao,
-							Date.valueOf(dataAtual));
-				} else {
-					throw new RuntimeException(
-							"O produto de código " + codprod + " não tem estoque suficiente, verifique");
+				if (qtd_venda > qtd_estoque) {
+					Long codprod = ((Number) saldo[0]).longValue();
+					semEstoque.add(codprod);
+					mensagem.append(mensagem.length() == 0 ? "" : ", ").append(codprod).append(" - ")
+							.append(saldo[1]).append(" (vendido ").append(qtd_venda).append(", em estoque ")
+							.append(qtd_estoque).append(")");
 				}
-			} else {
-				System.out.println("Produto não controla estoque");
 			}
+
+			if (!semEstoque.isEmpty())
+				throw new EstoqueInsuficienteException(
+						"Produtos sem estoque suficiente, verifique: " + mensagem, semEstoque);
+
+			// os saldos estão bloqueados, a condição da baixa só falha se o
+			// estoque for alterado por fora do bloqueio
+			if (produtos.baixaEstoqueVenda(codvenda) != saldos.size())
+				throw new EstoqueInsuficienteException("Estoque alterado durante a venda, verifique",
+						Collections.emptyList());
+		} else {
+			produtos.estornaEstoqueVenda(codvenda);
 		}
 
+		produtos.movimentaEstoqueVenda(codvenda, tipo.toString(), origem_operacao, Date.valueOf(LocalDate.now()));
 	}
-	
+
+	/*
+	 * As linhas de estoque são bloqueadas em ordem crescente de código antes de
+	 * qualquer leitura ou alteração, como em travaEstoque
+	 */
+	private void travaEstoqueVenda(Long codvenda) {
+		List<Long> codigos = new ArrayList<>();
+		for (Object codigo : produtos.produtosEstoqueVenda(codvenda))
+			codigos.add(((Number) codigo).longValue());
+
+		if (codigos.isEmpty())
+			return;
+
+		Collections.sort(codigos);
+		produtos.travaEstoque(codigos);
+	}
+
+	/*
+	 * A quantidade chega com sinal, positiva na entrada e negativa na saída, e
+	 * a saída não pode deixar o saldo negativo
+	 */
+	@Transactional
 	public void ajusteEstoque(Long codprod, int qtd, EntradaSaida tipo, String origem_operacao, Date data_movimentacao) {
 		Produto produto = produtos.findByCodigoIn(codprod);
 		
 		if (produto.getControla_estoque().equals(ProdutoControleEstoque.NAO))
 			throw new RuntimeException("O produto de código " + codprod + " não controla estoque, verifique");
 		
+		int alteracao = tipo == EntradaSaida.ENTRADA ? Math.abs(qtd) : -Math.abs(qtd);
+
+		if (produtos.atualizaSaldoEstoque(codprod, alteracao) == 0)
+			throw new RuntimeException("O produto de código " + codprod + " não tem estoque suficiente, verifique");
+
 		produtos.movimentaEstoque(codprod, tipo.toString(), qtd, origem_operacao, data_movimentacao);
 		
 	}
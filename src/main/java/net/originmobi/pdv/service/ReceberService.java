@@ -29,9 +29,5 @@ public class ReceberService {
 		receberRepo.lancaReceber(observacao, valor_total, valor_recebido, valor_desconto, valor_acrescimo,
 				valor_restante, quitado, sequencia, data_cadastro, data_vencimento, pessoa_codigo);
 	}
-	
-	public String total_a_receber() {
-		return receberRepo.total_a_receber();
-	}
 
 }
@@ -9,8 +9,6 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
-import com.ibm.icu.text.DecimalFormat;
-
 import net.originmobi.pdv.controller.TituloService;
 import net.originmobi.pdv.enumerado.TituloTipo;
 import net.originmobi.pdv.enumerado.caixa.EstiloLancamento;
@@ -23,9 +21,10 @@ import net.originmobi.pdv.model.Recebimento;
 import net.originmobi.pdv.model.Titulo;
 import net.originmobi.pdv.model.Usuario;
 import net.originmobi.pdv.repository.RecebimentoRepository;
+import net.originmobi.pdv.security.UsuarioAtual;
 import net.originmobi.pdv.service.cartao.CartaoLancamentoService;
-import net.originmobi.pdv.singleton.Aplicacao;
 import net.originmobi.pdv.utilitarios.DataAtual;
+import net.originmobi.pdv.utilitarios.Dinheiro;
 
 @Service
 public class RecebimentoService {
@@ -46,7 +45,7 @@ public class RecebimentoService {
 	private CaixaService caixas;
 
 	@Autowired
-	private UsuarioService usuarios;
+	private UsuarioAtual usuarioAtual;
 
 	@Autowired
 	private CaixaLancamentoService lancamentos;
@@ -114,11 +113,10 @@ public class RecebimentoService {
 		// vincula o titulo ao recebimento
 		recebimento.get().setTitulo(titulo.get());
 
-		DecimalFormat formata = new DecimalFormat("0.00");
-		Double vlrecebimento = Double
-				.valueOf(formata.format(recebimento.map(Recebimento::getValor_total).get()).replaceAll(",", "."));
+		Dinheiro recebido = Dinheiro.de(vlrecebido);
+		Dinheiro vlrecebimento = Dinheiro.de(recebimento.map(Recebimento::getValor_total).get());
 
-		if (vlrecebido > vlrecebimento)
+		if (recebido.maiorQue(vlrecebimento))
 			throw new RuntimeException("Valor de recebimento é superior aos títulos");
 
 		List<Parcela> listParcelas = receParcelas.parcelasDoReceber(codreceber);
@@ -126,28 +124,27 @@ public class RecebimentoService {
 		if (listParcelas.isEmpty())
 			throw new RuntimeException("Recebimento não possue parcelas");
 
-		if (vlrecebido <= 0.0)
+		if (!recebido.isPositivo())
 			throw new RuntimeException("Valor de recebimento inválido");
 
 		// guarda o valor do lançamento de caixa
-		Double vllancamento = vlrecebido;
+		Double vllancamento = recebido.doubleValue();
+
+		// o que ainda falta distribuir entre as parcelas, em centavos
+		Dinheiro vlsobra = recebido;
 
 		// verifica cada parcela que veio e realiza o seu recebimento individual
 		for (int i = 0; i < listParcelas.size(); i++) {
 
-			if (vlrecebido > 0) {
-				Double vlsobra = vlrecebido - listParcelas.get(i).getValor_restante();
-				vlsobra = vlsobra < 0 ? 0 : vlsobra;
-
-				Double vlquitado = vlsobra - vlrecebido;
-				vlquitado = vlquitado < 0 ? vlquitado * -1 : vlquitado;
+			if (vlsobra.isPositivo()) {
+				Dinheiro vlquitado = vlsobra.min(Dinheiro.de(listParcelas.get(i).getValor_restante()));
 
-				vlrecebido = vlsobra;
+				vlsobra = vlsobra.menos(vlquitado);
 
 				Long parcela = listParcelas.get(i).getCodigo();
 
 				try {
-					parcelas.receber(parcela, vlquitado, 0.00, 0.00);
+					parcelas.receber(parcela, vlquitado.doubleValue(), 0.00, 0.00);
 				} catch (Exception e) {
 					e.getMessage();
 					throw new RuntimeException("Ocorreu um erro ao realizar o recebimento, chame o suporte");
@@ -156,8 +153,7 @@ public class RecebimentoService {
 
 		}
 
-		Aplicacao aplicacao = new Aplicacao();
-		Usuario usuario = usuarios.buscaUsuario(aplicacao.getUsuarioAtual());
+		Usuario usuario = usuarioAtual.getUsuario();
 
 		// pega a sigla do titulo
 		String sigla = titulo.map(Titulo::getTipo).get().getSigla();
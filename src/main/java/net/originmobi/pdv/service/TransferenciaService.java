@@ -9,7 +9,7 @@ import net.originmobi.pdv.model.Caixa;
 import net.originmobi.pdv.model.Transferencia;
 import net.originmobi.pdv.model.Usuario;
 import net.originmobi.pdv.repository.TransferenciaRepository;
-import net.originmobi.pdv.singleton.Aplicacao;
+import net.originmobi.pdv.security.UsuarioAtual;
 import net.originmobi.pdv.utilitarios.DataAtual;
 
 @Service
@@ -19,16 +19,15 @@ public class TransferenciaService {
 	private TransferenciaRepository transferencias;
 
 	@Autowired
-	private UsuarioService usuarios;
+	private UsuarioAtual usuarioAtual;
 
 	@Autowired
 	private CaixaService caixas;
 
 	public String cadastrar(Double valor, Long origem, Long destino, String obs) {
-		Aplicacao aplicacao = Aplicacao.getInstancia();
 		DataAtual dataAtual = new DataAtual();
 
-		Usuario usuario = usuarios.buscaUsuario(aplicacao.getUsuarioAtual());
+		Usuario usuario = usuarioAtual.getUsuario();
 
 		Optional<Caixa> caiOrigem = caixas.busca(origem);
 		Optional<Caixa> caiDestino = caixas.busca(destino);
@@ -10,6 +10,7 @@ import org.springframework.stereotype.Service;
 import net.originmobi.pdv.enumerado.EntradaSaida;
 import net.originmobi.pdv.model.TributacaoRegra;
 import net.originmobi.pdv.repository.TributacaoRegraRepository;
+import net.originmobi.pdv.service.notafiscal.IndiceRegrasTributacao;
 
 @Service
 public class TributacaoRegraService {
@@ -17,6 +18,9 @@ public class TributacaoRegraService {
 	@Autowired
 	private TributacaoRegraRepository regras;
 
+	@Autowired
+	private IndiceRegrasTributacao indice;
+
 	public List<TributacaoRegra> lista() {
 		return regras.findAll();
 	}
@@ -33,6 +37,7 @@ public class TributacaoRegraService {
 			try {
 				regras.cadastrar(codtribu, tipo, uf, cfop, cst_csosn, cstpis, cstcofins, pis, cofins, aliq_ipi, aliq_icms, cst_ipi,
 						Date.valueOf(dataAtual));
+				indice.invalida(codtribu);
 			} catch (Exception e) {
 				System.out.println(e.getStackTrace());
 				return "Erro ao tentar adicionar regra, chame o suporte";
@@ -40,6 +45,9 @@ public class TributacaoRegraService {
 		} else {
 			try {
 				regras.update(codregra, codtribu, tipo, uf, cfop, cst_csosn, cstpis, cstcofins, pis, cofins, aliq_ipi, aliq_icms, cst_ipi);
+
+				// a regra pode ter saído de outra tributação
+				indice.invalidaTodas();
 			} catch (Exception e) {
 				System.out.println(e.getStackTrace());
 				return "Erro ao tentar alterar regra, chame o suporte";
@@ -54,6 +62,7 @@ public class TributacaoRegraService {
 	public String remover(Long codigo) {
 		try {
 			regras.deleteById(codigo);
+			indice.invalidaTodas();
 		} catch (Exception e) {
 			System.out.println(e.getStackTrace());
 			throw new RuntimeException("Erro ao tentar remover a regra, chame o suporte");
@@ -12,6 +12,7 @@ import org.springframework.stereotype.Service;
 import net.originmobi.pdv.model.GrupoUsuario;
 import net.originmobi.pdv.model.Usuario;
 import net.originmobi.pdv.repository.UsuarioRepository;
+import net.originmobi.pdv.security.AutorizacoesCache;
 
 @Service
 public class UsuarioService {
@@ -22,6 +23,9 @@ public class UsuarioService {
 	@Autowired
 	private GrupoUsuarioService grupos;
 
+	@Autowired
+	private AutorizacoesCache autorizacoes;
+
 	LocalDate dataAtual = LocalDate.now();
 
 	/*
@@ -79,6 +83,7 @@ public class UsuarioService {
 		}
 
 		usuarios.save(usuario);
+		autorizacoes.invalidaUsuario(codUsu);
 
 		return "ok";
 	}
@@ -99,6 +104,7 @@ public class UsuarioService {
 		try {
 			usuario.setGrupoUsuario(todosGrupos);
 			usuarios.save(usuario);
+			autorizacoes.invalidaUsuario(codUsu);
 		} catch (Exception e) {
 			e.getStackTrace();
 		}
@@ -1,15 +1,24 @@
 package net.originmobi.pdv.service;
 
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
+import java.util.TreeMap;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import net.originmobi.pdv.model.Produto;
 import net.originmobi.pdv.model.Venda;
 import net.originmobi.pdv.model.VendaProduto;
+import net.originmobi.pdv.repository.ProdutoRepository;
 import net.originmobi.pdv.repository.VendaProdutosRepository;
+import net.originmobi.pdv.repository.VendaRepository;
 
 @Service
 public class VendaProdutoService {
@@ -17,8 +26,73 @@ public class VendaProdutoService {
 	@Autowired
 	private VendaProdutosRepository vendaProdutos;
 
+	@Autowired
+	private VendaRepository vendas;
+
+	@Autowired
+	private ProdutoRepository produtos;
+
+	@Autowired
+	private JdbcTemplate jdbc;
+
+	/*
+	 * Grava o item com o valor de venda do momento e soma o seu valor ao total
+	 * da venda com um único update, sem ler o total atual
+	 */
+	@Transactional
 	public void salvar(VendaProduto vendaProduto) {
+		if (vendaProduto.getValor_unitario() == null) {
+			Produto produto = produtos.findByCodigoIn(vendaProduto.getProduto());
+			vendaProduto.setValor_unitario(produto == null ? null : produto.getValor_venda());
+		}
+
 		vendaProdutos.save(vendaProduto);
+		vendas.somaValorProdutos(vendaProduto.getVenda(), valorItem(vendaProduto));
+	}
+
+	/*
+	 * Grava os itens de uma só vez, com rewriteBatchedStatements na url do
+	 * datasource o driver envia o lote como um único insert
+	 */
+	@Transactional
+	public void salvarLote(List<VendaProduto> itens) {
+		if (itens.isEmpty())
+			return;
+
+		jdbc.batchUpdate(
+				"insert into venda_produtos (produto_codigo, venda_codigo, valor_balanca, qtd, valor_unitario) values (?, ?, ?, ?, ?)",
+				new BatchPreparedStatementSetter() {
+
+					@Override
+					public void setValues(PreparedStatement ps, int i) throws SQLException {
+						VendaProduto item = itens.get(i);
+						ps.setLong(1, item.getProduto());
+						ps.setLong(2, item.getVenda());
+
+						if (item.getValor_balanca() == null)
+							ps.setNull(3, Types.DOUBLE);
+						else
+							ps.setDouble(3, item.getValor_balanca());
+
+						ps.setInt(4, item.getQtd() == null ? 1 : item.getQtd());
+
+						if (item.getValor_unitario() == null)
+							ps.setNull(5, Types.DOUBLE);
+						else
+							ps.setDouble(5, item.getValor_unitario());
+					}
+
+					@Override
+					public int getBatchSize() {
+						return itens.size();
+					}
+				});
+
+		Map<Long, Double> totais = new TreeMap<>();
+		for (VendaProduto item : itens)
+			totais.merge(item.getVenda(), valorItem(item), Double::sum);
+
+		totais.forEach(vendas::somaValorProdutos);
 	}
 
 	public List<Object> listaProdutosVenda(Venda venda) {
@@ -37,11 +111,15 @@ public class VendaProdutoService {
 		return vendaProdutos.findByCodigoIn(codigo);
 	}
 
+	@Transactional
 	public void remove(VendaProduto vendaProduto) {
+		vendaProdutos.estornaValorProduto(vendaProduto.getCodigo());
 		vendaProdutos.delete(vendaProduto);
 	}
 
+	@Transactional
 	public void removeProduto(Long posicaoProd) {
+		vendaProdutos.estornaValorProduto(posicaoProd);
 		vendaProdutos.removeProduto(posicaoProd);
 	}
 
@@ -49,4 +127,17 @@ public class VendaProdutoService {
 		return vendaProdutos.buscaQtdProduto(codvenda);
 	}
 
+	/*
+	 * se tiver valor de balança ele prevalece sobre o valor de venda, igual à
+	 * regra usada no estorno do item
+	 */
+	private static double valorItem(VendaProduto item) {
+		double qtd = item.getQtd() == null ? 1 : item.getQtd();
+
+		if (item.getValor_balanca() != null && item.getValor_balanca() > 0)
+			return item.getValor_balanca() * qtd;
+
+		return (item.getValor_unitario() == null ? 0.0 : item.getValor_unitario()) * qtd;
+	}
+
 }
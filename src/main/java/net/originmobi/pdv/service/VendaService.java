@@ -2,7 +2,10 @@ package net.originmobi.pdv.service;
 
 import java.sql.Date;
 import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import org.slf4j.Logger;
@@ -10,8 +13,10 @@ import org.slf4j.LoggerFactory;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import net.originmobi.pdv.controller.TituloService;
 import net.originmobi.pdv.enumerado.EntradaSaida;
@@ -23,15 +28,24 @@ import net.originmobi.pdv.filter.VendaFilter;
 import net.originmobi.pdv.model.Caixa;
 import net.originmobi.pdv.model.CaixaLancamento;
 import net.originmobi.pdv.model.PagamentoTipo;
+import net.originmobi.pdv.model.Parcela;
+import net.originmobi.pdv.model.Produto;
 import net.originmobi.pdv.model.Receber;
 import net.originmobi.pdv.model.Titulo;
 import net.originmobi.pdv.model.Usuario;
 import net.originmobi.pdv.model.Venda;
 import net.originmobi.pdv.model.VendaProduto;
 import net.originmobi.pdv.repository.VendaRepository;
+import net.originmobi.pdv.security.UsuarioAtual;
 import net.originmobi.pdv.service.cartao.CartaoLancamentoService;
-import net.originmobi.pdv.singleton.Aplicacao;
+import net.originmobi.pdv.service.contingencia.ContingenciaService;
+import net.originmobi.pdv.service.pagamento.PlanoParcelamento;
+import net.originmobi.pdv.service.painel.ContadoresPainel;
+import net.originmobi.pdv.service.produto.LeituraCodigoBarras;
+import net.originmobi.pdv.service.venda.CarrinhoVendaService;
+import net.originmobi.pdv.service.venda.FechamentoVenda;
 import net.originmobi.pdv.utilitarios.DataAtual;
+import net.originmobi.pdv.utilitarios.Dinheiro;
 
 @Service
 public class VendaService {
@@ -39,7 +53,7 @@ public class VendaService {
     private static final Logger LOGGER = LoggerFactory.getLogger(VendaService.class);
 
     private final VendaRepository vendas;
-    private final UsuarioService usuarios;
+    private final UsuarioAtual usuarioAtual;
     private final VendaProdutoService vendaProdutos;
     private final PagamentoTipoService formaPagamentos;
     private final CaixaService caixas;
@@ -49,9 +63,13 @@ public class VendaService {
     private final TituloService tituloService;
     private final CartaoLancamentoService cartaoLancamento;
     private final ProdutoService produtos;
+    private final CarrinhoVendaService carrinhos;
+    private final ContingenciaService contingencia;
+    private final ContadoresPainel painel;
+    private final TransactionTemplate transacao;
 
     public VendaService(VendaRepository vendas,
-                        UsuarioService usuarios,
+                        UsuarioAtual usuarioAtual,
                         VendaProdutoService vendaProdutos,
                         PagamentoTipoService formaPagamentos,
                         CaixaService caixas,
@@ -60,9 +78,13 @@ public class VendaService {
                         CaixaLancamentoService lancamentos,
                         TituloService tituloService,
                         CartaoLancamentoService cartaoLancamento,
-                        ProdutoService produtos) {
+                        ProdutoService produtos,
+                        CarrinhoVendaService carrinhos,
+                        ContingenciaService contingencia,
+                        ContadoresPainel painel,
+                        PlatformTransactionManager transactionManager) {
         this.vendas = vendas;
-        this.usuarios = usuarios;
+        this.usuarioAtual = usuarioAtual;
         this.vendaProdutos = vendaProdutos;
         this.formaPagamentos = formaPagamentos;
         this.caixas = caixas;
@@ -72,12 +94,33 @@ public class VendaService {
         this.tituloService = tituloService;
         this.cartaoLancamento = cartaoLancamento;
         this.produtos = produtos;
+        this.carrinhos = carrinhos;
+        this.contingencia = contingencia;
+        this.painel = painel;
+        this.transacao = new TransactionTemplate(transactionManager);
     }
 
+    /*
+     * Sem o banco a venda é aberta em contingência, com código negativo
+     */
     public Long abreVenda(Venda venda) {
+        if (venda.getCodigo() == null ? contingencia.isAtiva() : contingencia.atende(venda.getCodigo())) {
+            return contingencia.abreVenda(venda);
+        }
+
+        try {
+            return abreVendaBanco(venda);
+        } catch (RuntimeException e) {
+            if (venda.getCodigo() != null || !contingencia.registraFalha(e))
+                throw e;
+        }
+
+        return contingencia.abreVenda(venda);
+    }
+
+    private Long abreVendaBanco(Venda venda) {
         if (venda.getCodigo() == null) {
-            Aplicacao aplicacao = Aplicacao.getInstancia();
-            Usuario usuario = usuarios.buscaUsuario(aplicacao.getUsuarioAtual());
+            Usuario usuario = usuarioAtual.getUsuario();
 
             Timestamp dataHoraAtual = new Timestamp(System.currentTimeMillis());
             venda.setData_cadastro(dataHoraAtual);
@@ -86,6 +129,7 @@ public class VendaService {
             venda.setValor_produtos(0.00);
 
             vendas.save(venda);
+            painel.vendaAberta();
         } else {
             vendas.updateDadosVenda(venda.getPessoa(), venda.getObservacao(), venda.getCodigo());
         }
@@ -93,6 +137,16 @@ public class VendaService {
         return venda.getCodigo();
     }
 
+    public Venda buscaVenda(Long codigo) {
+        if (contingencia.atende(codigo)) {
+            return contingencia.buscaVenda(codigo);
+        }
+
+        Venda venda = vendas.findByCodigoEquals(codigo);
+        contingencia.lembra(venda);
+        return venda;
+    }
+
     public Page<Venda> busca(VendaFilter filter, String situacao, Pageable pageable) {
 
         VendaSituacao situacaoVenda = situacao.equals("ABERTA") ? VendaSituacao.ABERTA : VendaSituacao.FECHADA;
@@ -105,10 +159,42 @@ public class VendaService {
     }
 
     public String addProduto(Long codVen, Long codPro, Double vlBalanca) {
+        return addProduto(codVen, codPro, vlBalanca, 1);
+    }
+
+    /*
+     * Insere qtd unidades do produto em uma única linha da venda
+     */
+    public String addProduto(Long codVen, Long codPro, Double vlBalanca, int qtd) {
+        if (qtd <= 0) {
+            return "Quantidade inválida";
+        }
+
+        if (contingencia.atende(codVen)) {
+            return contingencia.addProduto(codVen, codPro, vlBalanca, qtd);
+        }
+
+        try {
+            return addProdutoBanco(codVen, codPro, vlBalanca, qtd);
+        } catch (RuntimeException e) {
+            if (!contingencia.registraFalha(e))
+                throw e;
+        }
+
+        return contingencia.addProduto(codVen, codPro, vlBalanca, qtd);
+    }
+
+    private String addProdutoBanco(Long codVen, Long codPro, Double vlBalanca, int qtd) {
+        if (carrinhos.isHabilitado()) {
+            return carrinhos.adiciona(codVen, codPro, vlBalanca, qtd) ? "ok" : "Venda fechada";
+        }
+
         String vendaSituacao = vendas.verificaSituacao(codVen);
 
         if (vendaSituacao.equals(VendaSituacao.ABERTA.toString())) {
-            VendaProduto vendaProduto = new VendaProduto(codPro, codVen, vlBalanca);
+            Produto produto = produtos.busca(codPro);
+            VendaProduto vendaProduto = new VendaProduto(codPro, codVen, vlBalanca, qtd,
+                    produto == null ? null : produto.getValor_venda());
             vendaProdutos.salvar(vendaProduto);
         } else {
             return "Venda fechada";
@@ -117,7 +203,32 @@ public class VendaService {
         return "ok";
     }
 
+    /*
+     * Produto lido pelo scanner. Na etiqueta da balança o valor do item vem
+     * do próprio código e entra como valor da balança da linha
+     */
+    public String addCodigoBarras(Long codVen, String codigoBarras) {
+        Optional<LeituraCodigoBarras> leitura = produtos.leCodigoBarras(codigoBarras);
+
+        if (!leitura.isPresent()) {
+            LOGGER.warn("Código de barras sem produto. Venda={}, código={}", codVen, codigoBarras);
+            return "Produto não encontrado para o código " + codigoBarras;
+        }
+
+        return addProduto(codVen, leitura.get().getProduto().getCodigo(),
+                leitura.get().getValorBalanca().doubleValue(), 1);
+    }
+
     public String removeProduto(Long posicaoProd, Long codVenda) {
+        if (contingencia.atende(codVenda)) {
+            return contingencia.removeProduto(posicaoProd, codVenda);
+        }
+
+        // posição negativa é de item que ainda está no carrinho
+        if (posicaoProd < 0) {
+            return carrinhos.remove(codVenda, posicaoProd) ? "ok" : "Produto não encontrado";
+        }
+
         Venda venda = vendas.findByCodigoEquals(codVenda);
         if (venda.getSituacao().equals(VendaSituacao.ABERTA)) {
             vendaProdutos.removeProduto(posicaoProd);
@@ -128,72 +239,179 @@ public class VendaService {
         return "ok";
     }
 
+    /*
+     * Produtos já gravados da venda seguidos dos que ainda estão no carrinho,
+     * também atualiza o valor de produtos exibido na tela com o do carrinho
+     */
+    public List<Object> listaProdutosVenda(Venda venda) {
+        // em contingência só os itens do carrinho, os gravados ficam no banco
+        List<Object> produtosVenda = contingencia.atende(venda.getCodigo()) ? new ArrayList<>()
+                : new ArrayList<>(vendaProdutos.listaProdutosVenda(venda));
+
+        carrinhos.busca(venda.getCodigo()).ifPresent(carrinho -> {
+            double valorProdutos = venda.getValor_produtos() == null ? 0.0 : venda.getValor_produtos();
+            venda.setValor_produtos_atual(valorProdutos + carrinho.getTotal());
+            produtosVenda.addAll(carrinho.linhas());
+        });
+
+        return produtosVenda;
+    }
+
     public List<Venda> lista() {
         return vendas.findAll();
     }
 
+    /*
+     * Chamadas ao banco feitas no fechamento de uma venda. Cada uma executa um
+     * número fixo de comandos, independente da quantidade de parcelas, títulos
+     * e lançamentos da venda
+     */
+    public static final int MAX_CHAMADAS_FECHAMENTO = 13;
+
+    /*
+     * Sem o banco a venda é fechada no diário de contingência. A transação é
+     * aberta aqui e não por @Transactional porque, com o banco fora, abrir a
+     * transação antes do método já falharia
+     */
+    public String fechaVenda(Long venda, Long pagamentotipo, Double vlprodutos, Double desconto, Double acrescimo,
+                             String[] vlParcelas, String[] titulos) {
+
+        if (contingencia.atende(venda)) {
+            return contingencia.fechaVenda(venda, pagamentotipo, vlprodutos, desconto, acrescimo, vlParcelas, titulos);
+        }
+
+        try {
+            return transacao.execute(status -> fechaVendaBanco(venda, pagamentotipo, vlprodutos, desconto, acrescimo,
+                    vlParcelas, titulos));
+        } catch (RuntimeException e) {
+            if (!contingencia.registraFalha(e))
+                throw e;
+        }
+
+        LOGGER.warn("Banco indisponível ao fechar a venda {}, fechando em contingência", venda);
+        return contingencia.fechaVenda(venda, pagamentotipo, vlprodutos, desconto, acrescimo, vlParcelas, titulos);
+    }
+
     // muitos parâmetros + complexidade: optamos por manter a assinatura
     // por compatibilidade e suprimir o aviso do Sonar.
     // @SuppressWarnings({ "squid:S00107", "java:S107", "squid:S3776", "java:S3776" })
     @Transactional(readOnly = false, propagation = Propagation.REQUIRED)
-    public String fechaVenda(Long venda, Long pagamentotipo, Double vlprodutos, Double desconto, Double acrescimo,
-                             String[] vlParcelas, String[] titulos) {
+    public String fechaVendaBanco(Long venda, Long pagamentotipo, Double vlprodutos, Double desconto,
+                                  Double acrescimo, String[] vlParcelas, String[] titulos) {
+
+        // trava a venda até o fim do fechamento, um carrinho gravado ao mesmo
+        // tempo espera e encontra a venda fechada
+        vendas.travaSituacao(venda);
+        Venda dadosVenda = vendas.findByCodigoEquals(venda);
 
-        if (!vendaIsAberta(venda)) {
+        if (!dadosVenda.isAberta()) {
             LOGGER.warn("Tentativa de fechar venda já fechada. Venda={}", venda);
             throw new VendaException("Venda fechada");
         }
 
+        // grava os itens que ainda estão no carrinho na mesma transação
+        carrinhos.grava(venda);
+
         if (vlprodutos <= 0) {
             LOGGER.warn("Tentativa de fechar venda sem valor. Venda={}", venda);
             throw new VendaException("Venda sem valor, verifique");
         }
 
+        // baixa o estoque antes dos lançamentos financeiros, a venda com
+        // produto sem estoque falha aqui sem gerar recebimento nem caixa
+        produtos.movimentaEstoque(venda, EntradaSaida.SAIDA);
+
         DataAtual dataAtual = new DataAtual();
         PagamentoTipo formaPagamento = formaPagamentos.busca(pagamentotipo);
 
-        String[] formaPagar = formaPagamento.getFormaPagamento().replace("/", " ").split(" ");
+        PlanoParcelamento plano = formaPagamentos.plano(formaPagamento);
 
-        Double vlTotal = (vlprodutos + acrescimo) - desconto;
+        // valores em centavos para não acumular erro de arredondamento do double
+        Dinheiro vlTotal = Dinheiro.de(vlprodutos).mais(Dinheiro.de(acrescimo)).menos(Dinheiro.de(desconto));
 
-        int qtdVezes = formaPagar.length;
-        int sequencia = 1;
+        FechamentoVenda fechamento = montaFechamento(venda, dadosVenda, plano, vlTotal, vlprodutos, desconto,
+                acrescimo, vlParcelas, titulos, dataAtual);
+
+        // grava sempre na mesma ordem, um comando ou lote por tabela
+        receberServ.cadastrar(fechamento.getReceber());
+        parcelas.gerarParcelas(fechamento.getParcelas());
+        fechamento.getCaixa()
+                .ifPresent(caixa -> lancamentos.lancamentoLote(caixa, fechamento.getLancamentosCaixa()));
+        cartaoLancamento.salvarLote(fechamento.getLancamentosCartao());
 
-        Venda dadosVenda = vendas.findByCodigoEquals(venda);
         dadosVenda.setPagamentotipo(formaPagamento);
+        vendas.fechaVenda(venda, VendaSituacao.FECHADA, vlTotal.doubleValue(), desconto, acrescimo,
+                dataAtual.dataAtualTimeStamp(), formaPagamento);
+        painel.vendaFechada();
 
-        Receber receber = new Receber("Recebimento referente a venda " + venda, vlTotal, dadosVenda.getPessoa(),
-                dataAtual.dataAtualTimeStamp(), dadosVenda);
+        return "Venda finalizada com sucesso";
+    }
+
+    /*
+     * Monta em memória o recebimento, as parcelas a prazo e os lançamentos de
+     * caixa e cartão da venda, validando todas as parcelas antes de gravar
+     */
+    private FechamentoVenda montaFechamento(Long venda, Venda dadosVenda, PlanoParcelamento plano, Dinheiro vlTotal,
+            Double vlprodutos, Double desconto, Double acrescimo, String[] vlParcelas, String[] titulos,
+            DataAtual dataAtual) {
+
+        Timestamp dataCadastro = dataAtual.dataAtualTimeStamp();
+
+        Receber receber = new Receber("Recebimento referente a venda " + venda, vlTotal.doubleValue(), dadosVenda.getPessoa(),
+                dataCadastro, dadosVenda);
+        FechamentoVenda fechamento = new FechamentoVenda(receber);
 
-        receberServ.cadastrar(receber);
+        int qtdParcelas = plano.getQtdParcelas();
 
-        Double desc = desconto / vlParcelas.length;
-        Double acre = acrescimo / vlParcelas.length;
+        List<Long> codTitulos = new ArrayList<>(qtdParcelas);
+        for (int i = 0; i < qtdParcelas; i++)
+            codTitulos.add(Long.decode(titulos[i]));
 
-        for (int i = 0; i < formaPagar.length; i++) {
-            
-            final int indice = i; 
-            
-            Titulo titulo = tituloService.busca(Long.decode(titulos[indice]))
-                .orElseThrow(() -> {
-                    LOGGER.error("Título não encontrado para venda {} e índice {}", venda, indice);
-                    return new VendaException("Título não encontrado para a venda " + venda);
-                });
+        Map<Long, Titulo> titulosVenda = tituloService.buscaTitulos(codTitulos);
 
+        // desconto e acréscimo divididos entre as parcelas em centavos
+        Dinheiro[] descontos = plano.divide(Dinheiro.de(desconto));
+        Dinheiro[] acrescimos = plano.divide(Dinheiro.de(acrescimo));
+        LocalDate hoje = LocalDate.now();
+
+        int sequencia = 1;
+        Caixa caixa = null;
+        Usuario usuario = null;
+
+        for (int i = 0; i < qtdParcelas; i++) {
+
+            Titulo titulo = titulosVenda.get(codTitulos.get(i));
+
+            if (titulo == null) {
+                LOGGER.error("Título não encontrado para venda {} e índice {}", venda, i);
+                throw new VendaException("Título não encontrado para a venda " + venda);
+            }
 
-            if (formaPagar[i].equals("00")) {
+            if (plano.isAvista(i)) {
                 // venda à vista
                 if (titulo.getTipo().getSigla().equals(TituloTipo.DIN.toString())) {
-                    if (!caixas.caixaIsAberto()) {
-                        LOGGER.warn("Tentativa de fechar venda sem caixa aberto. Venda={}", venda);
-                        throw new VendaException("Nenhum caixa aberto");
+                    validaAvistaDinheiro(vlprodutos, vlParcelas, i);
+
+                    if (caixa == null) {
+                        caixa = caixas.caixaAberto().orElseThrow(() -> {
+                            LOGGER.warn("Tentativa de fechar venda sem caixa aberto. Venda={}", venda);
+                            return new VendaException("Nenhum caixa aberto");
+                        });
+
+                        usuario = usuarioAtual.getUsuario();
                     }
-                    qtdVezes = avistaDinheiro(vlprodutos, vlParcelas, qtdVezes, i, acre, desc);
+
+                    Double valorParcela = Dinheiro.de(vlParcelas[i]).mais(acrescimos[i]).menos(descontos[i])
+                            .doubleValue();
+
+                    fechamento.adicionaLancamentoCaixa(new CaixaLancamento("Recebimento de venda à vista",
+                            valorParcela, TipoLancamento.RECEBIMENTO, EstiloLancamento.ENTRADA, caixa, usuario));
+
                 } else if (titulo.getTipo().getSigla().equals(TituloTipo.CARTDEB.toString())
                         || titulo.getTipo().getSigla().equals(TituloTipo.CARTCRED.toString())) {
 
                     Double valorParcelaCartao = Double.valueOf(vlParcelas[i]);
-                    cartaoLancamento.lancamento(valorParcelaCartao, Optional.of(titulo));
+                    fechamento.adicionaLancamentoCartao(cartaoLancamento.calcula(valorParcelaCartao, titulo));
                 }
             } else {
                 // venda a prazo
@@ -202,106 +420,46 @@ public class VendaService {
                     throw new VendaException("Venda sem cliente, verifique");
                 }
 
-                sequencia = aprazo(vlParcelas, formaPagar, sequencia, receber, i, acre, desc);
+                if (vlParcelas[i].isEmpty()) {
+                    LOGGER.warn("Parcela a prazo sem valor. índice={}", i);
+                    throw new VendaException("Valor de recebimento inválido");
+                }
 
-            }
+                Double valorParcela = Dinheiro.de(vlParcelas[i]).mais(acrescimos[i]).menos(descontos[i]).doubleValue();
 
-            Double vlFinal = (vlprodutos + acrescimo) - desconto;
-            vendas.fechaVenda(venda, VendaSituacao.FECHADA, vlFinal, desconto, acrescimo,
-                    dataAtual.dataAtualTimeStamp(), formaPagamento);
-        }
+                fechamento.adicionaParcela(new Parcela(valorParcela, 0.00, 0.00, 0.0, valorParcela, 0, sequencia,
+                        receber, dataCadastro, Date.valueOf(plano.vencimento(i, hoje))));
 
-        // Responsável por realizar a movimentação de estoque
-        produtos.movimentaEstoque(venda, EntradaSaida.SAIDA);
+                sequencia++;
+            }
+        }
 
-        return "Venda finalizada com sucesso";
+        return fechamento;
     }
 
     /*
-     * Responsável por realizar o lançamento quando a parcela da venda é a prazo
-     */
-    private int aprazo(String[] vlParcelas, String[] formaPagar, int sequencia,
-            Receber receber, int indiceParcela, Double acre, Double desc) {
-
-		if (vlParcelas[indiceParcela].isEmpty()) {
-		 LOGGER.warn("Parcela a prazo sem valor. índice={}", indiceParcela);
-		 throw new VendaException("Valor de recebimento inválido");
-		}
-		
-		DataAtual dataAtual = new DataAtual(); // ← criado aqui
-		
-		Double valorParcela = (Double.valueOf(vlParcelas[indiceParcela]) + acre) - desc;
-		
-		parcelas.gerarParcela(
-		     valorParcela,
-		     0.00,
-		     0.00,
-		     0.0,
-		     valorParcela,
-		     receber,
-		     0,
-		     sequencia,
-		     dataAtual.dataAtualTimeStamp(),
-		     Date.valueOf(
-		             dataAtual.DataAtualIncrementa(
-		                     Integer.parseInt(formaPagar[indiceParcela])
-		             )
-		     )
-		);
-		
-		return sequencia + 1;
-		}
-
-
-    /*
-     * Responsável por realizar o lançamento quando a parcela da venda é à vista e
-     * no dinheiro
+     * A parcela à vista no dinheiro precisa de valor e a soma de todas as
+     * parcelas deve ser igual ao valor dos produtos
      */
-    private int avistaDinheiro(Double valorProdutos, String[] vlParcelas, int qtdVezes, int indiceParcela,
-                               Double acre, Double desc) {
-
-        // decremento ela para usa-la no a prazo, sem a sequencia do a vista
-        qtdVezes = qtdVezes - 1;
+    private void validaAvistaDinheiro(Double valorProdutos, String[] vlParcelas, int indiceParcela) {
 
         if (vlParcelas[indiceParcela].isEmpty()) {
             LOGGER.warn("Parcela à vista sem valor. índice={}", indiceParcela);
             throw new VendaException("Parcela sem valor, verifique");
         }
 
-        Double totalParcelas = 0.0;
+        Dinheiro totalParcelas = Dinheiro.ZERO;
 
-        // pega a soma de todas as parcelas para comparar com o valor recebido
+        // pega a soma de todas as parcelas para comparar com o valor recebido,
+        // em centavos para que 0.1 + 0.2 feche com 0.3
         for (int aux = 0; aux < vlParcelas.length; aux++) {
-            totalParcelas += Double.valueOf(vlParcelas[aux]);
+            totalParcelas = totalParcelas.mais(Dinheiro.de(vlParcelas[aux]));
         }
 
-        if (Double.compare(totalParcelas, valorProdutos) != 0) {
+        if (!totalParcelas.equals(Dinheiro.de(valorProdutos))) {
             LOGGER.warn("Valor das parcelas ({}) diferente do total de produtos ({}).", totalParcelas, valorProdutos);
             throw new VendaException("Valor das parcelas diferente do valor total de produtos, verifique");
         }
-
-        Caixa caixa = caixas.caixaAberto()
-                .orElseThrow(() -> {
-                    LOGGER.error("Nenhum caixa aberto para venda à vista");
-                    return new VendaException("Nenhum caixa aberto");
-                });
-
-        Aplicacao aplicacao = Aplicacao.getInstancia();
-        Usuario usuario = usuarios.buscaUsuario(aplicacao.getUsuarioAtual());
-
-        Double valorParcela = (Double.valueOf(vlParcelas[indiceParcela]) + acre) - desc;
-
-        CaixaLancamento lancamento = new CaixaLancamento("Recebimento de venda à vista", valorParcela,
-                TipoLancamento.RECEBIMENTO, EstiloLancamento.ENTRADA, caixa, usuario);
-
-        lancamentos.lancamento(lancamento);
-
-        return qtdVezes;
-    }
-
-    private boolean vendaIsAberta(Long codVenda) {
-        Venda venda = vendas.findByCodigoEquals(codVenda);
-        return venda.isAberta();
     }
 
     public int qtdAbertos() {
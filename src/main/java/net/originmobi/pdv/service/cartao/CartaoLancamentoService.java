@@ -1,11 +1,15 @@
 package net.originmobi.pdv.service.cartao;
 
 import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
 import java.time.LocalDate;
 import java.util.List;
 import java.util.Optional;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
@@ -23,10 +27,8 @@ import net.originmobi.pdv.model.Usuario;
 import net.originmobi.pdv.model.cartao.CartaoLancamento;
 import net.originmobi.pdv.model.cartao.MaquinaCartao;
 import net.originmobi.pdv.repository.cartao.CartaoLancamentoRepository;
+import net.originmobi.pdv.security.UsuarioAtual;
 import net.originmobi.pdv.service.CaixaLancamentoService;
-import net.originmobi.pdv.service.UsuarioService;
-import net.originmobi.pdv.singleton.Aplicacao;
-import net.originmobi.pdv.utilitarios.DataAtual;
 
 @Service
 public class CartaoLancamentoService {
@@ -38,11 +40,27 @@ public class CartaoLancamentoService {
 	private CaixaLancamentoService caixaLancamentos;
 
 	@Autowired
-	private UsuarioService usuarios;
+	private UsuarioAtual usuarioAtual;
 
-	private LocalDate dataAtual;
+	@Autowired
+	private JdbcTemplate jdbc;
 
 	public void lancamento(Double vl_parcela, Optional<Titulo> titulo) {
+		CartaoLancamento lancamento = calcula(vl_parcela, titulo.get());
+
+		try {
+			repository.save(lancamento);
+		} catch (Exception e) {
+			System.out.println(e);
+		}
+
+	}
+
+	/*
+	 * Calcula as taxas e a data de recebimento da parcela paga no cartão do
+	 * título, sem gravar
+	 */
+	public CartaoLancamento calcula(Double vl_parcela, Titulo titulo) {
 		Double taxa = 0.0;
 		Double vl_taxa = 0.0;
 		Double vl_liq_parcela = 0.0;
@@ -55,40 +73,66 @@ public class CartaoLancamentoService {
 		int dias = 0;
 
 		// verifica se é debito ou crédito e pega os valores corretos do titulo
-		if (titulo.get().getTipo().getSigla().equals(TituloTipo.CARTDEB.toString())) {
-			taxa = titulo.get().getMaquina().getTaxa_debito();
-			dias = titulo.get().getMaquina().getDias_debito();
+		if (titulo.getTipo().getSigla().equals(TituloTipo.CARTDEB.toString())) {
+			taxa = titulo.getMaquina().getTaxa_debito();
+			dias = titulo.getMaquina().getDias_debito();
 			tipo = CartaoTipo.DEBITO;
 
-		} else if (titulo.get().getTipo().getSigla().equals(TituloTipo.CARTCRED.toString())) {
-			taxa = titulo.get().getMaquina().getTaxa_credito();
-			dias = titulo.get().getMaquina().getDias_credito();
+		} else if (titulo.getTipo().getSigla().equals(TituloTipo.CARTCRED.toString())) {
+			taxa = titulo.getMaquina().getTaxa_credito();
+			dias = titulo.getMaquina().getDias_credito();
 			tipo = CartaoTipo.CREDITO;
 		}
 
 		vl_taxa = (vl_parcela * taxa) / 100;
 		vl_liq_parcela = vl_parcela - vl_taxa;
 
-		taxa_ante = titulo.get().getMaquina().getTaxa_antecipacao();
+		taxa_ante = titulo.getMaquina().getTaxa_antecipacao();
 		vl_taxa_ante = (vl_parcela * taxa_ante) / 100;
 		vl_liq_ant = vl_parcela - vl_taxa_ante;
 
-		MaquinaCartao maquinaCartao = titulo.get().getMaquina();
-
-		DataAtual data = new DataAtual();
-		dataAtual = LocalDate.now();
-		String data_recebimento = data.DataAtualIncrementa(dias);
+		MaquinaCartao maquinaCartao = titulo.getMaquina();
 
-		CartaoLancamento lancamento = new CartaoLancamento(vl_parcela, taxa, vl_taxa, vl_liq_parcela, taxa_ante,
-				vl_taxa_ante, vl_liq_ant, maquinaCartao, tipo, CartaoSituacao.APROCESSAR,
-				Date.valueOf(data_recebimento), Date.valueOf(dataAtual));
+		LocalDate dataAtual = LocalDate.now();
 
-		try {
-			repository.save(lancamento);
-		} catch (Exception e) {
-			System.out.println(e);
-		}
+		return new CartaoLancamento(vl_parcela, taxa, vl_taxa, vl_liq_parcela, taxa_ante, vl_taxa_ante, vl_liq_ant,
+				maquinaCartao, tipo, CartaoSituacao.APROCESSAR, Date.valueOf(dataAtual.plusDays(dias)),
+				Date.valueOf(dataAtual));
+	}
 
+	/*
+	 * Grava os lançamentos de cartão em um único lote
+	 */
+	public void salvarLote(List<CartaoLancamento> lancamentos) {
+		if (lancamentos.isEmpty())
+			return;
+
+		jdbc.batchUpdate("insert into cartao_lancamento (vl_parcela, taxa, vl_taxa, vl_liq_parcela, taxa_antecipacao, "
+				+ "vl_taxa_antecipacao, vl_liq_antecipacao, maquina_cartao_codigo, situacao, tipo, data_recebimento, data_cadastro) "
+				+ "values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)", new BatchPreparedStatementSetter() {
+
+					@Override
+					public void setValues(PreparedStatement ps, int i) throws SQLException {
+						CartaoLancamento lancamento = lancamentos.get(i);
+						ps.setDouble(1, lancamento.getVlParcela());
+						ps.setDouble(2, lancamento.getTaxa());
+						ps.setDouble(3, lancamento.getVlTaxa());
+						ps.setDouble(4, lancamento.getVlLiqParcela());
+						ps.setDouble(5, lancamento.getTaxaAntecipacao());
+						ps.setDouble(6, lancamento.getVlTaxaAntecipacao());
+						ps.setDouble(7, lancamento.getVlLiqAntecipacao());
+						ps.setLong(8, lancamento.getMaquina_cartao().getCodigo());
+						ps.setString(9, lancamento.getSituacao().toString());
+						ps.setString(10, lancamento.getTipo().toString());
+						ps.setDate(11, lancamento.getData_recebimento());
+						ps.setDate(12, lancamento.getData_cadastro());
+					}
+
+					@Override
+					public int getBatchSize() {
+						return lancamentos.size();
+					}
+				});
 	}
 
 	public List<CartaoLancamento> listar(CartaoFilter filter) {
@@ -113,8 +157,7 @@ public class CartaoLancamentoService {
 		EstiloLancamento estilo = EstiloLancamento.ENTRADA;
 		Caixa banco = cartaoLancamento.getMaquina_cartao().getBanco();
 
-		Aplicacao aplicacao = Aplicacao.getInstancia();
-		Usuario usuario = usuarios.buscaUsuario(aplicacao.getUsuarioAtual());
+		Usuario usuario = usuarioAtual.getUsuario();
 
 		CaixaLancamento lancamento = new CaixaLancamento("Referênte a processamento de cartão", valor, tipo, estilo,
 				banco, usuario);
@@ -146,8 +189,7 @@ public class CartaoLancamentoService {
 		EstiloLancamento estilo = EstiloLancamento.ENTRADA;
 		Caixa banco = cartaoLancamento.getMaquina_cartao().getBanco();
 
-		Aplicacao aplicacao = Aplicacao.getInstancia();
-		Usuario usuario = usuarios.buscaUsuario(aplicacao.getUsuarioAtual());
+		Usuario usuario = usuarioAtual.getUsuario();
 
 		CaixaLancamento lancamento = new CaixaLancamento(
 				"Referênte a antecipação de cartão código " + cartaoLancamento.getCodigo(), valor, tipo, estilo, banco,
@@ -0,0 +1,368 @@
+package net.originmobi.pdv.service.contingencia;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import net.originmobi.pdv.enumerado.VendaSituacao;
+import net.originmobi.pdv.enumerado.caixa.EstiloLancamento;
+import net.originmobi.pdv.enumerado.caixa.TipoLancamento;
+import net.originmobi.pdv.model.Pessoa;
+import net.originmobi.pdv.model.Venda;
+import net.originmobi.pdv.security.UsuarioAtual;
+import net.originmobi.pdv.service.ProdutoService;
+import net.originmobi.pdv.service.VendaException;
+import net.originmobi.pdv.service.contingencia.OperacaoContingencia.Tipo;
+import net.originmobi.pdv.service.produto.ProdutoCatalogo;
+import net.originmobi.pdv.service.venda.CarrinhoVendaItem;
+import net.originmobi.pdv.service.venda.CarrinhoVendaService;
+
+/**
+ * Operação do terminal sem o banco.
+ *
+ * Enquanto o banco está indisponível as vendas são abertas com código
+ * negativo, os produtos vêm do catálogo em memória e ficam no carrinho, e o
+ * fechamento grava a venda inteira no {@link DiarioContingencia}. Os
+ * lançamentos de caixa vão direto para o diário. A
+ * {@link SincronizacaoContingencia} grava tudo no banco quando ele volta. As
+ * vendas ainda abertas no encerramento do terminal também vão para o diário,
+ * e voltam abertas, com o carrinho, ao iniciar.
+ *
+ * Uma venda já gravada no banco também pode ser fechada em contingência, os
+ * itens do carrinho vão para o diário e os já gravados continuam nela.
+ */
+@Service
+public class ContingenciaService {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(ContingenciaService.class);
+
+	private static final int MAX_VENDAS_LEMBRADAS = 200;
+
+	private final DiarioContingencia diario;
+	private final DisponibilidadeBanco banco;
+	private final CarrinhoVendaService carrinhos;
+	private final ProdutoService produtos;
+	private final UsuarioAtual usuarioAtual;
+	private final boolean habilitada;
+
+	// códigos negativos, únicos entre reinícios por partirem do horário atual
+	private final AtomicLong sequenciaLocal = new AtomicLong(-System.currentTimeMillis());
+
+	private final Map<Long, Venda> vendasLocais = new ConcurrentHashMap<>();
+
+	// vendas fechadas no diário e ainda não sincronizadas
+	private final Set<Long> vendasFechadas = ConcurrentHashMap.newKeySet();
+
+	// últimas vendas do banco abertas na tela, para exibi-las sem o banco
+	private final Map<Long, Venda> vendasLembradas = Collections
+			.synchronizedMap(new LinkedHashMap<Long, Venda>(16, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<Long, Venda> maisAntiga) {
+					return size() > MAX_VENDAS_LEMBRADAS;
+				}
+			});
+
+	// última consulta bem sucedida das listas usadas pelas telas
+	private final Map<String, List<?>> referencias = new ConcurrentHashMap<>();
+
+	public ContingenciaService(DiarioContingencia diario, DisponibilidadeBanco banco, CarrinhoVendaService carrinhos,
+			ProdutoService produtos, UsuarioAtual usuarioAtual,
+			@Value("${pdv.contingencia.habilitada:true}") boolean habilitada) {
+		this.diario = diario;
+		this.banco = banco;
+		this.carrinhos = carrinhos;
+		this.produtos = produtos;
+		this.usuarioAtual = usuarioAtual;
+		this.habilitada = habilitada;
+
+		List<String> restauradas = new ArrayList<>();
+		for (OperacaoContingencia operacao : diario.pendentes()) {
+			if (operacao.getTipo() == Tipo.VENDA) {
+				vendasFechadas.add(operacao.getVenda());
+			} else if (operacao.getTipo() == Tipo.CARRINHO) {
+				restauraVenda(operacao);
+				restauradas.add(operacao.getId());
+			}
+		}
+
+		// de volta à memória, o carrinho é guardado de novo no próximo encerramento
+		diario.confirma(restauradas);
+	}
+
+	public boolean isAtiva() {
+		return habilitada && !banco.isDisponivel();
+	}
+
+	/*
+	 * Se a venda é tratada aqui: aberta em contingência, fechada no diário e
+	 * não sincronizada ou qualquer venda enquanto o banco está fora
+	 */
+	public boolean atende(Long codVenda) {
+		return habilitada && codVenda != null
+				&& (codVenda < 0 || vendasFechadas.contains(codVenda) || !banco.isDisponivel());
+	}
+
+	/*
+	 * Registra a falha de uma operação no banco. Retorna true se ela foi por
+	 * falta de conexão e a operação deve ser repetida em contingência
+	 */
+	public boolean registraFalha(RuntimeException falha) {
+		return habilitada && banco.registraFalha(falha);
+	}
+
+	public Long abreVenda(Venda venda) {
+		if (venda.getCodigo() != null) {
+			Venda local = vendasLocais.get(venda.getCodigo());
+
+			if (local == null)
+				throw new VendaException("Venda não pode ser alterada sem conexão com o banco");
+
+			local.setPessoa(venda.getPessoa());
+			local.setObservacao(venda.getObservacao());
+			return local.getCodigo();
+		}
+
+		Long codigo = sequenciaLocal.decrementAndGet();
+
+		venda.setCodigo(codigo);
+		venda.setData_cadastro(new Timestamp(System.currentTimeMillis()));
+		venda.setSituacao(VendaSituacao.ABERTA);
+		venda.setValor_produtos(0.00);
+		vendasLocais.put(codigo, venda);
+
+		LOGGER.info("Venda {} aberta em contingência", codigo);
+		return codigo;
+	}
+
+	public Venda buscaVenda(Long codigo) {
+		Venda venda = codigo < 0 ? vendasLocais.get(codigo) : vendasLembradas.get(codigo);
+
+		if (venda == null)
+			throw new VendaException("Venda " + codigo + " não disponível sem conexão com o banco");
+
+		return venda;
+	}
+
+	public void lembra(Venda venda) {
+		if (venda != null && venda.getCodigo() != null)
+			vendasLembradas.put(venda.getCodigo(), venda);
+	}
+
+	public String addProduto(Long codVenda, Long codProduto, Double valorBalanca, int qtd) {
+		if (isFechada(codVenda))
+			return "Venda fechada";
+
+		Optional<ProdutoCatalogo> produto = produtos.catalogoVenda().busca(codProduto);
+
+		if (!produto.isPresent())
+			return "Produto não encontrado";
+
+		carrinhos.adiciona(codVenda, produto.get(), valorBalanca, qtd);
+		return "ok";
+	}
+
+	public String removeProduto(Long posicao, Long codVenda) {
+		if (isFechada(codVenda))
+			return "Venda fechada";
+
+		if (posicao >= 0)
+			return "Produto já gravado não pode ser removido sem conexão com o banco";
+
+		return carrinhos.remove(codVenda, posicao) ? "ok" : "Produto não encontrado";
+	}
+
+	/*
+	 * Fecha a venda no diário. Pagamento, títulos e estoque são conferidos na
+	 * sincronização, que grava a venda com o mesmo fechamento do banco
+	 */
+	public String fechaVenda(Long codVenda, Long pagamentotipo, Double vlprodutos, Double desconto, Double acrescimo,
+			String[] vlParcelas, String[] titulos) {
+
+		if (isFechada(codVenda)) {
+			LOGGER.warn("Tentativa de fechar venda já fechada em contingência. Venda={}", codVenda);
+			throw new VendaException("Venda fechada");
+		}
+
+		if (vlprodutos <= 0) {
+			LOGGER.warn("Tentativa de fechar venda sem valor em contingência. Venda={}", codVenda);
+			throw new VendaException("Venda sem valor, verifique");
+		}
+
+		List<CarrinhoVendaItem> itensCarrinho = carrinhos.retira(codVenda);
+
+		if (codVenda < 0 && itensCarrinho.isEmpty())
+			throw new VendaException("Venda sem produtos, verifique");
+
+		OperacaoContingencia operacao = new OperacaoContingencia(Tipo.VENDA, usuarioAtual.getLogin());
+		operacao.setVenda(codVenda);
+		operacao.setPagamentoTipo(pagamentotipo);
+		operacao.setValorProdutos(vlprodutos);
+		operacao.setDesconto(desconto);
+		operacao.setAcrescimo(acrescimo);
+		operacao.setParcelas(vlParcelas);
+		operacao.setTitulos(titulos);
+
+		Venda local = vendasLocais.get(codVenda);
+		if (local != null) {
+			operacao.setAbertura(local.getData_cadastro().getTime());
+			operacao.setObservacao(local.getObservacao());
+			operacao.setPessoa(local.getPessoa() == null ? null : local.getPessoa().getCodigo());
+		}
+
+		List<ItemContingencia> itens = new ArrayList<>(itensCarrinho.size());
+		for (CarrinhoVendaItem item : itensCarrinho)
+			itens.add(new ItemContingencia(item.getProduto(), item.getQtd(), item.getValorVenda(),
+					item.getValorBalanca()));
+		operacao.setItens(itens);
+
+		try {
+			diario.registra(operacao);
+		} catch (RuntimeException e) {
+			carrinhos.devolve(codVenda, itensCarrinho);
+			throw e;
+		}
+
+		vendasFechadas.add(codVenda);
+		if (local != null)
+			local.setSituacao(VendaSituacao.FECHADA);
+
+		LOGGER.info("Venda {} fechada em contingência com {} itens", codVenda, itens.size());
+		return "Venda finalizada com sucesso";
+	}
+
+	public String lancamento(Long codCaixa, String observacao, Double valor, TipoLancamento tipo,
+			EstiloLancamento estilo) {
+		OperacaoContingencia operacao = new OperacaoContingencia(Tipo.LANCAMENTO_CAIXA, usuarioAtual.getLogin());
+		operacao.setCaixa(codCaixa);
+		operacao.setObservacao(observacao);
+		operacao.setValor(valor);
+		operacao.setTipoLancamento(tipo);
+		operacao.setEstilo(estilo);
+
+		diario.registra(operacao);
+
+		return "Lançamento realizado com sucesso";
+	}
+
+	/*
+	 * As vendas abertas em contingência e não fechadas existem só em memória,
+	 * no encerramento vão para o diário com os itens do carrinho. Este serviço
+	 * é encerrado antes do CarrinhoVendaService, do qual depende
+	 */
+	@PreDestroy
+	public void guardaVendasAbertas() {
+		for (Venda local : vendasLocais.values()) {
+			Long codigo = local.getCodigo();
+			if (isFechada(codigo))
+				continue;
+
+			List<CarrinhoVendaItem> itensCarrinho = carrinhos.retira(codigo);
+
+			OperacaoContingencia operacao = new OperacaoContingencia(Tipo.CARRINHO, null);
+			operacao.setVenda(codigo);
+			operacao.setAbertura(local.getData_cadastro().getTime());
+			operacao.setObservacao(local.getObservacao());
+			operacao.setPessoa(local.getPessoa() == null ? null : local.getPessoa().getCodigo());
+
+			List<ItemContingencia> itens = new ArrayList<>(itensCarrinho.size());
+			for (CarrinhoVendaItem item : itensCarrinho)
+				itens.add(ItemContingencia.doCarrinho(item));
+			operacao.setItens(itens);
+
+			try {
+				diario.registra(operacao);
+				LOGGER.info("Venda {} aberta em contingência guardada no diário com {} itens", codigo, itens.size());
+			} catch (RuntimeException e) {
+				LOGGER.error("Erro ao guardar no diário a venda {} aberta em contingência", codigo, e);
+			}
+		}
+	}
+
+	private void restauraVenda(OperacaoContingencia operacao) {
+		Venda venda = new Venda();
+		venda.setCodigo(operacao.getVenda());
+		venda.setData_cadastro(new Timestamp(operacao.getAbertura()));
+		venda.setSituacao(VendaSituacao.ABERTA);
+		venda.setObservacao(operacao.getObservacao());
+		venda.setValor_produtos(0.00);
+
+		if (operacao.getPessoa() != null) {
+			Pessoa pessoa = new Pessoa();
+			pessoa.setCodigo(operacao.getPessoa());
+			venda.setPessoa(pessoa);
+		}
+
+		vendasLocais.put(venda.getCodigo(), venda);
+
+		List<CarrinhoVendaItem> itens = new ArrayList<>(operacao.getItens().size());
+		long posicao = 0;
+		for (ItemContingencia item : operacao.getItens())
+			itens.add(item.paraCarrinho(--posicao));
+		carrinhos.devolve(venda.getCodigo(), itens);
+
+		LOGGER.info("Venda {} aberta em contingência restaurada do diário com {} itens", venda.getCodigo(),
+				itens.size());
+	}
+
+	/*
+	 * Chamado pela sincronização depois de gravar a venda no banco
+	 */
+	void sincronizada(OperacaoContingencia operacao) {
+		if (operacao.getTipo() != Tipo.VENDA)
+			return;
+
+		vendasFechadas.remove(operacao.getVenda());
+		vendasLocais.remove(operacao.getVenda());
+		vendasLembradas.remove(operacao.getVenda());
+	}
+
+	/*
+	 * Consulta uma lista das telas no banco e guarda o resultado. Sem o banco
+	 * retorna a última lista consultada
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> List<T> referencia(String nome, Supplier<List<T>> consulta) {
+		if (!isAtiva()) {
+			try {
+				List<T> lista = consulta.get();
+				referencias.put(nome, lista);
+				return lista;
+			} catch (RuntimeException e) {
+				if (!registraFalha(e))
+					throw e;
+			}
+		}
+
+		return (List<T>) referencias.getOrDefault(nome, Collections.emptyList());
+	}
+
+	public int qtdPendentes() {
+		return diario.pendentes().size();
+	}
+
+	private boolean isFechada(Long codVenda) {
+		if (vendasFechadas.contains(codVenda))
+			return true;
+
+		Venda local = vendasLocais.get(codVenda);
+		return codVenda < 0 && (local == null || !local.isAberta());
+	}
+
+}
@@ -0,0 +1,183 @@
+package net.originmobi.pdv.service.contingencia;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import net.originmobi.pdv.service.contingencia.OperacaoContingencia.Tipo;
+
+/**
+ * Diário local das operações feitas sem o banco, um arquivo só de acréscimo
+ * com uma operação JSON por linha.
+ *
+ * Cada operação é gravada em disco (force) antes de ser confirmada ao
+ * operador. Quando a sincronização grava operações no banco, os ids delas
+ * são acrescentados em uma linha de confirmação, e o arquivo é zerado quando
+ * não resta nenhuma pendente. Ao iniciar, as operações sem confirmação são
+ * lidas de volta; uma linha incompleta, de uma gravação interrompida, é
+ * descartada do arquivo antes de voltar a acrescentar nele.
+ */
+@Component
+public class DiarioContingencia {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(DiarioContingencia.class);
+
+	private static final String ARQUIVO = "contingencia.jsonl";
+
+	private final ObjectMapper mapper = new ObjectMapper();
+
+	private final Path arquivo;
+	private final FileChannel canal;
+
+	// operações ainda não gravadas no banco, na ordem em que foram feitas
+	private final Map<String, OperacaoContingencia> pendentes = new LinkedHashMap<>();
+
+	public DiarioContingencia(@Value("${pdv.contingencia.diretorio:${user.home}/.pdv}") String diretorio) {
+		try {
+			Path pasta = Paths.get(diretorio);
+			Files.createDirectories(pasta);
+
+			arquivo = pasta.resolve(ARQUIVO);
+			carrega();
+
+			canal = FileChannel.open(arquivo, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+					StandardOpenOption.APPEND);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Erro ao abrir o diário de contingência em " + diretorio, e);
+		}
+
+		if (!pendentes.isEmpty())
+			LOGGER.warn("Diário de contingência com {} operações pendentes de sincronização", pendentes.size());
+	}
+
+	private void carrega() throws IOException {
+		if (!Files.exists(arquivo))
+			return;
+
+		byte[] conteudo = Files.readAllBytes(arquivo);
+		int fim = conteudo.length;
+		while (fim > 0 && conteudo[fim - 1] != '\n')
+			fim--;
+
+		// a linha incompleta sai do arquivo, senão a próxima operação seria
+		// acrescentada na mesma linha e ficaria ilegível também
+		if (fim < conteudo.length) {
+			LOGGER.warn("Diário de contingência com a última linha incompleta, {} bytes descartados",
+					conteudo.length - fim);
+
+			try (FileChannel truncado = FileChannel.open(arquivo, StandardOpenOption.WRITE)) {
+				truncado.truncate(fim);
+				truncado.force(true);
+			}
+		}
+
+		int numero = 0;
+		for (String linha : new String(conteudo, 0, fim, StandardCharsets.UTF_8).split("\n")) {
+			numero++;
+
+			if (linha.trim().isEmpty())
+				continue;
+
+			OperacaoContingencia operacao;
+			try {
+				operacao = mapper.readValue(linha, OperacaoContingencia.class);
+			} catch (IOException e) {
+				LOGGER.warn("Linha {} do diário de contingência ilegível, ignorada", numero, e);
+				continue;
+			}
+
+			if (operacao.getTipo() == Tipo.CONFIRMACAO) {
+				operacao.getConfirmadas().forEach(pendentes::remove);
+			} else {
+				pendentes.put(operacao.getId(), operacao);
+			}
+		}
+	}
+
+	/*
+	 * Grava a operação no diário, retorna somente depois que ela está no disco
+	 */
+	public synchronized void registra(OperacaoContingencia operacao) {
+		if (operacao.getId() == null)
+			operacao.setId(UUID.randomUUID().toString());
+
+		escreve(operacao);
+		pendentes.put(operacao.getId(), operacao);
+	}
+
+	/*
+	 * Marca as operações como gravadas no banco, com uma única escrita
+	 */
+	public synchronized void confirma(Collection<String> ids) {
+		if (ids.isEmpty())
+			return;
+
+		OperacaoContingencia confirmacao = new OperacaoContingencia(Tipo.CONFIRMACAO, null);
+		confirmacao.setConfirmadas(new ArrayList<>(ids));
+		escreve(confirmacao);
+
+		ids.forEach(pendentes::remove);
+
+		if (pendentes.isEmpty()) {
+			try {
+				canal.truncate(0);
+				canal.force(true);
+			} catch (IOException e) {
+				LOGGER.warn("Erro ao limpar o diário de contingência, as confirmações continuam nele", e);
+			}
+		}
+	}
+
+	public synchronized List<OperacaoContingencia> pendentes() {
+		return new ArrayList<>(pendentes.values());
+	}
+
+	public synchronized boolean isVazio() {
+		return pendentes.isEmpty();
+	}
+
+	private void escreve(OperacaoContingencia operacao) {
+		try {
+			byte[] linha = (mapper.writeValueAsString(operacao) + "\n").getBytes(StandardCharsets.UTF_8);
+			ByteBuffer buffer = ByteBuffer.wrap(linha);
+
+			while (buffer.hasRemaining())
+				canal.write(buffer);
+
+			canal.force(false);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Erro ao gravar no diário de contingência " + arquivo, e);
+		}
+	}
+
+	@PreDestroy
+	public synchronized void fecha() {
+		try {
+			canal.close();
+		} catch (IOException e) {
+			LOGGER.warn("Erro ao fechar o diário de contingência", e);
+		}
+	}
+
+}
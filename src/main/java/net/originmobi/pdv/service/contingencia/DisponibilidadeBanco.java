@@ -0,0 +1,90 @@
+package net.originmobi.pdv.service.contingencia;
+
+import java.net.ConnectException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLTransientConnectionException;
+
+import org.hibernate.exception.JDBCConnectionException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.CannotCreateTransactionException;
+
+/**
+ * Situação da conexão com o banco. Passa a indisponível quando uma
+ * operação falha por falta de conexão ou quando a verificação periódica
+ * falha, e volta a disponível na primeira verificação bem sucedida.
+ */
+@Component
+public class DisponibilidadeBanco {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(DisponibilidadeBanco.class);
+
+	private final JdbcTemplate jdbc;
+
+	private volatile boolean disponivel = true;
+
+	public DisponibilidadeBanco(JdbcTemplate jdbc) {
+		this.jdbc = jdbc;
+	}
+
+	public boolean isDisponivel() {
+		return disponivel;
+	}
+
+	@Scheduled(fixedDelayString = "${pdv.contingencia.intervalo-verificacao:10000}")
+	public boolean verifica() {
+		try {
+			jdbc.queryForObject("select 1", Integer.class);
+		} catch (DataAccessException e) {
+			if (disponivel)
+				LOGGER.warn("Banco indisponível, operando em contingência: {}", e.getMessage());
+
+			disponivel = false;
+			return false;
+		}
+
+		if (!disponivel)
+			LOGGER.info("Banco disponível novamente");
+
+		disponivel = true;
+		return true;
+	}
+
+	/*
+	 * Marca o banco como indisponível se a falha for de conexão. Retorna se
+	 * era, para que quem chamou repita a operação em contingência
+	 */
+	public boolean registraFalha(Throwable falha) {
+		if (!isFalhaDeConexao(falha))
+			return false;
+
+		if (disponivel)
+			LOGGER.warn("Banco indisponível, operando em contingência: {}", falha.getMessage());
+
+		disponivel = false;
+		return true;
+	}
+
+	public static boolean isFalhaDeConexao(Throwable falha) {
+		for (Throwable causa = falha; causa != null; causa = causa.getCause()) {
+			if (causa instanceof CannotCreateTransactionException
+					|| causa instanceof DataAccessResourceFailureException
+					|| causa instanceof JDBCConnectionException
+					|| causa instanceof SQLTransientConnectionException
+					|| causa instanceof SQLNonTransientConnectionException
+					|| causa instanceof ConnectException)
+				return true;
+
+			if (causa.getCause() == causa)
+				break;
+		}
+
+		return false;
+	}
+
+}
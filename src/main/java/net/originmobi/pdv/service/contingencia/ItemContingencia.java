@@ -0,0 +1,100 @@
+package net.originmobi.pdv.service.contingencia;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import net.originmobi.pdv.enumerado.produto.ProdutoBalanca;
+import net.originmobi.pdv.model.VendaProduto;
+import net.originmobi.pdv.service.venda.CarrinhoVendaItem;
+
+/**
+ * Item de uma venda fechada em contingência, com o preço do catálogo no
+ * momento da venda. O item do carrinho de uma venda ainda aberta leva também
+ * a descrição e se é de balança, para voltar ao carrinho como estava.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ItemContingencia {
+
+	private Long produto;
+	private Integer qtd;
+	private Double valorUnitario;
+	private Double valorBalanca;
+
+	// item do carrinho
+	private String descricao;
+	private ProdutoBalanca balanca;
+
+	public ItemContingencia() {
+	}
+
+	public ItemContingencia(Long produto, Integer qtd, Double valorUnitario, Double valorBalanca) {
+		this.produto = produto;
+		this.qtd = qtd;
+		this.valorUnitario = valorUnitario;
+		this.valorBalanca = valorBalanca;
+	}
+
+	public static ItemContingencia doCarrinho(CarrinhoVendaItem item) {
+		ItemContingencia itemCarrinho = new ItemContingencia(item.getProduto(), item.getQtd(), item.getValorVenda(),
+				item.getValorBalanca());
+		itemCarrinho.setDescricao(item.getDescricao());
+		itemCarrinho.setBalanca(item.getBalanca());
+		return itemCarrinho;
+	}
+
+	public VendaProduto paraVendaProduto(Long venda) {
+		return new VendaProduto(produto, venda, valorBalanca, qtd, valorUnitario);
+	}
+
+	public CarrinhoVendaItem paraCarrinho(Long posicao) {
+		return new CarrinhoVendaItem(posicao, produto, descricao, valorUnitario, balanca, valorBalanca, qtd);
+	}
+
+	public Long getProduto() {
+		return produto;
+	}
+
+	public void setProduto(Long produto) {
+		this.produto = produto;
+	}
+
+	public Integer getQtd() {
+		return qtd;
+	}
+
+	public void setQtd(Integer qtd) {
+		this.qtd = qtd;
+	}
+
+	public Double getValorUnitario() {
+		return valorUnitario;
+	}
+
+	public void setValorUnitario(Double valorUnitario) {
+		this.valorUnitario = valorUnitario;
+	}
+
+	public Double getValorBalanca() {
+		return valorBalanca;
+	}
+
+	public void setValorBalanca(Double valorBalanca) {
+		this.valorBalanca = valorBalanca;
+	}
+
+	public String getDescricao() {
+		return descricao;
+	}
+
+	public void setDescricao(String descricao) {
+		this.descricao = descricao;
+	}
+
+	public ProdutoBalanca getBalanca() {
+		return balanca;
+	}
+
+	public void setBalanca(ProdutoBalanca balanca) {
+		this.balanca = balanca;
+	}
+
+}
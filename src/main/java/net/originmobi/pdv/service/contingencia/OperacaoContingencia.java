@@ -0,0 +1,225 @@
+package net.originmobi.pdv.service.contingencia;
+
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import net.originmobi.pdv.enumerado.caixa.EstiloLancamento;
+import net.originmobi.pdv.enumerado.caixa.TipoLancamento;
+
+/**
+ * Registro do diário de contingência, gravado como uma linha JSON.
+ *
+ * Uma venda fechada sem o banco leva os dados da abertura, os itens e o
+ * pagamento para ser gravada de uma vez na sincronização. O lançamento de
+ * caixa leva o caixa, o valor, o tipo e o estilo. O carrinho é uma venda
+ * aberta em contingência e ainda não fechada quando o terminal foi
+ * encerrado, com os dados da abertura e os itens, e volta aberta ao iniciar.
+ * A confirmação lista os ids das operações já gravadas no banco.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class OperacaoContingencia {
+
+	public enum Tipo {
+		VENDA, LANCAMENTO_CAIXA, CARRINHO, CONFIRMACAO
+	}
+
+	private String id;
+	private Tipo tipo;
+	private Long data;
+	private String usuario;
+
+	// venda e carrinho
+	private Long venda;
+	private Long abertura;
+	private Long pessoa;
+	private String observacao;
+	private List<ItemContingencia> itens;
+	private Long pagamentoTipo;
+	private Double valorProdutos;
+	private Double desconto;
+	private Double acrescimo;
+	private String[] parcelas;
+	private String[] titulos;
+
+	// lançamento de caixa, a observação é a mesma da venda
+	private Long caixa;
+	private Double valor;
+	private TipoLancamento tipoLancamento;
+	private EstiloLancamento estilo;
+
+	// confirmação
+	private List<String> confirmadas;
+
+	public OperacaoContingencia() {
+	}
+
+	public OperacaoContingencia(Tipo tipo, String usuario) {
+		this.tipo = tipo;
+		this.usuario = usuario;
+		this.data = System.currentTimeMillis();
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public void setId(String id) {
+		this.id = id;
+	}
+
+	public Tipo getTipo() {
+		return tipo;
+	}
+
+	public void setTipo(Tipo tipo) {
+		this.tipo = tipo;
+	}
+
+	public Long getData() {
+		return data;
+	}
+
+	public void setData(Long data) {
+		this.data = data;
+	}
+
+	public String getUsuario() {
+		return usuario;
+	}
+
+	public void setUsuario(String usuario) {
+		this.usuario = usuario;
+	}
+
+	public Long getVenda() {
+		return venda;
+	}
+
+	public void setVenda(Long venda) {
+		this.venda = venda;
+	}
+
+	public Long getAbertura() {
+		return abertura;
+	}
+
+	public void setAbertura(Long abertura) {
+		this.abertura = abertura;
+	}
+
+	public Long getPessoa() {
+		return pessoa;
+	}
+
+	public void setPessoa(Long pessoa) {
+		this.pessoa = pessoa;
+	}
+
+	public String getObservacao() {
+		return observacao;
+	}
+
+	public void setObservacao(String observacao) {
+		this.observacao = observacao;
+	}
+
+	public List<ItemContingencia> getItens() {
+		return itens;
+	}
+
+	public void setItens(List<ItemContingencia> itens) {
+		this.itens = itens;
+	}
+
+	public Long getPagamentoTipo() {
+		return pagamentoTipo;
+	}
+
+	public void setPagamentoTipo(Long pagamentoTipo) {
+		this.pagamentoTipo = pagamentoTipo;
+	}
+
+	public Double getValorProdutos() {
+		return valorProdutos;
+	}
+
+	public void setValorProdutos(Double valorProdutos) {
+		this.valorProdutos = valorProdutos;
+	}
+
+	public Double getDesconto() {
+		return desconto;
+	}
+
+	public void setDesconto(Double desconto) {
+		this.desconto = desconto;
+	}
+
+	public Double getAcrescimo() {
+		return acrescimo;
+	}
+
+	public void setAcrescimo(Double acrescimo) {
+		this.acrescimo = acrescimo;
+	}
+
+	public String[] getParcelas() {
+		return parcelas;
+	}
+
+	public void setParcelas(String[] parcelas) {
+		this.parcelas = parcelas;
+	}
+
+	public String[] getTitulos() {
+		return titulos;
+	}
+
+	public void setTitulos(String[] titulos) {
+		this.titulos = titulos;
+	}
+
+	public Long getCaixa() {
+		return caixa;
+	}
+
+	public void setCaixa(Long caixa) {
+		this.caixa = caixa;
+	}
+
+	public Double getValor() {
+		return valor;
+	}
+
+	public void setValor(Double valor) {
+		this.valor = valor;
+	}
+
+	public TipoLancamento getTipoLancamento() {
+		return tipoLancamento;
+	}
+
+	public void setTipoLancamento(TipoLancamento tipoLancamento) {
+		this.tipoLancamento = tipoLancamento;
+	}
+
+	public EstiloLancamento getEstilo() {
+		return estilo;
+	}
+
+	public void setEstilo(EstiloLancamento estilo) {
+		this.estilo = estilo;
+	}
+
+	public List<String> getConfirmadas() {
+		return confirmadas;
+	}
+
+	public void setConfirmadas(List<String> confirmadas) {
+		this.confirmadas = confirmadas;
+	}
+
+}
@@ -0,0 +1,248 @@
+package net.originmobi.pdv.service.contingencia;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import net.originmobi.pdv.enumerado.VendaSituacao;
+import net.originmobi.pdv.model.Caixa;
+import net.originmobi.pdv.model.CaixaLancamento;
+import net.originmobi.pdv.model.Venda;
+import net.originmobi.pdv.model.VendaProduto;
+import net.originmobi.pdv.repository.VendaRepository;
+import net.originmobi.pdv.service.CaixaLancamentoService;
+import net.originmobi.pdv.service.CaixaService;
+import net.originmobi.pdv.service.PessoaService;
+import net.originmobi.pdv.service.UsuarioService;
+import net.originmobi.pdv.service.VendaProdutoService;
+import net.originmobi.pdv.service.VendaService;
+import net.originmobi.pdv.service.contingencia.OperacaoContingencia.Tipo;
+import net.originmobi.pdv.service.painel.ContadoresPainel;
+
+/**
+ * Grava no banco as operações do diário de contingência quando ele volta.
+ *
+ * As operações são lidas na ordem em que foram feitas e gravadas em lotes:
+ * cada operação tem a própria transação e as gravadas em um lote são
+ * confirmadas no diário com uma única escrita. O id de cada operação é
+ * gravado em contingencia_operacao na mesma transação, de forma que uma
+ * operação gravada e não confirmada, por uma queda entre o commit e a
+ * confirmação, não é aplicada de novo.
+ *
+ * Uma operação recusada pelo banco, como a venda de um produto que ficou sem
+ * estoque, é um conflito: continua pendente no diário, é exibida na situação
+ * da contingência e é tentada de novo a cada sincronização, sem impedir as
+ * demais. Se a conexão cair durante a sincronização ela para e continua na
+ * próxima.
+ */
+@Service
+public class SincronizacaoContingencia {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(SincronizacaoContingencia.class);
+
+	private static final String LANCAMENTO_REALIZADO = "Lançamento realizado com sucesso";
+
+	private final DiarioContingencia diario;
+	private final DisponibilidadeBanco banco;
+	private final ContingenciaService contingencia;
+	private final VendaService vendaService;
+	private final VendaRepository vendas;
+	private final VendaProdutoService vendaProdutos;
+	private final PessoaService pessoas;
+	private final UsuarioService usuarios;
+	private final CaixaService caixas;
+	private final CaixaLancamentoService lancamentos;
+	private final ContadoresPainel painel;
+	private final JdbcTemplate jdbc;
+	private final TransactionTemplate transacao;
+	private final boolean habilitada;
+	private final int tamanhoLote;
+
+	// motivo do último conflito de cada operação pendente
+	private final Map<String, String> conflitos = new ConcurrentHashMap<>();
+
+	public SincronizacaoContingencia(DiarioContingencia diario, DisponibilidadeBanco banco,
+			ContingenciaService contingencia, VendaService vendaService, VendaRepository vendas,
+			VendaProdutoService vendaProdutos, PessoaService pessoas, UsuarioService usuarios, CaixaService caixas,
+			CaixaLancamentoService lancamentos, ContadoresPainel painel, JdbcTemplate jdbc,
+			PlatformTransactionManager transactionManager,
+			@Value("${pdv.contingencia.habilitada:true}") boolean habilitada,
+			@Value("${pdv.contingencia.tamanho-lote:50}") int tamanhoLote) {
+		this.diario = diario;
+		this.banco = banco;
+		this.contingencia = contingencia;
+		this.vendaService = vendaService;
+		this.vendas = vendas;
+		this.vendaProdutos = vendaProdutos;
+		this.pessoas = pessoas;
+		this.usuarios = usuarios;
+		this.caixas = caixas;
+		this.lancamentos = lancamentos;
+		this.painel = painel;
+		this.jdbc = jdbc;
+		this.transacao = new TransactionTemplate(transactionManager);
+		this.habilitada = habilitada;
+		this.tamanhoLote = Math.max(tamanhoLote, 1);
+	}
+
+	/*
+	 * Retorna a quantidade de operações gravadas no banco
+	 */
+	@Scheduled(fixedDelayString = "${pdv.contingencia.intervalo-verificacao:10000}")
+	public synchronized int sincroniza() {
+		if (!habilitada || diario.isVazio() || !banco.verifica())
+			return 0;
+
+		List<OperacaoContingencia> pendentes = diario.pendentes();
+		int gravadas = 0;
+
+		for (int inicio = 0; inicio < pendentes.size(); inicio += tamanhoLote) {
+			List<OperacaoContingencia> lote = pendentes.subList(inicio,
+					Math.min(inicio + tamanhoLote, pendentes.size()));
+			List<OperacaoContingencia> confirmadas = new ArrayList<>(lote.size());
+			boolean interrompida = false;
+
+			for (OperacaoContingencia operacao : lote) {
+				// venda ainda aberta, volta para o carrinho quando o terminal inicia
+				if (operacao.getTipo() == Tipo.CARRINHO)
+					continue;
+
+				try {
+					aplica(operacao);
+					confirmadas.add(operacao);
+					conflitos.remove(operacao.getId());
+				} catch (RuntimeException e) {
+					if (banco.registraFalha(e)) {
+						interrompida = true;
+						break;
+					}
+
+					LOGGER.warn("Conflito ao sincronizar a operação {} ({}): {}", operacao.getId(),
+							operacao.getTipo(), e.getMessage());
+					conflitos.put(operacao.getId(), e.getMessage() == null ? e.toString() : e.getMessage());
+				}
+			}
+
+			List<String> ids = new ArrayList<>(confirmadas.size());
+			for (OperacaoContingencia operacao : confirmadas)
+				ids.add(operacao.getId());
+
+			diario.confirma(ids);
+			confirmadas.forEach(contingencia::sincronizada);
+			gravadas += confirmadas.size();
+
+			if (interrompida) {
+				LOGGER.warn("Banco indisponível durante a sincronização, {} operações gravadas até aqui", gravadas);
+				break;
+			}
+		}
+
+		if (gravadas > 0)
+			LOGGER.info("Sincronização da contingência gravou {} operações, {} pendentes", gravadas,
+					diario.pendentes().size());
+
+		return gravadas;
+	}
+
+	public Map<String, String> conflitos() {
+		return Collections.unmodifiableMap(conflitos);
+	}
+
+	/*
+	 * Grava a operação em nome do usuário que a fez
+	 */
+	private void aplica(OperacaoContingencia operacao) {
+		SecurityContext anterior = SecurityContextHolder.getContext();
+		SecurityContext contexto = SecurityContextHolder.createEmptyContext();
+		contexto.setAuthentication(
+				new UsernamePasswordAuthenticationToken(operacao.getUsuario(), null, Collections.emptyList()));
+		SecurityContextHolder.setContext(contexto);
+
+		try {
+			transacao.execute(status -> {
+				if (isGravada(operacao.getId())) {
+					LOGGER.info("Operação {} já estava gravada no banco", operacao.getId());
+					return null;
+				}
+
+				if (operacao.getTipo() == Tipo.VENDA)
+					gravaVenda(operacao);
+				else
+					gravaLancamento(operacao);
+
+				jdbc.update("insert into contingencia_operacao (id, data_sincronizacao) values (?, ?)",
+						operacao.getId(), new Timestamp(System.currentTimeMillis()));
+				return null;
+			});
+		} finally {
+			SecurityContextHolder.setContext(anterior);
+		}
+	}
+
+	private boolean isGravada(String id) {
+		Integer qtd = jdbc.queryForObject("select count(*) from contingencia_operacao where id = ?", Integer.class,
+				id);
+		return qtd != null && qtd > 0;
+	}
+
+	private void gravaVenda(OperacaoContingencia operacao) {
+		Long codigo = operacao.getVenda();
+
+		// venda aberta em contingência, criada agora com os dados da abertura
+		if (codigo < 0) {
+			Venda venda = new Venda();
+			venda.setData_cadastro(new Timestamp(operacao.getAbertura()));
+			venda.setSituacao(VendaSituacao.ABERTA);
+			venda.setUsuario(usuarios.buscaUsuario(operacao.getUsuario()));
+			venda.setObservacao(operacao.getObservacao());
+			venda.setValor_produtos(0.00);
+
+			if (operacao.getPessoa() != null)
+				venda.setPessoa(pessoas.buscaPessoa(operacao.getPessoa()).orElse(null));
+
+			vendas.save(venda);
+			painel.vendaAberta();
+			codigo = venda.getCodigo();
+		}
+
+		List<VendaProduto> itens = new ArrayList<>(operacao.getItens().size());
+		for (ItemContingencia item : operacao.getItens())
+			itens.add(item.paraVendaProduto(codigo));
+
+		vendaProdutos.salvarLote(itens);
+
+		vendaService.fechaVendaBanco(codigo, operacao.getPagamentoTipo(), operacao.getValorProdutos(),
+				operacao.getDesconto(), operacao.getAcrescimo(), operacao.getParcelas(), operacao.getTitulos());
+	}
+
+	private void gravaLancamento(OperacaoContingencia operacao) {
+		Caixa caixa = caixas.busca(operacao.getCaixa())
+				.orElseThrow(() -> new IllegalStateException("Caixa " + operacao.getCaixa() + " não encontrado"));
+
+		CaixaLancamento lancamento = new CaixaLancamento(operacao.getObservacao(), operacao.getValor(),
+				operacao.getTipoLancamento(), operacao.getEstilo(), caixa,
+				usuarios.buscaUsuario(operacao.getUsuario()));
+
+		String retorno = lancamentos.lancamento(lancamento);
+
+		// recusado sem gravar nada, a exceção desfaz o registro da operação
+		if (!LANCAMENTO_REALIZADO.equals(retorno))
+			throw new IllegalStateException(retorno);
+	}
+
+}
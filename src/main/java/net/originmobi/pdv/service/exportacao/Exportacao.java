@@ -0,0 +1,105 @@
+package net.originmobi.pdv.service.exportacao;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Consultas das exportações para a contabilidade, com a coluna usada no
+ * filtro de período e as condições de cada situação aceita no filtro. Os
+ * nomes das colunas exportadas são os apelidos da consulta.
+ */
+public enum Exportacao {
+
+	VENDAS("vendas", "select v.codigo as venda, v.data_cadastro as data, v.situacao, pes.nome as cliente, "
+			+ "v.valor_produtos, v.valor_desconto, v.valor_acrescimo, v.valor_total, "
+			+ "vp.produto_codigo as produto, p.descricao, vp.qtd as quantidade, "
+			+ "coalesce(vp.valor_unitario, p.valor_venda) as valor_unitario, vp.valor_balanca "
+			+ "from venda v "
+			+ "left join pessoa pes on pes.codigo = v.pessoa_codigo "
+			+ "left join venda_produtos vp on vp.venda_codigo = v.codigo "
+			+ "left join produto p on p.codigo = vp.produto_codigo",
+			"v.data_cadastro", "v.codigo, vp.codigo",
+			situacoes("ABERTA", "v.situacao = 'ABERTA'", "FECHADA", "v.situacao = 'FECHADA'",
+					"CANCELADA", "v.situacao = 'CANCELADA'")),
+
+	LANCAMENTOS_CAIXA("lancamentos-caixa", "select cl.codigo as lancamento, cl.data_cadastro as data, "
+			+ "cl.caixa_codigo as caixa, c.descricao as descricao_caixa, cl.estilo, cl.tipo, cl.valor, "
+			+ "cl.observacao, u.user as usuario "
+			+ "from caixa_lancamento cl "
+			+ "inner join caixa c on c.codigo = cl.caixa_codigo "
+			+ "left join usuario u on u.codigo = cl.usuario_codigo",
+			"cl.data_cadastro", "cl.codigo",
+			situacoes("ENTRADA", "cl.estilo = 'ENTRADA'", "SAIDA", "cl.estilo = 'SAIDA'")),
+
+	PARCELAS_RECEBER("parcelas-receber", "select pa.codigo as parcela, pa.receber_codigo as titulo, "
+			+ "r.venda_codigo as venda, pes.nome as cliente, pa.sequencia, pa.data_cadastro, pa.data_vencimento, "
+			+ "pa.data_pagamento, pa.valor_total, pa.valor_desconto, pa.valor_acrescimo, pa.valor_recebido, "
+			+ "pa.valor_restante, case when pa.quitado = 1 then 'QUITADA' else 'ABERTA' end as situacao "
+			+ "from parcela pa "
+			+ "inner join receber r on r.codigo = pa.receber_codigo "
+			+ "left join pessoa pes on pes.codigo = r.pessoa_codigo",
+			"pa.data_vencimento", "pa.data_vencimento, pa.codigo",
+			situacoes("ABERTA", "coalesce(pa.quitado, 0) <> 1", "QUITADA", "pa.quitado = 1")),
+
+	PARCELAS_PAGAR("parcelas-pagar", "select pp.codigo as parcela, pp.pagar_codigo as titulo, "
+			+ "f.nome as fornecedor, pg.observacao, pp.data_cadastro, pp.data_vencimento, pp.data_pagamento, "
+			+ "pp.valor_total, pp.valor_desconto, pp.valor_acrescimo, pp.valor_pago, pp.valor_restante, "
+			+ "case when pp.quitado = 1 then 'QUITADA' else 'ABERTA' end as situacao "
+			+ "from parcela_pagar pp "
+			+ "inner join pagar pg on pg.codigo = pp.pagar_codigo "
+			+ "left join fornecedor f on f.codigo = pg.fornecedor_codigo",
+			"pp.data_vencimento", "pp.data_vencimento, pp.codigo",
+			situacoes("ABERTA", "coalesce(pp.quitado, 0) <> 1", "QUITADA", "pp.quitado = 1"));
+
+	private final String nome;
+	private final String consulta;
+	private final String colunaData;
+	private final String ordem;
+	private final Map<String, String> situacoes;
+
+	private Exportacao(String nome, String consulta, String colunaData, String ordem, Map<String, String> situacoes) {
+		this.nome = nome;
+		this.consulta = consulta;
+		this.colunaData = colunaData;
+		this.ordem = ordem;
+		this.situacoes = situacoes;
+	}
+
+	public static Optional<Exportacao> doNome(String nome) {
+		return Arrays.stream(values()).filter(exportacao -> exportacao.nome.equals(nome)).findFirst();
+	}
+
+	public String getNome() {
+		return nome;
+	}
+
+	String getConsulta() {
+		return consulta;
+	}
+
+	String getColunaData() {
+		return colunaData;
+	}
+
+	String getOrdem() {
+		return ordem;
+	}
+
+	/*
+	 * Condição da situação na consulta, vazia para uma situação desconhecida
+	 */
+	Optional<String> condicao(String situacao) {
+		return Optional.ofNullable(situacoes.get(situacao.toUpperCase()));
+	}
+
+	private static Map<String, String> situacoes(String... situacaoCondicao) {
+		Map<String, String> situacoes = new LinkedHashMap<>();
+		for (int i = 0; i < situacaoCondicao.length; i += 2)
+			situacoes.put(situacaoCondicao[i], situacaoCondicao[i + 1]);
+
+		return situacoes;
+	}
+
+}
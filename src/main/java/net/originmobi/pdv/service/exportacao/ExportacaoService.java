@@ -0,0 +1,153 @@
+package net.originmobi.pdv.service.exportacao;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+/**
+ * Exportações para a contabilidade, lidas do banco e escritas na saída linha
+ * a linha.
+ *
+ * A consulta é lida com um cursor só para frente, que no MySQL traz as
+ * linhas do servidor conforme são lidas em vez de carregar o resultado
+ * inteiro, e nenhuma entidade é criada. A memória usada é a mesma para um
+ * dia ou para um ano de movimento.
+ */
+@Service
+public class ExportacaoService {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(ExportacaoService.class);
+
+	// no driver do MySQL, faz o resultado vir do servidor linha a linha
+	static final int LINHA_A_LINHA = Integer.MIN_VALUE;
+
+	private final JdbcTemplate jdbc;
+
+	public ExportacaoService(DataSource dataSource) {
+		this.jdbc = new JdbcTemplate(dataSource);
+		this.jdbc.setFetchSize(LINHA_A_LINHA);
+	}
+
+	/*
+	 * Monta a consulta com os filtros, recusando uma situação que a exportação
+	 * não tem ou um período invertido
+	 */
+	public Consulta consulta(Exportacao exportacao, LocalDate inicio, LocalDate fim, String situacao) {
+		if (inicio != null && fim != null && fim.isBefore(inicio))
+			throw new IllegalArgumentException("A data final é anterior à data inicial");
+
+		StringBuilder sql = new StringBuilder(exportacao.getConsulta()).append(" where 1 = 1");
+		List<Object> argumentos = new ArrayList<>();
+
+		if (inicio != null) {
+			sql.append(" and ").append(exportacao.getColunaData()).append(" >= ?");
+			argumentos.add(Date.valueOf(inicio));
+		}
+
+		// o dia final inteiro, também para as colunas com horário
+		if (fim != null) {
+			sql.append(" and ").append(exportacao.getColunaData()).append(" < ?");
+			argumentos.add(Date.valueOf(fim.plusDays(1)));
+		}
+
+		if (situacao != null && !situacao.trim().isEmpty()) {
+			String condicao = exportacao.condicao(situacao.trim()).orElseThrow(
+					() -> new IllegalArgumentException("Situação " + situacao + " inválida para " + exportacao.getNome()));
+			sql.append(" and ").append(condicao);
+		}
+
+		sql.append(" order by ").append(exportacao.getOrdem());
+
+		return new Consulta(exportacao, sql.toString(), argumentos.toArray());
+	}
+
+	/*
+	 * Escreve o resultado da consulta na saída, devolvendo o número de linhas
+	 */
+	public long exporta(Consulta consulta, FormatoExportacao formato, OutputStream saida) throws IOException {
+		long inicio = System.currentTimeMillis();
+		long linhas;
+
+		try (Planilha planilha = formato.abre(saida)) {
+			linhas = jdbc.query(consulta.sql, consulta.argumentos, resultado -> {
+				try {
+					return escreve(resultado, planilha);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+
+		LOGGER.info("Exportação de {} com {} linhas em {} ms", consulta.exportacao.getNome(), linhas,
+				System.currentTimeMillis() - inicio);
+
+		return linhas;
+	}
+
+	private static long escreve(ResultSet resultado, Planilha planilha) throws SQLException, IOException {
+		ResultSetMetaData colunas = resultado.getMetaData();
+
+		String[] nomes = new String[colunas.getColumnCount()];
+		for (int i = 0; i < nomes.length; i++)
+			nomes[i] = colunas.getColumnLabel(i + 1);
+
+		planilha.cabecalho(nomes);
+
+		// o mesmo vetor para todas as linhas, a planilha não o guarda
+		Object[] valores = new Object[nomes.length];
+		long linhas = 0;
+
+		while (resultado.next()) {
+			for (int i = 0; i < valores.length; i++)
+				valores[i] = resultado.getObject(i + 1);
+
+			planilha.linha(valores);
+			linhas++;
+		}
+
+		return linhas;
+	}
+
+	public static class Consulta {
+
+		private final Exportacao exportacao;
+		private final String sql;
+		private final Object[] argumentos;
+
+		Consulta(Exportacao exportacao, String sql, Object[] argumentos) {
+			this.exportacao = exportacao;
+			this.sql = sql;
+			this.argumentos = argumentos;
+		}
+
+		public Exportacao getExportacao() {
+			return exportacao;
+		}
+
+		public String getSql() {
+			return sql;
+		}
+
+		public Object[] getArgumentos() {
+			return argumentos.clone();
+		}
+
+	}
+
+}
@@ -0,0 +1,33 @@
+package net.originmobi.pdv.service.exportacao;
+
+import java.io.OutputStream;
+import java.util.function.Function;
+
+public enum FormatoExportacao {
+
+	CSV("text/csv; charset=UTF-8", "csv", PlanilhaCsv::new),
+	XLSX("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet", "xlsx", PlanilhaXlsx::new);
+
+	private final String tipoConteudo;
+	private final String extensao;
+	private final Function<OutputStream, Planilha> abertura;
+
+	private FormatoExportacao(String tipoConteudo, String extensao, Function<OutputStream, Planilha> abertura) {
+		this.tipoConteudo = tipoConteudo;
+		this.extensao = extensao;
+		this.abertura = abertura;
+	}
+
+	public String getTipoConteudo() {
+		return tipoConteudo;
+	}
+
+	public String getExtensao() {
+		return extensao;
+	}
+
+	Planilha abre(OutputStream saida) {
+		return abertura.apply(saida);
+	}
+
+}
@@ -0,0 +1,15 @@
+package net.originmobi.pdv.service.exportacao;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Saída de uma exportação, escrita linha a linha sem guardar as anteriores
+ */
+public interface Planilha extends Closeable {
+
+	void cabecalho(String[] colunas) throws IOException;
+
+	void linha(Object[] valores) throws IOException;
+
+}
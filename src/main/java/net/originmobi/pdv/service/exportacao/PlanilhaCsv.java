@@ -0,0 +1,98 @@
+package net.originmobi.pdv.service.exportacao;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Date;
+
+/**
+ * CSV no formato aberto direto pelo Excel em português: separado por ponto e
+ * vírgula, com vírgula decimal e UTF-8 marcado no início do arquivo.
+ */
+public class PlanilhaCsv implements Planilha {
+
+	private static final char SEPARADOR = ';';
+
+	private static final DateTimeFormatter DATA = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+	private static final DateTimeFormatter DATA_HORA = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss");
+
+	private final Writer saida;
+
+	public PlanilhaCsv(OutputStream saida) {
+		this.saida = new BufferedWriter(new OutputStreamWriter(saida, StandardCharsets.UTF_8));
+	}
+
+	@Override
+	public void cabecalho(String[] colunas) throws IOException {
+		// marca de UTF-8, sem ela o Excel abre o arquivo como Latin-1
+		saida.write('\uFEFF');
+		linha(colunas);
+	}
+
+	@Override
+	public void linha(Object[] valores) throws IOException {
+		for (int i = 0; i < valores.length; i++) {
+			if (i > 0)
+				saida.write(SEPARADOR);
+
+			escreve(texto(valores[i]));
+		}
+
+		saida.write("\r\n");
+	}
+
+	@Override
+	public void close() throws IOException {
+		saida.close();
+	}
+
+	private void escreve(String valor) throws IOException {
+		if (valor.indexOf(SEPARADOR) < 0 && valor.indexOf('"') < 0 && valor.indexOf('\n') < 0
+				&& valor.indexOf('\r') < 0) {
+			saida.write(valor);
+			return;
+		}
+
+		saida.write('"');
+		saida.write(valor.replace("\"", "\"\""));
+		saida.write('"');
+	}
+
+	private static String texto(Object valor) {
+		if (valor == null)
+			return "";
+
+		if (valor instanceof Double || valor instanceof Float)
+			return BigDecimal.valueOf(((Number) valor).doubleValue()).stripTrailingZeros().toPlainString()
+					.replace('.', ',');
+
+		if (valor instanceof BigDecimal)
+			return ((BigDecimal) valor).toPlainString().replace('.', ',');
+
+		if (valor instanceof java.sql.Date)
+			return ((java.sql.Date) valor).toLocalDate().format(DATA);
+
+		if (valor instanceof LocalDate)
+			return ((LocalDate) valor).format(DATA);
+
+		if (valor instanceof Timestamp)
+			return ((Timestamp) valor).toLocalDateTime().format(DATA_HORA);
+
+		if (valor instanceof LocalDateTime)
+			return ((LocalDateTime) valor).format(DATA_HORA);
+
+		if (valor instanceof Date)
+			return new Timestamp(((Date) valor).getTime()).toLocalDateTime().format(DATA_HORA);
+
+		return valor.toString();
+	}
+
+}
@@ -0,0 +1,257 @@
+package net.originmobi.pdv.service.exportacao;
+
+import java.io.BufferedWriter;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Date;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Planilha do Excel escrita direto no zip de saída, linha a linha.
+ *
+ * Só as partes mínimas do formato são geradas: as abas com os valores em
+ * linha, sem tabela de textos compartilhados, e um estilo para datas. Ao
+ * passar do limite de linhas de uma aba, continua em uma nova. A lista de
+ * abas vai no final do arquivo, quando já se sabe quantas foram.
+ */
+public class PlanilhaXlsx implements Planilha {
+
+	static final int MAX_LINHAS_ABA = 1_048_576;
+
+	private static final LocalDateTime INICIO_DATAS = LocalDateTime.of(1899, 12, 30, 0, 0);
+	private static final double MILISSEGUNDOS_DIA = 86_400_000d;
+
+	// estilos em styles.xml
+	private static final int ESTILO_DATA = 1;
+	private static final int ESTILO_DATA_HORA = 2;
+
+	private final ZipOutputStream zip;
+	private final Writer xml;
+
+	private String[] cabecalho;
+	private int abas;
+	private int linhas;
+
+	public PlanilhaXlsx(OutputStream saida) {
+		this.zip = new ZipOutputStream(saida, StandardCharsets.UTF_8);
+
+		// quem fecha o zip é o close da planilha, não o de cada parte
+		this.xml = new BufferedWriter(new OutputStreamWriter(new FilterOutputStream(zip) {
+			@Override
+			public void write(byte[] b, int inicio, int tamanho) throws IOException {
+				out.write(b, inicio, tamanho);
+			}
+
+			@Override
+			public void close() {
+			}
+		}, StandardCharsets.UTF_8));
+	}
+
+	@Override
+	public void cabecalho(String[] colunas) throws IOException {
+		this.cabecalho = colunas.clone();
+		novaAba();
+	}
+
+	@Override
+	public void linha(Object[] valores) throws IOException {
+		if (abas == 0)
+			novaAba();
+		else if (linhas == MAX_LINHAS_ABA) {
+			fechaAba();
+			novaAba();
+		}
+
+		escreveLinha(valores);
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (abas == 0)
+			novaAba();
+
+		fechaAba();
+
+		parte("[Content_Types].xml", tiposConteudo());
+		parte("_rels/.rels", "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>"
+				+ "<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">"
+				+ "<Relationship Id=\"rId1\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/officeDocument\" Target=\"xl/workbook.xml\"/>"
+				+ "</Relationships>");
+		parte("xl/workbook.xml", pastaTrabalho());
+		parte("xl/_rels/workbook.xml.rels", relacoesPastaTrabalho());
+		parte("xl/styles.xml", "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>"
+				+ "<styleSheet xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\">"
+				+ "<numFmts count=\"2\"><numFmt numFmtId=\"164\" formatCode=\"dd/mm/yyyy\"/>"
+				+ "<numFmt numFmtId=\"165\" formatCode=\"dd/mm/yyyy hh:mm:ss\"/></numFmts>"
+				+ "<fonts count=\"1\"><font><sz val=\"11\"/><name val=\"Calibri\"/></font></fonts>"
+				+ "<fills count=\"2\"><fill><patternFill patternType=\"none\"/></fill><fill><patternFill patternType=\"gray125\"/></fill></fills>"
+				+ "<borders count=\"1\"><border><left/><right/><top/><bottom/><diagonal/></border></borders>"
+				+ "<cellStyleXfs count=\"1\"><xf numFmtId=\"0\" fontId=\"0\" fillId=\"0\" borderId=\"0\"/></cellStyleXfs>"
+				+ "<cellXfs count=\"3\"><xf numFmtId=\"0\" fontId=\"0\" fillId=\"0\" borderId=\"0\" xfId=\"0\"/>"
+				+ "<xf numFmtId=\"164\" fontId=\"0\" fillId=\"0\" borderId=\"0\" xfId=\"0\" applyNumberFormat=\"1\"/>"
+				+ "<xf numFmtId=\"165\" fontId=\"0\" fillId=\"0\" borderId=\"0\" xfId=\"0\" applyNumberFormat=\"1\"/></cellXfs>"
+				+ "</styleSheet>");
+
+		zip.close();
+	}
+
+	private void novaAba() throws IOException {
+		abas++;
+		linhas = 0;
+
+		zip.putNextEntry(new ZipEntry("xl/worksheets/sheet" + abas + ".xml"));
+		xml.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>"
+				+ "<worksheet xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\"><sheetData>");
+
+		if (cabecalho != null)
+			escreveLinha(cabecalho);
+	}
+
+	private void fechaAba() throws IOException {
+		xml.write("</sheetData></worksheet>");
+		xml.flush();
+		zip.closeEntry();
+	}
+
+	private void escreveLinha(Object[] valores) throws IOException {
+		linhas++;
+		xml.write("<row r=\"");
+		xml.write(Integer.toString(linhas));
+		xml.write("\">");
+
+		for (Object valor : valores)
+			escreveCelula(valor);
+
+		xml.write("</row>");
+	}
+
+	private void escreveCelula(Object valor) throws IOException {
+		if (valor == null) {
+			xml.write("<c/>");
+		} else if (valor instanceof Number) {
+			xml.write("<c><v>");
+			xml.write(numero((Number) valor));
+			xml.write("</v></c>");
+		} else if (valor instanceof java.sql.Date || valor instanceof LocalDate) {
+			LocalDate data = valor instanceof LocalDate ? (LocalDate) valor : ((java.sql.Date) valor).toLocalDate();
+			data(data.atStartOfDay(), ESTILO_DATA);
+		} else if (valor instanceof LocalDateTime) {
+			data((LocalDateTime) valor, ESTILO_DATA_HORA);
+		} else if (valor instanceof Date) {
+			data(new Timestamp(((Date) valor).getTime()).toLocalDateTime(), ESTILO_DATA_HORA);
+		} else {
+			xml.write("<c t=\"inlineStr\"><is><t xml:space=\"preserve\">");
+			escapa(valor.toString());
+			xml.write("</t></is></c>");
+		}
+	}
+
+	/*
+	 * Datas do Excel são dias desde 30/12/1899, com as horas na fração
+	 */
+	private void data(LocalDateTime data, int estilo) throws IOException {
+		double dias = Duration.between(INICIO_DATAS, data).toMillis() / MILISSEGUNDOS_DIA;
+
+		xml.write("<c s=\"");
+		xml.write(Integer.toString(estilo));
+		xml.write("\"><v>");
+		xml.write(BigDecimal.valueOf(dias).stripTrailingZeros().toPlainString());
+		xml.write("</v></c>");
+	}
+
+	private static String numero(Number numero) {
+		if (numero instanceof Double || numero instanceof Float)
+			return BigDecimal.valueOf(numero.doubleValue()).stripTrailingZeros().toPlainString();
+
+		if (numero instanceof BigDecimal)
+			return ((BigDecimal) numero).toPlainString();
+
+		return numero.toString();
+	}
+
+	/*
+	 * Escapa o texto para o XML, descartando os caracteres de controle que o
+	 * XML não aceita
+	 */
+	private void escapa(String texto) throws IOException {
+		for (int i = 0; i < texto.length(); i++) {
+			char c = texto.charAt(i);
+
+			switch (c) {
+			case '&':
+				xml.write("&amp;");
+				break;
+			case '<':
+				xml.write("&lt;");
+				break;
+			case '>':
+				xml.write("&gt;");
+				break;
+			default:
+				if (c >= 0x20 || c == '\t' || c == '\n' || c == '\r')
+					xml.write(c);
+			}
+		}
+	}
+
+	private void parte(String nome, String conteudo) throws IOException {
+		zip.putNextEntry(new ZipEntry(nome));
+		xml.write(conteudo);
+		xml.flush();
+		zip.closeEntry();
+	}
+
+	private String tiposConteudo() {
+		StringBuilder tipos = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>"
+				+ "<Types xmlns=\"http://schemas.openxmlformats.org/package/2006/content-types\">"
+				+ "<Default Extension=\"rels\" ContentType=\"application/vnd.openxmlformats-package.relationships+xml\"/>"
+				+ "<Default Extension=\"xml\" ContentType=\"application/xml\"/>"
+				+ "<Override PartName=\"/xl/workbook.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.sheet.main+xml\"/>"
+				+ "<Override PartName=\"/xl/styles.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.styles+xml\"/>");
+
+		for (int aba = 1; aba <= abas; aba++)
+			tipos.append("<Override PartName=\"/xl/worksheets/sheet").append(aba)
+					.append(".xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.worksheet+xml\"/>");
+
+		return tipos.append("</Types>").toString();
+	}
+
+	private String pastaTrabalho() {
+		StringBuilder pasta = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>"
+				+ "<workbook xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\" "
+				+ "xmlns:r=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships\"><sheets>");
+
+		for (int aba = 1; aba <= abas; aba++)
+			pasta.append("<sheet name=\"Planilha").append(aba).append("\" sheetId=\"").append(aba)
+					.append("\" r:id=\"rId").append(aba).append("\"/>");
+
+		return pasta.append("</sheets></workbook>").toString();
+	}
+
+	private String relacoesPastaTrabalho() {
+		StringBuilder relacoes = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>"
+				+ "<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">");
+
+		for (int aba = 1; aba <= abas; aba++)
+			relacoes.append("<Relationship Id=\"rId").append(aba)
+					.append("\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/worksheet\" Target=\"worksheets/sheet")
+					.append(aba).append(".xml\"/>");
+
+		relacoes.append("<Relationship Id=\"rId").append(abas + 1)
+				.append("\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/styles\" Target=\"styles.xml\"/>");
+
+		return relacoes.append("</Relationships>").toString();
+	}
+
+}
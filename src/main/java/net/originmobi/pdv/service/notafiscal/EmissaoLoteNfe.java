@@ -0,0 +1,182 @@
+package net.originmobi.pdv.service.notafiscal;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.w3c.dom.Document;
+
+import net.originmobi.pdv.model.NotaFiscal;
+import net.originmobi.pdv.repository.notafiscal.NotaFiscalRepository;
+import net.originmobi.pdv.xml.nfe.AssinaXML;
+import net.originmobi.pdv.xml.nfe.ConversorXmlNfe;
+import net.originmobi.pdv.xml.nfe.GeraXmlNfe;
+
+/**
+ * Emissão das notas pendentes em lotes, para o fechamento do dia.
+ *
+ * Cada nota do lote é montada em um documento próprio, na thread da
+ * transação que leu as notas, e as assinaturas e a gravação dos XMLs correm
+ * em paralelo, uma nota por núcleo. As chaves de acesso são gravadas no
+ * banco em um único update em lote. Se alguma nota falhar, ou o update ou a
+ * confirmação da transação, nenhuma chave é gravada e os XMLs do lote são
+ * removidos.
+ *
+ * Um lote só começa depois que o anterior foi confirmado, para não ler as
+ * mesmas notas ainda sem chave.
+ */
+@Service
+public class EmissaoLoteNfe {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(EmissaoLoteNfe.class);
+
+	private final NotaFiscalRepository notasFiscais;
+	private final JdbcTemplate jdbc;
+	private final TransactionTemplate transacao;
+	private final int tamanhoLote;
+	private final ExecutorService assinaturas;
+
+	private final Lock emitindo = new ReentrantLock();
+
+	private AssinaXML assina = new AssinaXML();
+
+	public EmissaoLoteNfe(NotaFiscalRepository notasFiscais, JdbcTemplate jdbc,
+			PlatformTransactionManager transactionManager, @Value("${pdv.nfe.lote.tamanho:50}") int tamanhoLote,
+			@Value("${pdv.nfe.lote.threads:0}") int threads) {
+		this.notasFiscais = notasFiscais;
+		this.jdbc = jdbc;
+		this.transacao = new TransactionTemplate(transactionManager);
+		this.tamanhoLote = tamanhoLote;
+
+		int quantidade = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+		AtomicInteger numero = new AtomicInteger();
+		this.assinaturas = Executors.newFixedThreadPool(quantidade, tarefa -> {
+			Thread thread = new Thread(tarefa, "nfe-assinatura-" + numero.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	@PreDestroy
+	public void encerra() {
+		assinaturas.shutdownNow();
+	}
+
+	/*
+	 * Emite até um lote das notas ainda sem chave de acesso, devolvendo o
+	 * número do lote e as chaves geradas. A trava fica com o lote até a
+	 * transação terminar
+	 */
+	public Map<String, Object> emitePendentes() {
+		if (!emitindo.tryLock())
+			throw new IllegalStateException("Já existe um lote de notas sendo emitido, aguarde");
+
+		try {
+			return transacao.execute(status -> emiteLote());
+		} finally {
+			emitindo.unlock();
+		}
+	}
+
+	private Map<String, Object> emiteLote() {
+		long inicio = System.currentTimeMillis();
+
+		List<Long> pendentes = notasFiscais.buscaPendentesEmissao(PageRequest.of(0, tamanhoLote));
+		List<NotaFiscal> notas = pendentes.isEmpty() ? new ArrayList<>()
+				: notasFiscais.buscaParaEmissao(pendentes);
+
+		long idLote = System.currentTimeMillis();
+		List<String> chaves = emite(notas, idLote);
+
+		Map<String, Object> resultado = new LinkedHashMap<>();
+		resultado.put("lote", idLote);
+		resultado.put("notas", chaves.size());
+		resultado.put("chaves", chaves);
+
+		LOGGER.info("Lote {} com {} notas emitido em {} ms", idLote, chaves.size(),
+				System.currentTimeMillis() - inicio);
+
+		return resultado;
+	}
+
+	private List<String> emite(List<NotaFiscal> notas, long idLote) {
+		GeraXmlNfe geraXml = new GeraXmlNfe();
+
+		// as entidades só são lidas aqui, na thread da transação
+		List<Document> documentos = new ArrayList<>(notas.size());
+		List<String> chaves = new ArrayList<>(notas.size());
+
+		for (NotaFiscal nota : notas) {
+			ConversorXmlNfe conversor = new ConversorXmlNfe(idLote);
+			documentos.add(geraXml.documento(nota, conversor));
+			chaves.add(conversor.retornaChaveNfe());
+		}
+
+		// XMLs gravados e chaves não confirmadas no banco não podem ficar no arquivo
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+			@Override
+			public void afterCompletion(int situacao) {
+				if (situacao != TransactionSynchronization.STATUS_COMMITTED) {
+					NotaFiscalService notaFiscalService = new NotaFiscalService();
+					chaves.forEach(notaFiscalService::removeXml);
+				}
+			}
+		});
+
+		List<CompletableFuture<Void>> tarefas = new ArrayList<>(notas.size());
+		for (int i = 0; i < documentos.size(); i++) {
+			Document xml = documentos.get(i);
+			String chave = chaves.get(i);
+
+			tarefas.add(CompletableFuture.runAsync(() -> {
+				try {
+					assina.assina(xml);
+				} catch (Exception e) {
+					throw new IllegalStateException("Não foi possível assinar o XML da nota " + chave, e);
+				}
+
+				new GeraXmlNfe().grava(xml, chave);
+			}, assinaturas));
+		}
+
+		try {
+			CompletableFuture.allOf(tarefas.toArray(new CompletableFuture<?>[0])).join();
+		} catch (CompletionException e) {
+			// espera as que ainda gravam antes do rollback remover os arquivos do lote
+			tarefas.forEach(tarefa -> tarefa.exceptionally(erro -> null).join());
+
+			throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+		}
+
+		List<Object[]> atualizacoes = new ArrayList<>(notas.size());
+		for (int i = 0; i < notas.size(); i++)
+			atualizacoes.add(new Object[] { chaves.get(i), notas.get(i).getCodigo() });
+
+		if (!atualizacoes.isEmpty())
+			jdbc.batchUpdate("update nota_fiscal set chave_acesso = ? where codigo = ?", atualizacoes);
+
+		return chaves;
+	}
+
+}
@@ -0,0 +1,201 @@
+package net.originmobi.pdv.service.notafiscal;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import net.originmobi.pdv.service.exportacao.Planilha;
+import net.originmobi.pdv.service.exportacao.PlanilhaCsv;
+import net.originmobi.pdv.xml.nfe.ArquivoXmlNfe;
+
+/**
+ * XMLs das notas emitidas em um período ou série, em um zip para a
+ * contabilidade, com um manifesto em CSV das notas.
+ *
+ * As notas são lidas do banco com um cursor só para frente e cada XML vai do
+ * arquivo de notas para o zip ainda compactado, um por vez. O manifesto é
+ * montado em uma segunda leitura da mesma consulta, depois dos XMLs, com as
+ * colunas da nota vindas do banco. Da primeira leitura fica em memória só a
+ * chave de cada nota e se o XML foi encontrado, como o diretório do zip.
+ */
+@Service
+public class ExportacaoXmlNfe {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(ExportacaoXmlNfe.class);
+
+	// no driver do MySQL, faz o resultado vir do servidor linha a linha
+	static final int LINHA_A_LINHA = Integer.MIN_VALUE;
+
+	static final String MANIFESTO = "manifesto.csv";
+
+	private static final String CONSULTA = "select n.chave_acesso, n.numero, n.serie, "
+			+ "coalesce(n.data_emissao, n.data_cadastro) as data_emissao, t.v_nf as valor, n.situacao "
+			+ "from nota_fiscal n "
+			+ "left join nota_fiscal_totais t on t.codigo = n.totais_codigo "
+			+ "where n.chave_acesso is not null";
+
+	private static final String[] COLUNAS_MANIFESTO = { "chave_acesso", "numero", "serie", "data_emissao", "valor",
+			"situacao", "xml" };
+
+	private final JdbcTemplate jdbc;
+
+	public ExportacaoXmlNfe(DataSource dataSource) {
+		this.jdbc = new JdbcTemplate(dataSource);
+		this.jdbc.setFetchSize(LINHA_A_LINHA);
+	}
+
+	/*
+	 * Monta a consulta das notas emitidas, recusando um período invertido
+	 */
+	public Consulta consulta(LocalDate inicio, LocalDate fim, Integer serie) {
+		if (inicio != null && fim != null && fim.isBefore(inicio))
+			throw new IllegalArgumentException("A data final é anterior à data inicial");
+
+		StringBuilder sql = new StringBuilder(CONSULTA);
+		List<Object> argumentos = new ArrayList<>();
+
+		if (inicio != null) {
+			sql.append(" and coalesce(n.data_emissao, n.data_cadastro) >= ?");
+			argumentos.add(Date.valueOf(inicio));
+		}
+
+		if (fim != null) {
+			sql.append(" and coalesce(n.data_emissao, n.data_cadastro) < ?");
+			argumentos.add(Date.valueOf(fim.plusDays(1)));
+		}
+
+		if (serie != null) {
+			sql.append(" and n.serie = ?");
+			argumentos.add(serie);
+		}
+
+		sql.append(" order by n.serie, n.numero");
+
+		return new Consulta(sql.toString(), argumentos.toArray());
+	}
+
+	/*
+	 * Escreve o zip na saída, devolvendo o número de XMLs. Se algo falhar no
+	 * meio, o zip fica sem o diretório, quebrado para quem baixou, em vez de
+	 * válido e sem as notas que faltaram
+	 */
+	public long exporta(Consulta consulta, ArquivoXmlNfe arquivo, OutputStream saida) throws IOException {
+		long inicio = System.currentTimeMillis();
+
+		// chave de cada nota da primeira leitura e se o XML entrou no zip
+		Map<String, Boolean> notas = new HashMap<>();
+		ZipXmlNfe zip = new ZipXmlNfe(saida);
+
+		try {
+			jdbc.query(consulta.sql, consulta.argumentos, (ResultSet resultado) -> {
+				String chave = resultado.getString("chave_acesso");
+
+				try {
+					Optional<ArquivoXmlNfe.Compactado> xml = arquivo.compactado(chave);
+					if (xml.isPresent())
+						zip.xml(chave + "-nfe.xml", xml.get());
+
+					notas.put(chave, xml.isPresent());
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+
+			try (Planilha manifesto = new PlanilhaCsv(zip.entrada(MANIFESTO))) {
+				jdbc.query(consulta.sql, consulta.argumentos, resultado -> {
+					try {
+						return escreveManifesto(resultado, manifesto, notas);
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				});
+			}
+		} catch (UncheckedIOException e) {
+			zip.interrompe();
+			throw e.getCause();
+		} catch (IOException | RuntimeException e) {
+			zip.interrompe();
+			throw e;
+		}
+
+		zip.close();
+
+		long xmls = notas.values().stream().filter(Boolean::booleanValue).count();
+		if (xmls < notas.size())
+			LOGGER.warn("{} notas emitidas sem XML no arquivo ficaram fora do zip", notas.size() - xmls);
+
+		LOGGER.info("Zip com {} XMLs de notas em {} ms", xmls, System.currentTimeMillis() - inicio);
+
+		return xmls;
+	}
+
+	/*
+	 * Só as notas da primeira leitura, uma nota emitida entre as duas
+	 * leituras não está no zip
+	 */
+	private static long escreveManifesto(ResultSet resultado, Planilha manifesto, Map<String, Boolean> notas)
+			throws SQLException, IOException {
+		manifesto.cabecalho(COLUNAS_MANIFESTO);
+
+		// o mesmo vetor para todas as linhas, a planilha não o guarda
+		Object[] valores = new Object[COLUNAS_MANIFESTO.length];
+		long linhas = 0;
+
+		while (resultado.next()) {
+			String chave = resultado.getString("chave_acesso");
+			Boolean comXml = notas.get(chave);
+			if (comXml == null)
+				continue;
+
+			valores[0] = chave;
+			valores[1] = resultado.getObject("numero");
+			valores[2] = resultado.getObject("serie");
+			valores[3] = resultado.getObject("data_emissao");
+			valores[4] = resultado.getObject("valor");
+			valores[5] = resultado.getObject("situacao");
+			valores[6] = comXml ? "SIM" : "NAO";
+
+			manifesto.linha(valores);
+			linhas++;
+		}
+
+		return linhas;
+	}
+
+	public static class Consulta {
+
+		private final String sql;
+		private final Object[] argumentos;
+
+		Consulta(String sql, Object[] argumentos) {
+			this.sql = sql;
+			this.argumentos = argumentos;
+		}
+
+		public String getSql() {
+			return sql;
+		}
+
+		public Object[] getArgumentos() {
+			return argumentos.clone();
+		}
+
+	}
+
+}
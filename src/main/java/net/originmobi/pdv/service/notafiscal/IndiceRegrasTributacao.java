@@ -0,0 +1,116 @@
+package net.originmobi.pdv.service.notafiscal;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import net.originmobi.pdv.enumerado.EntradaSaida;
+import net.originmobi.pdv.model.TributacaoRegra;
+import net.originmobi.pdv.repository.TributacaoRegraRepository;
+
+/**
+ * Regras de cada tributação indexadas pelo tipo da nota e pela UF do
+ * destinatário, guardadas em memória para que cada item incluído na nota não
+ * percorra a lista de regras do produto.
+ *
+ * O índice de uma tributação é montado na primeira vez que um produto dela
+ * entra em uma nota e serve a todos os itens e notas seguintes. Quem cadastra,
+ * altera ou remove regras invalida o índice, e o próximo item monta de novo.
+ *
+ * As regras são lidas do banco em uma transação nova, e não da lista que veio
+ * com o produto: a transação da nota pode ter lido o produto antes de uma
+ * alteração confirmada, e o índice montado com essa lista ficaria guardado
+ * com as regras antigas depois da invalidação.
+ */
+@Component
+public class IndiceRegrasTributacao {
+
+	private final Map<Long, Regras> porTributacao = new ConcurrentHashMap<>();
+
+	// incrementada a cada invalidação, descarta o que foi montado antes dela
+	private final AtomicLong versao = new AtomicLong();
+
+	private final TributacaoRegraRepository regrasRepository;
+	private final TransactionTemplate leitura;
+
+	public IndiceRegrasTributacao(TributacaoRegraRepository regrasRepository,
+			PlatformTransactionManager transactionManager) {
+		this.regrasRepository = regrasRepository;
+
+		// fora da transação de quem pediu, para ver as regras já confirmadas
+		this.leitura = new TransactionTemplate(transactionManager);
+		this.leitura.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+		this.leitura.setReadOnly(true);
+	}
+
+	public Regras daTributacao(Long codTributacao) {
+		Regras regras = porTributacao.get(codTributacao);
+
+		if (regras != null)
+			return regras;
+
+		long lida = versao.get();
+		regras = leitura.execute(status -> new Regras(regrasRepository.findByTributacaoCodigoOrderByCodigo(codTributacao)));
+
+		porTributacao.put(codTributacao, regras);
+		if (versao.get() != lida)
+			porTributacao.remove(codTributacao, regras);
+
+		return regras;
+	}
+
+	public void invalida(Long codTributacao) {
+		versao.incrementAndGet();
+		porTributacao.remove(codTributacao);
+	}
+
+	/*
+	 * Para quando não se sabe de qual tributação era a regra alterada
+	 */
+	public void invalidaTodas() {
+		versao.incrementAndGet();
+		porTributacao.clear();
+	}
+
+	public static class Regras {
+
+		private final Map<EntradaSaida, Map<String, TributacaoRegra>> porTipo = new EnumMap<>(EntradaSaida.class);
+		private final Character origem;
+
+		/*
+		 * Com duas regras para a mesma UF e tipo vale a última da lista, a de
+		 * maior código
+		 */
+		Regras(List<TributacaoRegra> regras) {
+			for (TributacaoRegra regra : regras)
+				porTipo.computeIfAbsent(regra.getTipo(), tipo -> new HashMap<>()).put(regra.getUf().getSigla(), regra);
+
+			// origem da mercadoria, primeiro dígito do CST da primeira regra
+			origem = regras.isEmpty() ? null : regras.get(0).getCst_csosn().getCst_csosn().charAt(0);
+		}
+
+		public Optional<TributacaoRegra> regra(String uf, EntradaSaida tipo) {
+			Map<String, TributacaoRegra> doTipo = porTipo.get(tipo);
+			return doTipo == null ? Optional.empty() : Optional.ofNullable(doTipo.get(uf));
+		}
+
+		public boolean temRegra(EntradaSaida tipo) {
+			return porTipo.containsKey(tipo);
+		}
+
+		public Character getOrigem() {
+			return origem;
+		}
+
+	}
+
+}
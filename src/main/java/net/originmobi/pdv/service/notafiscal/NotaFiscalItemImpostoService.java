@@ -7,6 +7,7 @@ import net.originmobi.pdv.model.Cst;
 import net.originmobi.pdv.model.NotaFiscalItemImposto;
 import net.originmobi.pdv.model.TributacaoRegra;
 import net.originmobi.pdv.repository.notafiscal.NotaFiscalItemImpostoRepository;
+import net.originmobi.pdv.utilitarios.Dinheiro;
 
 @Service
 public class NotaFiscalItemImpostoService {
@@ -52,22 +53,25 @@ public class NotaFiscalItemImpostoService {
 		Cst cst_cofins = regra.getCst_cofins();
 		String cst_pis = regra.getCst_pis().getCst();
 		
-		Double bc_icms = vlTotal;
+		// base e impostos arredondados em centavos, como saem no XML da nota
+		Dinheiro base = Dinheiro.de(vlTotal);
+
+		Double bc_icms = base.doubleValue();
 		Double aliq_icms = regra.getAliq_icms();
-		Double vlIcms = (vlTotal * aliq_icms) / 100;
+		Double vlIcms = base.percentual(aliq_icms).doubleValue();
 
-		Double bc_pis = vlTotal;
+		Double bc_pis = base.doubleValue();
 		Double pis = regra.getPis();
-		Double vlPis = (bc_pis * pis) / 100;
+		Double vlPis = base.percentual(pis).doubleValue();
 
-		Double bc_cofins = vlTotal;
+		Double bc_cofins = base.doubleValue();
 		Double aliqCofins = regra.getCofins();
-		Double vlCofins = (bc_cofins * aliqCofins) / 100;
+		Double vlCofins = base.percentual(aliqCofins).doubleValue();
 
 		int cst_ipi = Integer.parseInt(regra.getCst_ipi().getCst());
-		Double bcIPI = vlTotal;
+		Double bcIPI = base.doubleValue();
 		Double aliqIPI = regra.getAliq_ipi();
-		Double vlIPI = (bcIPI * aliqIPI) / 100;
+		Double vlIPI = base.percentual(aliqIPI).doubleValue();
 
 		// cadastra os impostos do produto
 		NotaFiscalItemImposto imposto = null;
@@ -16,10 +16,10 @@ import net.originmobi.pdv.model.NotaFiscalItem;
 import net.originmobi.pdv.model.NotaFiscalItemImposto;
 import net.originmobi.pdv.model.NotaFiscalTotais;
 import net.originmobi.pdv.model.Produto;
-import net.originmobi.pdv.model.Tributacao;
 import net.originmobi.pdv.model.TributacaoRegra;
 import net.originmobi.pdv.repository.notafiscal.NotaFiscalItemRepository;
 import net.originmobi.pdv.service.ProdutoService;
+import net.originmobi.pdv.utilitarios.Dinheiro;
 
 @Service
 public class NotaFiscalItemService {
@@ -39,57 +39,43 @@ public class NotaFiscalItemService {
 	@Autowired
 	private NotaFiscalService notas;
 
+	@Autowired
+	private IndiceRegrasTributacao indice;
+
 	@Transactional(readOnly = false, propagation = Propagation.REQUIRED)
 	public String insere(Long prod, Long codnota, int qtd, NotaFiscalTipo tipo) {
-		Optional<Produto> produto = produtos.buscaProduto(prod);
-		Optional<NotaFiscal> notaFiscal = notas.busca(codnota);
-
-		verificaRegraDeTributacao(tipo, produto);
+		Optional<Produto> buscaProduto = produtos.buscaProduto(prod);
+		Optional<NotaFiscal> buscaNota = notas.busca(codnota);
 
-		Tributacao tributacao = produto.map(Produto::getTributacao).get();
+		IndiceRegrasTributacao.Regras regras = verificaRegraDeTributacao(tipo, buscaProduto);
+		Produto produto = buscaProduto.get();
+		NotaFiscal notaFiscal = buscaNota.get();
 
 		Long codImposto = null;
 		Long codNotaItem = null;
 
 		// verifica se já tem o item
-		for (int i = 0; i < notaFiscal.map(NotaFiscal::getItens).get().size(); i++) {
-			if (notaFiscal.map(NotaFiscal::getItens).get().get(i).getCodProd().equals(prod)) {
-
-				qtd = qtd + notaFiscal.map(NotaFiscal::getItens).get().get(i).getQtd();
-				codImposto = notaFiscal.map(NotaFiscal::getItens).get().get(i).getImpostos().getCodigo();
-				codNotaItem = notaFiscal.map(NotaFiscal::getItens).get().get(i).getCodigo();
+		for (NotaFiscalItem itemNota : notaFiscal.getItens()) {
+			if (itemNota.getCodProd().equals(prod)) {
+				qtd = qtd + itemNota.getQtd();
+				codImposto = itemNota.getImpostos().getCodigo();
+				codNotaItem = itemNota.getCodigo();
 			}
 		}
 
-		char origin = tributacao.getRegra().get(0).getCst_csosn().getCst_csosn().toString().charAt(0);
-		Double vlTotal = produto.map(Produto::getValor_venda).get() * qtd;
-		String uniTribu = produto.map(Produto::getUnidade).get();
-		int modBcIcms = produto.map(Produto::getModBcIcms).get().getTipo();
-		Double vlUnidade = produto.map(Produto::getValor_venda).get();
+		char origin = regras.getOrigem();
+		Double vlTotal = Dinheiro.de(produto.getValor_venda()).vezes(qtd).doubleValue();
+		String uniTribu = produto.getUnidade();
+		int modBcIcms = produto.getModBcIcms().getTipo();
+		Double vlUnidade = produto.getValor_venda();
 
 		// pega uf do destinatário
-		String ufDestinatario = notaFiscal.map(NotaFiscal::getDestinatario).get().getEndereco().getCidade().getEstado()
-				.getSigla();
-
-		TributacaoRegra regra = null;
-
-		// pega a regra da tributação do produto que é da mesma uf do destinatário e do
-		// mesmo
-		// estilo da nota
-		for (int i = 0; i < produto.map(Produto::getTributacao).get().getRegra().size(); i++) {
-			String ufRegra = produto.map(Produto::getTributacao).get().getRegra().get(i).getUf().getSigla();
-			String tipoRegra = produto.map(Produto::getTributacao).get().getRegra().get(i).getTipo().toString();
-			String tipoNota = notaFiscal.map(NotaFiscal::getTipo).get().toString();
-
-			if (ufRegra.equals(ufDestinatario)) {
-				if (tipoRegra.equals(tipoNota)) {
-					regra = produto.map(Produto::getTributacao).get().getRegra().get(i);
-				}
-			}
-		}
+		String ufDestinatario = notaFiscal.getDestinatario().getEndereco().getCidade().getEstado().getSigla();
 
-		if (regra == null)
-			throw new RuntimeException("Nenhuma regra de tributação cadastrada para a UF do destinatário");
+		// regra da tributação do produto que é da mesma uf do destinatário e do
+		// mesmo estilo da nota
+		TributacaoRegra regra = regras.regra(ufDestinatario, EntradaSaida.valueOf(notaFiscal.getTipo().name()))
+				.orElseThrow(() -> new RuntimeException("Nenhuma regra de tributação cadastrada para a UF do destinatário"));
 
 		String cfop = regra.getCfop().getCfop();
 
@@ -97,8 +83,8 @@ public class NotaFiscalItemService {
 		NotaFiscalItemImposto imposto = impostos.calcula(codImposto, vlTotal, regra, origin, modBcIcms);
 
 		// cria item da nota com imposto vinculado
-		NotaFiscalItem item = new NotaFiscalItem(prod, qtd, vlTotal, uniTribu, qtd, vlUnidade, notaFiscal.get(),
-				imposto, cfop);
+		NotaFiscalItem item = new NotaFiscalItem(prod, qtd, vlTotal, uniTribu, qtd, vlUnidade, notaFiscal, imposto,
+				cfop);
 
 		// se for diferente de null, se trata de uma atualização
 		if (codNotaItem != null)
@@ -112,8 +98,8 @@ public class NotaFiscalItemService {
 		}
 
 		// atualiza totais da nota
-		NotaFiscalTotais total = notaFiscal.get().getTotais();
-		Long codNota = notaFiscal.get().getCodigo();
+		NotaFiscalTotais total = notaFiscal.getTotais();
+		Long codNota = notaFiscal.getCodigo();
 		totais.atualiza(codNota, total);
 
 		return "ok";
@@ -134,7 +120,7 @@ public class NotaFiscalItemService {
 		totais.atualiza(codnota, total);
 	}
 
-	private void verificaRegraDeTributacao(NotaFiscalTipo tipo, Optional<Produto> produto) {
+	private IndiceRegrasTributacao.Regras verificaRegraDeTributacao(NotaFiscalTipo tipo, Optional<Produto> produto) {
 		if (!produto.isPresent())
 			throw new RuntimeException("Nenhum produto encontrado, favor verifique");
 
@@ -151,27 +137,19 @@ public class NotaFiscalItemService {
 		if (produto.map(Produto::getUnidade).get().isEmpty())
 			throw new RuntimeException("Produto sem unidade, favor verifique");
 
+		IndiceRegrasTributacao.Regras regras = indice.daTributacao(produto.get().getTributacao().getCodigo());
+
 		// verifica se a tributação do produto possue regra para o estilo de nota
 		// selecionado
 		if (tipo.equals(NotaFiscalTipo.SAIDA)) {
-			int aux = 0;
-			for (int i = 0; i < produto.map(Produto::getTributacao).get().getRegra().size(); i++) {
-				if (produto.map(Produto::getTributacao).get().getRegra().get(i).getTipo().equals(EntradaSaida.SAIDA))
-					aux = aux + 1;
-			}
-
-			if (aux == 0)
+			if (!regras.temRegra(EntradaSaida.SAIDA))
 				throw new RuntimeException("Tributação sem regra de saída, verifique");
 		} else {
-			int aux = 0;
-			for (int i = 0; i < produto.map(Produto::getTributacao).get().getRegra().size(); i++) {
-				if (produto.map(Produto::getTributacao).get().getRegra().get(i).getTipo().equals(EntradaSaida.ENTRADA))
-					aux = aux + 1;
-			}
-
-			if (aux == 0)
+			if (!regras.temRegra(EntradaSaida.ENTRADA))
 				throw new RuntimeException("Tributação sem regra de entrada, verifique");
 		}
+
+		return regras;
 	}
 
 	public List<Object> buscaItensNota(Long codigo) {
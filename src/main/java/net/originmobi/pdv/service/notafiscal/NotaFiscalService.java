@@ -1,11 +1,9 @@
 package net.originmobi.pdv.service.notafiscal;
 
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.PrintWriter;
-import java.nio.file.Files;
-import java.nio.file.Path;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Paths;
 import java.sql.Date;
 import java.time.LocalDate;
@@ -29,6 +27,8 @@ import net.originmobi.pdv.model.Pessoa;
 import net.originmobi.pdv.repository.notafiscal.NotaFiscalRepository;
 import net.originmobi.pdv.service.EmpresaService;
 import net.originmobi.pdv.service.PessoaService;
+import net.originmobi.pdv.service.painel.ContadoresPainel;
+import net.originmobi.pdv.xml.nfe.ArquivoXmlNfe;
 import net.originmobi.pdv.xml.nfe.GeraXmlNfe;
 
 @Service
@@ -48,11 +48,19 @@ public class NotaFiscalService {
     @Autowired
     private PessoaService pessoas;
 
+    @Autowired
+    private ContadoresPainel painel;
+
+    @Autowired
+    private NumeracaoNfe numeracao;
+
     // Mantido como atributo para permitir ReflectionTestUtils nos testes
     private LocalDate dataAtual;
 
     private static final String CAMINHO_XML = "/src/main/resources/xmlNfe/";
 
+    public static final String PROPRIEDADE_DIRETORIO_XML = "pdv.nfe.xml.diretorio";
+
     // Busca todas as notas fiscais cadastradas no banco de dados.
     public List<NotaFiscal> lista() {
         return notasFiscais.findAll();
@@ -104,8 +112,8 @@ public class NotaFiscalService {
         // cadastra a nota fiscal
         NotaFiscal nota = null;
         try {
-            // pega ultima nota cadastradas + 1
-            Long numeroNota = notasFiscais.buscaUltimaNota(serie);
+            // próximo número da série, devolvido se a nota não for gravada
+            Long numeroNota = numeracao.proximo(serie);
 
             NotaFiscal notaFiscal = new NotaFiscal(numeroNota, modelo, tipo, natureza, serie, empresa,
                     pessoa, tipoEmissao, verProc, frete, finalidade, totais, tipoAmbiente, cadastro);
@@ -118,6 +126,8 @@ public class NotaFiscalService {
             throw new RuntimeException("Erro ao cadastrar a nota, chame o suporte");
         }
 
+        painel.notaCadastrada();
+
         return nota.getCodigo().toString();
     }
 
@@ -141,53 +151,58 @@ public class NotaFiscalService {
         }
     }
 
-    // Salva o XML da nota fiscal no diretório
+    // Salva o XML da nota fiscal no arquivo de XMLs
     public void salvaXML(String xml, String chaveNfe) {
-        Path diretorio; // Sonar: Renomeado para minúscula
-        String contexto = "";
-
         try {
-            contexto = new File(".").getCanonicalPath();
-        } catch (Exception e) {
-            logger.error("Erro ao pegar o contexto", e); // Sonar: Logger
+            arquivoXml().grava(chaveNfe, xml.getBytes(StandardCharsets.UTF_8));
+            logger.info("XML da nota {} gravado", chaveNfe);
+        } catch (IOException | UncheckedIOException e) {
+            logger.error("Erro ao gravar XML", e);
         }
+    }
 
-        // Sonar: Path mais seguro
-        diretorio = Paths.get(contexto + CAMINHO_XML);
+    // Salva o XML escrito direto na saída do arquivo, sem montar o texto antes
+    public void salvaXML(String chaveNfe, ArquivoXmlNfe.Conteudo xml) throws IOException {
+        arquivoXml().grava(chaveNfe, xml);
+    }
 
-        // Try-with-resources garante o fechamento do recurso (embora PrintWriter não lance IOException no construtor com String, FileWriter sim)
-        String caminhoArquivo = diretorio.toString() + File.separator + chaveNfe + ".xml"; // Sonar: File.separator
-        
-        try (PrintWriter out = new PrintWriter(new FileWriter(caminhoArquivo))) {
-            out.write(xml);
-            // out.close() é chamado automaticamente aqui
-            logger.info("Arquivo gravado com sucesso em {}", diretorio); // Sonar: Logger
+    // XML gravado da nota, vazio se não existir
+    public Optional<String> leXML(String chaveNfe) {
+        try {
+            return arquivoXml().le(chaveNfe).map(xml -> new String(xml, StandardCharsets.UTF_8));
         } catch (IOException e) {
-            logger.error("Erro ao gravar XML", e);
+            throw new UncheckedIOException("Erro ao ler o XML da nota " + chaveNfe, e);
         }
     }
 
     // responsável por remover o xml quando o mesmo já existe na nota que foi regerada
     public void removeXml(String chaveAcesso) { // Sonar: Renomeado parametro
-        String contexto = "";
-
         try {
-            contexto = new File(".").getCanonicalPath();
+            if (arquivoXml().remove(chaveAcesso))
+                logger.info("XML da nota {} removido", chaveAcesso);
         } catch (Exception e) {
-            logger.error("Erro ao pegar o contexto", e);
+            logger.error("Erro ao deletar XML", e);
         }
+    }
 
-        try {
-            // Sonar: Melhor manipulação de arquivo
-            Path path = Paths.get(contexto + CAMINHO_XML + File.separator + chaveAcesso + ".xml");
-            logger.info("XML para deletar: {}", path);
-            
-            // Sonar: Uso de Files.deleteIfExists é mais seguro e retorna boolean se necessário
-            Files.deleteIfExists(path);
-            
-        } catch (Exception e) {
-            logger.error("Erro ao deletar XML", e);
+    // Arquivo dos XMLs, no diretório da propriedade de sistema pdv.nfe.xml.diretorio
+    // ou em src/main/resources/xmlNfe; os XMLs soltos de antes entram nele ao abrir
+    public static ArquivoXmlNfe arquivoXml() {
+        String diretorio = System.getProperty(PROPRIEDADE_DIRETORIO_XML);
+
+        if (diretorio == null) {
+            String contexto = "";
+
+            try {
+                contexto = new File(".").getCanonicalPath();
+            } catch (Exception e) {
+                logger.error("Erro ao pegar o contexto", e);
+            }
+
+            diretorio = contexto + CAMINHO_XML;
         }
+
+        return ArquivoXmlNfe.de(Paths.get(diretorio));
     }
 
     // Consulta uma nota fiscal pelo código/ID.
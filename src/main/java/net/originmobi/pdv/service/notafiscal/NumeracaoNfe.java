@@ -0,0 +1,41 @@
+package net.originmobi.pdv.service.notafiscal;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import net.originmobi.pdv.repository.notafiscal.NotaFiscalNumeracaoRepository;
+
+/**
+ * Números das notas por série, de um contador no banco.
+ *
+ * O incremento trava só a linha da série até o fim da transação de quem
+ * cadastra a nota, então duas notas nunca recebem o mesmo número e uma nota
+ * que falha devolve o número junto com o rollback. Reservar faixas de números
+ * em memória evitaria a espera, mas perderia a faixa em uma parada do
+ * servidor, e cada número pulado exigiria uma inutilização na SEFAZ.
+ */
+@Service
+public class NumeracaoNfe {
+
+	private final NotaFiscalNumeracaoRepository numeracao;
+
+	public NumeracaoNfe(NotaFiscalNumeracaoRepository numeracao) {
+		this.numeracao = numeracao;
+	}
+
+	/*
+	 * Tem que rodar na transação que grava a nota, é ela que confirma ou
+	 * devolve o número
+	 */
+	@Transactional(propagation = Propagation.MANDATORY)
+	public long proximo(int serie) {
+		if (numeracao.incrementa(serie) == 0) {
+			numeracao.inicia(serie);
+			numeracao.incrementa(serie);
+		}
+
+		return numeracao.ultimo(serie);
+	}
+
+}
@@ -0,0 +1,292 @@
+package net.originmobi.pdv.service.notafiscal;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+import net.originmobi.pdv.xml.nfe.ArquivoXmlNfe;
+
+/**
+ * Zip escrito direto na saída, com os XMLs copiados do arquivo de notas ainda
+ * compactados.
+ *
+ * O arquivo de XMLs e o zip usam o mesmo deflate, então cada XML entra no zip
+ * com os bytes como estão gravados, sem descompactar e compactar de novo. O
+ * ZipOutputStream do Java não aceita conteúdo já compactado, por isso as
+ * estruturas do zip são escritas aqui. Só o diretório do fim do arquivo fica
+ * em memória, cerca de 100 bytes por nota; acima de 65.535 notas ou de 4 GB o
+ * diretório sai no formato zip64.
+ */
+public class ZipXmlNfe implements Closeable {
+
+	private static final int LOCAL = 0x04034b50;
+	private static final int DESCRITOR = 0x08074b50;
+	private static final int CENTRAL = 0x02014b50;
+	private static final int FIM_ZIP64 = 0x06064b50;
+	private static final int LOCALIZADOR_ZIP64 = 0x07064b50;
+	private static final int FIM = 0x06054b50;
+
+	private static final int VERSAO = 20;
+	private static final int VERSAO_ZIP64 = 45;
+
+	// nomes em UTF-8 e, na segunda, tamanhos e CRC depois do conteúdo
+	private static final int NOMES_UTF8 = 0x0800;
+	private static final int COM_DESCRITOR = 0x0008;
+	private static final int DEFLATE = 8;
+
+	private static final long LIMITE_32 = 0xFFFFFFFFL;
+	private static final int LIMITE_16 = 0xFFFF;
+
+	private final OutputStream saida;
+	private final ByteArrayOutputStream diretorio = new ByteArrayOutputStream();
+	private final int hora;
+	private final int data;
+
+	private long posicao;
+	private long entradas;
+	private boolean entradaAberta;
+	private boolean interrompido;
+
+	public ZipXmlNfe(OutputStream saida) {
+		this(saida, LocalDateTime.now());
+	}
+
+	public ZipXmlNfe(OutputStream saida, LocalDateTime momento) {
+		this.saida = new BufferedOutputStream(saida, 65536);
+		this.hora = momento.getHour() << 11 | momento.getMinute() << 5 | momento.getSecond() / 2;
+		this.data = (Math.max(momento.getYear(), 1980) - 1980) << 9 | momento.getMonthValue() << 5
+				| momento.getDayOfMonth();
+	}
+
+	/*
+	 * XML do arquivo de notas, com CRC e tamanhos já conhecidos no cabeçalho
+	 */
+	public void xml(String nome, ArquivoXmlNfe.Compactado xml) throws IOException {
+		confereFechada();
+
+		long inicio = posicao;
+		byte[] bytesNome = nome.getBytes(StandardCharsets.UTF_8);
+
+		cabecalhoLocal(bytesNome, NOMES_UTF8, xml.getCrc(), xml.getTamanhoCompactado(), xml.getTamanho());
+		xml.escreve(saida);
+		posicao += xml.getTamanhoCompactado();
+
+		central(bytesNome, NOMES_UTF8, xml.getCrc(), xml.getTamanhoCompactado(), xml.getTamanho(), inicio);
+	}
+
+	/*
+	 * Entrada gerada na hora, compactada conforme é escrita. Tem que ser
+	 * fechada antes da próxima; o close não fecha o zip
+	 */
+	public OutputStream entrada(String nome) throws IOException {
+		confereFechada();
+
+		long inicio = posicao;
+		byte[] bytesNome = nome.getBytes(StandardCharsets.UTF_8);
+		cabecalhoLocal(bytesNome, NOMES_UTF8 | COM_DESCRITOR, 0, 0, 0);
+		entradaAberta = true;
+
+		Deflater compactador = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+		CRC32 crc = new CRC32();
+		OutputStream contagem = new OutputStream() {
+			@Override
+			public void write(int b) throws IOException {
+				saida.write(b);
+				posicao++;
+			}
+
+			@Override
+			public void write(byte[] b, int inicio, int tamanho) throws IOException {
+				saida.write(b, inicio, tamanho);
+				posicao += tamanho;
+			}
+		};
+
+		return new DeflaterOutputStream(contagem, compactador, 8192) {
+			private long tamanho;
+			private boolean fechada;
+
+			@Override
+			public void write(int b) throws IOException {
+				write(new byte[] { (byte) b }, 0, 1);
+			}
+
+			@Override
+			public void write(byte[] b, int inicio, int quantidade) throws IOException {
+				crc.update(b, inicio, quantidade);
+				tamanho += quantidade;
+				super.write(b, inicio, quantidade);
+			}
+
+			@Override
+			public void close() throws IOException {
+				if (fechada)
+					return;
+				fechada = true;
+
+				finish();
+				long compactado = compactador.getBytesWritten();
+				compactador.end();
+
+				if (compactado > LIMITE_32 || tamanho > LIMITE_32)
+					throw new IOException("Entrada " + nome + " maior que 4 GB");
+
+				inteiro(saida, DESCRITOR);
+				inteiro(saida, crc.getValue());
+				inteiro(saida, compactado);
+				inteiro(saida, tamanho);
+				posicao += 16;
+
+				central(bytesNome, NOMES_UTF8 | COM_DESCRITOR, crc.getValue(), compactado, tamanho, inicio);
+				entradaAberta = false;
+			}
+		};
+	}
+
+	/*
+	 * Escreve o diretório e fecha a saída
+	 */
+	@Override
+	public void close() throws IOException {
+		if (interrompido)
+			return;
+
+		confereFechada();
+
+		long inicioDiretorio = posicao;
+		diretorio.writeTo(saida);
+		long tamanhoDiretorio = diretorio.size();
+		posicao += tamanhoDiretorio;
+
+		if (entradas >= LIMITE_16 || inicioDiretorio >= LIMITE_32 || tamanhoDiretorio >= LIMITE_32) {
+			long inicioFim = posicao;
+
+			inteiro(saida, FIM_ZIP64);
+			longo(saida, 44);
+			curto(saida, VERSAO_ZIP64);
+			curto(saida, VERSAO_ZIP64);
+			inteiro(saida, 0);
+			inteiro(saida, 0);
+			longo(saida, entradas);
+			longo(saida, entradas);
+			longo(saida, tamanhoDiretorio);
+			longo(saida, inicioDiretorio);
+
+			inteiro(saida, LOCALIZADOR_ZIP64);
+			inteiro(saida, 0);
+			longo(saida, inicioFim);
+			inteiro(saida, 1);
+		}
+
+		inteiro(saida, FIM);
+		curto(saida, 0);
+		curto(saida, 0);
+		curto(saida, (int) Math.min(entradas, LIMITE_16));
+		curto(saida, (int) Math.min(entradas, LIMITE_16));
+		inteiro(saida, Math.min(tamanhoDiretorio, LIMITE_32));
+		inteiro(saida, Math.min(inicioDiretorio, LIMITE_32));
+		curto(saida, 0);
+
+		saida.close();
+	}
+
+	/*
+	 * Fecha a saída sem escrever o diretório, para o zip de uma exportação que
+	 * falhou no meio não abrir como se estivesse completo
+	 */
+	public void interrompe() throws IOException {
+		if (interrompido)
+			return;
+
+		interrompido = true;
+		saida.close();
+	}
+
+	public long getEntradas() {
+		return entradas;
+	}
+
+	private void confereFechada() {
+		if (entradaAberta)
+			throw new IllegalStateException("A entrada anterior do zip ainda não foi fechada");
+	}
+
+	private void cabecalhoLocal(byte[] nome, int opcoes, long crc, long compactado, long tamanho)
+			throws IOException {
+		inteiro(saida, LOCAL);
+		curto(saida, VERSAO);
+		curto(saida, opcoes);
+		curto(saida, DEFLATE);
+		curto(saida, hora);
+		curto(saida, data);
+		inteiro(saida, crc);
+		inteiro(saida, compactado);
+		inteiro(saida, tamanho);
+		curto(saida, nome.length);
+		curto(saida, 0);
+		saida.write(nome);
+
+		posicao += 30 + nome.length;
+	}
+
+	/*
+	 * Registro do diretório; a posição da entrada vai no campo extra do zip64
+	 * quando passa de 4 GB
+	 */
+	private void central(byte[] nome, int opcoes, long crc, long compactado, long tamanho, long inicio)
+			throws IOException {
+		boolean zip64 = inicio >= LIMITE_32;
+
+		inteiro(diretorio, CENTRAL);
+		curto(diretorio, VERSAO_ZIP64);
+		curto(diretorio, zip64 ? VERSAO_ZIP64 : VERSAO);
+		curto(diretorio, opcoes);
+		curto(diretorio, DEFLATE);
+		curto(diretorio, hora);
+		curto(diretorio, data);
+		inteiro(diretorio, crc);
+		inteiro(diretorio, compactado);
+		inteiro(diretorio, tamanho);
+		curto(diretorio, nome.length);
+		curto(diretorio, zip64 ? 12 : 0);
+		curto(diretorio, 0);
+		curto(diretorio, 0);
+		curto(diretorio, 0);
+		inteiro(diretorio, 0);
+		inteiro(diretorio, zip64 ? LIMITE_32 : inicio);
+		diretorio.write(nome);
+
+		if (zip64) {
+			curto(diretorio, 0x0001);
+			curto(diretorio, 8);
+			longo(diretorio, inicio);
+		}
+
+		entradas++;
+	}
+
+	// o zip grava os números com o byte menos significativo primeiro
+
+	private static void curto(OutputStream saida, int valor) throws IOException {
+		saida.write(valor & 0xFF);
+		saida.write(valor >>> 8 & 0xFF);
+	}
+
+	private static void inteiro(OutputStream saida, long valor) throws IOException {
+		curto(saida, (int) (valor & 0xFFFF));
+		curto(saida, (int) (valor >>> 16 & 0xFFFF));
+	}
+
+	private static void longo(OutputStream saida, long valor) throws IOException {
+		inteiro(saida, valor & LIMITE_32);
+		inteiro(saida, valor >>> 32);
+	}
+
+}
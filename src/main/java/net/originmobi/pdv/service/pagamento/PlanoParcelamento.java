@@ -0,0 +1,91 @@
+package net.originmobi.pdv.service.pagamento;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import net.originmobi.pdv.utilitarios.Dinheiro;
+
+/**
+ * Forma de pagamento de um PagamentoTipo já interpretada, como "00/30/60",
+ * com o prazo em dias de cada parcela.
+ *
+ * É imutável e montada uma única vez por forma de pagamento, as datas de
+ * vencimento e a divisão de valores são calculadas a partir dos prazos sem
+ * interpretar o texto novamente.
+ */
+public final class PlanoParcelamento {
+
+	private static final Pattern SEPARADOR = Pattern.compile("[/\\s]+");
+
+	private final String formaPagamento;
+	private final int[] prazos;
+
+	private PlanoParcelamento(String formaPagamento, int[] prazos) {
+		this.formaPagamento = formaPagamento;
+		this.prazos = prazos;
+	}
+
+	/*
+	 * Prazos separados por barra ou espaço, 00 é a parcela à vista
+	 */
+	public static PlanoParcelamento compila(String formaPagamento) {
+		if (formaPagamento == null || formaPagamento.trim().isEmpty())
+			throw new IllegalArgumentException("Forma de pagamento não informada");
+
+		String[] partes = SEPARADOR.split(formaPagamento.trim());
+		int[] prazos = new int[partes.length];
+
+		for (int i = 0; i < partes.length; i++) {
+			try {
+				prazos[i] = Integer.parseInt(partes[i]);
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("Forma de pagamento inválida: " + formaPagamento, e);
+			}
+
+			if (prazos[i] < 0)
+				throw new IllegalArgumentException("Forma de pagamento inválida: " + formaPagamento);
+		}
+
+		return new PlanoParcelamento(formaPagamento, prazos);
+	}
+
+	public String getFormaPagamento() {
+		return formaPagamento;
+	}
+
+	public int getQtdParcelas() {
+		return prazos.length;
+	}
+
+	public int getPrazo(int parcela) {
+		return prazos[parcela];
+	}
+
+	public boolean isAvista(int parcela) {
+		return prazos[parcela] == 0;
+	}
+
+	public LocalDate vencimento(int parcela, LocalDate base) {
+		return base.plusDays(prazos[parcela]);
+	}
+
+	public List<LocalDate> vencimentos(LocalDate base) {
+		List<LocalDate> datas = new ArrayList<>(prazos.length);
+		for (int prazo : prazos)
+			datas.add(base.plusDays(prazo));
+
+		return Collections.unmodifiableList(datas);
+	}
+
+	/*
+	 * Divide o valor em partes iguais arredondadas em centavos, a diferença do
+	 * arredondamento fica na primeira parcela para a soma fechar com o valor
+	 */
+	public Dinheiro[] divide(Dinheiro valor) {
+		return valor.divide(prazos.length);
+	}
+
+}
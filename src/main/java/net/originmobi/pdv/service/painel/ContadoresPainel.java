@@ -0,0 +1,231 @@
+package net.originmobi.pdv.service.painel;
+
+import java.io.IOException;
+import java.text.NumberFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import net.originmobi.pdv.repository.PagarParcelaRespository;
+import net.originmobi.pdv.repository.ReceberRepository;
+import net.originmobi.pdv.repository.VendaRepository;
+import net.originmobi.pdv.repository.notafiscal.NotaFiscalRepository;
+import net.originmobi.pdv.utilitarios.Dinheiro;
+
+/**
+ * Números do painel inicial mantidos em memória.
+ *
+ * Os serviços que abrem e fecham vendas, geram e recebem parcelas, lançam e
+ * pagam despesas e cadastram notas informam a diferença que causaram, que é
+ * somada quando a transação deles é confirmada. A contagem completa no banco
+ * só é feita na inicialização e de tempos em tempos, para corrigir o que
+ * tenha mudado por fora da aplicação.
+ *
+ * Os painéis abertos recebem os números por eventos do servidor a cada
+ * alteração, enviados por uma thread própria, sem atrasar quem alterou.
+ */
+@Service
+public class ContadoresPainel {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(ContadoresPainel.class);
+
+	private static final String EVENTO = "painel";
+
+	private final VendaRepository vendas;
+	private final ReceberRepository receber;
+	private final PagarParcelaRespository pagar;
+	private final NotaFiscalRepository notas;
+	private final long tempoConexao;
+
+	private final AtomicLong vendasAbertas = new AtomicLong();
+	private final AtomicLong centavosReceber = new AtomicLong();
+	private final AtomicLong centavosPagar = new AtomicLong();
+	private final AtomicLong notasEmitidas = new AtomicLong();
+
+	// alterações somadas, uma recontagem que as cruzou é descartada
+	private final AtomicLong alteracoes = new AtomicLong();
+
+	private final List<SseEmitter> paineis = new CopyOnWriteArrayList<>();
+	private final AtomicBoolean envioPendente = new AtomicBoolean();
+	private final ExecutorService envios = Executors.newSingleThreadExecutor(tarefa -> {
+		Thread thread = new Thread(tarefa, "painel-eventos");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	public ContadoresPainel(VendaRepository vendas, ReceberRepository receber, PagarParcelaRespository pagar,
+			NotaFiscalRepository notas, @Value("${pdv.painel.tempo-conexao:1800000}") long tempoConexao) {
+		this.vendas = vendas;
+		this.receber = receber;
+		this.pagar = pagar;
+		this.notas = notas;
+		this.tempoConexao = tempoConexao;
+	}
+
+	@PostConstruct
+	public void inicia() {
+		try {
+			recontagem();
+		} catch (RuntimeException e) {
+			LOGGER.warn("Não foi possível contar os números do painel, nova tentativa em instantes", e);
+		}
+	}
+
+	@PreDestroy
+	public void encerra() {
+		envios.shutdownNow();
+		paineis.forEach(SseEmitter::complete);
+	}
+
+	/*
+	 * Conta tudo de novo no banco, com as mesmas consultas de antes do painel
+	 * ser mantido em memória
+	 */
+	@Scheduled(initialDelayString = "${pdv.painel.intervalo-recontagem:600000}",
+			fixedDelayString = "${pdv.painel.intervalo-recontagem:600000}")
+	public void recontagem() {
+		long antes = alteracoes.get();
+
+		long abertas = vendas.qtdVendasEmAberto();
+		long aReceber = Dinheiro.de(receber.somaAReceber()).getCentavos();
+		long aPagar = Dinheiro.de(pagar.somaDespesasAbertas()).getCentavos();
+		long emitidas = notas.totalNotaFiscalEmitidas();
+
+		synchronized (this) {
+			if (alteracoes.get() != antes) {
+				LOGGER.debug("Painel alterado durante a recontagem, mantidos os números em memória");
+				return;
+			}
+
+			boolean mudou = vendasAbertas.get() != abertas || centavosReceber.get() != aReceber
+					|| centavosPagar.get() != aPagar || notasEmitidas.get() != emitidas;
+
+			vendasAbertas.set(abertas);
+			centavosReceber.set(aReceber);
+			centavosPagar.set(aPagar);
+			notasEmitidas.set(emitidas);
+
+			if (mudou)
+				agendaEnvio();
+		}
+	}
+
+	public void vendaAberta() {
+		aoConfirmar(vendasAbertas, 1);
+	}
+
+	public void vendaFechada() {
+		aoConfirmar(vendasAbertas, -1);
+	}
+
+	public void somaReceber(Dinheiro diferenca) {
+		if (!diferenca.isZero())
+			aoConfirmar(centavosReceber, diferenca.getCentavos());
+	}
+
+	public void somaPagar(Dinheiro diferenca) {
+		if (!diferenca.isZero())
+			aoConfirmar(centavosPagar, diferenca.getCentavos());
+	}
+
+	public void notaCadastrada() {
+		aoConfirmar(notasEmitidas, 1);
+	}
+
+	public Map<String, Object> valores() {
+		NumberFormat moeda = NumberFormat.getNumberInstance(new Locale("pt", "BR"));
+		moeda.setMinimumFractionDigits(2);
+		moeda.setMaximumFractionDigits(2);
+
+		Map<String, Object> valores = new LinkedHashMap<>();
+		valores.put("pedidosAberto", vendasAbertas.get());
+		valores.put("total_a_receber", moeda.format(Dinheiro.deCentavos(centavosReceber.get()).toBigDecimal()));
+		valores.put("total_a_pagar", moeda.format(Dinheiro.deCentavos(centavosPagar.get()).toBigDecimal()));
+		valores.put("total_notas_emitidas", notasEmitidas.get());
+		return valores;
+	}
+
+	/*
+	 * Painel que passa a receber os números a cada alteração, a começar pelos
+	 * atuais. O navegador reconecta sozinho ao fim do tempo de conexão
+	 */
+	public SseEmitter inscreve() {
+		SseEmitter painel = new SseEmitter(tempoConexao);
+		painel.onCompletion(() -> paineis.remove(painel));
+		painel.onTimeout(() -> paineis.remove(painel));
+		paineis.add(painel);
+
+		envios.execute(() -> envia(painel, valores()));
+		return painel;
+	}
+
+	/*
+	 * Dentro de uma transação a diferença só vale depois da confirmação, uma
+	 * venda desfeita não altera o painel
+	 */
+	private void aoConfirmar(AtomicLong contador, long diferenca) {
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			soma(contador, diferenca);
+			return;
+		}
+
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+			@Override
+			public void afterCommit() {
+				soma(contador, diferenca);
+			}
+		});
+	}
+
+	private void soma(AtomicLong contador, long diferenca) {
+		synchronized (this) {
+			contador.addAndGet(diferenca);
+			alteracoes.incrementAndGet();
+		}
+
+		agendaEnvio();
+	}
+
+	/*
+	 * Várias alterações seguidas saem em um único envio com os números finais
+	 */
+	private void agendaEnvio() {
+		if (paineis.isEmpty() || !envioPendente.compareAndSet(false, true))
+			return;
+
+		envios.execute(() -> {
+			envioPendente.set(false);
+			Map<String, Object> valores = valores();
+			paineis.forEach(painel -> envia(painel, valores));
+		});
+	}
+
+	private void envia(SseEmitter painel, Map<String, Object> valores) {
+		try {
+			painel.send(SseEmitter.event().name(EVENTO).data(valores));
+		} catch (IOException | IllegalStateException e) {
+			// navegador fechado, a conexão é descartada
+			paineis.remove(painel);
+			painel.completeWithError(e);
+		}
+	}
+
+}
@@ -0,0 +1,225 @@
+package net.originmobi.pdv.service.produto;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+import net.originmobi.pdv.enumerado.produto.ProdutoBalanca;
+
+/**
+ * Cópia imutável dos produtos vendáveis em uma versão do catálogo.
+ *
+ * Cada alteração de produto gera uma nova versão, uma cópia de versão
+ * anterior ou vencida não é mais entregue pelo ProdutoService.
+ *
+ * Além da lista, mantém os índices usados pela leitura do scanner: código e
+ * código de barras em mapas de chave long e as palavras da descrição em
+ * ordem alfabética para a busca por prefixo.
+ */
+public final class CatalogoVenda {
+
+	private static final Pattern ACENTOS = Pattern.compile("\\p{M}+");
+	private static final Pattern SEPARADORES = Pattern.compile("[^a-z0-9]+");
+
+	private final long versao;
+	private final long validoAte;
+	private final List<ProdutoCatalogo> produtos;
+
+	private final MapaLong porCodigo;
+	private final MapaLong porCodigoBarras;
+
+	// tabela de PLU das etiquetas da balança, o PLU é o código do produto
+	private final MapaLong porPlu;
+
+	// palavras das descrições em ordem e a posição do produto de cada uma
+	private final String[] palavras;
+	private final int[] produtoDaPalavra;
+
+	// descrição normalizada de cada produto, com espaço antes de cada palavra
+	private final String[] descricoes;
+
+	public CatalogoVenda(long versao, long validoAte, List<ProdutoCatalogo> produtos) {
+		this.versao = versao;
+		this.validoAte = validoAte;
+		this.produtos = Collections.unmodifiableList(new ArrayList<>(produtos));
+
+		int tamanho = produtos.size();
+		porCodigo = new MapaLong(tamanho);
+		porCodigoBarras = new MapaLong(tamanho);
+		porPlu = new MapaLong(tamanho);
+		descricoes = new String[tamanho];
+
+		List<Palavra> indice = new ArrayList<>(tamanho * 3);
+
+		for (int i = 0; i < tamanho; i++) {
+			ProdutoCatalogo produto = produtos.get(i);
+
+			porCodigo.grava(produto.getCodigo(), i);
+
+			if (produto.getBalanca() == ProdutoBalanca.SIM)
+				porPlu.grava(produto.getCodigo(), i);
+
+			String barras = CodigoBarras.normaliza(produto.getCodigo_barras());
+			if (CodigoBarras.isNumerico(barras) && barras.length() <= 18)
+				porCodigoBarras.grava(CodigoBarras.chave(barras), i);
+
+			String[] termos = palavras(produto.getDescricao());
+			descricoes[i] = " " + String.join(" ", termos);
+
+			for (String termo : termos)
+				indice.add(new Palavra(termo, i));
+		}
+
+		Collections.sort(indice);
+
+		palavras = new String[indice.size()];
+		produtoDaPalavra = new int[indice.size()];
+		for (int i = 0; i < indice.size(); i++) {
+			palavras[i] = indice.get(i).texto;
+			produtoDaPalavra[i] = indice.get(i).produto;
+		}
+	}
+
+	public long getVersao() {
+		return versao;
+	}
+
+	public boolean isVencido(long agora) {
+		return agora >= validoAte;
+	}
+
+	public List<ProdutoCatalogo> getProdutos() {
+		return produtos;
+	}
+
+	public int getTamanho() {
+		return produtos.size();
+	}
+
+	public Optional<ProdutoCatalogo> busca(Long codigo) {
+		return codigo == null ? Optional.empty() : produto(porCodigo.busca(codigo));
+	}
+
+	public Optional<ProdutoCatalogo> buscaCodigoBarras(String codigo) {
+		String barras = CodigoBarras.normaliza(codigo);
+
+		if (!CodigoBarras.isNumerico(barras) || barras.length() > 18)
+			return Optional.empty();
+
+		return produto(porCodigoBarras.busca(CodigoBarras.chave(barras)));
+	}
+
+	/*
+	 * Produto de balança com o PLU da etiqueta
+	 */
+	public Optional<ProdutoCatalogo> buscaPlu(long plu) {
+		return produto(porPlu.busca(plu));
+	}
+
+	/*
+	 * Produtos com alguma palavra da descrição começando por cada palavra do
+	 * termo, sem diferenciar maiúsculas e acentos, na ordem da descrição
+	 */
+	public List<ProdutoCatalogo> pesquisa(String termo, int limite) {
+		String[] termos = palavras(termo);
+
+		if (termos.length == 0 || limite <= 0)
+			return Collections.emptyList();
+
+		// a palavra mais longa do termo seleciona menos candidatos
+		String chave = termos[0];
+		for (String t : termos)
+			if (t.length() > chave.length())
+				chave = t;
+
+		String[] inicios = new String[termos.length];
+		for (int i = 0; i < termos.length; i++)
+			inicios[i] = " " + termos[i];
+
+		int[] candidatos = new int[16];
+		int qtd = 0;
+		int ultimo = -1;
+
+		for (int i = primeiraPalavra(chave); i < palavras.length && palavras[i].startsWith(chave); i++) {
+			int produto = produtoDaPalavra[i];
+
+			if (produto == ultimo || !contemTodas(descricoes[produto], inicios))
+				continue;
+
+			if (qtd == candidatos.length)
+				candidatos = Arrays.copyOf(candidatos, qtd * 2);
+
+			candidatos[qtd++] = produto;
+			ultimo = produto;
+		}
+
+		// a lista já vem ordenada pela descrição, a posição dá a mesma ordem
+		Arrays.sort(candidatos, 0, qtd);
+
+		List<ProdutoCatalogo> encontrados = new ArrayList<>(Math.min(qtd, limite));
+		for (int i = 0; i < qtd && encontrados.size() < limite; i++)
+			if (i == 0 || candidatos[i] != candidatos[i - 1])
+				encontrados.add(produtos.get(candidatos[i]));
+
+		return encontrados;
+	}
+
+	private Optional<ProdutoCatalogo> produto(int posicao) {
+		return posicao < 0 ? Optional.empty() : Optional.of(produtos.get(posicao));
+	}
+
+	private int primeiraPalavra(String prefixo) {
+		int inicio = 0, fim = palavras.length;
+
+		while (inicio < fim) {
+			int meio = (inicio + fim) >>> 1;
+			if (palavras[meio].compareTo(prefixo) < 0)
+				inicio = meio + 1;
+			else
+				fim = meio;
+		}
+
+		return inicio;
+	}
+
+	private static boolean contemTodas(String descricao, String[] inicios) {
+		for (String inicio : inicios)
+			if (!descricao.contains(inicio))
+				return false;
+
+		return true;
+	}
+
+	static String[] palavras(String texto) {
+		if (texto == null)
+			return new String[0];
+
+		String normalizado = ACENTOS.matcher(Normalizer.normalize(texto, Normalizer.Form.NFD)).replaceAll("")
+				.toLowerCase(Locale.ROOT);
+
+		return Arrays.stream(SEPARADORES.split(normalizado)).filter(p -> !p.isEmpty()).toArray(String[]::new);
+	}
+
+	private static final class Palavra implements Comparable<Palavra> {
+
+		private final String texto;
+		private final int produto;
+
+		private Palavra(String texto, int produto) {
+			this.texto = texto;
+			this.produto = produto;
+		}
+
+		@Override
+		public int compareTo(Palavra outra) {
+			int comparacao = texto.compareTo(outra.texto);
+			return comparacao != 0 ? comparacao : Integer.compare(produto, outra.produto);
+		}
+	}
+
+}
@@ -0,0 +1,61 @@
+package net.originmobi.pdv.service.produto;
+
+/**
+ * Validação dos códigos de barras GTIN (EAN-8, UPC-A, EAN-13 e DUN-14)
+ * cadastrados nos produtos.
+ */
+public final class CodigoBarras {
+
+	private CodigoBarras() {
+	}
+
+	/*
+	 * Código sem espaços ou null quando não informado
+	 */
+	public static String normaliza(String codigo) {
+		if (codigo == null)
+			return null;
+
+		String semEspacos = codigo.replaceAll("\\s", "");
+		return semEspacos.isEmpty() ? null : semEspacos;
+	}
+
+	public static boolean isNumerico(String codigo) {
+		if (codigo == null || codigo.isEmpty())
+			return false;
+
+		for (int i = 0; i < codigo.length(); i++)
+			if (codigo.charAt(i) < '0' || codigo.charAt(i) > '9')
+				return false;
+
+		return true;
+	}
+
+	/*
+	 * Tamanho de um GTIN e dígito verificador pelo módulo 10
+	 */
+	public static boolean isValido(String codigo) {
+		if (!isNumerico(codigo))
+			return false;
+
+		int tamanho = codigo.length();
+		if (tamanho != 8 && tamanho != 12 && tamanho != 13 && tamanho != 14)
+			return false;
+
+		int soma = 0;
+		for (int i = tamanho - 2, peso = 3; i >= 0; i--, peso = 4 - peso)
+			soma += (codigo.charAt(i) - '0') * peso;
+
+		int digito = (10 - soma % 10) % 10;
+		return digito == codigo.charAt(tamanho - 1) - '0';
+	}
+
+	/*
+	 * Valor numérico do GTIN, usado como chave do índice. Os zeros à esquerda
+	 * não contam, como no GTIN-14 completado com zeros
+	 */
+	public static long chave(String codigo) {
+		return Long.parseLong(codigo);
+	}
+
+}
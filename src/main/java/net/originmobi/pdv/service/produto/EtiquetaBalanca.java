@@ -0,0 +1,81 @@
+package net.originmobi.pdv.service.produto;
+
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import net.originmobi.pdv.enumerado.produto.EtiquetaBalancaTipo;
+
+/**
+ * Leitura das etiquetas EAN-13 impressas pela balança, com preço ou peso
+ * embutido no código.
+ *
+ * O leiaute segue a configuração da balança: o prefixo (2 por padrão), a
+ * posição e a quantidade de dígitos do PLU e do valor, contadas a partir de
+ * zero no código de 13 dígitos, e se o valor é preço ou peso. O padrão é
+ * 2 PPPPP X VVVVV D, com PLU de 5 dígitos, um dígito ignorado e o preço em
+ * centavos.
+ */
+@Component
+public class EtiquetaBalanca {
+
+	private static final int TAMANHO = 13;
+
+	private final String prefixo;
+	private final int inicioPlu;
+	private final int digitosPlu;
+	private final int inicioValor;
+	private final int digitosValor;
+	private final EtiquetaBalancaTipo tipo;
+
+	public EtiquetaBalanca(@Value("${pdv.balanca.etiqueta.prefixo:2}") String prefixo,
+			@Value("${pdv.balanca.etiqueta.inicio-plu:1}") int inicioPlu,
+			@Value("${pdv.balanca.etiqueta.digitos-plu:5}") int digitosPlu,
+			@Value("${pdv.balanca.etiqueta.inicio-valor:7}") int inicioValor,
+			@Value("${pdv.balanca.etiqueta.digitos-valor:5}") int digitosValor,
+			@Value("${pdv.balanca.etiqueta.tipo:PRECO}") EtiquetaBalancaTipo tipo) {
+
+		if (!CodigoBarras.isNumerico(prefixo) || prefixo.length() > inicioPlu || prefixo.length() > inicioValor)
+			throw new IllegalArgumentException("Prefixo da etiqueta da balança inválido: " + prefixo);
+
+		// o último dígito é o verificador do EAN-13
+		if (digitosPlu <= 0 || digitosValor <= 0 || inicioPlu + digitosPlu > TAMANHO - 1
+				|| inicioValor + digitosValor > TAMANHO - 1
+				|| (inicioPlu < inicioValor + digitosValor && inicioValor < inicioPlu + digitosPlu))
+			throw new IllegalArgumentException("Leiaute da etiqueta da balança inválido");
+
+		this.prefixo = prefixo;
+		this.inicioPlu = inicioPlu;
+		this.digitosPlu = digitosPlu;
+		this.inicioValor = inicioValor;
+		this.digitosValor = digitosValor;
+		this.tipo = tipo;
+	}
+
+	/*
+	 * Vazio se o código não é uma etiqueta da balança: outro tamanho, outro
+	 * prefixo ou dígito verificador errado
+	 */
+	public Optional<LeituraEtiqueta> le(String codigo) {
+		String barras = CodigoBarras.normaliza(codigo);
+
+		if (barras == null || barras.length() != TAMANHO || !barras.startsWith(prefixo)
+				|| !CodigoBarras.isValido(barras))
+			return Optional.empty();
+
+		long plu = numero(barras, inicioPlu, digitosPlu);
+		long valor = numero(barras, inicioValor, digitosValor);
+
+		return Optional.of(new LeituraEtiqueta(plu, tipo, valor));
+	}
+
+	private static long numero(String codigo, int inicio, int digitos) {
+		long numero = 0;
+		for (int i = inicio; i < inicio + digitos; i++)
+			numero = numero * 10 + (codigo.charAt(i) - '0');
+
+		return numero;
+	}
+
+}
@@ -0,0 +1,31 @@
+package net.originmobi.pdv.service.produto;
+
+import net.originmobi.pdv.utilitarios.Dinheiro;
+
+/**
+ * Produto lido pelo scanner e, para a etiqueta da balança, o valor do item
+ * que vai para o valor_balanca da linha da venda.
+ */
+public final class LeituraCodigoBarras {
+
+	private final ProdutoCatalogo produto;
+	private final Dinheiro valorBalanca;
+
+	public LeituraCodigoBarras(ProdutoCatalogo produto, Dinheiro valorBalanca) {
+		this.produto = produto;
+		this.valorBalanca = valorBalanca;
+	}
+
+	public ProdutoCatalogo getProduto() {
+		return produto;
+	}
+
+	public Dinheiro getValorBalanca() {
+		return valorBalanca;
+	}
+
+	public boolean isEtiquetaBalanca() {
+		return valorBalanca.isPositivo();
+	}
+
+}
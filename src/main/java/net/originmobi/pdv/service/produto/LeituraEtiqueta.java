@@ -0,0 +1,48 @@
+package net.originmobi.pdv.service.produto;
+
+import java.math.BigDecimal;
+
+import net.originmobi.pdv.enumerado.produto.EtiquetaBalancaTipo;
+import net.originmobi.pdv.utilitarios.Dinheiro;
+
+/**
+ * Conteúdo de uma etiqueta da balança: o PLU do produto e o preço em
+ * centavos ou o peso em gramas.
+ */
+public final class LeituraEtiqueta {
+
+	private final long plu;
+	private final EtiquetaBalancaTipo tipo;
+	private final long valor;
+
+	public LeituraEtiqueta(long plu, EtiquetaBalancaTipo tipo, long valor) {
+		this.plu = plu;
+		this.tipo = tipo;
+		this.valor = valor;
+	}
+
+	public long getPlu() {
+		return plu;
+	}
+
+	public EtiquetaBalancaTipo getTipo() {
+		return tipo;
+	}
+
+	public long getValor() {
+		return valor;
+	}
+
+	/*
+	 * Valor do item: o preço da etiqueta ou o peso vezes o preço do quilo,
+	 * arredondado em centavos
+	 */
+	public Dinheiro valorItem(Double precoQuilo) {
+		if (tipo == EtiquetaBalancaTipo.PRECO)
+			return Dinheiro.deCentavos(valor);
+
+		return Dinheiro.de(BigDecimal.valueOf(precoQuilo == null ? 0.0 : precoQuilo)
+				.multiply(BigDecimal.valueOf(valor, 3)));
+	}
+
+}
@@ -0,0 +1,73 @@
+package net.originmobi.pdv.service.produto;
+
+import java.util.Arrays;
+
+/**
+ * Mapa de chave long para posição int com endereçamento aberto, sem criar
+ * um Long e uma entrada por chave como o HashMap. Usado nos índices do
+ * catálogo, que são montados uma vez e depois só consultados.
+ */
+final class MapaLong {
+
+	private static final int AUSENTE = -1;
+
+	private final long[] chaves;
+	private final int[] valores;
+	private final int mascara;
+	private int tamanho;
+
+	MapaLong(int capacidadeEsperada) {
+		int capacidade = Integer.highestOneBit(Math.max(4, capacidadeEsperada * 2 - 1)) << 1;
+		chaves = new long[capacidade];
+		valores = new int[capacidade];
+		Arrays.fill(valores, AUSENTE);
+		mascara = capacidade - 1;
+	}
+
+	/*
+	 * Grava a posição da chave, retorna false se a chave já existia e mantém
+	 * a primeira posição gravada
+	 */
+	boolean grava(long chave, int valor) {
+		if (tamanho * 2 >= chaves.length)
+			throw new IllegalStateException("Capacidade do mapa esgotada");
+
+		int i = posicao(chave);
+
+		while (valores[i] != AUSENTE) {
+			if (chaves[i] == chave)
+				return false;
+			i = (i + 1) & mascara;
+		}
+
+		chaves[i] = chave;
+		valores[i] = valor;
+		tamanho++;
+		return true;
+	}
+
+	/*
+	 * Posição gravada para a chave ou -1
+	 */
+	int busca(long chave) {
+		int i = posicao(chave);
+
+		while (valores[i] != AUSENTE) {
+			if (chaves[i] == chave)
+				return valores[i];
+			i = (i + 1) & mascara;
+		}
+
+		return AUSENTE;
+	}
+
+	int tamanho() {
+		return tamanho;
+	}
+
+	private int posicao(long chave) {
+		long h = chave * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32)) & mascara;
+	}
+
+}
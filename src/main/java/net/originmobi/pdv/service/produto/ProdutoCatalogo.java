@@ -0,0 +1,50 @@
+package net.originmobi.pdv.service.produto;
+
+import java.io.Serializable;
+
+import net.originmobi.pdv.enumerado.produto.ProdutoBalanca;
+
+/**
+ * Dados de um produto vendável exibidos na tela de venda. Os nomes dos
+ * getters seguem os do Produto para que as views usem um ou outro.
+ */
+public final class ProdutoCatalogo implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final Long codigo;
+	private final String codigo_barras;
+	private final String descricao;
+	private final Double valor_venda;
+	private final ProdutoBalanca balanca;
+
+	public ProdutoCatalogo(Long codigo, String codigo_barras, String descricao, Double valor_venda,
+			ProdutoBalanca balanca) {
+		this.codigo = codigo;
+		this.codigo_barras = codigo_barras;
+		this.descricao = descricao;
+		this.valor_venda = valor_venda;
+		this.balanca = balanca;
+	}
+
+	public Long getCodigo() {
+		return codigo;
+	}
+
+	public String getCodigo_barras() {
+		return codigo_barras;
+	}
+
+	public String getDescricao() {
+		return descricao;
+	}
+
+	public Double getValor_venda() {
+		return valor_venda;
+	}
+
+	public ProdutoBalanca getBalanca() {
+		return balanca;
+	}
+
+}
@@ -0,0 +1,124 @@
+package net.originmobi.pdv.service.venda;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.originmobi.pdv.enumerado.produto.ProdutoBalanca;
+
+/**
+ * Itens de uma venda em aberto mantidos em memória até a gravação em lote.
+ *
+ * Os métodos são sincronizados no próprio carrinho, o
+ * {@link CarrinhoVendaService} também sincroniza nele para gravar e descartar.
+ */
+public class CarrinhoVenda {
+
+	private final Long venda;
+	private final List<CarrinhoVendaItem> itens = new ArrayList<>();
+	private long sequencia;
+	private double total;
+	private boolean descartado;
+
+	// situação da venda já conferida no banco depois que o carrinho foi criado
+	private boolean vendaConferida;
+	private volatile long ultimoAcesso = System.currentTimeMillis();
+
+	public CarrinhoVenda(Long venda) {
+		this.venda = venda;
+	}
+
+	public synchronized CarrinhoVendaItem adiciona(Long produto, String descricao, Double valorVenda,
+			ProdutoBalanca balanca, Double valorBalanca, int qtd) {
+		ultimoAcesso = System.currentTimeMillis();
+		boolean pesado = valorBalanca != null && valorBalanca > 0;
+
+		if (!pesado) {
+			for (int i = 0; i < itens.size(); i++) {
+				CarrinhoVendaItem atual = itens.get(i);
+
+				if (atual.isAgrupavel(produto)) {
+					CarrinhoVendaItem item = atual.comQtd(atual.getQtd() + qtd);
+					itens.set(i, item);
+					total += item.getValor() - atual.getValor();
+					return item;
+				}
+			}
+		}
+
+		sequencia++;
+		CarrinhoVendaItem item = new CarrinhoVendaItem(-sequencia, produto, descricao, valorVenda, balanca,
+				valorBalanca, qtd);
+		itens.add(item);
+		total += item.getValor();
+		return item;
+	}
+
+	public synchronized boolean remove(Long posicao) {
+		for (int i = 0; i < itens.size(); i++) {
+			if (itens.get(i).getPosicao().equals(posicao)) {
+				total -= itens.remove(i).getValor();
+				ultimoAcesso = System.currentTimeMillis();
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/*
+	 * Devolve itens que foram retirados para gravação e não chegaram a ser
+	 * gravados, mantendo-os antes dos itens adicionados depois
+	 */
+	public synchronized void restaura(List<CarrinhoVendaItem> restaurados) {
+		itens.addAll(0, restaurados);
+		for (CarrinhoVendaItem item : restaurados) {
+			total += item.getValor();
+			sequencia = Math.max(sequencia, -item.getPosicao());
+		}
+	}
+
+	public synchronized List<CarrinhoVendaItem> getItens() {
+		return new ArrayList<>(itens);
+	}
+
+	public synchronized List<Object> linhas() {
+		List<Object> linhas = new ArrayList<>(itens.size());
+		for (CarrinhoVendaItem item : itens)
+			linhas.add(item.linha());
+
+		return linhas;
+	}
+
+	public synchronized double getTotal() {
+		return total;
+	}
+
+	public synchronized boolean isVazio() {
+		return itens.isEmpty();
+	}
+
+	public synchronized boolean isDescartado() {
+		return descartado;
+	}
+
+	synchronized void descarta() {
+		descartado = true;
+	}
+
+	synchronized boolean isVendaConferida() {
+		return vendaConferida;
+	}
+
+	synchronized void vendaConferida() {
+		vendaConferida = true;
+	}
+
+	public Long getVenda() {
+		return venda;
+	}
+
+	public long getUltimoAcesso() {
+		return ultimoAcesso;
+	}
+
+}
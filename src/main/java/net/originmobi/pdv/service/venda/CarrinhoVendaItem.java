@@ -0,0 +1,93 @@
+package net.originmobi.pdv.service.venda;
+
+import net.originmobi.pdv.enumerado.produto.ProdutoBalanca;
+import net.originmobi.pdv.model.VendaProduto;
+
+/**
+ * Item de um {@link CarrinhoVenda} ainda não gravado em venda_produtos.
+ *
+ * A posição é negativa para não se confundir com o código de um registro de
+ * venda_produtos já gravado.
+ */
+public class CarrinhoVendaItem {
+
+	private final Long posicao;
+	private final Long produto;
+	private final String descricao;
+	private final Double valorVenda;
+	private final ProdutoBalanca balanca;
+	private final Double valorBalanca;
+	private final int qtd;
+
+	public CarrinhoVendaItem(Long posicao, Long produto, String descricao, Double valorVenda, ProdutoBalanca balanca,
+			Double valorBalanca, int qtd) {
+		this.posicao = posicao;
+		this.produto = produto;
+		this.descricao = descricao;
+		this.valorVenda = valorVenda == null ? 0.0 : valorVenda;
+		this.balanca = balanca == null ? ProdutoBalanca.NAO : balanca;
+		this.valorBalanca = valorBalanca == null ? 0.0 : valorBalanca;
+		this.qtd = qtd;
+	}
+
+	public CarrinhoVendaItem comQtd(int novaQtd) {
+		return new CarrinhoVendaItem(posicao, produto, descricao, valorVenda, balanca, valorBalanca, novaQtd);
+	}
+
+	/*
+	 * item pesado é sempre uma linha própria, os demais são agrupados por
+	 * produto somando a quantidade
+	 */
+	public boolean isAgrupavel(Long outroProduto) {
+		return valorBalanca <= 0 && produto.equals(outroProduto);
+	}
+
+	/*
+	 * mesma regra do trigger tr_atualizaTotalProdutosVenda_AFTER_INSERT, se
+	 * tiver valor de balança ele prevalece sobre o valor de venda
+	 */
+	public Double getValor() {
+		return (valorBalanca > 0 ? valorBalanca : valorVenda) * qtd;
+	}
+
+	/*
+	 * Monta a linha no mesmo formato da query
+	 * VendaProdutosRepository.findByProdutosDaVenda usada na tela tabProdutos
+	 */
+	public Object[] linha() {
+		return new Object[] { produto, descricao, valorVenda, posicao, balanca.ordinal(), valorBalanca, qtd };
+	}
+
+	public VendaProduto paraVendaProduto(Long venda) {
+		return new VendaProduto(produto, venda, valorBalanca, qtd, valorVenda);
+	}
+
+	public Long getPosicao() {
+		return posicao;
+	}
+
+	public Long getProduto() {
+		return produto;
+	}
+
+	public String getDescricao() {
+		return descricao;
+	}
+
+	public Double getValorVenda() {
+		return valorVenda;
+	}
+
+	public ProdutoBalanca getBalanca() {
+		return balanca;
+	}
+
+	public Double getValorBalanca() {
+		return valorBalanca;
+	}
+
+	public int getQtd() {
+		return qtd;
+	}
+
+}
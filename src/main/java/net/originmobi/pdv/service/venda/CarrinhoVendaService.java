@@ -0,0 +1,306 @@
+package net.originmobi.pdv.service.venda;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import net.originmobi.pdv.enumerado.VendaSituacao;
+import net.originmobi.pdv.enumerado.produto.ProdutoBalanca;
+import net.originmobi.pdv.model.Produto;
+import net.originmobi.pdv.model.VendaProduto;
+import net.originmobi.pdv.repository.VendaRepository;
+import net.originmobi.pdv.service.ProdutoService;
+import net.originmobi.pdv.service.VendaProdutoService;
+import net.originmobi.pdv.service.produto.ProdutoCatalogo;
+
+/**
+ * Mantém em memória os itens das vendas em aberto, indexados pelo código da
+ * venda, e os grava em lote em venda_produtos quando a venda é fechada, quando
+ * o carrinho fica ocioso ou quando é preciso liberar espaço para um novo
+ * carrinho.
+ *
+ * As vendas abertas em contingência têm código negativo, os carrinhos delas
+ * nunca são gravados aqui: saem com {@link #retira(Long)} quando a venda é
+ * fechada no diário de contingência ou, se ela ainda estiver aberta, quando
+ * o terminal é encerrado e o carrinho vai para o diário.
+ */
+@Service
+public class CarrinhoVendaService {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(CarrinhoVendaService.class);
+
+	private final Map<Long, CarrinhoVenda> carrinhos = new ConcurrentHashMap<>();
+
+	private final VendaRepository vendas;
+	private final ProdutoService produtos;
+	private final VendaProdutoService vendaProdutos;
+	private final TransactionTemplate transacao;
+
+	private final boolean habilitado;
+	private final int maxCarrinhos;
+	private final long tempoOcioso;
+
+	public CarrinhoVendaService(VendaRepository vendas, ProdutoService produtos, VendaProdutoService vendaProdutos,
+			PlatformTransactionManager transactionManager,
+			@Value("${pdv.venda.carrinho.habilitado:true}") boolean habilitado,
+			@Value("${pdv.venda.carrinho.max-carrinhos:500}") int maxCarrinhos,
+			@Value("${pdv.venda.carrinho.segundos-ocioso:300}") long segundosOcioso) {
+		this.vendas = vendas;
+		this.produtos = produtos;
+		this.vendaProdutos = vendaProdutos;
+		this.transacao = new TransactionTemplate(transactionManager);
+		this.habilitado = habilitado;
+		this.maxCarrinhos = maxCarrinhos;
+		this.tempoOcioso = segundosOcioso * 1000;
+	}
+
+	public boolean isHabilitado() {
+		return habilitado;
+	}
+
+	/*
+	 * Só consulta a situação da venda quando o carrinho é novo, um carrinho só
+	 * é criado para venda aberta e é descartado ao fechar a venda
+	 */
+	public boolean adiciona(Long codVenda, Long codProduto, Double valorBalanca, int qtd) {
+		if (!carrinhos.containsKey(codVenda))
+			liberaEspaco();
+
+		Produto produto = produtos.busca(codProduto);
+		return adiciona(codVenda, produto.getCodigo(), produto.getDescricao(), produto.getValor_venda(),
+				produto.getBalanca(), valorBalanca, qtd, true);
+	}
+
+	/*
+	 * Adiciona com os dados do catálogo em memória, sem consultar o banco. A
+	 * situação da venda é conferida por quem chama
+	 */
+	public void adiciona(Long codVenda, ProdutoCatalogo produto, Double valorBalanca, int qtd) {
+		adiciona(codVenda, produto.getCodigo(), produto.getDescricao(), produto.getValor_venda(), produto.getBalanca(),
+				valorBalanca, qtd, false);
+	}
+
+	/*
+	 * A situação é conferida com o carrinho travado: um carrinho criado logo
+	 * depois que o fechamento gravou o anterior não recebe itens de venda já
+	 * fechada
+	 */
+	private boolean adiciona(Long codVenda, Long produto, String descricao, Double valorVenda, ProdutoBalanca balanca,
+			Double valorBalanca, int qtd, boolean confereVenda) {
+		while (true) {
+			CarrinhoVenda carrinho = carrinhos.computeIfAbsent(codVenda, CarrinhoVenda::new);
+
+			synchronized (carrinho) {
+				if (carrinho.isDescartado())
+					continue;
+
+				if (confereVenda && !carrinho.isVendaConferida()) {
+					if (!VendaSituacao.ABERTA.toString().equals(vendas.verificaSituacao(codVenda))) {
+						if (carrinho.isVazio()) {
+							carrinho.descarta();
+							carrinhos.remove(codVenda, carrinho);
+						}
+						return false;
+					}
+
+					carrinho.vendaConferida();
+				}
+
+				carrinho.adiciona(produto, descricao, valorVenda, balanca, valorBalanca, qtd);
+				return true;
+			}
+		}
+	}
+
+	public boolean remove(Long codVenda, Long posicao) {
+		CarrinhoVenda carrinho = carrinhos.get(codVenda);
+		return carrinho != null && carrinho.remove(posicao);
+	}
+
+	public Optional<CarrinhoVenda> busca(Long codVenda) {
+		return Optional.ofNullable(carrinhos.get(codVenda));
+	}
+
+	/*
+	 * Descarta o carrinho da venda sem gravar e retorna os itens dele
+	 */
+	public List<CarrinhoVendaItem> retira(Long codVenda) {
+		CarrinhoVenda carrinho = carrinhos.get(codVenda);
+
+		if (carrinho == null)
+			return new ArrayList<>();
+
+		synchronized (carrinho) {
+			if (carrinho.isDescartado())
+				return new ArrayList<>();
+
+			carrinho.descarta();
+			carrinhos.remove(codVenda, carrinho);
+			return carrinho.getItens();
+		}
+	}
+
+	/*
+	 * Devolve ao carrinho itens retirados que não puderam ser usados
+	 */
+	public void devolve(Long codVenda, List<CarrinhoVendaItem> itens) {
+		if (!itens.isEmpty())
+			restaura(codVenda, itens);
+	}
+
+	/*
+	 * Grava os itens do carrinho da venda e o descarta. Se houver uma transação
+	 * em andamento a gravação participa dela e, caso ela seja desfeita, os itens
+	 * voltam para o carrinho
+	 */
+	public void grava(Long codVenda) {
+		CarrinhoVenda carrinho = carrinhos.get(codVenda);
+
+		if (carrinho != null)
+			grava(carrinho);
+	}
+
+	private void grava(CarrinhoVenda carrinho) {
+		List<CarrinhoVendaItem> itens;
+
+		synchronized (carrinho) {
+			if (carrinho.isDescartado())
+				return;
+
+			itens = carrinho.getItens();
+			carrinho.descarta();
+			carrinhos.remove(carrinho.getVenda(), carrinho);
+		}
+
+		if (itens.isEmpty())
+			return;
+
+		Long codVenda = carrinho.getVenda();
+		List<VendaProduto> vendaProduto = new ArrayList<>(itens.size());
+		for (CarrinhoVendaItem item : itens)
+			vendaProduto.add(item.paraVendaProduto(codVenda));
+
+		boolean[] registrada = { false };
+		boolean gravado;
+
+		try {
+			gravado = transacao.execute(status -> {
+				TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+					@Override
+					public void afterCompletion(int situacao) {
+						if (situacao != STATUS_COMMITTED)
+							restaura(codVenda, itens);
+					}
+				});
+				registrada[0] = true;
+
+				// espera um fechamento em andamento; venda já fechada não recebe mais itens
+				String situacao = vendas.travaSituacao(codVenda);
+				if (!VendaSituacao.ABERTA.toString().equals(situacao))
+					return false;
+
+				vendaProdutos.salvarLote(vendaProduto);
+				return true;
+			});
+		} catch (RuntimeException e) {
+			// sem conexão a transação nem começa e a sincronização não devolve os itens
+			if (!registrada[0])
+				restaura(codVenda, itens);
+
+			throw e;
+		}
+
+		if (!gravado) {
+			LOGGER.warn("Venda {} não está mais aberta, {} itens do carrinho descartados", codVenda, itens.size());
+			return;
+		}
+
+		LOGGER.debug("Carrinho da venda {} gravado com {} itens", codVenda, itens.size());
+	}
+
+	private void restaura(Long codVenda, List<CarrinhoVendaItem> itens) {
+		LOGGER.warn("Gravação do carrinho da venda {} desfeita, itens devolvidos ao carrinho", codVenda);
+
+		while (true) {
+			CarrinhoVenda carrinho = carrinhos.computeIfAbsent(codVenda, CarrinhoVenda::new);
+
+			synchronized (carrinho) {
+				if (!carrinho.isDescartado()) {
+					carrinho.restaura(itens);
+					return;
+				}
+			}
+		}
+	}
+
+	/*
+	 * Ao atingir o limite de carrinhos grava o de acesso mais antigo
+	 */
+	private void liberaEspaco() {
+		while (carrinhos.size() >= maxCarrinhos) {
+			CarrinhoVenda maisAntigo = null;
+
+			for (CarrinhoVenda carrinho : carrinhos.values()) {
+				if (isLocal(carrinho))
+					continue;
+
+				if (maisAntigo == null || carrinho.getUltimoAcesso() < maisAntigo.getUltimoAcesso())
+					maisAntigo = carrinho;
+			}
+
+			if (maisAntigo == null)
+				return;
+
+			grava(maisAntigo);
+		}
+	}
+
+	@Scheduled(fixedDelayString = "${pdv.venda.carrinho.intervalo-verificacao:60000}")
+	public void gravaOciosos() {
+		long limite = System.currentTimeMillis() - tempoOcioso;
+
+		for (CarrinhoVenda carrinho : carrinhos.values()) {
+			if (!isLocal(carrinho) && carrinho.getUltimoAcesso() < limite) {
+				try {
+					grava(carrinho);
+				} catch (Exception e) {
+					LOGGER.error("Erro ao gravar carrinho ocioso da venda {}", carrinho.getVenda(), e);
+				}
+			}
+		}
+	}
+
+	@PreDestroy
+	public void gravaTodos() {
+		for (CarrinhoVenda carrinho : carrinhos.values()) {
+			// guardado no diário pela ContingenciaService, encerrada antes
+			if (isLocal(carrinho))
+				continue;
+
+			try {
+				grava(carrinho);
+			} catch (Exception e) {
+				LOGGER.error("Erro ao gravar carrinho da venda {} no encerramento", carrinho.getVenda(), e);
+			}
+		}
+	}
+
+	private static boolean isLocal(CarrinhoVenda carrinho) {
+		return carrinho.getVenda() < 0;
+	}
+
+}
@@ -0,0 +1,63 @@
+package net.originmobi.pdv.service.venda;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import net.originmobi.pdv.model.Caixa;
+import net.originmobi.pdv.model.CaixaLancamento;
+import net.originmobi.pdv.model.Parcela;
+import net.originmobi.pdv.model.Receber;
+import net.originmobi.pdv.model.cartao.CartaoLancamento;
+
+/**
+ * Tudo o que o fechamento de uma venda grava, montado em memória antes da
+ * primeira gravação para que uma venda inválida não chegue a gravar nada.
+ */
+public class FechamentoVenda {
+
+	private final Receber receber;
+	private final List<Parcela> parcelas = new ArrayList<>();
+	private final List<CaixaLancamento> lancamentosCaixa = new ArrayList<>();
+	private final List<CartaoLancamento> lancamentosCartao = new ArrayList<>();
+	private Caixa caixa;
+
+	public FechamentoVenda(Receber receber) {
+		this.receber = receber;
+	}
+
+	public void adicionaParcela(Parcela parcela) {
+		parcelas.add(parcela);
+	}
+
+	public void adicionaLancamentoCaixa(CaixaLancamento lancamento) {
+		caixa = lancamento.getCaixa().orElse(caixa);
+		lancamentosCaixa.add(lancamento);
+	}
+
+	public void adicionaLancamentoCartao(CartaoLancamento lancamento) {
+		lancamentosCartao.add(lancamento);
+	}
+
+	public Receber getReceber() {
+		return receber;
+	}
+
+	public List<Parcela> getParcelas() {
+		return Collections.unmodifiableList(parcelas);
+	}
+
+	public Optional<Caixa> getCaixa() {
+		return Optional.ofNullable(caixa);
+	}
+
+	public List<CaixaLancamento> getLancamentosCaixa() {
+		return Collections.unmodifiableList(lancamentosCaixa);
+	}
+
+	public List<CartaoLancamento> getLancamentosCartao() {
+		return Collections.unmodifiableList(lancamentosCartao);
+	}
+
+}
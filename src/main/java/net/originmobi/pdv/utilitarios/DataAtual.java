@@ -1,9 +1,7 @@
 package net.originmobi.pdv.utilitarios;
 
 import java.sql.Timestamp;
-import java.text.SimpleDateFormat;
-import java.util.Calendar;
-import java.util.Date;
+import java.time.LocalDate;
 
 import org.springframework.stereotype.Repository;
 
@@ -13,22 +11,11 @@ public class DataAtual {
 	public DataAtual() {
 	}
 
+	/*
+	 * Data atual somada aos dias no formato yyyy-MM-dd
+	 */
 	public String DataAtualIncrementa(int diasAMais) {
-		String dataAlterada = "";
-
-		try {
-			Calendar dataAtual = Calendar.getInstance();
-			dataAtual.setTime(new Date());
-			dataAtual.add(Calendar.DATE, diasAMais);
-
-			SimpleDateFormat formatar = new SimpleDateFormat("yyyy-MM-dd");
-			dataAlterada = formatar.format(dataAtual.getTime());
-
-		} catch (Exception e) {
-			e.getStackTrace();
-		}
-
-		return dataAlterada;
+		return LocalDate.now().plusDays(diasAMais).toString();
 	}
 
 	public Timestamp dataAtualTimeStamp() {
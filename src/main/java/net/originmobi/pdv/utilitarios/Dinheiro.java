@@ -0,0 +1,173 @@
+package net.originmobi.pdv.utilitarios;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Valor monetário em centavos.
+ *
+ * As operações de soma, subtração e comparação trabalham direto no long, sem
+ * formatar e converter de volta em texto. Toda entrada em Double ou
+ * BigDecimal é arredondada para centavos com HALF_UP, assim o mesmo valor
+ * sempre gera os mesmos centavos.
+ */
+public final class Dinheiro implements Comparable<Dinheiro>, Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	public static final Dinheiro ZERO = new Dinheiro(0);
+
+	private static final BigDecimal CEM = BigDecimal.valueOf(100);
+
+	private final long centavos;
+
+	private Dinheiro(long centavos) {
+		this.centavos = centavos;
+	}
+
+	public static Dinheiro deCentavos(long centavos) {
+		return centavos == 0 ? ZERO : new Dinheiro(centavos);
+	}
+
+	/*
+	 * null vale zero, os campos de valor das entidades podem vir nulos
+	 */
+	public static Dinheiro de(Double valor) {
+		if (valor == null)
+			return ZERO;
+
+		return de(BigDecimal.valueOf(valor));
+	}
+
+	public static Dinheiro de(String valor) {
+		if (valor == null || valor.trim().isEmpty())
+			return ZERO;
+
+		return de(new BigDecimal(valor.trim().replace(",", ".")));
+	}
+
+	public static Dinheiro de(BigDecimal valor) {
+		if (valor == null)
+			return ZERO;
+
+		return deCentavos(valor.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact());
+	}
+
+	public Dinheiro mais(Dinheiro outro) {
+		return deCentavos(Math.addExact(centavos, outro.centavos));
+	}
+
+	public Dinheiro menos(Dinheiro outro) {
+		return deCentavos(Math.subtractExact(centavos, outro.centavos));
+	}
+
+	public Dinheiro vezes(long quantidade) {
+		return deCentavos(Math.multiplyExact(centavos, quantidade));
+	}
+
+	public Dinheiro negativo() {
+		return deCentavos(Math.negateExact(centavos));
+	}
+
+	/*
+	 * Percentual do valor, como alíquota de imposto ou taxa de cartão,
+	 * arredondado para centavos
+	 */
+	public Dinheiro percentual(Double aliquota) {
+		if (aliquota == null || centavos == 0)
+			return ZERO;
+
+		return deCentavos(BigDecimal.valueOf(centavos).multiply(BigDecimal.valueOf(aliquota))
+				.divide(CEM, 0, RoundingMode.HALF_UP).longValueExact());
+	}
+
+	/*
+	 * Divide em partes que somam exatamente o valor, a diferença do
+	 * arredondamento fica na primeira parte
+	 */
+	public Dinheiro[] divide(int partes) {
+		if (partes <= 0)
+			throw new IllegalArgumentException("Quantidade de partes inválida: " + partes);
+
+		long parte = centavos / partes;
+		long resto = centavos - parte * partes;
+
+		Dinheiro[] resultado = new Dinheiro[partes];
+		for (int i = 0; i < partes; i++)
+			resultado[i] = deCentavos(i == 0 ? parte + resto : parte);
+
+		return resultado;
+	}
+
+	/*
+	 * zero quando negativo, usado para saldos restantes
+	 */
+	public Dinheiro naoNegativo() {
+		return centavos < 0 ? ZERO : this;
+	}
+
+	public Dinheiro min(Dinheiro outro) {
+		return centavos <= outro.centavos ? this : outro;
+	}
+
+	public boolean maiorQue(Dinheiro outro) {
+		return centavos > outro.centavos;
+	}
+
+	public boolean menorQue(Dinheiro outro) {
+		return centavos < outro.centavos;
+	}
+
+	public boolean isZero() {
+		return centavos == 0;
+	}
+
+	public boolean isPositivo() {
+		return centavos > 0;
+	}
+
+	public boolean isNegativo() {
+		return centavos < 0;
+	}
+
+	public long getCentavos() {
+		return centavos;
+	}
+
+	/*
+	 * valor para os campos Double das entidades
+	 */
+	public Double doubleValue() {
+		return centavos / 100.0;
+	}
+
+	public BigDecimal toBigDecimal() {
+		return BigDecimal.valueOf(centavos, 2);
+	}
+
+	@Override
+	public int compareTo(Dinheiro outro) {
+		return Long.compare(centavos, outro.centavos);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (!(obj instanceof Dinheiro))
+			return false;
+		return centavos == ((Dinheiro) obj).centavos;
+	}
+
+	@Override
+	public int hashCode() {
+		return Long.hashCode(centavos);
+	}
+
+	@Override
+	public String toString() {
+		return toBigDecimal().toPlainString();
+	}
+
+}
@@ -0,0 +1,27 @@
+package net.originmobi.pdv.utilitarios;
+
+import java.math.BigDecimal;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+
+/**
+ * Grava {@link Dinheiro} em colunas DECIMAL(…, 2). Não é aplicado
+ * automaticamente, o campo da entidade passa a usá-lo com
+ * {@code @Convert(converter = DinheiroConverter.class)} junto da migração
+ * da coluna de DOUBLE para DECIMAL.
+ */
+@Converter
+public class DinheiroConverter implements AttributeConverter<Dinheiro, BigDecimal> {
+
+	@Override
+	public BigDecimal convertToDatabaseColumn(Dinheiro valor) {
+		return valor == null ? null : valor.toBigDecimal();
+	}
+
+	@Override
+	public Dinheiro convertToEntityAttribute(BigDecimal valor) {
+		return valor == null ? null : Dinheiro.de(valor);
+	}
+
+}
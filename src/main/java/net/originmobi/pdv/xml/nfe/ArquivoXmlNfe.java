@@ -0,0 +1,770 @@
+package net.originmobi.pdv.xml.nfe;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap.SimpleEntry;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Arquivo dos XMLs das notas, no lugar de um arquivo solto por nota.
+ *
+ * Os XMLs são gravados compactados, sempre no fim do segmento em uso, e um
+ * índice em memória guarda onde está o XML de cada chave de acesso. A
+ * remoção grava um registro de remoção, nada é alterado no lugar. Cada
+ * registro vai para o disco (force) antes de a gravação retornar. Quando o
+ * segmento chega ao tamanho máximo ele é fechado, com o seu índice gravado
+ * ao lado, e um novo é aberto. Os segmentos fechados são lidos mapeados em
+ * memória.
+ *
+ * Na abertura os índices dos segmentos fechados são carregados e o segmento
+ * em uso é percorrido, descartando o registro incompleto de uma gravação
+ * interrompida. Segmentos fechados com mais da metade do espaço em XMLs
+ * substituídos ou removidos são compactados: os registros ainda válidos vão
+ * para o segmento em uso e o segmento antigo é apagado.
+ *
+ * Formato do registro: marca, tipo, tamanho e bytes da chave, tamanho e
+ * CRC-32 do conteúdo e o conteúdo compactado.
+ */
+public class ArquivoXmlNfe implements Closeable {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(ArquivoXmlNfe.class);
+
+	public static final long TAMANHO_SEGMENTO = 64L << 20;
+
+	private static final int MARCA = 0x4E464531;
+	private static final byte XML = 1;
+	private static final byte REMOCAO = 2;
+
+	// marca, tipo, tamanho da chave, tamanho e CRC do conteúdo
+	private static final int CABECALHO = 4 + 1 + 2 + 4 + 4;
+
+	private static final String PREFIXO = "segmento-";
+	private static final String EXTENSAO = ".dat";
+	private static final String EXTENSAO_INDICE = ".idx";
+	private static final String EXTENSAO_SOLTO = ".xml";
+
+	private static final Map<Path, ArquivoXmlNfe> ABERTOS = new ConcurrentHashMap<>();
+
+	/**
+	 * Escreve o XML na saída do arquivo, que o compacta ao receber.
+	 */
+	public interface Conteudo {
+		void escreve(OutputStream saida) throws IOException;
+	}
+
+	private final Path diretorio;
+	private final long tamanhoSegmento;
+
+	private final Map<String, Posicao> indice = new HashMap<>();
+	private final TreeMap<Integer, Segmento> segmentos = new TreeMap<>();
+	private final ReentrantReadWriteLock trava = new ReentrantReadWriteLock();
+
+	private Segmento ativo;
+	private boolean compactando;
+
+	/*
+	 * Arquivo do diretório, aberto uma vez e compartilhado por quem usar o
+	 * mesmo diretório
+	 */
+	public static ArquivoXmlNfe de(Path diretorio) {
+		return ABERTOS.computeIfAbsent(diretorio.toAbsolutePath().normalize(), caminho -> {
+			try {
+				return new ArquivoXmlNfe(caminho, TAMANHO_SEGMENTO);
+			} catch (IOException e) {
+				throw new UncheckedIOException("Não foi possível abrir o arquivo de XMLs em " + caminho, e);
+			}
+		});
+	}
+
+	public ArquivoXmlNfe(Path diretorio, long tamanhoSegmento) throws IOException {
+		this.diretorio = diretorio.toAbsolutePath().normalize();
+		this.tamanhoSegmento = tamanhoSegmento;
+
+		Files.createDirectories(this.diretorio);
+		abre();
+		importaSoltos();
+	}
+
+	public void grava(String chave, byte[] xml) throws IOException {
+		grava(chave, saida -> saida.write(xml));
+	}
+
+	/*
+	 * Compacta o conteúdo fora da trava e só acrescenta o registro pronto
+	 */
+	public void grava(String chave, Conteudo conteudo) throws IOException {
+		ByteArrayOutputStream compactado = new ByteArrayOutputStream();
+		try (DeflaterOutputStream saida = new DeflaterOutputStream(compactado)) {
+			conteudo.escreve(saida);
+		}
+
+		acrescenta(chave, XML, compactado.toByteArray());
+	}
+
+	/*
+	 * Devolve se havia XML para a chave
+	 */
+	public boolean remove(String chave) throws IOException {
+		trava.writeLock().lock();
+		try {
+			Posicao atual = indice.get(chave);
+			if (atual == null || atual.removido)
+				return false;
+
+			acrescenta(chave, REMOCAO, new byte[0]);
+			return true;
+		} finally {
+			trava.writeLock().unlock();
+		}
+	}
+
+	public boolean contem(String chave) {
+		trava.readLock().lock();
+		try {
+			Posicao posicao = indice.get(chave);
+			return posicao != null && !posicao.removido;
+		} finally {
+			trava.readLock().unlock();
+		}
+	}
+
+	public Optional<byte[]> le(String chave) throws IOException {
+		ByteArrayOutputStream xml = new ByteArrayOutputStream();
+		return copia(chave, xml) ? Optional.of(xml.toByteArray()) : Optional.empty();
+	}
+
+	/*
+	 * Escreve o XML descompactado na saída, devolvendo se a chave existe
+	 */
+	public boolean copia(String chave, OutputStream saida) throws IOException {
+		byte[] compactado = compactadoDaChave(chave);
+		if (compactado == null)
+			return false;
+
+		try (InputStream xml = new InflaterInputStream(new ByteArrayInputStream(compactado))) {
+			byte[] bloco = new byte[8192];
+			int lidos;
+			while ((lidos = xml.read(bloco)) > 0)
+				saida.write(bloco, 0, lidos);
+		}
+
+		return true;
+	}
+
+	/*
+	 * XML ainda compactado, para quem grava em um formato que também usa
+	 * deflate, como o zip, sem descompactar e compactar de novo
+	 */
+	public Optional<Compactado> compactado(String chave) throws IOException {
+		byte[] compactado = compactadoDaChave(chave);
+		return compactado == null ? Optional.empty() : Optional.of(Compactado.de(compactado));
+	}
+
+	/*
+	 * Chaves com XML no arquivo
+	 */
+	public List<String> chaves() {
+		trava.readLock().lock();
+		try {
+			List<String> chaves = new ArrayList<>(indice.size());
+			indice.forEach((chave, posicao) -> {
+				if (!posicao.removido)
+					chaves.add(chave);
+			});
+			return chaves;
+		} finally {
+			trava.readLock().unlock();
+		}
+	}
+
+	/*
+	 * Compacta os segmentos fechados com mais da metade do espaço perdido
+	 */
+	public void compacta() throws IOException {
+		trava.writeLock().lock();
+		try {
+			if (compactando)
+				return;
+
+			compactando = true;
+			try {
+				for (Segmento segmento : new ArrayList<>(segmentos.values()))
+					if (segmento != ativo && segmento.perdido * 2 > segmento.tamanho)
+						compacta(segmento);
+			} finally {
+				compactando = false;
+			}
+		} finally {
+			trava.writeLock().unlock();
+		}
+	}
+
+	public Map<String, Object> estatisticas() {
+		trava.readLock().lock();
+		try {
+			long tamanho = 0;
+			long perdido = 0;
+			for (Segmento segmento : segmentos.values()) {
+				tamanho += segmento.tamanho;
+				perdido += segmento.perdido;
+			}
+
+			Map<String, Object> estatisticas = new LinkedHashMap<>();
+			estatisticas.put("xmls", indice.values().stream().filter(posicao -> !posicao.removido).count());
+			estatisticas.put("segmentos", segmentos.size());
+			estatisticas.put("bytes", tamanho);
+			estatisticas.put("bytesPerdidos", perdido);
+			return estatisticas;
+		} finally {
+			trava.readLock().unlock();
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		trava.writeLock().lock();
+		try {
+			ABERTOS.remove(diretorio, this);
+			ativo.canal.force(true);
+
+			for (Segmento segmento : segmentos.values())
+				segmento.canal.close();
+		} finally {
+			trava.writeLock().unlock();
+		}
+	}
+
+	private byte[] compactadoDaChave(String chave) throws IOException {
+		trava.readLock().lock();
+		try {
+			Posicao posicao = indice.get(chave);
+			if (posicao == null || posicao.removido)
+				return null;
+
+			return conteudo(posicao);
+		} finally {
+			trava.readLock().unlock();
+		}
+	}
+
+	private void acrescenta(String chave, byte tipo, byte[] conteudo) throws IOException {
+		byte[] bytesChave = chave.getBytes(StandardCharsets.UTF_8);
+		CRC32 crc = new CRC32();
+		crc.update(conteudo);
+
+		ByteBuffer registro = ByteBuffer.allocate(CABECALHO + bytesChave.length + conteudo.length);
+		registro.putInt(MARCA).put(tipo).putShort((short) bytesChave.length).put(bytesChave)
+				.putInt(conteudo.length).putInt((int) crc.getValue()).put(conteudo);
+		registro.flip();
+
+		trava.writeLock().lock();
+		try {
+			if (ativo.tamanho > 0 && ativo.tamanho + registro.remaining() > tamanhoSegmento)
+				novoSegmento();
+
+			// se a escrita falhar no meio, o fim conhecido não anda e o próximo
+			// registro escreve por cima
+			long inicio = ativo.tamanho;
+			while (registro.hasRemaining())
+				ativo.canal.write(registro, inicio + registro.position());
+
+			// grava e remove só retornam com o registro no disco
+			ativo.canal.force(false);
+
+			ativo.tamanho += registro.limit();
+			aplica(chave, new Posicao(ativo.numero, inicio, bytesChave.length, conteudo.length, tipo == REMOCAO));
+		} finally {
+			trava.writeLock().unlock();
+		}
+	}
+
+	private void aplica(String chave, Posicao posicao) {
+		Posicao anterior = indice.put(chave, posicao);
+
+		if (anterior != null) {
+			Segmento segmento = segmentos.get(anterior.segmento);
+			if (segmento != null)
+				segmento.perdido += anterior.tamanho();
+		}
+	}
+
+	private byte[] conteudo(Posicao posicao) throws IOException {
+		Segmento segmento = segmentos.get(posicao.segmento);
+		byte[] conteudo = new byte[posicao.conteudo];
+		long inicio = posicao.offset + CABECALHO + posicao.chave;
+
+		if (segmento == ativo) {
+			ByteBuffer destino = ByteBuffer.wrap(conteudo);
+			while (destino.hasRemaining())
+				if (segmento.canal.read(destino, inicio + destino.position()) < 0)
+					throw new EOFException("Segmento " + segmento.numero + " menor que o índice");
+		} else {
+			ByteBuffer mapa = segmento.mapa().duplicate();
+			mapa.position((int) inicio);
+			mapa.get(conteudo);
+		}
+
+		CRC32 crc = new CRC32();
+		crc.update(conteudo);
+		int esperado = (segmento == ativo ? crcDoCanal(segmento, posicao) : segmento.mapa().getInt(
+				(int) (posicao.offset + CABECALHO + posicao.chave - 4)));
+
+		if ((int) crc.getValue() != esperado)
+			throw new IOException("XML corrompido no segmento " + segmento.numero + ", posição " + posicao.offset);
+
+		return conteudo;
+	}
+
+	private static int crcDoCanal(Segmento segmento, Posicao posicao) throws IOException {
+		ByteBuffer crc = ByteBuffer.allocate(4);
+		long inicio = posicao.offset + CABECALHO + posicao.chave - 4;
+		while (crc.hasRemaining())
+			if (segmento.canal.read(crc, inicio + crc.position()) < 0)
+				throw new EOFException();
+		return crc.getInt(0);
+	}
+
+	private void abre() throws IOException {
+		List<Integer> numeros = new ArrayList<>();
+		try (DirectoryStream<Path> arquivos = Files.newDirectoryStream(diretorio, PREFIXO + "*" + EXTENSAO)) {
+			for (Path arquivo : arquivos)
+				numeros.add(numero(arquivo));
+		}
+		numeros.sort(Comparator.naturalOrder());
+
+		for (int i = 0; i < numeros.size(); i++) {
+			boolean ultimo = i == numeros.size() - 1;
+			int numero = numeros.get(i);
+
+			Segmento segmento = new Segmento(numero, FileChannel.open(caminho(numero, EXTENSAO),
+					StandardOpenOption.READ, StandardOpenOption.WRITE));
+			segmentos.put(numero, segmento);
+
+			if (ultimo || !carregaIndice(segmento))
+				percorre(segmento);
+
+			if (!ultimo && !Files.exists(caminho(numero, EXTENSAO_INDICE)))
+				gravaIndice(segmento);
+		}
+
+		if (segmentos.isEmpty())
+			novoSegmento();
+		else
+			ativo = segmentos.lastEntry().getValue();
+
+		// perdido = o que o segmento tem além dos registros ainda válidos
+		Map<Integer, Long> validos = new HashMap<>();
+		indice.values().forEach(posicao -> validos.merge(posicao.segmento, posicao.tamanho(), Long::sum));
+		segmentos.values().forEach(segmento -> segmento.perdido = segmento.tamanho - validos.getOrDefault(segmento.numero, 0L));
+
+		LOGGER.info("Arquivo de XMLs em {}: {} chaves em {} segmentos", diretorio, indice.size(), segmentos.size());
+	}
+
+	/*
+	 * Lê os registros do segmento do início. O que vem depois do último
+	 * registro inteiro é de uma gravação interrompida e é descartado
+	 */
+	private void percorre(Segmento segmento) throws IOException {
+		long tamanhoArquivo = segmento.canal.size();
+		long valido = 0;
+
+		try (DataInputStream entrada = new DataInputStream(
+				new BufferedInputStream(Files.newInputStream(caminho(segmento.numero, EXTENSAO)), 65536))) {
+			while (valido < tamanhoArquivo) {
+				Registro registro = Registro.le(entrada);
+				if (registro == null)
+					break;
+
+				aplica(registro.chave, new Posicao(segmento.numero, valido, registro.tamanhoChave,
+						registro.conteudo.length, registro.tipo == REMOCAO));
+				valido += registro.tamanho();
+			}
+		}
+
+		if (valido < tamanhoArquivo) {
+			LOGGER.warn("Segmento {} com {} bytes incompletos no fim, descartados", segmento.numero,
+					tamanhoArquivo - valido);
+			segmento.canal.truncate(valido);
+		}
+
+		segmento.tamanho = valido;
+	}
+
+	private void novoSegmento() throws IOException {
+		if (ativo != null) {
+			ativo.canal.force(true);
+			gravaIndice(ativo);
+		}
+
+		int numero = segmentos.isEmpty() ? 1 : segmentos.lastKey() + 1;
+		Segmento segmento = new Segmento(numero, FileChannel.open(caminho(numero, EXTENSAO),
+				StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE));
+		segmentos.put(numero, segmento);
+		ativo = segmento;
+
+		if (!compactando && segmentos.size() > 1)
+			compacta();
+	}
+
+	/*
+	 * Leva os registros válidos do segmento para o segmento em uso e o apaga.
+	 * As remoções também vão, enquanto houver segmento mais antigo com o XML
+	 * removido
+	 */
+	private void compacta(Segmento segmento) throws IOException {
+		boolean maisAntigo = segmentos.firstKey() == segmento.numero;
+
+		List<Map.Entry<String, Posicao>> registros = new ArrayList<>();
+		for (Map.Entry<String, Posicao> entrada : indice.entrySet())
+			if (entrada.getValue().segmento == segmento.numero)
+				registros.add(entrada);
+
+		for (Map.Entry<String, Posicao> registro : registros) {
+			Posicao posicao = registro.getValue();
+
+			if (posicao.removido) {
+				if (maisAntigo)
+					indice.remove(registro.getKey());
+				else
+					acrescenta(registro.getKey(), REMOCAO, new byte[0]);
+			} else {
+				acrescenta(registro.getKey(), XML, conteudo(posicao));
+			}
+		}
+
+		ativo.canal.force(true);
+		segmentos.remove(segmento.numero);
+		segmento.canal.close();
+		Files.deleteIfExists(caminho(segmento.numero, EXTENSAO_INDICE));
+		Files.deleteIfExists(caminho(segmento.numero, EXTENSAO));
+
+		LOGGER.info("Segmento {} compactado, {} registros mantidos", segmento.numero, registros.size());
+	}
+
+	/*
+	 * Índice do segmento fechado: chave, tipo, posição e tamanhos de cada
+	 * registro válido, com a quantidade e o CRC no fim. Gravado em um arquivo
+	 * temporário e renomeado, nunca fica pela metade
+	 */
+	private void gravaIndice(Segmento segmento) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream saida = new DataOutputStream(bytes);
+		int quantidade = 0;
+
+		List<Map.Entry<String, Posicao>> registros = new ArrayList<>();
+		for (Map.Entry<String, Posicao> entrada : indice.entrySet())
+			if (entrada.getValue().segmento == segmento.numero)
+				registros.add(entrada);
+		registros.sort(Comparator.comparingLong(entrada -> entrada.getValue().offset));
+
+		for (Map.Entry<String, Posicao> registro : registros) {
+			Posicao posicao = registro.getValue();
+			saida.writeUTF(registro.getKey());
+			saida.writeBoolean(posicao.removido);
+			saida.writeLong(posicao.offset);
+			saida.writeShort(posicao.chave);
+			saida.writeInt(posicao.conteudo);
+			quantidade++;
+		}
+
+		saida.writeInt(quantidade);
+		saida.writeLong(segmento.tamanho);
+		CRC32 crc = new CRC32();
+		crc.update(bytes.toByteArray());
+		saida.writeInt((int) crc.getValue());
+		saida.flush();
+
+		Path temporario = caminho(segmento.numero, EXTENSAO_INDICE + ".tmp");
+		Files.write(temporario, bytes.toByteArray());
+		Files.move(temporario, caminho(segmento.numero, EXTENSAO_INDICE), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/*
+	 * Devolve falso se o índice não existe ou não confere, e o segmento é
+	 * percorrido
+	 */
+	private boolean carregaIndice(Segmento segmento) throws IOException {
+		Path arquivo = caminho(segmento.numero, EXTENSAO_INDICE);
+		if (!Files.exists(arquivo))
+			return false;
+
+		byte[] bytes = Files.readAllBytes(arquivo);
+		if (bytes.length < 16)
+			return indiceInvalido(segmento);
+
+		CRC32 crc = new CRC32();
+		crc.update(bytes, 0, bytes.length - 4);
+		ByteBuffer fim = ByteBuffer.wrap(bytes, bytes.length - 16, 16);
+		int quantidade = fim.getInt();
+		long tamanho = fim.getLong();
+
+		if ((int) crc.getValue() != fim.getInt() || tamanho != segmento.canal.size())
+			return indiceInvalido(segmento);
+
+		List<Map.Entry<String, Posicao>> registros = new ArrayList<>(quantidade);
+		try (DataInputStream entrada = new DataInputStream(new ByteArrayInputStream(bytes, 0, bytes.length - 16))) {
+			for (int i = 0; i < quantidade; i++) {
+				String chave = entrada.readUTF();
+				boolean removido = entrada.readBoolean();
+				long offset = entrada.readLong();
+				short tamanhoChave = entrada.readShort();
+				int conteudo = entrada.readInt();
+				registros.add(new SimpleEntry<>(chave,
+						new Posicao(segmento.numero, offset, tamanhoChave, conteudo, removido)));
+			}
+		} catch (IOException e) {
+			return indiceInvalido(segmento);
+		}
+
+		registros.forEach(registro -> aplica(registro.getKey(), registro.getValue()));
+		segmento.tamanho = tamanho;
+		return true;
+	}
+
+	private boolean indiceInvalido(Segmento segmento) throws IOException {
+		LOGGER.warn("Índice do segmento {} inválido, o segmento será percorrido", segmento.numero);
+		Files.deleteIfExists(caminho(segmento.numero, EXTENSAO_INDICE));
+		return false;
+	}
+
+	/*
+	 * XMLs gravados soltos no diretório, como eram antes do arquivo, entram
+	 * no arquivo e são apagados
+	 */
+	private void importaSoltos() throws IOException {
+		List<Path> soltos = new ArrayList<>();
+		try (DirectoryStream<Path> arquivos = Files.newDirectoryStream(diretorio, "*" + EXTENSAO_SOLTO)) {
+			arquivos.forEach(soltos::add);
+		}
+
+		if (soltos.isEmpty())
+			return;
+
+		for (Path solto : soltos) {
+			String nome = solto.getFileName().toString();
+			grava(nome.substring(0, nome.length() - EXTENSAO_SOLTO.length()), Files.readAllBytes(solto));
+		}
+
+		ativo.canal.force(true);
+
+		for (Path solto : soltos)
+			Files.delete(solto);
+
+		LOGGER.info("{} XMLs soltos importados para o arquivo em {}", soltos.size(), diretorio);
+	}
+
+	private Path caminho(int numero, String extensao) {
+		return diretorio.resolve(String.format("%s%06d%s", PREFIXO, numero, extensao));
+	}
+
+	private static int numero(Path arquivo) {
+		String nome = arquivo.getFileName().toString();
+		return Integer.parseInt(nome.substring(PREFIXO.length(), nome.length() - EXTENSAO.length()));
+	}
+
+	/**
+	 * XML em deflate puro, sem o cabeçalho e o final do zlib com que é
+	 * gravado no arquivo, com o CRC-32 e o tamanho do XML descompactado.
+	 */
+	public static final class Compactado {
+
+		// cabeçalho de 2 bytes e soma adler-32 de 4 bytes do zlib
+		private static final int CABECALHO_ZLIB = 2;
+		private static final int FINAL_ZLIB = 4;
+
+		private final byte[] zlib;
+		private final long crc;
+		private final long tamanho;
+
+		private Compactado(byte[] zlib, long crc, long tamanho) {
+			this.zlib = zlib;
+			this.crc = crc;
+			this.tamanho = tamanho;
+		}
+
+		/*
+		 * Descompacta só para calcular o CRC e o tamanho, o que custa bem
+		 * menos que compactar de novo
+		 */
+		static Compactado de(byte[] zlib) throws IOException {
+			int cabecalho = (zlib.length > 1 ? (zlib[0] & 0xFF) << 8 | (zlib[1] & 0xFF) : 0);
+			if (zlib.length < CABECALHO_ZLIB + FINAL_ZLIB || (cabecalho & 0x0F00) != 0x0800
+					|| (cabecalho & 0x20) != 0 || cabecalho % 31 != 0)
+				throw new IOException("XML compactado em formato desconhecido");
+
+			Inflater descompactador = new Inflater();
+			CRC32 crc = new CRC32();
+			byte[] bloco = new byte[8192];
+			long tamanho = 0;
+
+			try {
+				descompactador.setInput(zlib);
+				while (!descompactador.finished()) {
+					int lidos = descompactador.inflate(bloco);
+					if (lidos == 0 && descompactador.needsInput())
+						throw new IOException("XML compactado incompleto");
+
+					crc.update(bloco, 0, lidos);
+					tamanho += lidos;
+				}
+			} catch (DataFormatException e) {
+				throw new IOException("XML compactado inválido", e);
+			} finally {
+				descompactador.end();
+			}
+
+			return new Compactado(zlib, crc.getValue(), tamanho);
+		}
+
+		public void escreve(OutputStream saida) throws IOException {
+			saida.write(zlib, CABECALHO_ZLIB, zlib.length - CABECALHO_ZLIB - FINAL_ZLIB);
+		}
+
+		public long getTamanhoCompactado() {
+			return (long) zlib.length - CABECALHO_ZLIB - FINAL_ZLIB;
+		}
+
+		public long getCrc() {
+			return crc;
+		}
+
+		public long getTamanho() {
+			return tamanho;
+		}
+
+	}
+
+	private static class Segmento {
+
+		private final int numero;
+		private final FileChannel canal;
+		private long tamanho;
+		private long perdido;
+		private MappedByteBuffer mapa;
+
+		Segmento(int numero, FileChannel canal) {
+			this.numero = numero;
+			this.canal = canal;
+		}
+
+		/*
+		 * Só para segmentos fechados, que não crescem mais
+		 */
+		synchronized MappedByteBuffer mapa() throws IOException {
+			if (mapa == null)
+				mapa = canal.map(FileChannel.MapMode.READ_ONLY, 0, tamanho);
+			return mapa;
+		}
+
+	}
+
+	private static class Posicao {
+
+		private final int segmento;
+		private final long offset;
+		private final int chave;
+		private final int conteudo;
+		private final boolean removido;
+
+		Posicao(int segmento, long offset, int chave, int conteudo, boolean removido) {
+			this.segmento = segmento;
+			this.offset = offset;
+			this.chave = chave;
+			this.conteudo = conteudo;
+			this.removido = removido;
+		}
+
+		long tamanho() {
+			return (long) CABECALHO + chave + conteudo;
+		}
+
+	}
+
+	private static class Registro {
+
+		private byte tipo;
+		private int tamanhoChave;
+		private String chave;
+		private byte[] conteudo;
+
+		/*
+		 * Devolve nulo no fim do arquivo ou em um registro incompleto ou
+		 * corrompido
+		 */
+		static Registro le(DataInputStream entrada) throws IOException {
+			try {
+				if (entrada.readInt() != MARCA)
+					return null;
+
+				Registro registro = new Registro();
+				registro.tipo = entrada.readByte();
+				if (registro.tipo != XML && registro.tipo != REMOCAO)
+					return null;
+
+				registro.tamanhoChave = entrada.readShort();
+				if (registro.tamanhoChave <= 0)
+					return null;
+
+				byte[] chave = new byte[registro.tamanhoChave];
+				entrada.readFully(chave);
+				registro.chave = new String(chave, StandardCharsets.UTF_8);
+
+				int tamanho = entrada.readInt();
+				int esperado = entrada.readInt();
+				if (tamanho < 0 || tamanho > TAMANHO_SEGMENTO)
+					return null;
+
+				registro.conteudo = new byte[tamanho];
+				entrada.readFully(registro.conteudo);
+
+				CRC32 crc = new CRC32();
+				crc.update(registro.conteudo);
+				return (int) crc.getValue() == esperado ? registro : null;
+			} catch (EOFException e) {
+				return null;
+			}
+		}
+
+		long tamanho() {
+			return (long) CABECALHO + tamanhoChave + conteudo.length;
+		}
+
+	}
+
+}
@@ -1,20 +1,10 @@
 package net.originmobi.pdv.xml.nfe;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.IOException;
-import java.io.InputStream;
 import java.security.InvalidAlgorithmParameterException;
-import java.security.KeyStore;
 import java.security.NoSuchAlgorithmException;
-import java.security.PrivateKey;
-import java.security.cert.X509Certificate;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Enumeration;
-import java.util.List;
 
 import javax.xml.crypto.dsig.CanonicalizationMethod;
 import javax.xml.crypto.dsig.DigestMethod;
@@ -25,72 +15,64 @@ import javax.xml.crypto.dsig.Transform;
 import javax.xml.crypto.dsig.XMLSignature;
 import javax.xml.crypto.dsig.XMLSignatureFactory;
 import javax.xml.crypto.dsig.dom.DOMSignContext;
-import javax.xml.crypto.dsig.keyinfo.KeyInfo;
-import javax.xml.crypto.dsig.keyinfo.KeyInfoFactory;
-import javax.xml.crypto.dsig.keyinfo.X509Data;
 import javax.xml.crypto.dsig.spec.C14NMethodParameterSpec;
 import javax.xml.crypto.dsig.spec.TransformParameterSpec;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
 
 import org.w3c.dom.Document;
 import org.w3c.dom.NodeList;
-import org.xml.sax.SAXException;
 
+import net.originmobi.pdv.xml.nfe.CredenciaisAssinatura.Credencial;
+
+/**
+ * Assina as NFe de um enviNFe já montado em DOM, no próprio documento, com o
+ * certificado guardado em CredenciaisAssinatura. Documentos diferentes podem
+ * ser assinados ao mesmo tempo, cada thread usa a sua fábrica de assinaturas.
+ */
 public class AssinaXML {
 	private static final String NFE = "NFe";
 
-	private PrivateKey privateKey;
-	private KeyInfo keyInfo;
-
-	public String assinaXML(String xml) {
-		String path = "";
+	private static final String CAMINHO_CERTIFICADO = "src/main/resources/certificado/certificado.pfx";
+	private static final String SENHA_CERTIFICADO = "spcbrasil";
 
-		try {
-			path = new File(".").getCanonicalPath();
-		} catch (Exception e) {
-			System.out.println(e);
-		}
+	private final String caminhoCertificado;
+	private final String senhaCertificado;
+	private final CredenciaisAssinatura credenciais;
 
-		String caminhoCertificado = path + "/" + "src/main/resources/certificado/certificado.pfx";
-		String senhaCertificado = "spcbrasil";
+	public AssinaXML() {
+		this(caminhoPadrao(), SENHA_CERTIFICADO);
+	}
 
-		String xmlAssinado = "";
-		try {
-			xmlAssinado = assinarEnviNFe(xml, caminhoCertificado, senhaCertificado);
-			System.out.println(xmlAssinado);
-		} catch (Exception e) {
-			e.printStackTrace();
-			System.out.println(e);
-		}
+	public AssinaXML(String caminhoCertificado, String senhaCertificado) {
+		this(caminhoCertificado, senhaCertificado, CredenciaisAssinatura.PADRAO);
+	}
 
-		return xmlAssinado;
+	public AssinaXML(String caminhoCertificado, String senhaCertificado, CredenciaisAssinatura credenciais) {
+		this.caminhoCertificado = caminhoCertificado;
+		this.senhaCertificado = senhaCertificado;
+		this.credenciais = credenciais;
 	}
 
-	private String assinarEnviNFe(String xmlEnviNFe, String caminhoCertificado, String senhaCertificado)
-			throws Exception {
-		Document document = documentFactory(xmlEnviNFe);
-		XMLSignatureFactory signatureFactory = XMLSignatureFactory.getInstance("DOM");
-		ArrayList<Transform> transformList = signatureFactory(signatureFactory);
-		loadCertificates(caminhoCertificado, senhaCertificado, signatureFactory);
+	/*
+	 * Assina cada NFe do documento, que precisa ter sido criado com namespaces
+	 */
+	public void assina(Document document) throws Exception {
+		Credencial credencial = credenciais.credencial(caminhoCertificado, senhaCertificado);
 
 		for (int i = 0; i < document.getDocumentElement().getElementsByTagName(NFE).getLength(); i++) {
-			assinarNFe(signatureFactory, transformList, privateKey, keyInfo, document, i);
+			assinarNFe(credencial, document, i);
 		}
-
-		return outputXML(document);
 	}
 
-	private Document documentFactory(String xml) throws SAXException, IOException, ParserConfigurationException {
-		DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-		factory.setNamespaceAware(true);
-		Document document = factory.newDocumentBuilder().parse(new ByteArrayInputStream(xml.getBytes()));
-		return document;
+	private static String caminhoPadrao() {
+		String path = "";
+
+		try {
+			path = new File(".").getCanonicalPath();
+		} catch (Exception e) {
+			System.out.println(e);
+		}
+
+		return path + "/" + CAMINHO_CERTIFICADO;
 	}
 
 	private ArrayList<Transform> signatureFactory(XMLSignatureFactory signatureFactory)
@@ -105,73 +87,27 @@ public class AssinaXML {
 		return transformList;
 	}
 
-	private void loadCertificates(String certificado, String senha, XMLSignatureFactory signatureFactory)
-			throws Exception {
-
-		InputStream entrada = new FileInputStream(certificado);
-		KeyStore ks = KeyStore.getInstance("pkcs12");
-		try {
-			ks.load(entrada, senha.toCharArray());
-		} catch (IOException e) {
-			throw new Exception("Senha do Certificado Digital incorreta ou Certificado inválido.");
-		}
-
-		KeyStore.PrivateKeyEntry pkEntry = null;
-		Enumeration<String> aliasesEnum = ks.aliases();
-		while (aliasesEnum.hasMoreElements()) {
-			String alias = (String) aliasesEnum.nextElement();
-			if (ks.isKeyEntry(alias)) {
-				pkEntry = (KeyStore.PrivateKeyEntry) ks.getEntry(alias,
-						new KeyStore.PasswordProtection(senha.toCharArray()));
-				privateKey = pkEntry.getPrivateKey();
-				break;
-			}
-		}
-
-		X509Certificate cert = (X509Certificate) pkEntry.getCertificate();
-		System.out.println("Data Certificado " + cert.getNotAfter());
-
-		KeyInfoFactory keyInfoFactory = signatureFactory.getKeyInfoFactory();
-		List<X509Certificate> x509Content = new ArrayList<X509Certificate>();
-
-		x509Content.add(cert);
-		X509Data x509Data = keyInfoFactory.newX509Data(x509Content);
-		keyInfo = keyInfoFactory.newKeyInfo(Collections.singletonList(x509Data));
-	}
-
-	private void assinarNFe(XMLSignatureFactory fac, ArrayList<Transform> transformList, PrivateKey privateKey,
-			KeyInfo ki, Document document, int indexNFe) throws Exception {
+	private void assinarNFe(Credencial credencial, Document document, int indexNFe) throws Exception {
 
 		NodeList elements = document.getElementsByTagName("infNFe");
 		org.w3c.dom.Element el = (org.w3c.dom.Element) elements.item(indexNFe);
 		String id = el.getAttribute("Id");
 		el.setIdAttribute("Id", true);
 
-		Reference ref = fac.newReference("#" + id, fac.newDigestMethod(DigestMethod.SHA1, null), transformList, null,
-				null);
+		XMLSignatureFactory fac = credencial.getSignatureFactory();
+
+		Reference ref = fac.newReference("#" + id, fac.newDigestMethod(DigestMethod.SHA1, null), signatureFactory(fac),
+				null, null);
 
 		SignedInfo si = fac.newSignedInfo(
 				fac.newCanonicalizationMethod(CanonicalizationMethod.INCLUSIVE, (C14NMethodParameterSpec) null),
 				fac.newSignatureMethod(SignatureMethod.RSA_SHA1, null), Collections.singletonList(ref));
 
-		XMLSignature signature = fac.newXMLSignature(si, ki);
+		XMLSignature signature = fac.newXMLSignature(si, credencial.getKeyInfo());
 
-		DOMSignContext dsc = new DOMSignContext(privateKey,
+		DOMSignContext dsc = new DOMSignContext(credencial.getPrivateKey(),
 				document.getDocumentElement().getElementsByTagName(NFE).item(indexNFe));
 		signature.sign(dsc);
 	}
 
-	private String outputXML(Document doc) throws TransformerException {
-		ByteArrayOutputStream os = new ByteArrayOutputStream();
-		TransformerFactory tf = TransformerFactory.newInstance();
-		Transformer trans = tf.newTransformer();
-		trans.transform(new DOMSource(doc), new StreamResult(os));
-		String xml = os.toString();
-		if ((xml != null) && (!"".equals(xml))) {
-			xml = xml.replaceAll("\\r\\n", "");
-			xml = xml.replaceAll(" standalone=\"no\"", "");
-		}
-		return xml;
-	}
-
 }
@@ -1,6 +1,7 @@
 package net.originmobi.pdv.xml.nfe;
 
 import java.text.DecimalFormat;
+import java.util.function.IntSupplier;
 
 import org.apache.commons.lang.StringUtils;
 
@@ -18,6 +19,29 @@ public class ConversorXmlNfe implements Converter {
 	public NotaFiscalService nfService;
 	private String chaveNfeRetorno = "";
 
+	// gera o cNF, fixo nos testes para comparar dois XMLs da mesma nota
+	private final IntSupplier codigoNumerico;
+
+	// lote em que a nota é enviada, 1 quando emitida sozinha
+	private final long idLote;
+
+	public ConversorXmlNfe() {
+		this(1);
+	}
+
+	public ConversorXmlNfe(long idLote) {
+		this(() -> (int) (10000000 + Math.random() * 89999999), idLote);
+	}
+
+	public ConversorXmlNfe(IntSupplier codigoNumerico) {
+		this(codigoNumerico, 1);
+	}
+
+	public ConversorXmlNfe(IntSupplier codigoNumerico, long idLote) {
+		this.codigoNumerico = codigoNumerico;
+		this.idLote = idLote;
+	}
+
 	@Override
 	public boolean canConvert(Class type) {
 		return type.equals(NotaFiscal.class);
@@ -34,7 +58,7 @@ public class ConversorXmlNfe implements Converter {
 		int tipoRegime = notaFiscal.getEmissor().getRegime_tributario().getTipoRegime();
 
 		// gera cNF
-		int codAleatorio = (int) (10000000 + Math.random() * 89999999);
+		int codAleatorio = codigoNumerico.getAsInt();
 
 		// add zeros a esqueda na sequencia
 		String serie = StringUtils.leftPad(String.valueOf(notaFiscal.getEmissor().getParametro().getSerie_nfe()), 3,
@@ -58,7 +82,7 @@ public class ConversorXmlNfe implements Converter {
 		writer.addAttribute("versao", "3.10");
 
 		writer.startNode("idLote");
-		context.convertAnother(1);
+		context.convertAnother(idLote);
 		writer.endNode();
 
 		writer.startNode("indSinc");
@@ -0,0 +1,214 @@
+package net.originmobi.pdv.xml.nfe;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.PrivateKey;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.xml.crypto.dsig.XMLSignatureFactory;
+import javax.xml.crypto.dsig.keyinfo.KeyInfo;
+import javax.xml.crypto.dsig.keyinfo.KeyInfoFactory;
+import javax.xml.crypto.dsig.keyinfo.X509Data;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Certificados de assinatura carregados uma vez e guardados em memória.
+ *
+ * O arquivo .pfx só é lido no primeiro uso e quando muda: a data de
+ * alteração e o tamanho são conferidos de tempos em tempos, e entre uma
+ * conferência e outra a assinatura não toca no disco. Se o arquivo novo não
+ * puder ser lido, o certificado anterior continua em uso.
+ */
+public class CredenciaisAssinatura {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(CredenciaisAssinatura.class);
+
+	// usadas pelo AssinaXML criado sem informar as credenciais
+	public static final CredenciaisAssinatura PADRAO = new CredenciaisAssinatura(TimeUnit.SECONDS.toMillis(30));
+
+	// avisa no log quando faltar menos que isso para vencer
+	private static final long DIAS_AVISO_VENCIMENTO = 30;
+
+	private final long intervaloVerificacao;
+
+	private final Map<Path, Credencial> credenciais = new ConcurrentHashMap<>();
+	private final AtomicLong carregamentos = new AtomicLong();
+
+	public CredenciaisAssinatura(long intervaloVerificacaoMilissegundos) {
+		this.intervaloVerificacao = TimeUnit.MILLISECONDS.toNanos(intervaloVerificacaoMilissegundos);
+	}
+
+	/*
+	 * Credencial do certificado, lida do arquivo só se ainda não foi ou se o
+	 * arquivo mudou desde a última leitura
+	 */
+	public Credencial credencial(String caminhoCertificado, String senhaCertificado) throws Exception {
+		Path arquivo = Paths.get(caminhoCertificado).toAbsolutePath().normalize();
+		Credencial atual = credenciais.get(arquivo);
+
+		if (atual != null && System.nanoTime() - atual.verificadaEm < intervaloVerificacao)
+			return atual;
+
+		synchronized (this) {
+			atual = credenciais.get(arquivo);
+			if (atual != null && System.nanoTime() - atual.verificadaEm < intervaloVerificacao)
+				return atual;
+
+			Credencial nova = atual;
+
+			try {
+				FileTime alteracao = Files.getLastModifiedTime(arquivo);
+				long tamanho = Files.size(arquivo);
+
+				if (atual == null || !atual.alteracao.equals(alteracao) || atual.tamanho != tamanho) {
+					nova = carrega(arquivo, senhaCertificado, alteracao, tamanho);
+					carregamentos.incrementAndGet();
+
+					if (atual != null)
+						LOGGER.info("Certificado {} alterado, recarregado", arquivo);
+				} else {
+					atual.verificadaEm = System.nanoTime();
+				}
+			} catch (Exception e) {
+				if (atual == null)
+					throw e;
+
+				LOGGER.error("Não foi possível recarregar o certificado {}, mantido o anterior", arquivo, e);
+				atual.verificadaEm = System.nanoTime();
+			}
+
+			credenciais.put(arquivo, nova);
+			return nova;
+		}
+	}
+
+	/*
+	 * Validade dos certificados em memória, para acompanhar o vencimento
+	 */
+	public Map<String, Object> estatisticas() {
+		Map<String, Object> estatisticas = new LinkedHashMap<>();
+		estatisticas.put("carregamentos", carregamentos.get());
+
+		Map<String, Object> certificados = new LinkedHashMap<>();
+		credenciais.forEach((arquivo, credencial) -> {
+			Map<String, Object> certificado = new LinkedHashMap<>();
+			certificado.put("titular", credencial.certificado.getSubjectX500Principal().getName());
+			certificado.put("validade", LocalDateTime.ofInstant(credencial.certificado.getNotAfter().toInstant(),
+					ZoneId.systemDefault()).toString());
+			certificado.put("diasParaVencer", credencial.diasParaVencer());
+			certificados.put(arquivo.toString(), certificado);
+		});
+		estatisticas.put("certificados", certificados);
+
+		return estatisticas;
+	}
+
+	private static Credencial carrega(Path arquivo, String senha, FileTime alteracao, long tamanho)
+			throws Exception {
+		KeyStore ks = KeyStore.getInstance("pkcs12");
+
+		try (InputStream entrada = Files.newInputStream(arquivo)) {
+			ks.load(entrada, senha.toCharArray());
+		} catch (IOException | GeneralSecurityException e) {
+			throw new Exception("Senha do Certificado Digital incorreta ou Certificado inválido.", e);
+		}
+
+		KeyStore.PrivateKeyEntry pkEntry = null;
+		Enumeration<String> aliasesEnum = ks.aliases();
+		while (aliasesEnum.hasMoreElements()) {
+			String alias = aliasesEnum.nextElement();
+			if (ks.isKeyEntry(alias)) {
+				pkEntry = (KeyStore.PrivateKeyEntry) ks.getEntry(alias,
+						new KeyStore.PasswordProtection(senha.toCharArray()));
+				break;
+			}
+		}
+
+		if (pkEntry == null)
+			throw new Exception("Certificado Digital sem chave privada.");
+
+		Credencial credencial = new Credencial(pkEntry.getPrivateKey(), (X509Certificate) pkEntry.getCertificate(),
+				alteracao, tamanho);
+
+		long dias = credencial.diasParaVencer();
+		if (credencial.certificado.getNotAfter().toInstant().isBefore(Instant.now()))
+			LOGGER.error("Certificado {} vencido em {}", arquivo, credencial.certificado.getNotAfter());
+		else if (dias <= DIAS_AVISO_VENCIMENTO)
+			LOGGER.warn("Certificado {} vence em {} dias", arquivo, dias);
+
+		return credencial;
+	}
+
+	/**
+	 * Chave, certificado e o KeyInfo já montado, com uma fábrica de
+	 * assinaturas para cada thread que assina.
+	 */
+	public static class Credencial {
+
+		// a fábrica não pode ser usada por duas threads ao mesmo tempo
+		private final ThreadLocal<XMLSignatureFactory> signatureFactory = ThreadLocal
+				.withInitial(() -> XMLSignatureFactory.getInstance("DOM"));
+		private final PrivateKey privateKey;
+		private final X509Certificate certificado;
+		private final KeyInfo keyInfo;
+
+		private final FileTime alteracao;
+		private final long tamanho;
+		private volatile long verificadaEm = System.nanoTime();
+
+		Credencial(PrivateKey privateKey, X509Certificate certificado, FileTime alteracao, long tamanho) {
+			this.privateKey = privateKey;
+			this.certificado = certificado;
+			this.alteracao = alteracao;
+			this.tamanho = tamanho;
+
+			KeyInfoFactory keyInfoFactory = signatureFactory.get().getKeyInfoFactory();
+			X509Data x509Data = keyInfoFactory.newX509Data(Collections.singletonList(certificado));
+			this.keyInfo = keyInfoFactory.newKeyInfo(Collections.singletonList(x509Data));
+		}
+
+		/*
+		 * Fábrica da thread atual
+		 */
+		public XMLSignatureFactory getSignatureFactory() {
+			return signatureFactory.get();
+		}
+
+		public PrivateKey getPrivateKey() {
+			return privateKey;
+		}
+
+		public KeyInfo getKeyInfo() {
+			return keyInfo;
+		}
+
+		public X509Certificate getCertificado() {
+			return certificado;
+		}
+
+		public long diasParaVencer() {
+			return Duration.between(Instant.now(), certificado.getNotAfter().toInstant()).toDays();
+		}
+
+	}
+
+}
@@ -0,0 +1,62 @@
+package net.originmobi.pdv.xml.nfe;
+
+import javax.xml.XMLConstants;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import com.thoughtworks.xstream.io.naming.NoNameCoder;
+import com.thoughtworks.xstream.io.xml.AbstractDocumentWriter;
+
+/**
+ * Escreve o que o ConversorXmlNfe gera direto em um DOM com namespaces, o
+ * mesmo que se teria lendo o texto do XML, pronto para ser assinado.
+ *
+ * O DomWriter do XStream cria os elementos sem namespace, o que a assinatura
+ * não aceita. Aqui o xmlns informado como atributo passa a ser o namespace
+ * do elemento e dos filhos criados depois dele.
+ */
+class EscritorDomNfe extends AbstractDocumentWriter {
+
+	private static final String XMLNS = "xmlns";
+
+	private final Document documento;
+
+	EscritorDomNfe(Document documento) {
+		super(null, new NoNameCoder());
+		this.documento = documento;
+	}
+
+	@Override
+	protected Object createNode(String nome) {
+		Element pai = (Element) getCurrent();
+		Element elemento = documento.createElementNS(pai == null ? null : pai.getNamespaceURI(), nome);
+
+		if (pai == null)
+			documento.appendChild(elemento);
+		else
+			pai.appendChild(elemento);
+
+		return elemento;
+	}
+
+	@Override
+	public void addAttribute(String nome, String valor) {
+		Element elemento = (Element) getCurrent();
+
+		if (XMLNS.equals(nome)) {
+			documento.renameNode(elemento, valor, elemento.getTagName());
+			elemento.setAttributeNS(XMLConstants.XMLNS_ATTRIBUTE_NS_URI, XMLNS, valor);
+		} else {
+			elemento.setAttributeNS(null, nome, valor);
+		}
+	}
+
+	@Override
+	public void setValue(String texto) {
+		// como na leitura de <cEAN></cEAN>, elemento vazio fica sem filhos
+		if (!texto.isEmpty())
+			((Element) getCurrent()).appendChild(documento.createTextNode(texto));
+	}
+
+}
@@ -1,7 +1,21 @@
 package net.originmobi.pdv.xml.nfe;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
+import org.w3c.dom.Document;
 
 import com.thoughtworks.xstream.XStream;
 import com.thoughtworks.xstream.io.xml.DomDriver;
@@ -9,9 +23,17 @@ import com.thoughtworks.xstream.io.xml.DomDriver;
 import net.originmobi.pdv.model.NotaFiscal;
 import net.originmobi.pdv.service.notafiscal.NotaFiscalService;
 
+/**
+ * Gera o XML da NF-e em uma passada: o conversor escreve direto em um DOM,
+ * que é assinado no lugar e gravado no arquivo da nota, sem passar por texto
+ * no meio do caminho.
+ */
 @Component
 public class GeraXmlNfe {
-	
+
+	private static final byte[] DECLARACAO = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+			.getBytes(StandardCharsets.UTF_8);
+
 	@Autowired
 	private NotaFiscalService nfServer;
 
@@ -19,30 +41,81 @@ public class GeraXmlNfe {
 	 * Recebe uma notafiscal e retorna a chave de acesso da mesma
 	 */
 	public String gerarXML(NotaFiscal notaFiscal) {
-		XStream valor = new XStream(new DomDriver());
 		ConversorXmlNfe conversor = new ConversorXmlNfe();
 		AssinaXML assina = new AssinaXML();
-		
-		valor.registerConverter(conversor);
-		
-		valor.alias("enviNFe", NotaFiscal.class);
-		
-		String xml = valor.toXML(notaFiscal);
-		
-		xml = assina.assinaXML(xml);
-		
+
+		Document xml = documento(notaFiscal, conversor);
+
+		try {
+			assina.assina(xml);
+		} catch (Exception e) {
+			throw new IllegalStateException("Não foi possível assinar o XML da nota fiscal", e);
+		}
+
 		//pega a chave da nfe
 		String chaveNfe = conversor.retornaChaveNfe();
-		
+
 		nfServer = new NotaFiscalService();
-		
+
 		if(notaFiscal.getChave_acesso() != null) {
 			nfServer.removeXml(notaFiscal.getChave_acesso());
 		}
-		
-		nfServer.salvaXML(xml, chaveNfe);
-		
+
+		grava(xml, chaveNfe);
+
 		return chaveNfe;
 	}
-}
 
+	/*
+	 * Grava o XML assinado no arquivo de XMLs, direto do documento
+	 */
+	public void grava(Document xml, String chaveNfe) {
+		if (nfServer == null)
+			nfServer = new NotaFiscalService();
+
+		try {
+			nfServer.salvaXML(chaveNfe, saida -> escreve(xml, saida));
+		} catch (IOException e) {
+			throw new IllegalStateException("Não foi possível gravar o XML da nota fiscal " + chaveNfe, e);
+		}
+	}
+
+	/*
+	 * Monta o enviNFe da nota em um DOM com namespaces, pronto para assinar
+	 */
+	public Document documento(NotaFiscal notaFiscal, ConversorXmlNfe conversor) {
+		XStream valor = new XStream(new DomDriver());
+		valor.registerConverter(conversor);
+		valor.alias("enviNFe", NotaFiscal.class);
+
+		Document xml;
+		try {
+			DocumentBuilderFactory fabrica = DocumentBuilderFactory.newInstance();
+			fabrica.setNamespaceAware(true);
+			xml = fabrica.newDocumentBuilder().newDocument();
+		} catch (ParserConfigurationException e) {
+			throw new IllegalStateException(e);
+		}
+
+		valor.marshal(notaFiscal, new EscritorDomNfe(xml));
+
+		return xml;
+	}
+
+	/*
+	 * Grava o documento na saída em UTF-8, sem quebras de linha e sem o
+	 * standalone na declaração
+	 */
+	public static void escreve(Document xml, OutputStream saida) throws IOException {
+		saida.write(DECLARACAO);
+
+		try {
+			Transformer transformer = TransformerFactory.newInstance().newTransformer();
+			transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
+			transformer.setOutputProperty(OutputKeys.ENCODING, StandardCharsets.UTF_8.name());
+			transformer.transform(new DOMSource(xml), new StreamResult(saida));
+		} catch (TransformerException e) {
+			throw new IOException("Não foi possível gravar o XML", e);
+		}
+	}
+}
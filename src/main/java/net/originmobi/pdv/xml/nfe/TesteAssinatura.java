@@ -1,12 +1,29 @@
 package net.originmobi.pdv.xml.nfe;
 
+import java.io.StringReader;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.w3c.dom.Document;
+import org.xml.sax.InputSource;
+
+import net.originmobi.pdv.service.notafiscal.NotaFiscalService;
+
 public class TesteAssinatura {
 
-	public static void main(String[] args) {
+	public static void main(String[] args) throws Exception {
 		String chaveAcesso = "11180512271266000158550010000000011994707452";
-		
+
+		DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+		factory.setNamespaceAware(true);
+		String gravado = new NotaFiscalService().leXML(chaveAcesso)
+				.orElseThrow(() -> new IllegalArgumentException("XML não encontrado: " + chaveAcesso));
+		Document xml = factory.newDocumentBuilder().parse(new InputSource(new StringReader(gravado)));
+
 		AssinaXML assinatura = new AssinaXML();
-		assinatura.assinaXML(chaveAcesso);
+		assinatura.assina(xml);
+
+		GeraXmlNfe.escreve(xml, System.out);
 	}
 
 }
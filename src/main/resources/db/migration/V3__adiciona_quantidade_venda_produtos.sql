@@ -0,0 +1,57 @@
+-- -----------------------------------------------------
+-- venda_produtos passa a ter quantidade e o valor unitário do produto
+-- no momento da venda, uma linha por produto e não por unidade
+-- -----------------------------------------------------
+ALTER TABLE `venda_produtos`
+  ADD COLUMN `qtd` INT NOT NULL DEFAULT 1 AFTER `venda_codigo`,
+  ADD COLUMN `valor_unitario` DOUBLE NULL AFTER `qtd`;
+
+UPDATE `venda_produtos` vp
+  INNER JOIN `produto` p ON p.codigo = vp.produto_codigo
+  SET vp.valor_unitario = p.valor_venda
+  WHERE vp.valor_unitario IS NULL;
+
+DROP TRIGGER IF EXISTS `tr_atualizaTotalProdutosVenda_AFTER_INSERT`;
+DROP TRIGGER IF EXISTS `atualizaTotalProdutos_BEFORE_DELETE`;
+
+DELIMITER $$
+CREATE DEFINER = CURRENT_USER TRIGGER `tr_atualizaTotalProdutosVenda_AFTER_INSERT` AFTER INSERT ON `venda_produtos` FOR EACH ROW
+BEGIN
+	SET @codigoVen = NEW.venda_codigo;
+    SET @codigoPro = NEW.produto_codigo;
+    SET @vlBalanca = NEW.valor_balanca;
+    SET @qtd = NEW.qtd;
+
+    select coalesce(v.valor_produtos, 0) INTO @vlProdutos from venda v where v.codigo = @codigoVen;
+
+    IF(@vlBalanca > 0) THEN
+		update venda set valor_produtos = (@vlProdutos + (@vlBalanca * @qtd)) where codigo = @codigoVen;
+	else
+		SET @vlVenda = NEW.valor_unitario;
+		IF(@vlVenda IS NULL) THEN
+			select p.valor_venda INTO @vlVenda from produto p where p.codigo = @codigoPro;
+		end if;
+		UPDATE venda set valor_produtos = (@vlProdutos + (@vlVenda * @qtd)) where codigo = @codigoVen;
+	end if;
+END$$
+
+CREATE DEFINER = CURRENT_USER TRIGGER `atualizaTotalProdutos_BEFORE_DELETE` BEFORE DELETE ON `venda_produtos` FOR EACH ROW
+BEGIN
+	SET @codigoVen = OLD.venda_codigo;
+    SET @vlBalanca = OLD.valor_balanca;
+    SET @codigoProd = OLD.produto_codigo;
+    SET @qtd = OLD.qtd;
+
+    select coalesce(v.valor_produtos, 0) into @vlProdutos from venda v where v.codigo = @codigoVen;
+
+    if(@vlBalanca > 0) then
+		update venda set valor_produtos = (@vlProdutos - (@vlBalanca * @qtd)) where codigo = @codigoVen;
+	else
+		SET @vlVenda = OLD.valor_unitario;
+		IF(@vlVenda IS NULL) THEN
+			select valor_venda into @vlVenda from produto where codigo = @codigoProd;
+		end if;
+        update venda set valor_produtos = (@vlProdutos - (@vlVenda * @qtd)) where codigo = @codigoVen;
+	end if;
+END$$
+DELIMITER ;
@@ -0,0 +1,8 @@
+-- -----------------------------------------------------
+-- O saldo de produto_estoque passa a ser atualizado pela aplicação com
+-- comandos condicionais, a venda baixa todos os produtos de uma vez e o
+-- ajuste atualiza o saldo do produto antes de registrar a movimentação.
+-- O trigger lia o saldo e gravava o novo valor em seguida, permitindo que
+-- duas vendas simultâneas passassem pela mesma conferência de estoque.
+-- -----------------------------------------------------
+DROP TRIGGER IF EXISTS `atualiza_produto_estoque_AFTER_INSERT`;
@@ -0,0 +1,33 @@
+-- -----------------------------------------------------
+-- Os totais de venda.valor_produtos e de caixa passam a ser atualizados pela
+-- aplicação com um único update x = x + ? no mesmo comando que altera a
+-- linha. Os triggers liam o total em variáveis de sessão e gravavam a soma
+-- em seguida, perdendo atualizações simultâneas, e a remoção de item relia
+-- o valor de venda atual do produto em vez do valor em que foi vendido.
+-- -----------------------------------------------------
+DROP TRIGGER IF EXISTS `tr_atualizaTotalProdutosVenda_AFTER_INSERT`;
+DROP TRIGGER IF EXISTS `atualizaTotalProdutos_BEFORE_DELETE`;
+DROP TRIGGER IF EXISTS `tr_atualizaValoresCaixa_AFTER_INSERT`;
+
+-- -----------------------------------------------------
+-- a transferência continua gerando os lançamentos pelo trigger, que agora
+-- também atualiza os valores dos dois caixas
+-- -----------------------------------------------------
+DROP TRIGGER IF EXISTS `tr_lanca_cai_lancamento_AFTER_INSERT`;
+
+DELIMITER $$
+CREATE DEFINER = CURRENT_USER TRIGGER `tr_lanca_cai_lancamento_AFTER_INSERT` AFTER INSERT ON `transferencia` FOR EACH ROW
+BEGIN
+	insert caixa_lancamento (valor, observacao, tipo, estilo, caixa_codigo, usuario_codigo, data_cadastro)
+	values (-NEW.valor, 'Saída de transferência', 'TRANSFERENCIA', 'SAIDA', NEW.origem_codigo, NEW.usuario_codigo, sysdate());
+
+	update caixa set valor_saida = coalesce(valor_saida, 0) + NEW.valor, valor_total = coalesce(valor_total, 0) - NEW.valor
+	where codigo = NEW.origem_codigo;
+
+	insert caixa_lancamento (valor, observacao, tipo, estilo, caixa_codigo, usuario_codigo, data_cadastro)
+	values (NEW.valor, 'Entrada de transferência', 'TRANSFERENCIA', 'ENTRADA', NEW.destino_codigo, NEW.usuario_codigo, sysdate());
+
+	update caixa set valor_entrada = coalesce(valor_entrada, 0) + NEW.valor, valor_total = coalesce(valor_total, 0) + NEW.valor
+	where codigo = NEW.destino_codigo;
+END$$
+DELIMITER ;
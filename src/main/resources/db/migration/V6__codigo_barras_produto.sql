@@ -0,0 +1,10 @@
+-- -----------------------------------------------------
+-- código de barras (GTIN/EAN) do produto, único quando informado, e
+-- índice na descrição para a busca por início da descrição
+-- -----------------------------------------------------
+ALTER TABLE `produto`
+  ADD COLUMN `codigo_barras` VARCHAR(14) NULL AFTER `descricao`;
+
+CREATE UNIQUE INDEX `uk_produto_codigo_barras` ON `produto` (`codigo_barras`);
+
+CREATE INDEX `ix_produto_descricao` ON `produto` (`descricao`);
@@ -0,0 +1,10 @@
+-- -----------------------------------------------------
+-- operações do diário de contingência já gravadas, a sincronização
+-- registra o id da operação na mesma transação para não aplicá-la duas
+-- vezes
+-- -----------------------------------------------------
+CREATE TABLE IF NOT EXISTS `contingencia_operacao` (
+  `id` VARCHAR(36) NOT NULL,
+  `data_sincronizacao` DATETIME NOT NULL,
+  PRIMARY KEY (`id`))
+ENGINE = InnoDB;
@@ -0,0 +1,14 @@
+-- -----------------------------------------------------
+-- último número de nota de cada série. O cadastro da nota incrementa a
+-- linha da série na mesma transação em que grava a nota, no lugar de
+-- max(numero) + 1, que dava o mesmo número a duas notas simultâneas. Uma
+-- nota que falha desfaz o incremento, sem deixar buraco na numeração.
+-- -----------------------------------------------------
+CREATE TABLE IF NOT EXISTS `nota_fiscal_numeracao` (
+  `serie` INT(11) NOT NULL,
+  `ultimo` INT(11) NOT NULL,
+  PRIMARY KEY (`serie`))
+ENGINE = InnoDB;
+
+insert into nota_fiscal_numeracao (serie, ultimo)
+select serie, max(numero) from nota_fiscal group by serie;
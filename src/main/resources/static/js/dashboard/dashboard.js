@@ -0,0 +1,23 @@
+$(function() {
+
+	// números do painel atualizados pelo servidor, sem recarregar a página
+	var painel = $('#painel');
+
+	if (painel.length == 0 || !window.EventSource)
+		return;
+
+	var eventos = new EventSource(painel.data('eventos'));
+
+	eventos.addEventListener('painel', function(e) {
+		var valores = JSON.parse(e.data);
+
+		$('#pedidosAberto').text(valores.pedidosAberto);
+		$('#totalReceber').text('R$ ' + valores.total_a_receber);
+		$('#totalPagar').text('R$ ' + valores.total_a_pagar);
+		$('#notasEmitidas').text(valores.total_notas_emitidas);
+	});
+
+	$(window).on('beforeunload', function() {
+		eventos.close();
+	});
+});
@@ -8,6 +8,7 @@ $(function() {
 				event.preventDefault();
 
 				var codigopro = $("#codigoProduto").val();
+				var qtd = $("#qtdProduto").val();
 				var link = $(".js-addvenda-produto").attr("href");
 
 				var balanca = $("#codigoProduto option:selected").attr(
@@ -21,7 +22,7 @@ $(function() {
 				} 
 
 				var linkNovo = link + "=" + codigopro.toString()
-						+ "&valorBalanca=" + valor;
+						+ "&valorBalanca=" + valor + "&qtd=" + qtd;
 
 				var response = $.ajax({
 					url : linkNovo,
@@ -34,12 +35,15 @@ $(function() {
 					
 					success : function(e) {
 						$(".carrega").empty();
+						$("#qtdProduto").val(1);
 						
 						$("#tabProdutoVenda").load(" #tabProdutoVenda");
 						$("#total_produtos").load(" #total_produtos");
 						
 						if (e == "Venda fechada")
 							alert("Venda Fechada");
+						else if (e == "Quantidade inválida")
+							alert(e);
 						
 					}
 				});
@@ -50,6 +54,42 @@ $(function() {
 				});
 			});
 
+	// produto lido pelo scanner, a etiqueta da balança já traz o valor
+	$(".formdavenda").on(
+			"keypress",
+			".js-addvenda-codigobarras",
+			function(event) {
+				if (event.which != 13)
+					return;
+
+				event.preventDefault();
+
+				var campo = $(this);
+				var codigo = campo.val().trim();
+
+				if (codigo == "")
+					return;
+
+				var response = $.ajax({
+					url : campo.attr("data-url") + "&codigoBarras=" + encodeURIComponent(codigo),
+					type : 'POST',
+
+					success : function(e) {
+						campo.val("");
+
+						$("#tabProdutoVenda").load(" #tabProdutoVenda");
+						$("#total_produtos").load(" #total_produtos");
+
+						if (e != "ok")
+							alert(e == "" ? "Falha no processo" : e);
+					}
+				});
+
+				response.fail(function(e) {
+					alert("Falha no processo");
+				});
+			});
+
 	// responsável por remover um produto da venda
 	$('#tabProdutoVenda').on(
 			'click',
@@ -26,6 +26,7 @@ import net.originmobi.pdv.model.Ajuste;
 import net.originmobi.pdv.model.AjusteProduto;
 import net.originmobi.pdv.model.Produto;
 import net.originmobi.pdv.repository.AjusteRepository;
+import net.originmobi.pdv.security.UsuarioAtual;
 import net.originmobi.pdv.service.AjusteService;
 import net.originmobi.pdv.service.ProdutoService;
 
@@ -40,7 +41,7 @@ public class AjusteServiceTest {
 		// Instancia a classe AjusteService 
         ajusteRepositoryMock = mock(AjusteRepository.class);
         produtoServiceMock = mock(ProdutoService.class);
-		ajusteService = new AjusteService(ajusteRepositoryMock, produtoServiceMock);
+		ajusteService = new AjusteService(ajusteRepositoryMock, produtoServiceMock, new UsuarioAtual());
 
         // Insere os mocks na classe a ser testada
         ReflectionTestUtils.setField(ajusteService, "ajustes", ajusteRepositoryMock);
@@ -0,0 +1,238 @@
+package arquivoXmlNfe;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import net.originmobi.pdv.xml.nfe.ArquivoXmlNfe;
+
+@DisplayName("ArquivoXmlNfe — XMLs compactados em segmentos com índice")
+public class ArquivoXmlNfeTest {
+
+    // segmentos pequenos para os testes passarem por vários
+    private static final long SEGMENTO = 4096;
+
+    @TempDir
+    Path pasta;
+
+    @Test
+    public void testGravaELe_VoltaOMesmoXmlCompactado() throws Exception {
+        try (ArquivoXmlNfe arquivo = new ArquivoXmlNfe(pasta, ArquivoXmlNfe.TAMANHO_SEGMENTO)) {
+            String xml = xml("35180511222333000181550010000000421123456780", 50);
+            arquivo.grava("35180511222333000181550010000000421123456780", xml.getBytes(StandardCharsets.UTF_8));
+
+            assertEquals(xml, texto(arquivo.le("35180511222333000181550010000000421123456780")));
+            assertFalse(arquivo.le("outra").isPresent());
+            assertTrue((Long) arquivo.estatisticas().get("bytes") < xml.length() / 5);
+        }
+    }
+
+    @Test
+    public void testReabre_LeOsIndicesDosSegmentosFechadosEPercorreOEmUso() throws Exception {
+        try (ArquivoXmlNfe arquivo = new ArquivoXmlNfe(pasta, SEGMENTO)) {
+            for (int i = 0; i < 100; i++)
+                arquivo.grava("chave" + i, xml("chave" + i, i % 7).getBytes(StandardCharsets.UTF_8));
+
+            assertTrue((Integer) arquivo.estatisticas().get("segmentos") > 2);
+        }
+
+        assertTrue(arquivos("*.idx") > 1);
+
+        try (ArquivoXmlNfe arquivo = new ArquivoXmlNfe(pasta, SEGMENTO)) {
+            assertEquals(100L, arquivo.estatisticas().get("xmls"));
+            for (int i = 0; i < 100; i++)
+                assertEquals(xml("chave" + i, i % 7), texto(arquivo.le("chave" + i)));
+        }
+    }
+
+    @Test
+    public void testRemove_ContinuaRemovidoAoReabrir() throws Exception {
+        try (ArquivoXmlNfe arquivo = new ArquivoXmlNfe(pasta, SEGMENTO)) {
+            arquivo.grava("fica", bytes("fica"));
+            arquivo.grava("sai", bytes("sai"));
+
+            assertTrue(arquivo.remove("sai"));
+            assertFalse(arquivo.remove("sai"));
+            assertFalse(arquivo.remove("nunca-gravada"));
+        }
+
+        try (ArquivoXmlNfe arquivo = new ArquivoXmlNfe(pasta, SEGMENTO)) {
+            assertTrue(arquivo.contem("fica"));
+            assertFalse(arquivo.contem("sai"));
+            assertEquals(List.of("fica"), arquivo.chaves());
+        }
+    }
+
+    @Test
+    public void testGravaERemove_NoDiscoSemFechar() throws Exception {
+        ArquivoXmlNfe arquivo = new ArquivoXmlNfe(pasta, SEGMENTO);
+        try {
+            arquivo.grava("fica", bytes("fica"));
+            arquivo.grava("sai", bytes("sai"));
+            arquivo.remove("sai");
+
+            // sem close(), como em uma queda do processo
+            try (ArquivoXmlNfe reaberto = new ArquivoXmlNfe(pasta, SEGMENTO)) {
+                assertEquals(xml("fica", 3), texto(reaberto.le("fica")));
+                assertFalse(reaberto.contem("sai"));
+            }
+        } finally {
+            arquivo.close();
+        }
+    }
+
+    @Test
+    public void testGravacaoInterrompida_DescartaORegistroIncompleto() throws Exception {
+        try (ArquivoXmlNfe arquivo = new ArquivoXmlNfe(pasta, ArquivoXmlNfe.TAMANHO_SEGMENTO)) {
+            arquivo.grava("primeira", bytes("primeira"));
+            arquivo.grava("segunda", bytes("segunda"));
+        }
+
+        // metade do registro da segunda nota, como se o processo caísse no meio
+        Path segmento = pasta.resolve("segmento-000001.dat");
+        long tamanho = Files.size(segmento);
+        try (RandomAccessFile dat = new RandomAccessFile(segmento.toFile(), "rw")) {
+            dat.setLength(tamanho - 10);
+        }
+
+        try (ArquivoXmlNfe arquivo = new ArquivoXmlNfe(pasta, ArquivoXmlNfe.TAMANHO_SEGMENTO)) {
+            assertEquals(xml("primeira", 3), texto(arquivo.le("primeira")));
+            assertFalse(arquivo.contem("segunda"));
+
+            arquivo.grava("terceira", bytes("terceira"));
+        }
+
+        try (ArquivoXmlNfe arquivo = new ArquivoXmlNfe(pasta, ArquivoXmlNfe.TAMANHO_SEGMENTO)) {
+            assertEquals(List.of("primeira", "terceira"), ordenadas(arquivo.chaves()));
+            assertEquals(xml("terceira", 3), texto(arquivo.le("terceira")));
+        }
+    }
+
+    @Test
+    public void testNotasRegeradas_SegmentosAntigosCompactados() throws Exception {
+        try (ArquivoXmlNfe arquivo = new ArquivoXmlNfe(pasta, SEGMENTO)) {
+            for (int vez = 0; vez < 100; vez++)
+                for (int i = 0; i < 5; i++)
+                    arquivo.grava("nota" + i, xml("nota" + i + "-" + vez, 3).getBytes(StandardCharsets.UTF_8));
+
+            // sem compactar seriam dezenas de segmentos
+            assertTrue((Integer) arquivo.estatisticas().get("segmentos") <= 4,
+                    "segmentos: " + arquivo.estatisticas().get("segmentos"));
+        }
+
+        try (ArquivoXmlNfe arquivo = new ArquivoXmlNfe(pasta, SEGMENTO)) {
+            for (int i = 0; i < 5; i++)
+                assertEquals(xml("nota" + i + "-99", 3), texto(arquivo.le("nota" + i)));
+        }
+    }
+
+    @Test
+    public void testIndiceCorrompido_PercorreOSegmento() throws Exception {
+        try (ArquivoXmlNfe arquivo = new ArquivoXmlNfe(pasta, SEGMENTO)) {
+            for (int i = 0; i < 30; i++)
+                arquivo.grava("chave" + i, xml("chave" + i, 5).getBytes(StandardCharsets.UTF_8));
+        }
+
+        Path indice = pasta.resolve("segmento-000001.idx");
+        byte[] bytes = Files.readAllBytes(indice);
+        bytes[3] ^= 0x55;
+        Files.write(indice, bytes);
+
+        try (ArquivoXmlNfe arquivo = new ArquivoXmlNfe(pasta, SEGMENTO)) {
+            for (int i = 0; i < 30; i++)
+                assertEquals(xml("chave" + i, 5), texto(arquivo.le("chave" + i)));
+        }
+    }
+
+    @Test
+    public void testXmlsSoltos_ImportadosAoAbrir() throws Exception {
+        Files.write(pasta.resolve("35180511222333000181550010000000421123456780.xml"), bytes("solto"));
+
+        try (ArquivoXmlNfe arquivo = new ArquivoXmlNfe(pasta, SEGMENTO)) {
+            assertEquals(xml("solto", 3), texto(arquivo.le("35180511222333000181550010000000421123456780")));
+        }
+
+        assertEquals(0, arquivos("*.xml"));
+    }
+
+    @Test
+    public void testVariasThreads_GravamELeemAoMesmoTempo() throws Exception {
+        ExecutorService threads = Executors.newFixedThreadPool(8);
+
+        try (ArquivoXmlNfe arquivo = new ArquivoXmlNfe(pasta, SEGMENTO * 4)) {
+            List<Future<?>> tarefas = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                int thread = t;
+                tarefas.add(threads.submit(() -> {
+                    for (int i = 0; i < 100; i++) {
+                        String chave = thread + "-" + i;
+                        arquivo.grava(chave, bytes(chave));
+                        assertEquals(xml(chave, 3), texto(arquivo.le(chave)));
+                        if (i % 10 == 0)
+                            arquivo.remove(chave);
+                    }
+                    return null;
+                }));
+            }
+
+            for (Future<?> tarefa : tarefas)
+                tarefa.get();
+
+            assertEquals(720L, arquivo.estatisticas().get("xmls"));
+        } finally {
+            threads.shutdown();
+        }
+
+        try (ArquivoXmlNfe arquivo = new ArquivoXmlNfe(pasta, SEGMENTO * 4)) {
+            assertEquals(720, arquivo.chaves().size());
+        }
+    }
+
+    private static String xml(String chave, int itens) {
+        StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?><enviNFe><NFe><infNFe Id=\"NFe")
+                .append(chave).append("\">");
+        for (int i = 0; i < itens; i++)
+            xml.append("<det nItem=\"").append(i + 1).append("\"><prod><xProd>Pão de queijo ").append(i)
+                    .append("</xProd><vProd>10.50</vProd></prod></det>");
+        return xml.append("</infNFe></NFe></enviNFe>").toString();
+    }
+
+    private static byte[] bytes(String chave) {
+        return xml(chave, 3).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String texto(Optional<byte[]> xml) {
+        return new String(xml.orElseThrow(() -> new AssertionError("XML não encontrado")), StandardCharsets.UTF_8);
+    }
+
+    private static List<String> ordenadas(List<String> chaves) {
+        List<String> ordenadas = new ArrayList<>(chaves);
+        ordenadas.sort(null);
+        return ordenadas;
+    }
+
+    private int arquivos(String padrao) throws IOException {
+        int quantidade = 0;
+        try (DirectoryStream<Path> arquivos = Files.newDirectoryStream(pasta, padrao)) {
+            for (Path arquivo : arquivos)
+                quantidade++;
+        }
+        return quantidade;
+    }
+
+}
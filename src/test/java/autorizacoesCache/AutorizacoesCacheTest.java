@@ -0,0 +1,136 @@
+package autorizacoesCache;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import net.originmobi.pdv.repository.PermissoesRespository;
+import net.originmobi.pdv.security.AutorizacoesCache;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("AutorizacoesCache — testes unitários")
+public class AutorizacoesCacheTest {
+
+    @InjectMocks
+    private AutorizacoesCache autorizacoes;
+
+    @Mock private PermissoesRespository permissoes;
+
+    @AfterEach
+    public void limpaTransacao() {
+        if (TransactionSynchronizationManager.isSynchronizationActive())
+            TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    @Test
+    public void testDoUsuario_SegundoLogin_NaoConsultaBanco() {
+        when(permissoes.permissoesDoUsuario(1L)).thenReturn(Arrays.asList(
+                new Object[] { 10, "VENDA" }, new Object[] { 10, "CAIXA" }, new Object[] { 20, "CAIXA" }));
+
+        assertEquals(Set.of("ROLE_VENDA", "ROLE_CAIXA"), nomes(autorizacoes.doUsuario(1L)));
+        assertEquals(Set.of("ROLE_VENDA", "ROLE_CAIXA"), nomes(autorizacoes.doUsuario(1L)));
+
+        verify(permissoes, times(1)).permissoesDoUsuario(1L);
+    }
+
+    @Test
+    public void testDoUsuario_GrupoSemPermissoes_FicaEmMemoria() {
+        // grupo 30 não tem permissões, vem do left join com o nome nulo
+        when(permissoes.permissoesDoUsuario(2L)).thenReturn(Arrays.asList(
+                new Object[] { 10, "VENDA" }, new Object[] { 30, null }));
+
+        assertEquals(Set.of("ROLE_VENDA"), nomes(autorizacoes.doUsuario(2L)));
+        assertEquals(Set.of("ROLE_VENDA"), nomes(autorizacoes.doUsuario(2L)));
+
+        verify(permissoes, times(1)).permissoesDoUsuario(2L);
+    }
+
+    @Test
+    public void testInvalidaGrupo_PermissaoAdicionada_RecarregaOGrupo() {
+        when(permissoes.permissoesDoUsuario(1L))
+                .thenReturn(Collections.singletonList(new Object[] { 10, "VENDA" }))
+                .thenReturn(Arrays.asList(new Object[] { 10, "VENDA" }, new Object[] { 10, "AJUSTE" }));
+
+        assertEquals(Set.of("ROLE_VENDA"), nomes(autorizacoes.doUsuario(1L)));
+
+        autorizacoes.invalidaGrupo(10L);
+
+        assertEquals(Set.of("ROLE_VENDA", "ROLE_AJUSTE"), nomes(autorizacoes.doUsuario(1L)));
+        verify(permissoes, times(2)).permissoesDoUsuario(1L);
+    }
+
+    @Test
+    public void testInvalidaUsuario_GrupoAdicionado_RecarregaOsGrupos() {
+        when(permissoes.permissoesDoUsuario(1L))
+                .thenReturn(Collections.singletonList(new Object[] { 10, "VENDA" }))
+                .thenReturn(Arrays.asList(new Object[] { 10, "VENDA" }, new Object[] { 20, "CAIXA" }));
+
+        assertEquals(Set.of("ROLE_VENDA"), nomes(autorizacoes.doUsuario(1L)));
+
+        autorizacoes.invalidaUsuario(1L);
+
+        assertEquals(Set.of("ROLE_VENDA", "ROLE_CAIXA"), nomes(autorizacoes.doUsuario(1L)));
+    }
+
+    @Test
+    public void testInvalidaGrupo_DentroDeTransacao_SoDepoisDaConfirmacao() {
+        when(permissoes.permissoesDoUsuario(1L))
+                .thenReturn(Collections.singletonList(new Object[] { 10, "VENDA" }))
+                .thenReturn(Arrays.asList(new Object[] { 10, "VENDA" }, new Object[] { 10, "AJUSTE" }));
+
+        assertEquals(Set.of("ROLE_VENDA"), nomes(autorizacoes.doUsuario(1L)));
+
+        TransactionSynchronizationManager.initSynchronization();
+        autorizacoes.invalidaGrupo(10L);
+
+        // ainda não confirmada, o banco não mudou para os outros logins
+        assertEquals(Set.of("ROLE_VENDA"), nomes(autorizacoes.doUsuario(1L)));
+        verify(permissoes, times(1)).permissoesDoUsuario(1L);
+
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        TransactionSynchronizationManager.clearSynchronization();
+
+        assertEquals(Set.of("ROLE_VENDA", "ROLE_AJUSTE"), nomes(autorizacoes.doUsuario(1L)));
+    }
+
+    @Test
+    public void testInvalidaUsuario_TransacaoDesfeita_MantemEmMemoria() {
+        when(permissoes.permissoesDoUsuario(1L))
+                .thenReturn(Collections.singletonList(new Object[] { 10, "VENDA" }));
+
+        autorizacoes.doUsuario(1L);
+
+        TransactionSynchronizationManager.initSynchronization();
+        autorizacoes.invalidaUsuario(1L);
+        TransactionSynchronizationManager.getSynchronizations()
+                .forEach(sincronizacao -> sincronizacao.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        TransactionSynchronizationManager.clearSynchronization();
+
+        autorizacoes.doUsuario(1L);
+        verify(permissoes, times(1)).permissoesDoUsuario(1L);
+    }
+
+    private static Set<String> nomes(Collection<GrantedAuthority> autorizacoes) {
+        List<String> lista = autorizacoes.stream().map(GrantedAuthority::getAuthority).collect(Collectors.toList());
+        assertEquals(lista.size(), Set.copyOf(lista).size(), "autorizações repetidas");
+        return Set.copyOf(lista);
+    }
+
+}
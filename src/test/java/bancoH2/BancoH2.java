@@ -0,0 +1,80 @@
+package bancoH2;
+
+import java.util.Properties;
+
+import javax.persistence.EntityManager;
+
+import org.springframework.data.jpa.repository.support.JpaRepositoryFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/*
+ * Banco H2 em memória no modo MySQL, com as tabelas geradas pelas entidades,
+ * para os testes que dependem da trava de linha de um banco transacional.
+ * Os repositórios são os mesmos da aplicação, com as mesmas queries
+ */
+public class BancoH2 implements AutoCloseable {
+
+    private final LocalContainerEntityManagerFactoryBean fabrica;
+    private final JpaTransactionManager transacoes;
+    private final JpaRepositoryFactory repositorios;
+    private final JdbcTemplate jdbc;
+
+    public BancoH2(String nome) {
+        // o javassist do hibernate 5.2 não gera os proxies no jdk 17, o
+        // byte-buddy dos testes gera
+        System.setProperty("hibernate.bytecode.provider", "bytebuddy");
+
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:" + nome + ";MODE=MySQL;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=30000", "sa", "");
+
+        Properties propriedades = new Properties();
+        propriedades.setProperty("hibernate.hbm2ddl.auto", "create");
+
+        fabrica = new LocalContainerEntityManagerFactoryBean();
+        fabrica.setDataSource(dataSource);
+        fabrica.setPackagesToScan("net.originmobi.pdv.model");
+        fabrica.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+        fabrica.setJpaProperties(propriedades);
+        fabrica.afterPropertiesSet();
+
+        transacoes = new JpaTransactionManager(fabrica.getObject());
+        transacoes.setDataSource(dataSource);
+
+        EntityManager entityManager = SharedEntityManagerCreator.createSharedEntityManager(fabrica.getObject());
+        repositorios = new JpaRepositoryFactory(entityManager);
+        jdbc = new JdbcTemplate(dataSource);
+    }
+
+    public <T> T repositorio(Class<T> tipo) {
+        return repositorios.getRepository(tipo);
+    }
+
+    public JdbcTemplate jdbc() {
+        return jdbc;
+    }
+
+    public PlatformTransactionManager transacoes() {
+        return transacoes;
+    }
+
+    /*
+     * faz o papel do @Transactional do serviço, que aqui não passa por proxy
+     */
+    public <T> T emTransacao(TransactionCallback<T> acao) {
+        return new TransactionTemplate(transacoes).execute(acao);
+    }
+
+    @Override
+    public void close() {
+        fabrica.destroy();
+        jdbc.execute("drop all objects");
+    }
+}
@@ -0,0 +1,150 @@
+package caixaLancamentoService;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import bancoH2.BancoH2;
+import net.originmobi.pdv.enumerado.caixa.EstiloLancamento;
+import net.originmobi.pdv.enumerado.caixa.TipoLancamento;
+import net.originmobi.pdv.model.Caixa;
+import net.originmobi.pdv.model.CaixaLancamento;
+import net.originmobi.pdv.repository.CaixaLancamentoRepository;
+import net.originmobi.pdv.repository.CaixaRepository;
+import net.originmobi.pdv.service.CaixaLancamentoService;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("CaixaLancamentoService — testes unitários")
+public class CaixaLancamentoServiceTest {
+
+    @InjectMocks
+    private CaixaLancamentoService lancamentoService;
+
+    @Mock private CaixaLancamentoRepository caixaLancamento;
+    @Mock private CaixaRepository caixas;
+
+    private Caixa caixa;
+
+    @BeforeEach
+    void setup() {
+        caixa = new Caixa();
+        caixa.setCodigo(1L);
+        // valor carregado na entidade, não deve ser usado para conferir saldo
+        caixa.setValor_total(1000.0);
+    }
+
+    @Test
+    public void testLancamento_Entrada_SomaNosValoresDoCaixa() {
+        when(caixas.lancaValores(1L, 150.0, 0.0)).thenReturn(1);
+
+        String retorno = lancamentoService.lancamento(
+                new CaixaLancamento("", 150.0, TipoLancamento.SUPRIMENTO, EstiloLancamento.ENTRADA, caixa, null));
+
+        assertEquals("Lançamento realizado com sucesso", retorno);
+        verify(caixas).lancaValores(1L, 150.0, 0.0);
+        verify(caixaLancamento).save(any(CaixaLancamento.class));
+    }
+
+    @Test
+    public void testLancamento_Sangria_SaidaPositivaNoUpdate() {
+        when(caixas.lancaValores(1L, 0.0, 10.0)).thenReturn(1);
+
+        String retorno = lancamentoService.lancamento(
+                new CaixaLancamento("", 10.0, TipoLancamento.SANGRIA, EstiloLancamento.SAIDA, caixa, null));
+
+        assertEquals("Lançamento realizado com sucesso", retorno);
+        verify(caixas).lancaValores(1L, 0.0, 10.0);
+        verify(caixas, never()).save(any(Caixa.class));
+    }
+
+    @Test
+    public void testLancamento_SaidaSemSaldo_NaoGravaLancamento() {
+        // o update não alterou a linha: o saldo na base era menor que a saída
+        when(caixas.lancaValores(1L, 0.0, 50.0)).thenReturn(0);
+
+        String retorno = lancamentoService.lancamento(
+                new CaixaLancamento("", 50.0, TipoLancamento.SANGRIA, EstiloLancamento.SAIDA, caixa, null));
+
+        assertEquals("Saldo insuficiente para realizar esta operação", retorno);
+        verify(caixaLancamento, never()).save(any());
+    }
+
+    /*
+     * Sangrias e suprimentos ao mesmo tempo no mesmo caixa, contra um banco
+     * transacional: o saldo final é o inicial mais a soma do que foi aceito e
+     * nenhuma sangria passa do saldo
+     */
+    @Test
+    public void testLancamento_Concorrente_SaldoNaoDesvia() throws Exception {
+        try (BancoH2 banco = new BancoH2("caixaLancamento")) {
+            CaixaLancamentoService servico = new CaixaLancamentoService();
+            ReflectionTestUtils.setField(servico, "caixas", banco.repositorio(CaixaRepository.class));
+            ReflectionTestUtils.setField(servico, "caixaLancamento", banco.repositorio(CaixaLancamentoRepository.class));
+
+            banco.jdbc().update("insert into caixa (codigo, valor_total, valor_entrada, valor_saida) values (1, 100.0, 0.0, 0.0)");
+
+            int sangrias = 30;
+            int suprimentos = 20;
+            ExecutorService executor = Executors.newFixedThreadPool(16);
+            CountDownLatch largada = new CountDownLatch(1);
+            List<Future<String>> tarefasSangria = new ArrayList<>();
+            List<Future<String>> tarefasSuprimento = new ArrayList<>();
+
+            for (int t = 0; t < sangrias + suprimentos; t++) {
+                boolean sangria = t % 5 < 3;
+                Future<String> tarefa = executor.submit(() -> {
+                    largada.await();
+                    CaixaLancamento lancamento = sangria
+                            ? new CaixaLancamento("", 10.0, TipoLancamento.SANGRIA, EstiloLancamento.SAIDA, caixa, null)
+                            : new CaixaLancamento("", 5.0, TipoLancamento.SUPRIMENTO, EstiloLancamento.ENTRADA, caixa, null);
+                    return banco.emTransacao(status -> servico.lancamento(lancamento));
+                });
+                (sangria ? tarefasSangria : tarefasSuprimento).add(tarefa);
+            }
+
+            largada.countDown();
+            int sangriasFeitas = realizados(tarefasSangria);
+            int suprimentosFeitos = realizados(tarefasSuprimento);
+            executor.shutdown();
+
+            Map<String, Object> valores = banco.jdbc()
+                    .queryForMap("select valor_total, valor_entrada, valor_saida from caixa where codigo = 1");
+
+            assertEquals(suprimentos, suprimentosFeitos);
+            assertEquals(100.0 + 5.0 * suprimentosFeitos - 10.0 * sangriasFeitas,
+                    ((Number) valores.get("VALOR_TOTAL")).doubleValue(), 0.0001);
+            assertEquals(5.0 * suprimentosFeitos, ((Number) valores.get("VALOR_ENTRADA")).doubleValue(), 0.0001);
+            assertEquals(10.0 * sangriasFeitas, ((Number) valores.get("VALOR_SAIDA")).doubleValue(), 0.0001);
+            assertTrue(((Number) valores.get("VALOR_TOTAL")).doubleValue() >= 0.0);
+            assertEquals(sangriasFeitas + suprimentosFeitos,
+                    banco.jdbc().queryForObject("select count(*) from caixa_lancamento", Integer.class).intValue());
+        }
+    }
+
+    private static int realizados(List<Future<String>> tarefas) throws Exception {
+        int realizados = 0;
+        for (Future<String> tarefa : tarefas) {
+            if (tarefa.get(60, TimeUnit.SECONDS).equals("Lançamento realizado com sucesso"))
+                realizados++;
+        }
+        return realizados;
+    }
+}
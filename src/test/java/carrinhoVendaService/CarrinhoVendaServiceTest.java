@@ -0,0 +1,111 @@
+package carrinhoVendaService;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+
+import net.originmobi.pdv.model.Produto;
+import net.originmobi.pdv.repository.VendaRepository;
+import net.originmobi.pdv.service.ProdutoService;
+import net.originmobi.pdv.service.VendaProdutoService;
+import net.originmobi.pdv.service.venda.CarrinhoVendaService;
+
+@DisplayName("CarrinhoVendaService — testes unitários")
+public class CarrinhoVendaServiceTest {
+
+    private final VendaRepository vendas = mock(VendaRepository.class);
+    private final ProdutoService produtos = mock(ProdutoService.class);
+    private final VendaProdutoService vendaProdutos = mock(VendaProdutoService.class);
+
+    private final CarrinhoVendaService carrinhos = new CarrinhoVendaService(vendas, produtos, vendaProdutos,
+            new TransacaoDeTeste(), true, 500, 300);
+
+    @BeforeEach
+    void setup() {
+        Produto produto = new Produto();
+        produto.setCodigo(2L);
+        produto.setDescricao("Produto");
+        produto.setValor_venda(3.25);
+        when(produtos.busca(2L)).thenReturn(produto);
+    }
+
+    @Test
+    public void testAdiciona_VendaFechada_NaoCriaCarrinho() {
+        when(vendas.verificaSituacao(1L)).thenReturn("FECHADA");
+
+        assertFalse(carrinhos.adiciona(1L, 2L, 0.0, 1));
+        assertFalse(carrinhos.busca(1L).isPresent());
+    }
+
+    @Test
+    public void testAdiciona_CarrinhoExistente_ConfereAVendaUmaVez() {
+        when(vendas.verificaSituacao(1L)).thenReturn("ABERTA");
+
+        assertTrue(carrinhos.adiciona(1L, 2L, 0.0, 1));
+        assertTrue(carrinhos.adiciona(1L, 2L, 0.0, 2));
+
+        assertEquals(3 * 3.25, carrinhos.busca(1L).get().getTotal(), 0.0001);
+        verify(vendas, times(1)).verificaSituacao(1L);
+    }
+
+    @Test
+    public void testAdiciona_DepoisDoFechamentoGravarOCarrinho_Recusado() {
+        when(vendas.verificaSituacao(1L)).thenReturn("ABERTA", "FECHADA");
+        when(vendas.travaSituacao(1L)).thenReturn("ABERTA");
+
+        assertTrue(carrinhos.adiciona(1L, 2L, 0.0, 1));
+        carrinhos.grava(1L);
+
+        // o carrinho novo confere a venda de novo, já fechada
+        assertFalse(carrinhos.adiciona(1L, 2L, 0.0, 1));
+        assertFalse(carrinhos.busca(1L).isPresent());
+        verify(vendaProdutos, times(1)).salvarLote(anyList());
+    }
+
+    @Test
+    public void testGrava_VendaFechadaAntesDaGravacao_DescartaOsItens() {
+        when(vendas.verificaSituacao(1L)).thenReturn("ABERTA");
+        when(vendas.travaSituacao(1L)).thenReturn("FECHADA");
+
+        assertTrue(carrinhos.adiciona(1L, 2L, 0.0, 1));
+        carrinhos.gravaTodos();
+
+        verify(vendas).travaSituacao(1L);
+        verify(vendaProdutos, never()).salvarLote(anyList());
+        assertFalse(carrinhos.busca(1L).isPresent());
+    }
+
+    /*
+     * Transação sem banco, só para as sincronizações da gravação rodarem
+     */
+    static class TransacaoDeTeste extends AbstractPlatformTransactionManager {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected Object doGetTransaction() {
+            return new Object();
+        }
+
+        @Override
+        protected void doBegin(Object transacao, TransactionDefinition definicao) {
+        }
+
+        @Override
+        protected void doCommit(DefaultTransactionStatus status) {
+        }
+
+        @Override
+        protected void doRollback(DefaultTransactionStatus status) {
+        }
+
+    }
+
+}
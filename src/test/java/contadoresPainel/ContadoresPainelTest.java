@@ -0,0 +1,115 @@
+package contadoresPainel;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import net.originmobi.pdv.repository.PagarParcelaRespository;
+import net.originmobi.pdv.repository.ReceberRepository;
+import net.originmobi.pdv.repository.VendaRepository;
+import net.originmobi.pdv.repository.notafiscal.NotaFiscalRepository;
+import net.originmobi.pdv.service.painel.ContadoresPainel;
+import net.originmobi.pdv.utilitarios.Dinheiro;
+
+@DisplayName("ContadoresPainel — testes unitários")
+public class ContadoresPainelTest {
+
+    private final VendaRepository vendas = mock(VendaRepository.class);
+    private final ReceberRepository receber = mock(ReceberRepository.class);
+    private final PagarParcelaRespository pagar = mock(PagarParcelaRespository.class);
+    private final NotaFiscalRepository notas = mock(NotaFiscalRepository.class);
+
+    private ContadoresPainel painel;
+
+    @BeforeEach
+    void setup() {
+        when(vendas.qtdVendasEmAberto()).thenReturn(3);
+        when(receber.somaAReceber()).thenReturn(1234.5);
+        when(pagar.somaDespesasAbertas()).thenReturn(0.1);
+        when(notas.totalNotaFiscalEmitidas()).thenReturn(7);
+
+        painel = new ContadoresPainel(vendas, receber, pagar, notas, 60000);
+        painel.inicia();
+    }
+
+    @AfterEach
+    void encerra() {
+        painel.encerra();
+
+        if (TransactionSynchronizationManager.isSynchronizationActive())
+            TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    @Test
+    public void testInicia_ContaNoBancoEFormataOsValores() {
+        assertEquals(Map.of("pedidosAberto", 3L, "total_a_receber", "1.234,50", "total_a_pagar", "0,10",
+                "total_notas_emitidas", 7L), painel.valores());
+    }
+
+    @Test
+    public void testAlteracoes_SemTransacao_SomadasNaHoraSemConsultarOBanco() {
+        painel.vendaAberta();
+        painel.vendaAberta();
+        painel.vendaFechada();
+        painel.somaReceber(Dinheiro.de(0.2));
+        painel.somaPagar(Dinheiro.de(-0.1));
+        painel.notaCadastrada();
+
+        Map<String, Object> valores = painel.valores();
+
+        assertEquals(4L, valores.get("pedidosAberto"));
+        assertEquals("1.234,70", valores.get("total_a_receber"));
+        assertEquals("0,00", valores.get("total_a_pagar"));
+        assertEquals(8L, valores.get("total_notas_emitidas"));
+        verify(vendas, times(1)).qtdVendasEmAberto();
+        verify(receber, times(1)).somaAReceber();
+    }
+
+    @Test
+    public void testAlteracoes_EmTransacao_SomadasSoAposConfirmar() {
+        TransactionSynchronizationManager.initSynchronization();
+
+        painel.vendaFechada();
+        painel.somaReceber(Dinheiro.de(100.0));
+
+        assertEquals(3L, painel.valores().get("pedidosAberto"));
+
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+
+        assertEquals(2L, painel.valores().get("pedidosAberto"));
+        assertEquals("1.334,50", painel.valores().get("total_a_receber"));
+    }
+
+    @Test
+    public void testAlteracoes_TransacaoDesfeita_PainelInalterado() {
+        TransactionSynchronizationManager.initSynchronization();
+
+        painel.vendaFechada();
+        painel.notaCadastrada();
+
+        TransactionSynchronizationManager.getSynchronizations()
+                .forEach(sincronizacao -> sincronizacao.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+
+        assertEquals(3L, painel.valores().get("pedidosAberto"));
+        assertEquals(7L, painel.valores().get("total_notas_emitidas"));
+    }
+
+    @Test
+    public void testRecontagem_CorrigeODesvioDoBanco() {
+        painel.vendaAberta();
+        when(vendas.qtdVendasEmAberto()).thenReturn(10);
+
+        painel.recontagem();
+
+        assertEquals(10L, painel.valores().get("pedidosAberto"));
+    }
+
+}
@@ -0,0 +1,364 @@
+package contingenciaService;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import net.originmobi.pdv.controller.TituloService;
+import net.originmobi.pdv.enumerado.caixa.EstiloLancamento;
+import net.originmobi.pdv.enumerado.caixa.TipoLancamento;
+import net.originmobi.pdv.enumerado.produto.ProdutoBalanca;
+import net.originmobi.pdv.model.Caixa;
+import net.originmobi.pdv.model.CaixaLancamento;
+import net.originmobi.pdv.model.Produto;
+import net.originmobi.pdv.model.Usuario;
+import net.originmobi.pdv.model.Venda;
+import net.originmobi.pdv.model.VendaProduto;
+import net.originmobi.pdv.repository.VendaRepository;
+import net.originmobi.pdv.security.UsuarioAtual;
+import net.originmobi.pdv.service.CaixaLancamentoService;
+import net.originmobi.pdv.service.CaixaService;
+import net.originmobi.pdv.service.EstoqueInsuficienteException;
+import net.originmobi.pdv.service.PagamentoTipoService;
+import net.originmobi.pdv.service.ParcelaService;
+import net.originmobi.pdv.service.PessoaService;
+import net.originmobi.pdv.service.ProdutoService;
+import net.originmobi.pdv.service.ReceberService;
+import net.originmobi.pdv.service.UsuarioService;
+import net.originmobi.pdv.service.VendaProdutoService;
+import net.originmobi.pdv.service.VendaService;
+import net.originmobi.pdv.service.cartao.CartaoLancamentoService;
+import net.originmobi.pdv.service.contingencia.ContingenciaService;
+import net.originmobi.pdv.service.contingencia.DiarioContingencia;
+import net.originmobi.pdv.service.contingencia.DisponibilidadeBanco;
+import net.originmobi.pdv.service.contingencia.OperacaoContingencia;
+import net.originmobi.pdv.service.contingencia.SincronizacaoContingencia;
+import net.originmobi.pdv.service.painel.ContadoresPainel;
+import net.originmobi.pdv.service.produto.CatalogoVenda;
+import net.originmobi.pdv.service.produto.ProdutoCatalogo;
+import net.originmobi.pdv.service.venda.CarrinhoVendaService;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("Contingência — testes unitários")
+public class ContingenciaServiceTest {
+
+    private static final String SUCESSO_LANCAMENTO = "Lançamento realizado com sucesso";
+
+    @TempDir
+    Path pasta;
+
+    @Mock private JdbcTemplate jdbc;
+    @Mock private PlatformTransactionManager transacoesVenda;
+    @Mock private PlatformTransactionManager transacoesSincronizacao;
+    @Mock private VendaRepository vendas;
+    @Mock private ProdutoService produtos;
+    @Mock private VendaProdutoService vendaProdutos;
+    @Mock private PessoaService pessoas;
+    @Mock private UsuarioService usuarios;
+    @Mock private UsuarioAtual usuarioAtual;
+    @Mock private CaixaService caixas;
+    @Mock private CaixaLancamentoService lancamentos;
+    @Mock private VendaService vendaServiceSincronizacao;
+    @Mock private ContadoresPainel painel;
+
+    private DisponibilidadeBanco banco;
+    private CarrinhoVendaService carrinhos;
+
+    @BeforeEach
+    void setup() {
+        banco = new DisponibilidadeBanco(jdbc);
+        carrinhos = new CarrinhoVendaService(vendas, produtos, vendaProdutos, mock(PlatformTransactionManager.class),
+                true, 500, 300);
+
+        lenient().when(produtos.catalogoVenda()).thenReturn(new CatalogoVenda(1, Long.MAX_VALUE, Arrays.asList(
+                new ProdutoCatalogo(1L, null, "Arroz 5kg", 5.0, ProdutoBalanca.NAO),
+                new ProdutoCatalogo(2L, null, "Feijão 1kg", 3.5, ProdutoBalanca.NAO))));
+    }
+
+    @Test
+    public void testBancoCaiNoTurno_SincronizaSemPerderOperacoes() {
+        ContingenciaService contingencia = new ContingenciaService(new DiarioContingencia(pasta.toString()), banco,
+                carrinhos, produtos, usuarioAtual, true);
+        VendaService vendaService = vendaService(contingencia);
+
+        Produto arroz = new Produto();
+        arroz.setCodigo(1L);
+        arroz.setDescricao("Arroz 5kg");
+        arroz.setValor_venda(5.0);
+        arroz.setBalanca(ProdutoBalanca.NAO);
+
+        when(vendas.verificaSituacao(10L)).thenReturn("ABERTA");
+        when(produtos.busca(1L)).thenReturn(arroz);
+        when(usuarioAtual.getLogin()).thenReturn("caixa1");
+
+        // com o banco no ar o produto vai para o carrinho da venda 10
+        assertEquals("ok", vendaService.addProduto(10L, 1L, 0.0, 2));
+        assertFalse(contingencia.isAtiva());
+
+        // a conexão cai na leitura do próximo produto, que vem do catálogo
+        when(produtos.busca(2L)).thenThrow(new CannotGetJdbcConnectionException("Communications link failure"));
+
+        assertEquals("ok", vendaService.addProduto(10L, 2L, 0.0, 1));
+        assertTrue(contingencia.isAtiva());
+        assertEquals("Venda finalizada com sucesso", vendaService.fechaVenda(10L, 1L, 13.5, 0.0, 0.0,
+                new String[] { "13.50" }, new String[] { "1" }));
+
+        // nova venda aberta e fechada sem o banco
+        Long vendaLocal = vendaService.abreVenda(new Venda());
+        assertTrue(vendaLocal < 0);
+        assertEquals("ok", vendaService.addProduto(vendaLocal, 2L, 0.0, 3));
+        assertEquals("Venda finalizada com sucesso", vendaService.fechaVenda(vendaLocal, 1L, 10.5, 0.0, 0.0,
+                new String[] { "10.50" }, new String[] { "1" }));
+        assertEquals("Venda fechada", vendaService.addProduto(vendaLocal, 1L, 0.0, 1));
+
+        assertEquals(SUCESSO_LANCAMENTO,
+                contingencia.lancamento(1L, "Sangria", 20.0, TipoLancamento.SANGRIA, EstiloLancamento.SAIDA));
+
+        // nada foi gravado no banco durante a queda
+        verify(vendaProdutos, never()).salvarLote(any());
+        assertFalse(carrinhos.busca(10L).isPresent());
+
+        // o terminal reinicia e lê o diário do disco
+        DiarioContingencia diario = new DiarioContingencia(pasta.toString());
+        List<OperacaoContingencia> pendentes = diario.pendentes();
+        assertEquals(3, pendentes.size());
+        assertEquals(Long.valueOf(10L), pendentes.get(0).getVenda());
+        assertEquals(2, pendentes.get(0).getItens().size());
+        assertEquals(vendaLocal, pendentes.get(1).getVenda());
+        assertEquals(OperacaoContingencia.Tipo.LANCAMENTO_CAIXA, pendentes.get(2).getTipo());
+
+        ContingenciaService reiniciada = new ContingenciaService(diario, banco, carrinhos, produtos, usuarioAtual,
+                true);
+        SincronizacaoContingencia sincronizacao = sincronizacao(diario, reiniciada, 2);
+
+        // o banco volta
+        when(jdbc.queryForObject("select 1", Integer.class)).thenReturn(1);
+        when(jdbc.queryForObject(startsWith("select count"), eq(Integer.class), any())).thenReturn(0);
+
+        when(vendas.save(any(Venda.class))).thenAnswer(inv -> {
+            Venda venda = inv.getArgument(0);
+            venda.setCodigo(500L);
+            return venda;
+        });
+
+        Usuario usuario = new Usuario();
+        when(usuarios.buscaUsuario("caixa1")).thenReturn(usuario);
+        when(caixas.busca(1L)).thenReturn(Optional.of(new Caixa()));
+        when(lancamentos.lancamento(any(CaixaLancamento.class))).thenReturn(SUCESSO_LANCAMENTO);
+
+        // o estoque do feijão acabou com as vendas feitas depois da volta do banco
+        lenient().when(vendaServiceSincronizacao.fechaVendaBanco(eq(500L), any(), any(), any(), any(), any(), any()))
+                .thenThrow(new EstoqueInsuficienteException("Estoque insuficiente", Collections.singletonList(2L)))
+                .thenReturn("Venda finalizada com sucesso");
+
+        assertEquals(2, sincronizacao.sincroniza());
+        assertEquals(1, diario.pendentes().size());
+        assertEquals(vendaLocal, diario.pendentes().get(0).getVenda());
+        assertEquals("Estoque insuficiente", sincronizacao.conflitos().get(diario.pendentes().get(0).getId()));
+
+        // o conflito continua pendente e entra na sincronização seguinte
+        assertEquals(1, sincronizacao.sincroniza());
+        assertTrue(diario.isVazio());
+        assertTrue(sincronizacao.conflitos().isEmpty());
+
+        // cada operação gravada uma única vez, com os preços da hora da venda
+        verify(vendaServiceSincronizacao, times(1)).fechaVendaBanco(eq(10L), eq(1L), eq(13.5), eq(0.0), eq(0.0),
+                any(), any());
+        assertEquals(3, operacoesRegistradas());
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<VendaProduto>> itens = ArgumentCaptor.forClass(List.class);
+        verify(vendaProdutos, times(3)).salvarLote(itens.capture());
+
+        List<VendaProduto> itensVenda10 = itens.getAllValues().get(0);
+        assertEquals(2, itensVenda10.size());
+        assertEquals(Integer.valueOf(2), itensVenda10.get(0).getQtd());
+        assertEquals(5.0, itensVenda10.get(0).getValor_unitario());
+        assertEquals(3.5, itensVenda10.get(1).getValor_unitario());
+        assertEquals(Long.valueOf(500L), itens.getAllValues().get(2).get(0).getVenda());
+
+        ArgumentCaptor<CaixaLancamento> lancamento = ArgumentCaptor.forClass(CaixaLancamento.class);
+        verify(lancamentos).lancamento(lancamento.capture());
+        assertEquals(20.0, lancamento.getValue().getValor());
+        assertEquals(TipoLancamento.SANGRIA, lancamento.getValue().getTipo());
+        assertSame(usuario, lancamento.getValue().getUsuario());
+
+        // o diário é zerado e as vendas voltam a ser do banco
+        assertEquals(0, tamanho(pasta.resolve("contingencia.jsonl")));
+        assertTrue(new DiarioContingencia(pasta.toString()).isVazio());
+        assertFalse(reiniciada.atende(10L));
+    }
+
+    @Test
+    public void testSincroniza_OperacaoJaGravada_ApenasConfirma() {
+        DiarioContingencia diario = new DiarioContingencia(pasta.toString());
+        diario.registra(lancamento());
+
+        ContingenciaService contingencia = new ContingenciaService(diario, banco, carrinhos, produtos, usuarioAtual,
+                true);
+
+        when(jdbc.queryForObject("select 1", Integer.class)).thenReturn(1);
+        // gravada antes de uma queda entre o commit e a confirmação
+        when(jdbc.queryForObject(startsWith("select count"), eq(Integer.class), any())).thenReturn(1);
+
+        assertEquals(1, sincronizacao(diario, contingencia, 50).sincroniza());
+        assertTrue(diario.isVazio());
+        verify(lancamentos, never()).lancamento(any(CaixaLancamento.class));
+        assertEquals(0, operacoesRegistradas());
+    }
+
+    @Test
+    public void testSincroniza_BancoCaiDuranteSincronizacao_MantemRestantes() {
+        DiarioContingencia diario = new DiarioContingencia(pasta.toString());
+        diario.registra(lancamento());
+        diario.registra(lancamento());
+
+        ContingenciaService contingencia = new ContingenciaService(diario, banco, carrinhos, produtos, usuarioAtual,
+                true);
+
+        when(jdbc.queryForObject("select 1", Integer.class)).thenReturn(1);
+        when(jdbc.queryForObject(startsWith("select count"), eq(Integer.class), any())).thenReturn(0)
+                .thenThrow(new CannotGetJdbcConnectionException("Communications link failure"));
+        when(usuarios.buscaUsuario("caixa1")).thenReturn(new Usuario());
+        when(caixas.busca(1L)).thenReturn(Optional.of(new Caixa()));
+        when(lancamentos.lancamento(any(CaixaLancamento.class))).thenReturn(SUCESSO_LANCAMENTO);
+
+        SincronizacaoContingencia sincronizacao = sincronizacao(diario, contingencia, 50);
+
+        assertEquals(1, sincronizacao.sincroniza());
+        assertEquals(1, diario.pendentes().size());
+        assertTrue(sincronizacao.conflitos().isEmpty());
+        assertFalse(banco.isDisponivel());
+        assertTrue(contingencia.isAtiva());
+    }
+
+    @Test
+    public void testDiario_LinhaIncompleta_IgnoradaAoCarregar() throws Exception {
+        DiarioContingencia diario = new DiarioContingencia(pasta.toString());
+        diario.registra(lancamento());
+        diario.fecha();
+
+        // gravação interrompida no meio da linha
+        Files.write(pasta.resolve("contingencia.jsonl"), "{\"id\":\"abc\",\"tipo\":\"VEN".getBytes(),
+                java.nio.file.StandardOpenOption.APPEND);
+
+        assertEquals(1, new DiarioContingencia(pasta.toString()).pendentes().size());
+    }
+
+    @Test
+    public void testDiario_LinhaIncompleta_ProximaOperacaoEmLinhaNova() throws Exception {
+        Files.write(pasta.resolve("contingencia.jsonl"), "{\"id\":\"abc\",\"tipo\":\"VEN".getBytes());
+
+        DiarioContingencia diario = new DiarioContingencia(pasta.toString());
+        OperacaoContingencia operacao = lancamento();
+        diario.registra(operacao);
+        diario.fecha();
+
+        List<OperacaoContingencia> pendentes = new DiarioContingencia(pasta.toString()).pendentes();
+        assertEquals(1, pendentes.size());
+        assertEquals(operacao.getId(), pendentes.get(0).getId());
+    }
+
+    @Test
+    public void testEncerramento_VendaAbertaEmContingencia_VoltaComOCarrinho() {
+        DiarioContingencia diario = new DiarioContingencia(pasta.toString());
+        ContingenciaService contingencia = new ContingenciaService(diario, banco, carrinhos, produtos, usuarioAtual,
+                true);
+
+        Venda venda = new Venda();
+        venda.setObservacao("Mesa 4");
+        Long codigo = contingencia.abreVenda(venda);
+        assertEquals("ok", contingencia.addProduto(codigo, 1L, 0.0, 2));
+        assertEquals("ok", contingencia.addProduto(codigo, 2L, 0.0, 1));
+
+        // encerramento do terminal, na ordem em que o Spring encerra os serviços
+        contingencia.guardaVendasAbertas();
+        carrinhos.gravaTodos();
+        diario.fecha();
+
+        verify(vendaProdutos, never()).salvarLote(any());
+
+        // o terminal reinicia com carrinhos vazios
+        CarrinhoVendaService novosCarrinhos = new CarrinhoVendaService(vendas, produtos, vendaProdutos,
+                mock(PlatformTransactionManager.class), true, 500, 300);
+        DiarioContingencia novoDiario = new DiarioContingencia(pasta.toString());
+        ContingenciaService reiniciada = new ContingenciaService(novoDiario, banco, novosCarrinhos, produtos,
+                usuarioAtual, true);
+
+        assertEquals("Mesa 4", reiniciada.buscaVenda(codigo).getObservacao());
+        assertEquals(13.5, novosCarrinhos.busca(codigo).get().getTotal(), 0.0001);
+        assertEquals(2, novosCarrinhos.busca(codigo).get().getItens().size());
+        assertTrue(novoDiario.isVazio());
+
+        // e a venda segue aberta até ser fechada
+        when(usuarioAtual.getLogin()).thenReturn("caixa1");
+        assertEquals("Venda finalizada com sucesso", reiniciada.fechaVenda(codigo, 1L, 13.5, 0.0, 0.0,
+                new String[] { "13.50" }, new String[] { "1" }));
+
+        List<OperacaoContingencia> pendentes = novoDiario.pendentes();
+        assertEquals(1, pendentes.size());
+        assertEquals(OperacaoContingencia.Tipo.VENDA, pendentes.get(0).getTipo());
+        assertEquals(codigo, pendentes.get(0).getVenda());
+        assertEquals(2, pendentes.get(0).getItens().size());
+    }
+
+    private VendaService vendaService(ContingenciaService contingencia) {
+        return new VendaService(vendas, usuarioAtual, vendaProdutos, mock(PagamentoTipoService.class), caixas,
+                mock(ReceberService.class), mock(ParcelaService.class), lancamentos, mock(TituloService.class),
+                mock(CartaoLancamentoService.class), produtos, carrinhos, contingencia, painel, transacoesVenda);
+    }
+
+    private SincronizacaoContingencia sincronizacao(DiarioContingencia diario, ContingenciaService contingencia,
+            int tamanhoLote) {
+        return new SincronizacaoContingencia(diario, banco, contingencia, vendaServiceSincronizacao, vendas,
+                vendaProdutos, pessoas, usuarios, caixas, lancamentos, painel, jdbc, transacoesSincronizacao, true,
+                tamanhoLote);
+    }
+
+    // inserts em contingencia_operacao, um por operação gravada
+    private long operacoesRegistradas() {
+        return mockingDetails(jdbc).getInvocations().stream()
+                .filter(inv -> inv.getMethod().getName().equals("update"))
+                .filter(inv -> inv.getArgument(0).toString().startsWith("insert into contingencia_operacao"))
+                .count();
+    }
+
+    private static OperacaoContingencia lancamento() {
+        OperacaoContingencia operacao = new OperacaoContingencia(OperacaoContingencia.Tipo.LANCAMENTO_CAIXA,
+                "caixa1");
+        operacao.setCaixa(1L);
+        operacao.setObservacao("Suprimento");
+        operacao.setValor(50.0);
+        operacao.setTipoLancamento(TipoLancamento.SUPRIMENTO);
+        operacao.setEstilo(EstiloLancamento.ENTRADA);
+        return operacao;
+    }
+
+    private static long tamanho(Path arquivo) {
+        try {
+            return Files.size(arquivo);
+        } catch (java.io.IOException e) {
+            throw new java.io.UncheckedIOException(e);
+        }
+    }
+
+}
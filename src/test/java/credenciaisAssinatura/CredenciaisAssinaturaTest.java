@@ -0,0 +1,115 @@
+package credenciaisAssinatura;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Map;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.w3c.dom.Document;
+
+import geraXmlNfe.GeraXmlNfeTest;
+import net.originmobi.pdv.xml.nfe.AssinaXML;
+import net.originmobi.pdv.xml.nfe.ConversorXmlNfe;
+import net.originmobi.pdv.xml.nfe.CredenciaisAssinatura;
+import net.originmobi.pdv.xml.nfe.CredenciaisAssinatura.Credencial;
+import net.originmobi.pdv.xml.nfe.GeraXmlNfe;
+
+@DisplayName("CredenciaisAssinatura — certificado carregado uma vez")
+public class CredenciaisAssinaturaTest {
+
+    private static final String SENHA = GeraXmlNfeTest.SENHA;
+    private static final long UMA_HORA = 3_600_000;
+
+    @TempDir
+    Path pasta;
+
+    @Test
+    public void testVariasAssinaturas_LeOArquivoUmaVez() throws Exception {
+        String pfx = GeraXmlNfeTest.certificadoTeste(pasta);
+        CredenciaisAssinatura credenciais = new CredenciaisAssinatura(UMA_HORA);
+        AssinaXML assina = new AssinaXML(pfx, SENHA, credenciais);
+
+        for (int i = 0; i < 5; i++)
+            assina.assina(documento());
+
+        assertEquals(1L, credenciais.estatisticas().get("carregamentos"));
+        assertSame(credenciais.credencial(pfx, SENHA), credenciais.credencial(pfx, SENHA));
+    }
+
+    @Test
+    public void testAssinatura_ArquivoRemovidoDepoisDeCarregado_NaoTocaNoDisco() throws Exception {
+        String pfx = GeraXmlNfeTest.certificadoTeste(pasta);
+        CredenciaisAssinatura credenciais = new CredenciaisAssinatura(UMA_HORA);
+        AssinaXML assina = new AssinaXML(pfx, SENHA, credenciais);
+        assina.assina(documento());
+
+        Files.delete(Path.of(pfx));
+
+        Document xml = documento();
+        assina.assina(xml);
+        assertEquals(1, xml.getElementsByTagNameNS("http://www.w3.org/2000/09/xmldsig#", "Signature").getLength());
+    }
+
+    @Test
+    public void testArquivoAlterado_RecarregaNaProximaVerificacao() throws Exception {
+        String pfx = GeraXmlNfeTest.certificadoTeste(pasta.resolve("em-uso.pfx"), "EMPRESA ANTIGA", 1);
+        CredenciaisAssinatura credenciais = new CredenciaisAssinatura(0);
+        Credencial antiga = credenciais.credencial(pfx, SENHA);
+
+        Path renovado = Path.of(GeraXmlNfeTest.certificadoTeste(pasta.resolve("renovado.pfx"), "EMPRESA NOVA", 365));
+        Files.move(renovado, Path.of(pfx), StandardCopyOption.REPLACE_EXISTING);
+        Files.setLastModifiedTime(Path.of(pfx), FileTime.fromMillis(System.currentTimeMillis() + 60_000));
+
+        Credencial nova = credenciais.credencial(pfx, SENHA);
+
+        assertNotSame(antiga, nova);
+        assertEquals("CN=EMPRESA NOVA", nova.getCertificado().getSubjectX500Principal().getName());
+        assertEquals(2L, credenciais.estatisticas().get("carregamentos"));
+    }
+
+    @Test
+    public void testArquivoAlteradoInvalido_MantemOCertificadoAnterior() throws Exception {
+        String pfx = GeraXmlNfeTest.certificadoTeste(pasta);
+        CredenciaisAssinatura credenciais = new CredenciaisAssinatura(0);
+        Credencial anterior = credenciais.credencial(pfx, SENHA);
+
+        Files.write(Path.of(pfx), new byte[] { 1, 2, 3 });
+
+        assertSame(anterior, credenciais.credencial(pfx, SENHA));
+    }
+
+    @Test
+    public void testPrimeiraLeitura_SenhaErrada_Falha() throws Exception {
+        String pfx = GeraXmlNfeTest.certificadoTeste(pasta);
+
+        Exception erro = assertThrows(Exception.class,
+                () -> new CredenciaisAssinatura(UMA_HORA).credencial(pfx, "errada"));
+        assertEquals("Senha do Certificado Digital incorreta ou Certificado inválido.", erro.getMessage());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testEstatisticas_InformaDiasParaVencer() throws Exception {
+        String pfx = GeraXmlNfeTest.certificadoTeste(pasta.resolve("anual.pfx"), "EMPRESA TESTE", 30);
+        CredenciaisAssinatura credenciais = new CredenciaisAssinatura(UMA_HORA);
+        credenciais.credencial(pfx, SENHA);
+
+        Map<String, Object> certificados = (Map<String, Object>) credenciais.estatisticas().get("certificados");
+        Map<String, Object> certificado = (Map<String, Object>) certificados.get(Path.of(pfx).toString());
+
+        assertEquals("CN=EMPRESA TESTE", certificado.get("titular"));
+        long dias = (Long) certificado.get("diasParaVencer");
+        assertTrue(dias == 29 || dias == 30, "dias para vencer: " + dias);
+    }
+
+    private static Document documento() {
+        return new GeraXmlNfe().documento(GeraXmlNfeTest.nota(1), new ConversorXmlNfe());
+    }
+
+}
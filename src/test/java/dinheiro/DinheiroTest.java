@@ -0,0 +1,88 @@
+package dinheiro;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.math.BigDecimal;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import net.originmobi.pdv.utilitarios.Dinheiro;
+import net.originmobi.pdv.utilitarios.DinheiroConverter;
+
+@DisplayName("Dinheiro — testes unitários")
+public class DinheiroTest {
+
+    @Test
+    public void testDe_ArredondaHalfUpEmCentavos() {
+        assertEquals(101, Dinheiro.de(1.005).getCentavos());
+        assertEquals(100, Dinheiro.de(1.004).getCentavos());
+        assertEquals(-101, Dinheiro.de(-1.005).getCentavos());
+        assertEquals(1999, Dinheiro.de("19,99").getCentavos());
+        assertEquals(Dinheiro.ZERO, Dinheiro.de((Double) null));
+        assertEquals(Dinheiro.ZERO, Dinheiro.de(""));
+    }
+
+    @Test
+    public void testMais_SomaSemErroDeDouble() {
+        Dinheiro soma = Dinheiro.de(0.1).mais(Dinheiro.de(0.2));
+
+        assertNotEquals(0.3, 0.1 + 0.2);
+        assertEquals(Dinheiro.de(0.3), soma);
+        assertEquals(0.3, soma.doubleValue(), 0.0);
+    }
+
+    @Test
+    public void testMenos_RestanteZeraAoQuitar() {
+        Dinheiro restante = Dinheiro.de(33.33).menos(Dinheiro.de(10.11)).menos(Dinheiro.de(23.22));
+
+        assertTrue(restante.isZero());
+        assertEquals(Dinheiro.ZERO, Dinheiro.de(10.0).menos(Dinheiro.de(12.0)).naoNegativo());
+    }
+
+    @Test
+    public void testPercentual_ArredondaImposto() {
+        // 18% de 10,25 = 1,845
+        assertEquals(185, Dinheiro.de(10.25).percentual(18.0).getCentavos());
+        // 1,65% de 99,90 = 1,64835
+        assertEquals(165, Dinheiro.de(99.90).percentual(1.65).getCentavos());
+        assertEquals(Dinheiro.ZERO, Dinheiro.de(99.90).percentual(null));
+    }
+
+    @Test
+    public void testDivide_PartesSomamOValor() {
+        Dinheiro[] partes = Dinheiro.de(100.0).divide(3);
+
+        assertEquals(3334, partes[0].getCentavos());
+        assertEquals(3333, partes[1].getCentavos());
+        assertEquals(3333, partes[2].getCentavos());
+        assertEquals(Dinheiro.de(100.0), partes[0].mais(partes[1]).mais(partes[2]));
+        assertThrows(IllegalArgumentException.class, () -> Dinheiro.de(1.0).divide(0));
+    }
+
+    @Test
+    public void testComparacoes() {
+        Dinheiro dez = Dinheiro.de(10.0);
+        Dinheiro onze = Dinheiro.de(11.0);
+
+        assertTrue(onze.maiorQue(dez));
+        assertTrue(dez.menorQue(onze));
+        assertEquals(dez, dez.min(onze));
+        assertEquals(-1, dez.compareTo(onze));
+        assertEquals(dez.hashCode(), Dinheiro.deCentavos(1000).hashCode());
+        assertEquals("10.00", dez.toString());
+    }
+
+    @Test
+    public void testConverter_IdaEVoltaDecimal() {
+        DinheiroConverter converter = new DinheiroConverter();
+
+        BigDecimal coluna = converter.convertToDatabaseColumn(Dinheiro.de(1234.5));
+
+        assertEquals(new BigDecimal("1234.50"), coluna);
+        assertEquals(Dinheiro.de(1234.5), converter.convertToEntityAttribute(coluna));
+        assertNull(converter.convertToDatabaseColumn(null));
+        assertNull(converter.convertToEntityAttribute(null));
+    }
+
+}
@@ -0,0 +1,202 @@
+package emissaoLoteNfe;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+
+import geraXmlNfe.GeraXmlNfeTest;
+import net.originmobi.pdv.model.NotaFiscal;
+import net.originmobi.pdv.repository.notafiscal.NotaFiscalRepository;
+import net.originmobi.pdv.service.notafiscal.EmissaoLoteNfe;
+import net.originmobi.pdv.service.notafiscal.NotaFiscalService;
+import net.originmobi.pdv.xml.nfe.AssinaXML;
+
+@DisplayName("EmissaoLoteNfe — notas pendentes emitidas em lote")
+public class EmissaoLoteNfeTest {
+
+    @TempDir
+    Path pasta;
+
+    private final NotaFiscalRepository notasFiscais = mock(NotaFiscalRepository.class);
+    private final JdbcTemplate jdbc = mock(JdbcTemplate.class);
+    private final NotaFiscalService notaFiscalService = new NotaFiscalService();
+    private final TransacaoDeTeste transacao = new TransacaoDeTeste();
+
+    private EmissaoLoteNfe emissao;
+
+    @BeforeEach
+    void setup() throws Exception {
+        System.setProperty(NotaFiscalService.PROPRIEDADE_DIRETORIO_XML, pasta.resolve("xmlNfe").toString());
+        emissao = new EmissaoLoteNfe(notasFiscais, jdbc, transacao, 50, 4);
+        ReflectionTestUtils.setField(emissao, "assina",
+                new AssinaXML(GeraXmlNfeTest.certificadoTeste(pasta), GeraXmlNfeTest.SENHA));
+    }
+
+    @AfterEach
+    void encerra() {
+        emissao.encerra();
+        System.clearProperty(NotaFiscalService.PROPRIEDADE_DIRETORIO_XML);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testEmitePendentes_AssinaGravaOsXmlsEAtualizaAsChavesEmUmLote() throws Exception {
+        List<NotaFiscal> notas = notas(12);
+        when(notasFiscais.buscaPendentesEmissao(PageRequest.of(0, 50))).thenReturn(List.of(1L, 2L, 3L));
+        when(notasFiscais.buscaParaEmissao(List.of(1L, 2L, 3L))).thenReturn(notas);
+
+        Map<String, Object> resultado = emissao.emitePendentes();
+        List<String> chaves = (List<String>) resultado.get("chaves");
+
+        assertEquals(12, resultado.get("notas"));
+        assertEquals(12, chaves.stream().distinct().count());
+
+        ArgumentCaptor<List<Object[]>> atualizacoes = ArgumentCaptor.forClass(List.class);
+        verify(jdbc, times(1)).batchUpdate(eq("update nota_fiscal set chave_acesso = ? where codigo = ?"),
+                atualizacoes.capture());
+        assertEquals(12, atualizacoes.getValue().size());
+
+        for (int i = 0; i < notas.size(); i++) {
+            assertArrayEquals(new Object[] { chaves.get(i), notas.get(i).getCodigo() }, atualizacoes.getValue().get(i));
+
+            String xml = notaFiscalService.leXML(chaves.get(i)).get();
+            assertTrue(xml.contains("<idLote>" + resultado.get("lote") + "</idLote>"));
+            assertTrue(xml.contains("Id=\"NFe" + chaves.get(i) + "\""));
+            assertTrue(xml.contains("<SignatureValue>"));
+        }
+    }
+
+    @Test
+    public void testEmitePendentes_SemPendentes_NaoAtualizaNada() {
+        when(notasFiscais.buscaPendentesEmissao(any())).thenReturn(List.of());
+
+        Map<String, Object> resultado = emissao.emitePendentes();
+
+        assertEquals(0, resultado.get("notas"));
+        verify(notasFiscais, never()).buscaParaEmissao(any());
+        verifyNoInteractions(jdbc);
+    }
+
+    @Test
+    public void testEmitePendentes_FalhaNaAssinatura_NenhumaChaveGravada() throws Exception {
+        ReflectionTestUtils.setField(emissao, "assina",
+                new AssinaXML(GeraXmlNfeTest.certificadoTeste(pasta.resolve("outro.pfx"), "X", 1), "errada"));
+        when(notasFiscais.buscaPendentesEmissao(any())).thenReturn(List.of(1L, 2L));
+        when(notasFiscais.buscaParaEmissao(any())).thenReturn(notas(2));
+
+        IllegalStateException erro = assertThrows(IllegalStateException.class, () -> emissao.emitePendentes());
+
+        assertTrue(erro.getMessage().startsWith("Não foi possível assinar o XML da nota"));
+        verifyNoInteractions(jdbc);
+        assertTrue(NotaFiscalService.arquivoXml().chaves().isEmpty());
+    }
+
+    @Test
+    public void testEmitePendentes_FalhaNoUpdate_XmlsDoLoteRemovidos() {
+        when(notasFiscais.buscaPendentesEmissao(any())).thenReturn(List.of(1L, 2L));
+        when(notasFiscais.buscaParaEmissao(any())).thenReturn(notas(2));
+        when(jdbc.batchUpdate(anyString(), anyList())).thenThrow(new IllegalStateException("banco fora do ar"));
+
+        assertThrows(IllegalStateException.class, () -> emissao.emitePendentes());
+
+        assertEquals(1, transacao.desfeitas);
+        assertTrue(NotaFiscalService.arquivoXml().chaves().isEmpty());
+    }
+
+    @Test
+    public void testEmitePendentes_FalhaNaConfirmacao_XmlsDoLoteRemovidos() {
+        when(notasFiscais.buscaPendentesEmissao(any())).thenReturn(List.of(1L, 2L));
+        when(notasFiscais.buscaParaEmissao(any())).thenReturn(notas(2));
+        transacao.aoConfirmar = () -> {
+            throw new IllegalStateException("conexão perdida na confirmação");
+        };
+
+        assertThrows(IllegalStateException.class, () -> emissao.emitePendentes());
+
+        assertTrue(NotaFiscalService.arquivoXml().chaves().isEmpty());
+    }
+
+    @Test
+    public void testEmitePendentes_OutroLoteAntesDaConfirmacao_Recusado() {
+        when(notasFiscais.buscaPendentesEmissao(any())).thenReturn(List.of(1L));
+        when(notasFiscais.buscaParaEmissao(any())).thenReturn(notas(1));
+        List<RuntimeException> recusas = new ArrayList<>();
+
+        // outro pedido, em outra thread, chegando enquanto o primeiro lote ainda confirma
+        transacao.aoConfirmar = () -> recusas.add(CompletableFuture
+                .supplyAsync(() -> assertThrows(IllegalStateException.class, () -> emissao.emitePendentes()))
+                .join());
+
+        emissao.emitePendentes();
+
+        assertEquals(1, recusas.size());
+        assertEquals("Já existe um lote de notas sendo emitido, aguarde", recusas.get(0).getMessage());
+        assertEquals(1, transacao.confirmadas);
+    }
+
+    private static List<NotaFiscal> notas(int quantidade) {
+        List<NotaFiscal> notas = new ArrayList<>();
+        for (int i = 1; i <= quantidade; i++) {
+            NotaFiscal nota = GeraXmlNfeTest.nota(2);
+            nota.setCodigo((long) i);
+            nota.setNumero(100L + i);
+            notas.add(nota);
+        }
+        return notas;
+    }
+
+    /*
+     * Transação sem banco, só com a sincronização que o Spring faz em volta
+     * da confirmação e do rollback
+     */
+    static class TransacaoDeTeste extends AbstractPlatformTransactionManager {
+
+        private static final long serialVersionUID = 1L;
+
+        Runnable aoConfirmar = () -> {
+        };
+        int confirmadas;
+        int desfeitas;
+
+        @Override
+        protected Object doGetTransaction() {
+            return new Object();
+        }
+
+        @Override
+        protected void doBegin(Object transacao, TransactionDefinition definicao) {
+        }
+
+        @Override
+        protected void doCommit(DefaultTransactionStatus status) {
+            aoConfirmar.run();
+            confirmadas++;
+        }
+
+        @Override
+        protected void doRollback(DefaultTransactionStatus status) {
+            desfeitas++;
+        }
+
+    }
+
+}
@@ -0,0 +1,117 @@
+package exportacaoService;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.time.LocalDate;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import net.originmobi.pdv.service.exportacao.Exportacao;
+import net.originmobi.pdv.service.exportacao.ExportacaoService;
+import net.originmobi.pdv.service.exportacao.FormatoExportacao;
+
+@DisplayName("ExportacaoService — testes unitários")
+public class ExportacaoServiceTest {
+
+    private final DataSource dataSource = mock(DataSource.class);
+    private final ExportacaoService exportacoes = new ExportacaoService(dataSource);
+
+    @Test
+    public void testConsulta_PeriodoESituacao_FiltramADataEASituacao() {
+        ExportacaoService.Consulta consulta = exportacoes.consulta(Exportacao.VENDAS, LocalDate.of(2026, 1, 1),
+                LocalDate.of(2026, 12, 31), "fechada");
+
+        assertTrue(consulta.getSql().contains("v.data_cadastro >= ? and v.data_cadastro < ?"));
+        assertTrue(consulta.getSql().contains("v.situacao = 'FECHADA'"));
+        assertTrue(consulta.getSql().endsWith("order by v.codigo, vp.codigo"));
+        assertArrayEquals(new Object[] { Date.valueOf("2026-01-01"), Date.valueOf("2027-01-01") },
+                consulta.getArgumentos());
+    }
+
+    @Test
+    public void testConsulta_ParcelasEmAberto_IncluiQuitadoNulo() {
+        // a coluna quitado aceita nulo, e a situação exportada trata nulo como aberta
+        assertTrue(exportacoes.consulta(Exportacao.PARCELAS_PAGAR, null, null, "aberta").getSql()
+                .contains("coalesce(pp.quitado, 0) <> 1"));
+        assertTrue(exportacoes.consulta(Exportacao.PARCELAS_RECEBER, null, null, "aberta").getSql()
+                .contains("coalesce(pa.quitado, 0) <> 1"));
+    }
+
+    @Test
+    public void testConsulta_SituacaoDeOutraExportacao_LancaExcecao() {
+        assertThrows(IllegalArgumentException.class,
+                () -> exportacoes.consulta(Exportacao.PARCELAS_PAGAR, null, null, "FECHADA"));
+    }
+
+    @Test
+    public void testConsulta_PeriodoInvertido_LancaExcecao() {
+        assertThrows(IllegalArgumentException.class, () -> exportacoes.consulta(Exportacao.LANCAMENTOS_CAIXA,
+                LocalDate.of(2026, 2, 1), LocalDate.of(2026, 1, 1), null));
+    }
+
+    @Test
+    public void testExporta_Csv_LeLinhaALinhaComCursorParaFrente() throws Exception {
+        Connection conexao = mock(Connection.class);
+        PreparedStatement comando = mock(PreparedStatement.class);
+        ResultSet resultado = mock(ResultSet.class);
+        ResultSetMetaData colunas = mock(ResultSetMetaData.class);
+
+        when(dataSource.getConnection()).thenReturn(conexao);
+        when(conexao.prepareStatement(anyString())).thenReturn(comando);
+        when(comando.executeQuery()).thenReturn(resultado);
+        when(resultado.getMetaData()).thenReturn(colunas);
+        when(colunas.getColumnCount()).thenReturn(3);
+        when(colunas.getColumnLabel(1)).thenReturn("lancamento");
+        when(colunas.getColumnLabel(2)).thenReturn("valor");
+        when(colunas.getColumnLabel(3)).thenReturn("observacao");
+        when(resultado.next()).thenReturn(true, true, false);
+        when(resultado.getObject(1)).thenReturn(1, 2);
+        when(resultado.getObject(2)).thenReturn(10.5, 1234567.0);
+        when(resultado.getObject(3)).thenReturn("Venda; à vista", null);
+
+        ByteArrayOutputStream saida = new ByteArrayOutputStream();
+        long linhas = exportacoes.exporta(
+                exportacoes.consulta(Exportacao.LANCAMENTOS_CAIXA, LocalDate.of(2026, 1, 1), null, "saida"),
+                FormatoExportacao.CSV, saida);
+
+        assertEquals(2, linhas);
+        assertEquals("\uFEFFlancamento;valor;observacao\r\n1;10,5;\"Venda; à vista\"\r\n2;1234567;\r\n",
+                saida.toString(StandardCharsets.UTF_8));
+        verify(comando).setFetchSize(Integer.MIN_VALUE);
+        verify(comando).setObject(1, Date.valueOf("2026-01-01"));
+        verify(conexao).close();
+    }
+
+    @Test
+    public void testExporta_SemLinhas_SoCabecalho() throws Exception {
+        Connection conexao = mock(Connection.class);
+        PreparedStatement comando = mock(PreparedStatement.class);
+        ResultSet resultado = mock(ResultSet.class);
+        ResultSetMetaData colunas = mock(ResultSetMetaData.class);
+
+        when(dataSource.getConnection()).thenReturn(conexao);
+        when(conexao.prepareStatement(anyString())).thenReturn(comando);
+        when(comando.executeQuery()).thenReturn(resultado);
+        when(resultado.getMetaData()).thenReturn(colunas);
+        when(colunas.getColumnCount()).thenReturn(1);
+        when(colunas.getColumnLabel(1)).thenReturn("data");
+
+        ByteArrayOutputStream saida = new ByteArrayOutputStream();
+        exportacoes.exporta(exportacoes.consulta(Exportacao.PARCELAS_RECEBER, null, null, null),
+                FormatoExportacao.CSV, saida);
+
+        assertEquals("\uFEFFdata\r\n", saida.toString(StandardCharsets.UTF_8));
+    }
+
+}
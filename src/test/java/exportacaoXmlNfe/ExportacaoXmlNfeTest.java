@@ -0,0 +1,173 @@
+package exportacaoXmlNfe;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.LocalDate;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import net.originmobi.pdv.service.notafiscal.ExportacaoXmlNfe;
+import net.originmobi.pdv.xml.nfe.ArquivoXmlNfe;
+
+@DisplayName("ExportacaoXmlNfe — zip dos XMLs para a contabilidade")
+public class ExportacaoXmlNfeTest {
+
+    private static final String CHAVE_1 = "35260911222333000181550010000000011123456781";
+    private static final String CHAVE_2 = "35260911222333000181550010000000021123456782";
+
+    private final DataSource dataSource = mock(DataSource.class);
+    private final ExportacaoXmlNfe exportacao = new ExportacaoXmlNfe(dataSource);
+
+    @TempDir
+    Path pasta;
+
+    @Test
+    public void testConsulta_PeriodoESerie_FiltramADataEASerie() {
+        ExportacaoXmlNfe.Consulta consulta = exportacao.consulta(LocalDate.of(2026, 9, 1), LocalDate.of(2026, 9, 30), 1);
+
+        assertTrue(consulta.getSql().contains("n.chave_acesso is not null"));
+        assertTrue(consulta.getSql().contains("coalesce(n.data_emissao, n.data_cadastro) >= ?"));
+        assertTrue(consulta.getSql().contains("and n.serie = ?"));
+        assertArrayEquals(new Object[] { Date.valueOf("2026-09-01"), Date.valueOf("2026-10-01"), 1 },
+                consulta.getArgumentos());
+    }
+
+    @Test
+    public void testConsulta_PeriodoInvertido_LancaExcecao() {
+        assertThrows(IllegalArgumentException.class,
+                () -> exportacao.consulta(LocalDate.of(2026, 10, 1), LocalDate.of(2026, 9, 1), null));
+    }
+
+    @Test
+    public void testExporta_XmlsDoArquivoEManifestoComTodasAsNotas() throws Exception {
+        Connection conexao = mock(Connection.class);
+        PreparedStatement comando = mock(PreparedStatement.class);
+        ResultSet resultado = mock(ResultSet.class);
+
+        // a mesma consulta lida duas vezes: XMLs e depois o manifesto
+        when(dataSource.getConnection()).thenReturn(conexao);
+        when(conexao.prepareStatement(anyString())).thenReturn(comando);
+        when(comando.executeQuery()).thenReturn(resultado);
+        when(resultado.next()).thenReturn(true, true, false, true, true, false);
+        when(resultado.getString("chave_acesso")).thenReturn(CHAVE_1, CHAVE_2, CHAVE_1, CHAVE_2);
+        when(resultado.getObject("numero")).thenReturn(1, 2);
+        when(resultado.getObject("serie")).thenReturn(1, 1);
+        when(resultado.getObject("data_emissao")).thenReturn(Date.valueOf("2026-09-10"), Date.valueOf("2026-09-11"));
+        when(resultado.getObject("valor")).thenReturn(150.5, 20.0);
+        when(resultado.getObject("situacao")).thenReturn("EMITIDA", null);
+
+        String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?><enviNFe><NFe><infNFe Id=\"NFe" + CHAVE_1
+                + "\"/></NFe></enviNFe>";
+        Path zip = pasta.resolve("notas.zip");
+        long xmls;
+
+        try (ArquivoXmlNfe arquivo = new ArquivoXmlNfe(pasta.resolve("xml"), ArquivoXmlNfe.TAMANHO_SEGMENTO)) {
+            arquivo.grava(CHAVE_1, xml.getBytes(StandardCharsets.UTF_8));
+
+            xmls = exportacao.exporta(exportacao.consulta(LocalDate.of(2026, 9, 1), null, null), arquivo,
+                    Files.newOutputStream(zip));
+        }
+
+        assertEquals(1, xmls);
+        verify(comando, times(2)).setFetchSize(Integer.MIN_VALUE);
+
+        try (ZipFile arquivoZip = new ZipFile(zip.toFile())) {
+            assertEquals(2, arquivoZip.size());
+            assertEquals(xml, new String(arquivoZip.getInputStream(arquivoZip.getEntry(CHAVE_1 + "-nfe.xml"))
+                    .readAllBytes(), StandardCharsets.UTF_8));
+            assertNull(arquivoZip.getEntry(CHAVE_2 + "-nfe.xml"));
+
+            String manifesto = new String(arquivoZip.getInputStream(arquivoZip.getEntry("manifesto.csv"))
+                    .readAllBytes(), StandardCharsets.UTF_8);
+            assertEquals("\uFEFFchave_acesso;numero;serie;data_emissao;valor;situacao;xml\r\n"
+                    + CHAVE_1 + ";1;1;10/09/2026;150,5;EMITIDA;SIM\r\n"
+                    + CHAVE_2 + ";2;1;11/09/2026;20;;NAO\r\n", manifesto);
+        }
+    }
+
+    @Test
+    public void testExporta_NotaEmitidaEntreAsLeituras_ForaDoManifesto() throws Exception {
+        Connection conexao = mock(Connection.class);
+        PreparedStatement comando = mock(PreparedStatement.class);
+        ResultSet resultado = mock(ResultSet.class);
+
+        // a segunda nota só aparece na leitura do manifesto
+        when(dataSource.getConnection()).thenReturn(conexao);
+        when(conexao.prepareStatement(anyString())).thenReturn(comando);
+        when(comando.executeQuery()).thenReturn(resultado);
+        when(resultado.next()).thenReturn(true, false, true, true, false);
+        when(resultado.getString("chave_acesso")).thenReturn(CHAVE_1, CHAVE_1, CHAVE_2);
+        when(resultado.getObject("numero")).thenReturn(1);
+        when(resultado.getObject("serie")).thenReturn(1);
+        when(resultado.getObject("data_emissao")).thenReturn(Date.valueOf("2026-09-10"));
+        when(resultado.getObject("valor")).thenReturn(150.5);
+        when(resultado.getObject("situacao")).thenReturn("EMITIDA");
+
+        Path zip = pasta.resolve("notas.zip");
+
+        try (ArquivoXmlNfe arquivo = new ArquivoXmlNfe(pasta.resolve("xml"), ArquivoXmlNfe.TAMANHO_SEGMENTO)) {
+            arquivo.grava(CHAVE_1, "<NFe/>".getBytes(StandardCharsets.UTF_8));
+            arquivo.grava(CHAVE_2, "<NFe/>".getBytes(StandardCharsets.UTF_8));
+
+            exportacao.exporta(exportacao.consulta(null, null, null), arquivo, Files.newOutputStream(zip));
+        }
+
+        try (ZipFile arquivoZip = new ZipFile(zip.toFile())) {
+            assertEquals(2, arquivoZip.size());
+            assertNull(arquivoZip.getEntry(CHAVE_2 + "-nfe.xml"));
+
+            String manifesto = new String(arquivoZip.getInputStream(arquivoZip.getEntry("manifesto.csv"))
+                    .readAllBytes(), StandardCharsets.UTF_8);
+            assertEquals("\uFEFFchave_acesso;numero;serie;data_emissao;valor;situacao;xml\r\n"
+                    + CHAVE_1 + ";1;1;10/09/2026;150,5;EMITIDA;SIM\r\n", manifesto);
+        }
+    }
+
+    @Test
+    public void testExporta_FalhaNoMeio_ZipSemDiretorio() throws Exception {
+        Connection conexao = mock(Connection.class);
+        PreparedStatement comando = mock(PreparedStatement.class);
+        ResultSet resultado = mock(ResultSet.class);
+
+        when(dataSource.getConnection()).thenReturn(conexao);
+        when(conexao.prepareStatement(anyString())).thenReturn(comando);
+        when(comando.executeQuery()).thenReturn(resultado);
+        when(resultado.next()).thenReturn(true, true, false);
+        when(resultado.getString("chave_acesso")).thenReturn(CHAVE_1, CHAVE_2);
+
+        ByteArrayOutputStream saida = new ByteArrayOutputStream();
+        ArquivoXmlNfe arquivo = mock(ArquivoXmlNfe.class);
+
+        try (ArquivoXmlNfe gravado = new ArquivoXmlNfe(pasta.resolve("xml"), ArquivoXmlNfe.TAMANHO_SEGMENTO)) {
+            gravado.grava(CHAVE_1, "<NFe/>".getBytes(StandardCharsets.UTF_8));
+            when(arquivo.compactado(CHAVE_1)).thenReturn(gravado.compactado(CHAVE_1));
+            when(arquivo.compactado(CHAVE_2)).thenThrow(new IOException("Segmento corrompido"));
+
+            assertThrows(IOException.class,
+                    () -> exportacao.exporta(exportacao.consulta(null, null, null), arquivo, saida));
+        }
+
+        // o XML já escrito chegou à saída, mas sem o diretório o zip não abre
+        assertTrue(saida.size() > 0);
+        Path zip = pasta.resolve("quebrado.zip");
+        Files.write(zip, saida.toByteArray());
+        assertThrows(ZipException.class, () -> new ZipFile(zip.toFile()).close());
+    }
+
+}
@@ -0,0 +1,276 @@
+package filaRelatorios;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.Resource;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import net.originmobi.pdv.relatorios.CaixaRelatorioController;
+import net.originmobi.pdv.relatorios.FilaRelatorios;
+import net.originmobi.pdv.relatorios.GerarRelatorio;
+import net.originmobi.pdv.relatorios.RelatorioJob;
+
+@DisplayName("FilaRelatorios — testes unitários")
+public class FilaRelatoriosTest {
+
+    @TempDir
+    Path pasta;
+
+    private final GerarRelatorio gerar = mock(GerarRelatorio.class);
+    private final JdbcTemplate jdbc = mock(JdbcTemplate.class);
+
+    private FilaRelatorios fila;
+
+    @AfterEach
+    void encerra() {
+        if (fila != null)
+            fila.encerra();
+    }
+
+    @Test
+    public void testAgenda_MesmosDados_ReaproveitaOPdf() throws Exception {
+        fila = fila(2, 10);
+        geraPdf();
+        when(jdbc.queryForMap(anyString(), eq(1))).thenReturn(caixa(null, 3));
+
+        Path primeiro = concluido(fila.agenda("caixa.jrxml", Map.of("codcaixa", 1)));
+        RelatorioJob segundo = fila.agenda("caixa.jrxml", Map.of("codcaixa", 1));
+
+        assertEquals(RelatorioJob.Situacao.CONCLUIDO, segundo.getSituacao());
+        assertEquals(primeiro, concluido(segundo));
+        assertEquals("%PDF-teste", Files.readString(primeiro, StandardCharsets.ISO_8859_1));
+        verify(gerar, times(1)).exporta(eq("caixa.jrxml"), any(), any(OutputStream.class));
+    }
+
+    @Test
+    public void testAgenda_NovoLancamento_GeraDeNovo() throws Exception {
+        fila = fila(2, 10);
+        geraPdf();
+        when(jdbc.queryForMap(anyString(), eq(1))).thenReturn(caixa(null, 3)).thenReturn(caixa(null, 4));
+
+        Path antes = concluido(fila.agenda("caixa.jrxml", Map.of("codcaixa", 1)));
+        Path depois = concluido(fila.agenda("caixa.jrxml", Map.of("codcaixa", 1)));
+
+        assertNotEquals(antes, depois);
+        verify(gerar, times(2)).exporta(eq("caixa.jrxml"), any(), any(OutputStream.class));
+    }
+
+    @Test
+    public void testAgenda_CaixaFechado_ServidoDoCacheSemConsultarOBanco() throws Exception {
+        fila = fila(2, 10);
+        geraPdf();
+        when(jdbc.queryForMap(anyString(), eq(1))).thenReturn(caixa(Timestamp.valueOf("2026-01-01 18:00:00"), 3));
+
+        concluido(fila.agenda("caixa.jrxml", Map.of("codcaixa", 1)));
+        concluido(fila.agenda("caixa.jrxml", Map.of("codcaixa", 1)));
+        concluido(fila.agenda("caixa.jrxml", Map.of("codcaixa", 1)));
+
+        verify(jdbc, times(1)).queryForMap(anyString(), eq(1));
+        assertEquals(2L, fila.estatisticas().get("acertosCache"));
+    }
+
+    @Test
+    public void testAgenda_PedidoIgualEmAndamento_MesmoJob() throws Exception {
+        fila = fila(1, 10);
+        CountDownLatch libera = new CountDownLatch(1);
+        geraPdfApos(libera);
+        when(jdbc.queryForMap(anyString(), eq(1))).thenReturn(caixa(null, 3));
+
+        RelatorioJob primeiro = fila.agenda("caixa.jrxml", Map.of("codcaixa", 1));
+        RelatorioJob segundo = fila.agenda("caixa.jrxml", Map.of("codcaixa", 1));
+        libera.countDown();
+
+        assertSame(primeiro, segundo);
+        concluido(primeiro);
+        verify(gerar, times(1)).exporta(eq("caixa.jrxml"), any(), any(OutputStream.class));
+    }
+
+    @Test
+    public void testAgenda_FilaCheia_JobComErro() throws Exception {
+        fila = fila(1, 1);
+        CountDownLatch libera = new CountDownLatch(1);
+        geraPdfApos(libera);
+        when(jdbc.queryForMap(anyString(), anyInt())).thenReturn(caixa(null, 3));
+
+        RelatorioJob gerando = fila.agenda("caixa.jrxml", Map.of("codcaixa", 1));
+        RelatorioJob naFila = fila.agenda("caixa.jrxml", Map.of("codcaixa", 2));
+        RelatorioJob recusado = fila.agenda("caixa.jrxml", Map.of("codcaixa", 3));
+
+        assertEquals(RelatorioJob.Situacao.ERRO, recusado.getSituacao());
+        assertTrue(recusado.getErro().contains("cheia"));
+
+        libera.countDown();
+        concluido(gerando);
+        concluido(naFila);
+        assertTrue(fila.job(recusado.getCodigo()).isPresent());
+    }
+
+    @Test
+    public void testInicia_ArquivosDoCacheAnterior_SaoReaproveitados() throws Exception {
+        fila = fila(2, 10);
+        geraPdf();
+        when(jdbc.queryForMap(anyString(), eq(1))).thenReturn(caixa(null, 3));
+
+        Path arquivo = concluido(fila.agenda("caixa.jrxml", Map.of("codcaixa", 1)));
+        Files.writeString(pasta.resolve("incompleto.parcial"), "%PDF");
+        fila.encerra();
+
+        fila = fila(2, 10);
+
+        assertEquals(arquivo, concluido(fila.agenda("caixa.jrxml", Map.of("codcaixa", 1))));
+        assertFalse(Files.exists(pasta.resolve("incompleto.parcial")));
+        verify(gerar, times(1)).exporta(eq("caixa.jrxml"), any(), any(OutputStream.class));
+    }
+
+    @Test
+    public void testGuarda_CacheCheio_NaoRemoveOPdfSendoEnviado() throws Exception {
+        // sem espaço no cache, cada PDF novo remove os anteriores
+        fila = fila(1, 10, 0);
+        geraPdf();
+        when(jdbc.queryForMap(anyString(), anyInt())).thenReturn(caixa(null, 3));
+
+        Path enviado = concluido(fila.agenda("caixa.jrxml", Map.of("codcaixa", 1)));
+        Resource corpo = fila.resposta(enviado).get().getBody();
+        assertEquals(10, corpo.contentLength());
+
+        try (InputStream pdf = corpo.getInputStream()) {
+            Path outro = concluido(fila.agenda("caixa.jrxml", Map.of("codcaixa", 2)));
+            concluido(fila.agenda("caixa.jrxml", Map.of("codcaixa", 3)));
+
+            assertTrue(Files.exists(enviado));
+            assertFalse(Files.exists(outro));
+            assertEquals("%PDF-teste", new String(pdf.readAllBytes(), StandardCharsets.ISO_8859_1));
+        }
+
+        // fechada a resposta, sai no próximo PDF gerado
+        concluido(fila.agenda("caixa.jrxml", Map.of("codcaixa", 4)));
+        assertFalse(Files.exists(enviado));
+        assertFalse(fila.resposta(enviado).isPresent());
+    }
+
+    @Test
+    public void testPdf_RemovidoDoCacheAntesDeAbrir_GeraDeNovo() throws Exception {
+        fila = fila(1, 10, 0);
+        geraPdf();
+        when(jdbc.queryForMap(anyString(), anyInt())).thenReturn(caixa(null, 3));
+
+        concluido(fila.agenda("caixa.jrxml", Map.of("codcaixa", 1)));
+        concluido(fila.agenda("caixa.jrxml", Map.of("codcaixa", 2)));
+
+        ResponseEntity<Resource> resposta = fila.pdf("caixa.jrxml", Map.of("codcaixa", 1)).get(5, TimeUnit.SECONDS);
+
+        try (InputStream pdf = resposta.getBody().getInputStream()) {
+            assertEquals("%PDF-teste", new String(pdf.readAllBytes(), StandardCharsets.ISO_8859_1));
+        }
+        verify(gerar, times(3)).exporta(eq("caixa.jrxml"), any(), any(OutputStream.class));
+    }
+
+    @Test
+    public void testLibera_FechadaDepoisPeloEnvio_LiberaUmaVezSo() throws Exception {
+        fila = fila(1, 10, 0);
+        geraPdf();
+        when(jdbc.queryForMap(anyString(), anyInt())).thenReturn(caixa(null, 3));
+
+        Path enviado = concluido(fila.agenda("caixa.jrxml", Map.of("codcaixa", 1)));
+        ResponseEntity<Resource> primeira = fila.resposta(enviado).get();
+        ResponseEntity<Resource> segunda = fila.resposta(enviado).get();
+
+        // a primeira resposta é liberada pela requisição e depois fechada pelo envio
+        FilaRelatorios.libera(primeira);
+        primeira.getBody().getInputStream().close();
+        FilaRelatorios.libera(primeira);
+
+        concluido(fila.agenda("caixa.jrxml", Map.of("codcaixa", 2)));
+        assertTrue(Files.exists(enviado));
+
+        segunda.getBody().getInputStream().close();
+        concluido(fila.agenda("caixa.jrxml", Map.of("codcaixa", 3)));
+        assertFalse(Files.exists(enviado));
+    }
+
+    @Test
+    public void testEnvia_RequisicaoTerminaSemEnviarOPdf_Libera() throws Exception {
+        fila = fila(1, 10, 0);
+        geraPdf();
+        when(jdbc.queryForMap(anyString(), anyInt())).thenReturn(caixa(null, 3));
+
+        CaixaRelatorioController controller = new CaixaRelatorioController();
+        ReflectionTestUtils.setField(controller, "fila", fila);
+        MockMvc mvc = MockMvcBuilders.standaloneSetup(controller).build();
+
+        MvcResult requisicao = mvc.perform(get("/caixa/relatorio/caixa/1")).andExpect(request().asyncStarted())
+                .andReturn();
+        Path enviado = fila.agenda("caixa.jrxml", Map.of("codcaixa", 1)).getResultado().get(5, TimeUnit.SECONDS);
+        assertNotNull(requisicao.getAsyncResult(5000));
+
+        // preso enquanto a requisição estiver aberta
+        concluido(fila.agenda("caixa.jrxml", Map.of("codcaixa", 2)));
+        assertTrue(Files.exists(enviado));
+
+        // expirada ou com a conexão perdida, a requisição termina sem escrever o PDF
+        requisicao.getRequest().getAsyncContext().complete();
+
+        concluido(fila.agenda("caixa.jrxml", Map.of("codcaixa", 3)));
+        assertFalse(Files.exists(enviado));
+    }
+
+    private FilaRelatorios fila(int threads, int tamanhoFila) {
+        return fila(threads, tamanhoFila, 16);
+    }
+
+    private FilaRelatorios fila(int threads, int tamanhoFila, long maxMegabytes) {
+        FilaRelatorios fila = new FilaRelatorios(gerar, jdbc, threads, tamanhoFila, pasta.toString(), maxMegabytes);
+        fila.inicia();
+        return fila;
+    }
+
+    private void geraPdf() {
+        geraPdfApos(new CountDownLatch(0));
+    }
+
+    private void geraPdfApos(CountDownLatch libera) {
+        doAnswer(chamada -> {
+            assertTrue(libera.await(5, TimeUnit.SECONDS));
+            chamada.getArgument(2, OutputStream.class).write("%PDF-teste".getBytes(StandardCharsets.ISO_8859_1));
+            return null;
+        }).when(gerar).exporta(anyString(), any(), any(OutputStream.class));
+    }
+
+    private static Map<String, Object> caixa(Timestamp fechamento, long lancamentos) {
+        Map<String, Object> linha = new LinkedHashMap<>();
+        linha.put("data_fechamento", fechamento);
+        linha.put("data_alteracao", Timestamp.valueOf("2026-01-01 08:00:00"));
+        linha.put("lancamentos", lancamentos);
+        linha.put("ultimo_lancamento", Timestamp.valueOf("2026-01-01 09:00:00"));
+        return linha;
+    }
+
+    private static Path concluido(RelatorioJob job) throws Exception {
+        return job.getResultado().get(5, TimeUnit.SECONDS);
+    }
+
+}
@@ -0,0 +1,104 @@
+package geraXmlNfe;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import org.w3c.dom.Document;
+
+import net.originmobi.pdv.model.NotaFiscal;
+import net.originmobi.pdv.xml.nfe.AssinaXML;
+import net.originmobi.pdv.xml.nfe.ConversorXmlNfe;
+import net.originmobi.pdv.xml.nfe.GeraXmlNfe;
+
+/**
+ * Tempo e memória alocada por nota, gerando pelo texto do XStream lido de
+ * novo e gerando direto no DOM. Só roda quando pedido:
+ *
+ * mvn test -Dtest=GeraXmlNfeBenchmarkTest -Dpdv.benchmark=true
+ */
+@EnabledIfSystemProperty(named = "pdv.benchmark", matches = "true")
+@DisplayName("GeraXmlNfe — XML por texto x XML direto no DOM")
+public class GeraXmlNfeBenchmarkTest {
+
+    private static final int ITENS = 50;
+    private static final int AQUECIMENTO = 200;
+    private static final int NOTAS = 1_000;
+
+    @TempDir
+    Path pasta;
+
+    @Test
+    public void testDiretoNoDom_MaisRapidoQuePorTexto() throws Exception {
+        NotaFiscal nota = GeraXmlNfeTest.nota(ITENS);
+        AssinaXML assina = new AssinaXML(GeraXmlNfeTest.certificadoTeste(pasta), GeraXmlNfeTest.SENHA);
+
+        Tarefa porTexto = () -> {
+            String xml = GeraXmlNfeTest.xstream(new ConversorXmlNfe()).toXML(nota);
+            Document document = GeraXmlNfeTest.le(xml);
+            assina.assina(document);
+
+            ByteArrayOutputStream os = new ByteArrayOutputStream();
+            Transformer trans = TransformerFactory.newInstance().newTransformer();
+            trans.transform(new DOMSource(document), new StreamResult(os));
+            xml = os.toString(StandardCharsets.UTF_8.name()).replaceAll("\\r\\n", "").replaceAll(" standalone=\"no\"", "");
+
+            DESCARTE.write(xml.getBytes(StandardCharsets.UTF_8));
+        };
+
+        Tarefa diretoNoDom = () -> {
+            Document document = new GeraXmlNfe().documento(nota, new ConversorXmlNfe());
+            assina.assina(document);
+            GeraXmlNfe.escreve(document, DESCARTE);
+        };
+
+        double[] texto = mede("por texto", porTexto);
+        double[] dom = mede("direto no DOM", diretoNoDom);
+
+        assertTrue(dom[0] < texto[0], "direto no DOM não foi mais rápido");
+        assertTrue(dom[1] < texto[1], "direto no DOM não alocou menos");
+    }
+
+    /*
+     * Devolve milissegundos e kilobytes alocados por nota
+     */
+    private static double[] mede(String nome, Tarefa tarefa) throws Exception {
+        for (int i = 0; i < AQUECIMENTO; i++)
+            tarefa.executa();
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long alocadoAntes = threads.getCurrentThreadAllocatedBytes();
+        long inicio = System.nanoTime();
+
+        for (int i = 0; i < NOTAS; i++)
+            tarefa.executa();
+
+        double milissegundos = (System.nanoTime() - inicio) / 1e6 / NOTAS;
+        double kilobytes = (threads.getCurrentThreadAllocatedBytes() - alocadoAntes) / 1024d / NOTAS;
+
+        System.out.printf("%s: %.3f ms e %.0f KB alocados por nota de %d itens%n", nome, milissegundos, kilobytes,
+                ITENS);
+
+        return new double[] { milissegundos, kilobytes };
+    }
+
+    private interface Tarefa {
+        void executa() throws Exception;
+    }
+
+    private static final OutputStream DESCARTE = OutputStream.nullOutputStream();
+
+}
@@ -0,0 +1,323 @@
+package geraXmlNfe;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.KeyStore;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.xml.crypto.dsig.XMLSignature;
+import javax.xml.crypto.dsig.XMLSignatureFactory;
+import javax.xml.crypto.dsig.dom.DOMValidateContext;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import com.thoughtworks.xstream.XStream;
+import com.thoughtworks.xstream.io.xml.CompactWriter;
+import com.thoughtworks.xstream.io.xml.DomDriver;
+
+import net.originmobi.pdv.enumerado.notafiscal.NotaFiscalTipo;
+import net.originmobi.pdv.model.Cidade;
+import net.originmobi.pdv.model.Empresa;
+import net.originmobi.pdv.model.EmpresaParametro;
+import net.originmobi.pdv.model.Endereco;
+import net.originmobi.pdv.model.Estado;
+import net.originmobi.pdv.model.FreteTipo;
+import net.originmobi.pdv.model.NotaFiscal;
+import net.originmobi.pdv.model.NotaFiscalFinalidade;
+import net.originmobi.pdv.model.NotaFiscalItem;
+import net.originmobi.pdv.model.NotaFiscalItemImposto;
+import net.originmobi.pdv.model.NotaFiscalTotais;
+import net.originmobi.pdv.model.Pais;
+import net.originmobi.pdv.model.Pessoa;
+import net.originmobi.pdv.model.RegimeTributario;
+import net.originmobi.pdv.model.Telefone;
+import net.originmobi.pdv.xml.nfe.AssinaXML;
+import net.originmobi.pdv.xml.nfe.ConversorXmlNfe;
+import net.originmobi.pdv.xml.nfe.GeraXmlNfe;
+
+@DisplayName("GeraXmlNfe — XML montado e assinado em uma passada")
+public class GeraXmlNfeTest {
+
+    public static final String SENHA = "spcbrasil";
+    private static final int CNF = 12345678;
+
+    @TempDir
+    static Path pasta;
+
+    private static String certificado;
+
+    @BeforeAll
+    static void geraCertificado() throws Exception {
+        certificado = certificadoTeste(pasta);
+    }
+
+    @Test
+    public void testDocumento_MesmoConteudoQueOTextoDoXStreamLido() throws Exception {
+        NotaFiscal nota = nota(3);
+
+        Document novo = new GeraXmlNfe().documento(nota, new ConversorXmlNfe(() -> CNF));
+
+        Document antigo = le(xstream(new ConversorXmlNfe(() -> CNF)).toXML(nota));
+        removeEspacos(antigo.getDocumentElement());
+
+        assertTrue(antigo.isEqualNode(novo), "documentos diferentes");
+        assertEquals("http://www.portalfiscal.inf.br/nfe", novo.getDocumentElement().getNamespaceURI());
+        assertEquals("http://www.portalfiscal.inf.br/nfe",
+                novo.getElementsByTagName("vNF").item(0).getNamespaceURI());
+    }
+
+    @Test
+    public void testAssinado_ByteAByteIgualAoCaminhoPorTexto() throws Exception {
+        NotaFiscal nota = nota(3);
+        AssinaXML assina = new AssinaXML(certificado, SENHA);
+
+        Document novo = new GeraXmlNfe().documento(nota, new ConversorXmlNfe(() -> CNF));
+        assina.assina(novo);
+        ByteArrayOutputStream saida = new ByteArrayOutputStream();
+        GeraXmlNfe.escreve(novo, saida);
+
+        String antigo = caminhoPorTexto(nota, assina);
+
+        assertEquals(antigo, saida.toString(StandardCharsets.UTF_8.name()));
+    }
+
+    @Test
+    public void testAssinado_AssinaturaConfereNoArquivoGravado() throws Exception {
+        NotaFiscal nota = nota(2);
+
+        Document xml = new GeraXmlNfe().documento(nota, new ConversorXmlNfe(() -> CNF));
+        new AssinaXML(certificado, SENHA).assina(xml);
+        ByteArrayOutputStream saida = new ByteArrayOutputStream();
+        GeraXmlNfe.escreve(xml, saida);
+
+        Document lido = le(saida.toString(StandardCharsets.UTF_8.name()));
+        Element infNFe = (Element) lido.getElementsByTagName("infNFe").item(0);
+        infNFe.setIdAttribute("Id", true);
+
+        DOMValidateContext contexto = new DOMValidateContext(chavePublica(),
+                lido.getElementsByTagNameNS(XMLSignature.XMLNS, "Signature").item(0));
+        // a NF-e 3.10 assina com SHA-1, recusado pela validação segura do JDK
+        contexto.setProperty("org.jcp.xml.dsig.secureValidation", Boolean.FALSE);
+
+        XMLSignature assinatura = XMLSignatureFactory.getInstance("DOM").unmarshalXMLSignature(contexto);
+        assertTrue(assinatura.validate(contexto));
+    }
+
+    /*
+     * Como o XML era gerado antes: texto do XStream, lido de novo para
+     * assinar e transformado em texto outra vez
+     */
+    public static String caminhoPorTexto(NotaFiscal nota, AssinaXML assina) throws Exception {
+        StringWriter texto = new StringWriter();
+        xstream(new ConversorXmlNfe(() -> CNF)).marshal(nota, new CompactWriter(texto));
+
+        Document document = le(texto.toString());
+        assina.assina(document);
+
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        Transformer trans = TransformerFactory.newInstance().newTransformer();
+        trans.transform(new DOMSource(document), new StreamResult(os));
+        String xml = os.toString(StandardCharsets.UTF_8.name());
+        xml = xml.replaceAll("\\r\\n", "");
+        xml = xml.replaceAll(" standalone=\"no\"", "");
+        return xml;
+    }
+
+    public static XStream xstream(ConversorXmlNfe conversor) {
+        XStream valor = new XStream(new DomDriver());
+        valor.registerConverter(conversor);
+        valor.alias("enviNFe", NotaFiscal.class);
+        return valor;
+    }
+
+    public static Document le(String xml) throws Exception {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        return factory.newDocumentBuilder().parse(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    // a indentação do XStream vira texto entre os elementos
+    private static void removeEspacos(Node no) {
+        NodeList filhos = no.getChildNodes();
+        for (int i = filhos.getLength() - 1; i >= 0; i--) {
+            Node filho = filhos.item(i);
+            if (filho.getNodeType() == Node.TEXT_NODE && filho.getNodeValue().trim().isEmpty()
+                    && filhos.getLength() > 1)
+                no.removeChild(filho);
+            else
+                removeEspacos(filho);
+        }
+    }
+
+    private static java.security.PublicKey chavePublica() throws Exception {
+        KeyStore ks = KeyStore.getInstance("pkcs12");
+        try (java.io.FileInputStream entrada = new java.io.FileInputStream(certificado)) {
+            ks.load(entrada, SENHA.toCharArray());
+        }
+        return ((X509Certificate) ks.getCertificate(ks.aliases().nextElement())).getPublicKey();
+    }
+
+    /*
+     * Certificado A1 de teste gerado pelo keytool do JDK que roda os testes
+     */
+    public static String certificadoTeste(Path pasta) throws Exception {
+        return certificadoTeste(pasta.resolve("certificado.pfx"), "EMPRESA TESTE:11222333000181", 1);
+    }
+
+    public static String certificadoTeste(Path pfx, String titular, int validadeDias) throws Exception {
+        File keytool = new File(System.getProperty("java.home"), "bin/keytool");
+        assumeTrue(keytool.canExecute(), "keytool não encontrado");
+
+        Process processo = new ProcessBuilder(keytool.getPath(), "-genkeypair", "-alias", "nfe", "-keyalg", "RSA",
+                "-keysize", "2048", "-validity", String.valueOf(validadeDias), "-dname", "CN=" + titular,
+                "-storetype", "pkcs12", "-keystore", pfx.toString(), "-storepass", SENHA, "-keypass", SENHA)
+                .redirectErrorStream(true).start();
+        processo.getInputStream().readAllBytes();
+        assertEquals(0, processo.waitFor(), "keytool falhou");
+
+        return pfx.toString();
+    }
+
+    public static NotaFiscal nota(int quantidadeItens) {
+        Pais pais = new Pais();
+        pais.setNome("Brasil");
+        pais.setCodigo_pais("1058");
+
+        Estado estado = new Estado();
+        estado.setSigla("RJ");
+        estado.setCodigoUF("33");
+        estado.setPais(pais);
+
+        Cidade cidade = new Cidade();
+        cidade.setNome("Niterói");
+        cidade.setCodigo_municipio("3303302");
+        cidade.setEstado(estado);
+
+        RegimeTributario regime = new RegimeTributario();
+        regime.setTipoRegime(3);
+
+        EmpresaParametro parametro = new EmpresaParametro();
+        parametro.setSerie_nfe(1);
+        parametro.setAmbiente(2);
+
+        Empresa emissor = new Empresa();
+        emissor.setNome("Empresa Teste & Cia");
+        emissor.setNome_fantasia("Teste <PDV>");
+        emissor.setCnpj("11.222.333/0001-81");
+        emissor.setIe("123456789");
+        emissor.setRegime_tributario(regime);
+        emissor.setParametro(parametro);
+        emissor.setEndereco(endereco(cidade, "Rua da Praia"));
+
+        Pessoa destinatario = new Pessoa();
+        destinatario.setNome("Cliente Teste");
+        destinatario.setCpfcnpj("123.456.789-09");
+        destinatario.setEndereco(endereco(cidade, "Rua das Flores"));
+        destinatario.setTelefone(Collections.singletonList(new Telefone("2199998888", null, null)));
+
+        FreteTipo frete = new FreteTipo();
+        frete.setTipo(9);
+
+        NotaFiscalFinalidade finalidade = new NotaFiscalFinalidade();
+        finalidade.setTipo(1);
+
+        List<NotaFiscalItem> itens = new ArrayList<>();
+        for (int i = 1; i <= quantidadeItens; i++)
+            itens.add(item(i));
+
+        NotaFiscal nota = new NotaFiscal();
+        nota.setNumero(42L);
+        nota.setModelo(55);
+        nota.setSerie(1);
+        nota.setTipo(NotaFiscalTipo.SAIDA);
+        nota.setNatureza_operacao("Venda de mercadoria");
+        nota.setTipo_ambiente(2);
+        nota.setEmissor(emissor);
+        nota.setDestinatario(destinatario);
+        nota.setFreteTipo(frete);
+        nota.setFinalidade(finalidade);
+        nota.setTotais(totais(quantidadeItens * 10.5));
+        nota.setItens(itens);
+        return nota;
+    }
+
+    private static Endereco endereco(Cidade cidade, String rua) {
+        Endereco endereco = new Endereco();
+        endereco.setRua(rua);
+        endereco.setNumero("100");
+        endereco.setReferencia("Loja 1");
+        endereco.setBairro("Centro");
+        endereco.setCep("24020000");
+        endereco.setCidade(cidade);
+        return endereco;
+    }
+
+    private static NotaFiscalItem item(int numero) {
+        NotaFiscalItemImposto impostos = new NotaFiscalItemImposto();
+        impostos.setOrig(0);
+        impostos.setCst(0);
+        impostos.setMod_bc(3);
+        impostos.setV_bc(10.5);
+        impostos.setP_icms(18.0);
+        impostos.setV_icms(1.89);
+        impostos.setCst_pis(1);
+        impostos.setVbc_pis(10.5);
+        impostos.setP_pis(1.65);
+        impostos.setV_pis(0.17);
+        impostos.setCst_cofins(1);
+        impostos.setVbc_cofins(10.5);
+        impostos.setP_cofins(7.6);
+        impostos.setV_cofins(0.8);
+
+        NotaFiscalItem item = new NotaFiscalItem();
+        item.setCodigo((long) numero);
+        item.setCfop("5102");
+        item.setUnidade_tribu("UN");
+        item.setQtd(1);
+        item.setQtd_tribu(1);
+        item.setV_uniTribu(10.5);
+        item.setVlTotal(10.5);
+        item.setImpostos(impostos);
+        return item;
+    }
+
+    private static NotaFiscalTotais totais(double valor) {
+        NotaFiscalTotais totais = new NotaFiscalTotais();
+        totais.setV_bc(valor);
+        totais.setV_icms(valor * 0.18);
+        totais.setV_prod(valor);
+        totais.setV_frete(0.0);
+        totais.setV_seg(0.0);
+        totais.setV_desc(0.0);
+        totais.setV_ii(0.0);
+        totais.setV_ipi(0.0);
+        totais.setV_pis(0.0);
+        totais.setV_cofins(0.0);
+        totais.setV_outros(0.0);
+        totais.setV_nf(valor);
+        return totais;
+    }
+
+}
@@ -0,0 +1,77 @@
+package gerarRelatorio;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.*;
+import static org.mockito.Mockito.*;
+
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+
+import net.originmobi.pdv.relatorios.GerarRelatorio;
+
+/**
+ * Relatório de caixa com 500 mil lançamentos em um heap fixo. Só roda quando
+ * pedido, com o heap limitado na JVM dos testes:
+ *
+ * mvn test -Dtest=GerarRelatorioBenchmarkTest -Dpdv.benchmark=true -DargLine=-Xmx256m
+ */
+@EnabledIfSystemProperty(named = "pdv.benchmark", matches = "true")
+@DisplayName("GerarRelatorio — relatório de caixa com 500 mil lançamentos")
+public class GerarRelatorioBenchmarkTest {
+
+    private static final int LANCAMENTOS = 500_000;
+
+    @TempDir
+    Path pasta;
+
+    @Test
+    public void testCaixaComQuinhentosMilLancamentos_CabeNoHeap() {
+        assumeTrue(GerarRelatorioTest.iTextDisponivel(), "iText do Jasper fora do classpath");
+        GerarRelatorioTest.fontes();
+
+        GerarRelatorio gerar = new GerarRelatorio(mock(DataSource.class), 20, pasta.toString());
+        gerar.compila();
+
+        ContaBytes pdf = new ContaBytes();
+        long inicio = System.currentTimeMillis();
+
+        gerar.exporta("caixa.jrxml", Map.of("codcaixa", 1), LancamentosCaixa.gerados(LANCAMENTOS), pdf);
+
+        long tempo = System.currentTimeMillis() - inicio;
+        Map<String, Object> estatisticas = gerar.estatisticas();
+        long pico = (Long) estatisticas.get("picoMemoria");
+        long heap = Runtime.getRuntime().maxMemory();
+
+        System.out.printf("%d lançamentos, %d páginas, %d KB de PDF em %d ms, pico de memória %d MB de %d MB%n",
+                LANCAMENTOS, estatisticas.get("paginasGeradas"), pdf.bytes / 1024, tempo, pico >> 20, heap >> 20);
+
+        assertTrue(pdf.bytes > 0);
+        assertTrue(pico < heap / 2, "pico de " + (pico >> 20) + " MB");
+    }
+
+    // descarta o PDF, só conta o tamanho
+    private static class ContaBytes extends OutputStream {
+
+        private long bytes;
+
+        @Override
+        public void write(int b) {
+            bytes++;
+        }
+
+        @Override
+        public void write(byte[] b, int inicio, int tamanho) {
+            bytes += tamanho;
+        }
+
+    }
+
+}
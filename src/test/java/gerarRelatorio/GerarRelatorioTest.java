@@ -0,0 +1,121 @@
+package gerarRelatorio;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.*;
+import static org.mockito.Mockito.*;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import net.originmobi.pdv.relatorios.GerarRelatorio;
+import net.sf.jasperreports.engine.DefaultJasperReportsContext;
+import net.sf.jasperreports.engine.JasperReport;
+
+@DisplayName("GerarRelatorio — testes unitários")
+public class GerarRelatorioTest {
+
+    @TempDir
+    Path pasta;
+
+    @BeforeAll
+    static void fontes() {
+        // as fontes dos relatórios não estão instaladas na máquina dos testes
+        DefaultJasperReportsContext.getInstance().setProperty("net.sf.jasperreports.awt.ignore.missing.font", "true");
+    }
+
+    @Test
+    public void testCompila_RelatoriosCompiladosUmaUnicaVez() {
+        GerarRelatorio gerar = gerar(mock(DataSource.class));
+        gerar.compila();
+
+        JasperReport comanda = gerar.relatorio("comanda.jrxml");
+
+        assertSame(comanda, gerar.relatorio("comanda.jrxml"));
+        assertNotNull(gerar.relatorio("caixa.jrxml"));
+        assertNotNull(gerar.relatorio("controle.jrxml"));
+    }
+
+    @Test
+    public void testRelatorio_Inexistente_LancaExcecao() {
+        GerarRelatorio gerar = gerar(mock(DataSource.class));
+
+        assertThrows(IllegalStateException.class, () -> gerar.relatorio("nao-existe.jrxml"));
+    }
+
+    @Test
+    public void testExporta_DevolveAConexaoAoPool() throws SQLException {
+        assumeTrue(iTextDisponivel(), "iText do Jasper fora do classpath");
+
+        DataSource dataSource = mock(DataSource.class);
+        Connection conexao = mock(Connection.class, RETURNS_MOCKS);
+        PreparedStatement consulta = mock(PreparedStatement.class, RETURNS_MOCKS);
+        ResultSet resultado = mock(ResultSet.class, RETURNS_MOCKS);
+
+        when(dataSource.getConnection()).thenReturn(conexao);
+        when(conexao.prepareStatement(anyString(), anyInt(), anyInt())).thenReturn(consulta);
+        when(conexao.prepareStatement(anyString(), anyInt(), anyInt(), anyInt())).thenReturn(consulta);
+        when(consulta.executeQuery()).thenReturn(resultado);
+        when(resultado.next()).thenReturn(false);
+
+        GerarRelatorio gerar = gerar(dataSource);
+        Map<String, Object> parametros = new HashMap<>();
+        parametros.put("codvenda", 1);
+
+        ByteArrayOutputStream pdf = new ByteArrayOutputStream();
+        gerar.exporta("comanda.jrxml", parametros, pdf);
+
+        assertTrue(pdf.toString(StandardCharsets.ISO_8859_1).startsWith("%PDF"));
+        assertEquals(1, parametros.size(), "o mapa do chamador não é alterado");
+        verify(dataSource, times(1)).getConnection();
+        verify(conexao, times(1)).close();
+        assertEquals(1L, gerar.estatisticas().get("relatoriosGerados"));
+    }
+
+    @Test
+    public void testExporta_MaisPaginasQueOLimite_PaginasVoltamDoArquivo() {
+        assumeTrue(iTextDisponivel(), "iText do Jasper fora do classpath");
+
+        GerarRelatorio gerar = gerar(mock(DataSource.class));
+
+        ByteArrayOutputStream pdf = new ByteArrayOutputStream();
+        gerar.exporta("caixa.jrxml", Map.of("codcaixa", 1), LancamentosCaixa.gerados(2000), pdf);
+
+        long paginas = (Long) gerar.estatisticas().get("paginasGeradas");
+        assertTrue(paginas > 2, "relatório com " + paginas + " páginas");
+        assertTrue(pdf.toString(StandardCharsets.ISO_8859_1).contains("/Count " + paginas));
+        assertEquals(0, pasta.toFile().list().length, "arquivo temporário removido ao final");
+    }
+
+    /*
+     * O iText usado pelo Jasper na exportação para PDF vem do repositório da
+     * Jaspersoft, que nem todo ambiente de build alcança
+     */
+    static boolean iTextDisponivel() {
+        try {
+            Class.forName("com.lowagie.text.Document");
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    private GerarRelatorio gerar(DataSource dataSource) {
+        // duas páginas em memória, as demais vão para o arquivo temporário
+        return new GerarRelatorio(dataSource, 2, pasta.toString());
+    }
+
+}
@@ -0,0 +1,66 @@
+package gerarRelatorio;
+
+import java.sql.Timestamp;
+
+import net.sf.jasperreports.engine.JRDataSource;
+import net.sf.jasperreports.engine.JRField;
+
+/**
+ * Linhas geradas na hora com os campos do caixa.jrxml, um caixa com a
+ * quantidade informada de lançamentos, sem guardar nenhuma em memória.
+ */
+public class LancamentosCaixa implements JRDataSource {
+
+    private static final Timestamp ABERTURA = Timestamp.valueOf("2026-01-01 08:00:00");
+
+    private final int quantidade;
+    private int atual;
+
+    private LancamentosCaixa(int quantidade) {
+        this.quantidade = quantidade;
+    }
+
+    public static LancamentosCaixa gerados(int quantidade) {
+        return new LancamentosCaixa(quantidade);
+    }
+
+    @Override
+    public boolean next() {
+        return atual++ < quantidade;
+    }
+
+    @Override
+    public Object getFieldValue(JRField campo) {
+        switch (campo.getName()) {
+        case "codcaixa":
+            return 1;
+        case "dataabertura":
+            return ABERTURA;
+        case "datafechamento":
+            return null;
+        case "tipo":
+            return "CAIXA";
+        case "valor_abertura":
+            return 100.0;
+        case "valor_entrada":
+        case "valor_total":
+            return 100.0 + quantidade;
+        case "valor_saida":
+        case "valor_fechamento":
+            return 0.0;
+        case "codlanca":
+            return atual;
+        case "obs_lanc":
+            return "Recebimento de venda à vista " + atual;
+        case "estilo_lanc":
+            return atual % 10 == 0 ? "SAIDA" : "ENTRADA";
+        case "data_lanc":
+            return new Timestamp(ABERTURA.getTime() + atual * 1000L);
+        case "valor_lanc":
+            return (atual % 500) / 10.0;
+        default:
+            return null;
+        }
+    }
+
+}
@@ -0,0 +1,145 @@
+package indiceRegrasTributacao;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.util.List;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+
+import net.originmobi.pdv.enumerado.EntradaSaida;
+import net.originmobi.pdv.model.CFOP;
+import net.originmobi.pdv.model.CstCsosn;
+import net.originmobi.pdv.model.Estado;
+import net.originmobi.pdv.model.TributacaoRegra;
+import net.originmobi.pdv.repository.TributacaoRegraRepository;
+import net.originmobi.pdv.service.TributacaoRegraService;
+import net.originmobi.pdv.service.notafiscal.IndiceRegrasTributacao;
+
+@DisplayName("IndiceRegrasTributacao — regras por tipo da nota e UF")
+public class IndiceRegrasTributacaoTest {
+
+    private final TributacaoRegraRepository repositorio = mock(TributacaoRegraRepository.class);
+    private final PlatformTransactionManager transacoes = mock(PlatformTransactionManager.class);
+    private final IndiceRegrasTributacao indice = new IndiceRegrasTributacao(repositorio, transacoes);
+
+    @Test
+    public void testRegra_PorUfETipo() {
+        TributacaoRegra saidaSp = regra(EntradaSaida.SAIDA, "SP", "5102", "102");
+        TributacaoRegra saidaRj = regra(EntradaSaida.SAIDA, "RJ", "6102", "102");
+        TributacaoRegra entradaSp = regra(EntradaSaida.ENTRADA, "SP", "1102", "102");
+        regras(1L, saidaSp, saidaRj, entradaSp);
+
+        IndiceRegrasTributacao.Regras regras = indice.daTributacao(1L);
+
+        assertSame(saidaSp, regras.regra("SP", EntradaSaida.SAIDA).get());
+        assertSame(saidaRj, regras.regra("RJ", EntradaSaida.SAIDA).get());
+        assertSame(entradaSp, regras.regra("SP", EntradaSaida.ENTRADA).get());
+        assertFalse(regras.regra("RJ", EntradaSaida.ENTRADA).isPresent());
+        assertEquals("6102", regras.regra("RJ", EntradaSaida.SAIDA).get().getCfop().getCfop());
+        assertEquals(Character.valueOf('1'), regras.getOrigem());
+    }
+
+    @Test
+    public void testRegra_DuasRegrasParaAMesmaUf_ValeAUltima() {
+        TributacaoRegra primeira = regra(EntradaSaida.SAIDA, "MG", "5102", "102");
+        TributacaoRegra ultima = regra(EntradaSaida.SAIDA, "MG", "5405", "500");
+        regras(1L, primeira, ultima);
+
+        IndiceRegrasTributacao.Regras regras = indice.daTributacao(1L);
+
+        assertSame(ultima, regras.regra("MG", EntradaSaida.SAIDA).get());
+    }
+
+    @Test
+    public void testTemRegra_SoDeSaida() {
+        regras(1L, regra(EntradaSaida.SAIDA, "SP", "5102", "102"));
+
+        IndiceRegrasTributacao.Regras regras = indice.daTributacao(1L);
+
+        assertTrue(regras.temRegra(EntradaSaida.SAIDA));
+        assertFalse(regras.temRegra(EntradaSaida.ENTRADA));
+    }
+
+    @Test
+    public void testDaTributacao_MontadoUmaVezParaTodosOsItens() {
+        regras(1L, regra(EntradaSaida.SAIDA, "SP", "5102", "102"));
+        IndiceRegrasTributacao.Regras primeira = indice.daTributacao(1L);
+
+        for (int item = 0; item < 300; item++)
+            assertSame(primeira, indice.daTributacao(1L));
+
+        verify(repositorio, times(1)).findByTributacaoCodigoOrderByCodigo(1L);
+    }
+
+    @Test
+    public void testDaTributacao_LidoEmTransacaoNovaSoDeLeitura() {
+        regras(1L, regra(EntradaSaida.SAIDA, "SP", "5102", "102"));
+
+        indice.daTributacao(1L);
+
+        // não usa o que a transação da nota já leu do produto
+        verify(transacoes).getTransaction(argThat(definicao -> definicao.isReadOnly()
+                && definicao.getPropagationBehavior() == TransactionDefinition.PROPAGATION_REQUIRES_NEW));
+        verify(transacoes).commit(any());
+    }
+
+    @Test
+    public void testInvalida_ProximoItemVeARegraNova() {
+        TributacaoRegra sp = regra(EntradaSaida.SAIDA, "SP", "5102", "102");
+        TributacaoRegra nova = regra(EntradaSaida.SAIDA, "BA", "6102", "102");
+        when(repositorio.findByTributacaoCodigoOrderByCodigo(1L)).thenReturn(List.of(sp), List.of(sp, nova));
+        regras(2L, regra(EntradaSaida.SAIDA, "PR", "6102", "102"));
+
+        IndiceRegrasTributacao.Regras daOutra = indice.daTributacao(2L);
+        assertFalse(indice.daTributacao(1L).regra("BA", EntradaSaida.SAIDA).isPresent());
+
+        indice.invalida(1L);
+
+        assertSame(nova, indice.daTributacao(1L).regra("BA", EntradaSaida.SAIDA).get());
+        assertSame(daOutra, indice.daTributacao(2L));
+
+        indice.invalidaTodas();
+        assertNotSame(daOutra, indice.daTributacao(2L));
+    }
+
+    @Test
+    public void testTributacaoRegraService_AlteracoesInvalidamOIndice() {
+        IndiceRegrasTributacao indiceMock = mock(IndiceRegrasTributacao.class);
+        TributacaoRegraService service = new TributacaoRegraService();
+        ReflectionTestUtils.setField(service, "regras", mock(TributacaoRegraRepository.class));
+        ReflectionTestUtils.setField(service, "indice", indiceMock);
+
+        service.merger(0L, 7L, "SAIDA", "SP", "5102", "102", "01", "01", "1.65", "7.6", "0", "18", "53");
+        verify(indiceMock).invalida(7L);
+
+        service.merger(3L, 7L, "SAIDA", "SP", "5102", "102", "01", "01", "1.65", "7.6", "0", "18", "53");
+        service.remover(3L);
+        verify(indiceMock, times(2)).invalidaTodas();
+    }
+
+    private void regras(Long codTributacao, TributacaoRegra... regras) {
+        when(repositorio.findByTributacaoCodigoOrderByCodigo(codTributacao)).thenReturn(List.of(regras));
+    }
+
+    private static TributacaoRegra regra(EntradaSaida tipo, String uf, String cfop, String cst) {
+        Estado estado = new Estado();
+        estado.setSigla(uf);
+        CFOP codigoFiscal = new CFOP();
+        codigoFiscal.setCfop(cfop);
+        CstCsosn cstCsosn = new CstCsosn();
+        cstCsosn.setCst_csosn(cst);
+
+        TributacaoRegra regra = new TributacaoRegra();
+        regra.setTipo(tipo);
+        regra.setUf(estado);
+        regra.setCfop(codigoFiscal);
+        regra.setCst_csosn(cstCsosn);
+        return regra;
+    }
+
+}
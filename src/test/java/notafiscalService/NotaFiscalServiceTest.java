@@ -2,6 +2,7 @@ package notafiscalService;
 
 import java.io.File;
 import java.io.FileWriter;
+import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
@@ -13,8 +14,11 @@ import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.ArgumentCaptor;
 import org.mockito.MockedConstruction;
 
@@ -38,6 +42,8 @@ import net.originmobi.pdv.service.EmpresaService;
 import net.originmobi.pdv.service.PessoaService;
 import net.originmobi.pdv.service.notafiscal.NotaFiscalService;
 import net.originmobi.pdv.service.notafiscal.NotaFiscalTotaisServer;
+import net.originmobi.pdv.service.notafiscal.NumeracaoNfe;
+import net.originmobi.pdv.service.painel.ContadoresPainel;
 import net.originmobi.pdv.xml.nfe.GeraXmlNfe;
 
 import org.junit.jupiter.params.ParameterizedTest;
@@ -351,6 +357,20 @@ class NotaFiscalServiceTest {
 
 
     //TESTES DO MÉTODO salvaXML(xml, chaveNfe)
+
+    // arquivo de XMLs em um diretório temporário, fora do projeto
+    @TempDir
+    Path pastaXml;
+
+    @BeforeEach
+    void usaPastaXmlTemporaria() {
+        System.setProperty(NotaFiscalService.PROPRIEDADE_DIRETORIO_XML, pastaXml.toString());
+    }
+
+    @AfterEach
+    void voltaPastaXml() {
+        System.clearProperty(NotaFiscalService.PROPRIEDADE_DIRETORIO_XML);
+    }
     
     @Test
     @DisplayName("Teste do método salvaXML(xml, chaveNfe)")
@@ -363,24 +383,14 @@ class NotaFiscalServiceTest {
         String xml = "<nfe>conteudo</nfe>";
         String chave = "teste123";
 
-        try {
-            // chama o método salvaXML(String xml, String chaveNfe) de NotaFiscalService
-            service.salvaXML(xml, chave);
-
-            // verifica se o arquivo foi criado
-            File file = new File(new File(".").getCanonicalPath() + "/src/main/resources/xmlNfe/" + chave + ".xml");
-
-            // verificação de resultado do teste
-            assertTrue(file.exists());
-            
-            assertEquals(xml.length(), file.length());
+        // chama o método salvaXML(String xml, String chaveNfe) de NotaFiscalService
+        service.salvaXML(xml, chave);
 
-            // deleta arquivo criado após o teste
-            file.delete();
+        // verifica se o XML foi gravado no arquivo de XMLs e volta igual
+        assertEquals(Optional.of(xml), service.leXML(chave));
 
-        } catch (Exception e) {
-            fail("Erro inesperado ao salvar XML: " + e.getMessage());
-        }
+        // nenhum arquivo solto por nota
+        assertFalse(new File(pastaXml.toFile(), chave + ".xml").exists());
     }
   
     @Test
@@ -389,17 +399,9 @@ class NotaFiscalServiceTest {
         NotaFiscalService service = new NotaFiscalService();
         String chave = "xmlVazio123";
 
-        try {
-            service.salvaXML("", chave); // XML vazio
-            File file = new File(new File(".").getCanonicalPath() + "/src/main/resources/xmlNfe/" + chave + ".xml");
-
-            assertTrue(file.exists()); // arquivo deve existir mesmo vazio
-            assertEquals(0, file.length()); // tamanho 0 bytes (vazio)
+        service.salvaXML("", chave); // XML vazio
 
-            file.delete();
-        } catch (Exception e) {
-            fail("Não deveria lançar exceção: " + e.getMessage());
-        }
+        assertEquals(Optional.of(""), service.leXML(chave)); // gravado mesmo vazio
     }
    
     
@@ -410,30 +412,26 @@ class NotaFiscalServiceTest {
     @DisplayName("Teste do método removeXml(chave_acesso)")
     void removeArquivoXMLExistente() {
 
-        // objeto da classe NotaFiscalService
-        NotaFiscalService service = new NotaFiscalService();
-
         // dado de teste que é passado como parâmetro ao chamar o método
         String chave = "remover123";
 
         try {
-            // cria objeto File que aponta para o arquivo com chave_acesso "remover123"
-            File file = new File(new File(".").getCanonicalPath() + "/src/main/resources/xmlNfe/" + chave + ".xml");
-
-            // cria arquivo de teste manualmente
-            file.getParentFile().mkdirs();
+            // XML solto, como eram gravados antes do arquivo de XMLs
+            File file = new File(pastaXml.toFile(), chave + ".xml");
             try (FileWriter fw = new FileWriter(file)) {
                 fw.write("<nfe>teste</nfe>");
             }
 
-            // verifica se o arquivo existe antes da remoção
-            assertTrue(file.exists());
+            // objeto da classe NotaFiscalService, que importa o XML solto ao abrir o arquivo
+            NotaFiscalService service = new NotaFiscalService();
+            assertEquals(Optional.of("<nfe>teste</nfe>"), service.leXML(chave));
+            assertFalse(file.exists());
 
-            // chama o método para deletar o arquivo
+            // chama o método para remover o XML
             service.removeXml(chave);
 
-            // verifica se o arquivo foi realmente removido
-            assertFalse(file.exists());
+            // verifica se o XML foi realmente removido
+            assertFalse(service.leXML(chave).isPresent());
         } catch (Exception e) {
             fail("Erro inesperado ao remover XML: " + e.getMessage());
         }
@@ -463,6 +461,7 @@ class NotaFiscalServiceTest {
         EmpresaService mockEmpresaService = mock(EmpresaService.class);
         PessoaService mockPessoaService = mock(PessoaService.class);
         NotaFiscalTotaisServer mockTotaisService = mock(NotaFiscalTotaisServer.class);
+        NumeracaoNfe mockNumeracao = mock(NumeracaoNfe.class);
     
         //injecoes necessarias
         NotaFiscalService nfeService = new NotaFiscalService();
@@ -470,6 +469,8 @@ class NotaFiscalServiceTest {
         ReflectionTestUtils.setField(nfeService, "empresas", mockEmpresaService);
         ReflectionTestUtils.setField(nfeService, "pessoas", mockPessoaService);
         ReflectionTestUtils.setField(nfeService, "notaTotais", mockTotaisService);
+        ReflectionTestUtils.setField(nfeService, "numeracao", mockNumeracao);
+        ReflectionTestUtils.setField(nfeService, "painel", mock(ContadoresPainel.class));
     
         EmpresaParametro parametro = new EmpresaParametro();
         parametro.setSerie_nfe(1);
@@ -491,7 +492,7 @@ class NotaFiscalServiceTest {
         //comportamento
         when(mockEmpresaService.verificaEmpresaCadastrada()).thenReturn(Optional.of(empresa));
         when(mockPessoaService.buscaPessoa(10L)).thenReturn(Optional.of(pessoa));
-        when(mockRepo.buscaUltimaNota(1)).thenReturn(100L); // nota numero 100
+        when(mockNumeracao.proximo(1)).thenReturn(100L); // nota numero 100
         
         //pegar o 'totais' que o serviço cria e retorna esse objeto capturado
         when(mockTotaisService.cadastro(totaisCaptor.capture())).thenAnswer(invocation -> invocation.getArgument(0));
@@ -544,6 +545,7 @@ class NotaFiscalServiceTest {
         EmpresaService mockEmpresaService = mock(EmpresaService.class);
         PessoaService mockPessoaService = mock(PessoaService.class);
         NotaFiscalTotaisServer mockTotaisService = mock(NotaFiscalTotaisServer.class);
+        NumeracaoNfe mockNumeracao = mock(NumeracaoNfe.class);
 
         // cria o service e injeta os mocks
         NotaFiscalService nfeService = new NotaFiscalService();
@@ -551,6 +553,8 @@ class NotaFiscalServiceTest {
         ReflectionTestUtils.setField(nfeService, "empresas", mockEmpresaService);
         ReflectionTestUtils.setField(nfeService, "pessoas", mockPessoaService);
         ReflectionTestUtils.setField(nfeService, "notaTotais", mockTotaisService);
+        ReflectionTestUtils.setField(nfeService, "numeracao", mockNumeracao);
+        ReflectionTestUtils.setField(nfeService, "painel", mock(ContadoresPainel.class));
 
         // comportamento dos mocks — sem empresa cadastrada
         when(mockEmpresaService.verificaEmpresaCadastrada()).thenReturn(Optional.empty());
@@ -572,6 +576,7 @@ class NotaFiscalServiceTest {
         EmpresaService mockEmpresaService = mock(EmpresaService.class);
         PessoaService mockPessoaService = mock(PessoaService.class);
         NotaFiscalTotaisServer mockTotaisService = mock(NotaFiscalTotaisServer.class);
+        NumeracaoNfe mockNumeracao = mock(NumeracaoNfe.class);
 
         // cria o service e injeta os mocks
         NotaFiscalService nfeService = new NotaFiscalService();
@@ -579,6 +584,8 @@ class NotaFiscalServiceTest {
         ReflectionTestUtils.setField(nfeService, "empresas", mockEmpresaService);
         ReflectionTestUtils.setField(nfeService, "pessoas", mockPessoaService);
         ReflectionTestUtils.setField(nfeService, "notaTotais", mockTotaisService);
+        ReflectionTestUtils.setField(nfeService, "numeracao", mockNumeracao);
+        ReflectionTestUtils.setField(nfeService, "painel", mock(ContadoresPainel.class));
 
         // prepara empresa válida
         EmpresaParametro parametro = new EmpresaParametro();
@@ -608,6 +615,7 @@ class NotaFiscalServiceTest {
         EmpresaService mockEmpresaService = mock(EmpresaService.class);
         PessoaService mockPessoaService = mock(PessoaService.class);
         NotaFiscalTotaisServer mockTotaisService = mock(NotaFiscalTotaisServer.class);
+        NumeracaoNfe mockNumeracao = mock(NumeracaoNfe.class);
 
         // cria o service e injeta os mocks
         NotaFiscalService nfeService = new NotaFiscalService();
@@ -615,6 +623,8 @@ class NotaFiscalServiceTest {
         ReflectionTestUtils.setField(nfeService, "empresas", mockEmpresaService);
         ReflectionTestUtils.setField(nfeService, "pessoas", mockPessoaService);
         ReflectionTestUtils.setField(nfeService, "notaTotais", mockTotaisService);
+        ReflectionTestUtils.setField(nfeService, "numeracao", mockNumeracao);
+        ReflectionTestUtils.setField(nfeService, "painel", mock(ContadoresPainel.class));
 
         // prepara empresa com série inválida (0)
         EmpresaParametro parametro = new EmpresaParametro();
@@ -647,6 +657,7 @@ class NotaFiscalServiceTest {
         EmpresaService mockEmpresaService = mock(EmpresaService.class);
         PessoaService mockPessoaService = mock(PessoaService.class);
         NotaFiscalTotaisServer mockTotaisService = mock(NotaFiscalTotaisServer.class);
+        NumeracaoNfe mockNumeracao = mock(NumeracaoNfe.class);
 
         // --- INJEÇÃO ---
         NotaFiscalService nfeService = new NotaFiscalService();
@@ -654,6 +665,8 @@ class NotaFiscalServiceTest {
         ReflectionTestUtils.setField(nfeService, "empresas", mockEmpresaService);
         ReflectionTestUtils.setField(nfeService, "pessoas", mockPessoaService);
         ReflectionTestUtils.setField(nfeService, "notaTotais", mockTotaisService);
+        ReflectionTestUtils.setField(nfeService, "numeracao", mockNumeracao);
+        ReflectionTestUtils.setField(nfeService, "painel", mock(ContadoresPainel.class));
 
         // --- DADOS DE TESTE ---
         EmpresaParametro parametro = new EmpresaParametro();
@@ -672,7 +685,7 @@ class NotaFiscalServiceTest {
         // --- COMPORTAMENTO (when) ---
         when(mockEmpresaService.verificaEmpresaCadastrada()).thenReturn(Optional.of(empresa));
         when(mockPessoaService.buscaPessoa(1L)).thenReturn(Optional.of(pessoa));
-        when(mockRepo.buscaUltimaNota(1)).thenReturn(50L);
+        when(mockNumeracao.proximo(1)).thenReturn(50L);
         when(mockTotaisService.cadastro(totaisCaptor.capture())).thenAnswer(invocation -> invocation.getArgument(0));
         when(mockRepo.save(notaFiscalCaptor.capture())).thenReturn(nfSalva);
 
@@ -698,12 +711,15 @@ class NotaFiscalServiceTest {
         EmpresaService mockEmpresaService = mock(EmpresaService.class);
         PessoaService mockPessoaService = mock(PessoaService.class);
         NotaFiscalTotaisServer mockTotaisService = mock(NotaFiscalTotaisServer.class);
+        NumeracaoNfe mockNumeracao = mock(NumeracaoNfe.class);
 
         NotaFiscalService nfeService = new NotaFiscalService();
         ReflectionTestUtils.setField(nfeService, "notasFiscais", mockRepo);
         ReflectionTestUtils.setField(nfeService, "empresas", mockEmpresaService);
         ReflectionTestUtils.setField(nfeService, "pessoas", mockPessoaService);
         ReflectionTestUtils.setField(nfeService, "notaTotais", mockTotaisService);
+        ReflectionTestUtils.setField(nfeService, "numeracao", mockNumeracao);
+        ReflectionTestUtils.setField(nfeService, "painel", mock(ContadoresPainel.class));
 
         EmpresaParametro parametro = new EmpresaParametro();
         parametro.setSerie_nfe(1);
@@ -721,7 +737,7 @@ class NotaFiscalServiceTest {
         when(mockEmpresaService.verificaEmpresaCadastrada()).thenReturn(Optional.of(empresa));
         when(mockPessoaService.buscaPessoa(1L)).thenReturn(Optional.of(pessoa));
         when(mockTotaisService.cadastro(any(NotaFiscalTotais.class))).thenReturn(totais);
-        when(mockRepo.buscaUltimaNota(1)).thenReturn(70L);
+        when(mockNumeracao.proximo(1)).thenReturn(70L);
         when(mockRepo.save(any(NotaFiscal.class))).thenReturn(nfSalva);
 
         String codigoGerado = nfeService.cadastrar(1L, null, NotaFiscalTipo.SAIDA);
@@ -738,6 +754,7 @@ class NotaFiscalServiceTest {
         EmpresaService mockEmpresaService = mock(EmpresaService.class);
         PessoaService mockPessoaService = mock(PessoaService.class);
         NotaFiscalTotaisServer mockTotaisService = mock(NotaFiscalTotaisServer.class);
+        NumeracaoNfe mockNumeracao = mock(NumeracaoNfe.class);
 
         //injecao
         NotaFiscalService nfeService = new NotaFiscalService();
@@ -745,6 +762,8 @@ class NotaFiscalServiceTest {
         ReflectionTestUtils.setField(nfeService, "empresas", mockEmpresaService);
         ReflectionTestUtils.setField(nfeService, "pessoas", mockPessoaService);
         ReflectionTestUtils.setField(nfeService, "notaTotais", mockTotaisService);
+        ReflectionTestUtils.setField(nfeService, "numeracao", mockNumeracao);
+        ReflectionTestUtils.setField(nfeService, "painel", mock(ContadoresPainel.class));
 
         //dados testes
         EmpresaParametro parametro = new EmpresaParametro();
@@ -779,6 +798,7 @@ class NotaFiscalServiceTest {
         EmpresaService mockEmpresaService = mock(EmpresaService.class);
         PessoaService mockPessoaService = mock(PessoaService.class);
         NotaFiscalTotaisServer mockTotaisService = mock(NotaFiscalTotaisServer.class);
+        NumeracaoNfe mockNumeracao = mock(NumeracaoNfe.class);
 
         // --- INJEÇÃO ---
         NotaFiscalService nfeService = new NotaFiscalService();
@@ -786,6 +806,8 @@ class NotaFiscalServiceTest {
         ReflectionTestUtils.setField(nfeService, "empresas", mockEmpresaService);
         ReflectionTestUtils.setField(nfeService, "pessoas", mockPessoaService);
         ReflectionTestUtils.setField(nfeService, "notaTotais", mockTotaisService);
+        ReflectionTestUtils.setField(nfeService, "numeracao", mockNumeracao);
+        ReflectionTestUtils.setField(nfeService, "painel", mock(ContadoresPainel.class));
 
         // --- DADOS DE TESTE (MOCKS) ---
         EmpresaParametro parametro = new EmpresaParametro();
@@ -800,7 +822,7 @@ class NotaFiscalServiceTest {
         when(mockEmpresaService.verificaEmpresaCadastrada()).thenReturn(Optional.of(empresa));
         when(mockPessoaService.buscaPessoa(10L)).thenReturn(Optional.of(pessoa));
         when(mockTotaisService.cadastro(any(NotaFiscalTotais.class))).thenReturn(totais);
-        when(mockRepo.buscaUltimaNota(1)).thenReturn(100L);
+        when(mockNumeracao.proximo(1)).thenReturn(100L);
 
         when(mockRepo.save(any(NotaFiscal.class)))
             .thenThrow(new RuntimeException("Falha no mock de save da nota"));
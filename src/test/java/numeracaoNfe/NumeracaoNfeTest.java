@@ -0,0 +1,189 @@
+package numeracaoNfe;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import net.originmobi.pdv.repository.notafiscal.NotaFiscalNumeracaoRepository;
+import net.originmobi.pdv.service.notafiscal.NumeracaoNfe;
+
+@DisplayName("NumeracaoNfe — números das notas por série")
+public class NumeracaoNfeTest {
+
+    @Test
+    public void testProximo_SerieComContador_Incrementa() {
+        TabelaNumeracao tabela = new TabelaNumeracao();
+        tabela.confirmados.put(1, 99L);
+        NumeracaoNfe numeracao = new NumeracaoNfe(tabela);
+
+        assertEquals(100L, numeracao.proximo(1));
+        tabela.confirma();
+        assertEquals(101L, numeracao.proximo(1));
+        tabela.confirma();
+    }
+
+    @Test
+    public void testProximo_NotaDesfeita_NumeroVoltaParaAProxima() {
+        TabelaNumeracao tabela = new TabelaNumeracao();
+        tabela.confirmados.put(1, 10L);
+        NumeracaoNfe numeracao = new NumeracaoNfe(tabela);
+
+        assertEquals(11L, numeracao.proximo(1));
+        tabela.desfaz();
+
+        assertEquals(11L, numeracao.proximo(1));
+        tabela.confirma();
+    }
+
+    @Test
+    public void testProximo_SerieSemContador_ContinuaDasNotasExistentes() {
+        TabelaNumeracao tabela = new TabelaNumeracao();
+        tabela.maiorNumeroNotas.put(3, 41L);
+        NumeracaoNfe numeracao = new NumeracaoNfe(tabela);
+
+        assertEquals(42L, numeracao.proximo(3));
+        tabela.confirma();
+        assertEquals(1L, numeracao.proximo(4));
+        tabela.confirma();
+    }
+
+    /*
+     * Confere só a sequência de chamadas do NumeracaoNfe com muitas threads,
+     * contra a TabelaNumeracao abaixo. Não prova que o MySQL trava a linha
+     * como ela supõe: isso depende do banco real e não é testado aqui
+     */
+    @Test
+    public void testProximo_MuitasThreads_NumerosUnicosESemBuracos() throws Exception {
+        TabelaNumeracao tabela = new TabelaNumeracao();
+        tabela.maiorNumeroNotas.put(2, 41L);
+        NumeracaoNfe numeracao = new NumeracaoNfe(tabela);
+
+        int threads = 16;
+        int notasPorThread = 500;
+        Map<Integer, List<Long>> confirmadas = new ConcurrentHashMap<>();
+        confirmadas.put(1, Collections.synchronizedList(new ArrayList<>()));
+        confirmadas.put(2, Collections.synchronizedList(new ArrayList<>()));
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch largada = new CountDownLatch(1);
+        List<Future<?>> tarefas = new ArrayList<>();
+
+        try {
+            for (int t = 0; t < threads; t++) {
+                tarefas.add(executor.submit(() -> {
+                    largada.await();
+
+                    for (int i = 0; i < notasPorThread; i++) {
+                        // as duas séries começam sem contador e são criadas na disputa
+                        int serie = ThreadLocalRandom.current().nextBoolean() ? 1 : 2;
+                        long numero = numeracao.proximo(serie);
+
+                        // uma em cada dez notas falha ao gravar
+                        if (ThreadLocalRandom.current().nextInt(10) == 0) {
+                            tabela.desfaz();
+                        } else {
+                            confirmadas.get(serie).add(numero);
+                            tabela.confirma();
+                        }
+                    }
+                    return null;
+                }));
+            }
+
+            largada.countDown();
+            for (Future<?> tarefa : tarefas)
+                tarefa.get();
+        } finally {
+            executor.shutdown();
+        }
+
+        assertSequencia(confirmadas.get(1), 1);
+        assertSequencia(confirmadas.get(2), 42);
+        assertTrue(confirmadas.get(1).size() + confirmadas.get(2).size() > threads * notasPorThread / 2);
+    }
+
+    private static void assertSequencia(List<Long> numeros, long primeiro) {
+        List<Long> ordenados = new ArrayList<>(numeros);
+        Collections.sort(ordenados);
+
+        for (int i = 0; i < ordenados.size(); i++)
+            assertEquals(primeiro + i, ordenados.get(i), "número repetido ou pulado na posição " + i);
+    }
+
+    /*
+     * Tabela em memória que imita o que se espera da linha no InnoDB: o
+     * update trava a série até o fim da transação da thread, a leitura vê o
+     * valor da própria transação e o rollback devolve o valor confirmado. É
+     * um modelo escrito à mão, não o banco; insert ignore, gap locks e o
+     * isolamento real do MySQL ficam de fora
+     */
+    static class TabelaNumeracao implements NotaFiscalNumeracaoRepository {
+
+        final Map<Integer, Long> confirmados = new ConcurrentHashMap<>();
+        final Map<Integer, Long> maiorNumeroNotas = new ConcurrentHashMap<>();
+
+        private final Map<Integer, ReentrantLock> travas = new ConcurrentHashMap<>();
+        private final ThreadLocal<Map<Integer, Long>> transacao = ThreadLocal.withInitial(HashMap::new);
+
+        @Override
+        public int incrementa(int serie) {
+            Map<Integer, Long> alteradas = transacao.get();
+
+            if (!alteradas.containsKey(serie)) {
+                ReentrantLock trava = travas.computeIfAbsent(serie, s -> new ReentrantLock());
+                trava.lock();
+
+                Long atual = confirmados.get(serie);
+                if (atual == null) {
+                    trava.unlock();
+                    return 0;
+                }
+                alteradas.put(serie, atual);
+            }
+
+            alteradas.merge(serie, 1L, Long::sum);
+            return 1;
+        }
+
+        @Override
+        public Long ultimo(int serie) {
+            Long alterado = transacao.get().get(serie);
+            return alterado != null ? alterado : confirmados.get(serie);
+        }
+
+        @Override
+        public int inicia(int serie) {
+            return confirmados.putIfAbsent(serie, maiorNumeroNotas.getOrDefault(serie, 0L)) == null ? 1 : 0;
+        }
+
+        void confirma() {
+            confirmados.putAll(transacao.get());
+            termina();
+        }
+
+        void desfaz() {
+            termina();
+        }
+
+        private void termina() {
+            transacao.get().keySet().forEach(serie -> travas.get(serie).unlock());
+            transacao.get().clear();
+        }
+
+    }
+
+}
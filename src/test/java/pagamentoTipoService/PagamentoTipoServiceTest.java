@@ -0,0 +1,78 @@
+package pagamentoTipoService;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import net.originmobi.pdv.model.PagamentoTipo;
+import net.originmobi.pdv.repository.PagamentoTipoRespository;
+import net.originmobi.pdv.service.PagamentoTipoService;
+import net.originmobi.pdv.service.pagamento.PlanoParcelamento;
+import net.originmobi.pdv.utilitarios.Dinheiro;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("PagamentoTipoService — testes unitários")
+public class PagamentoTipoServiceTest {
+
+    @InjectMocks
+    private PagamentoTipoService pagamentoTipoService;
+
+    @Mock private PagamentoTipoRespository pagamentotipo;
+
+    @Test
+    public void testPlano_CompilaPrazosEVencimentos() {
+        PlanoParcelamento plano = PlanoParcelamento.compila("00/30/60");
+
+        assertEquals(3, plano.getQtdParcelas());
+        assertTrue(plano.isAvista(0));
+        assertFalse(plano.isAvista(1));
+
+        LocalDate base = LocalDate.of(2024, 1, 31);
+        assertEquals(Arrays.asList(base, LocalDate.of(2024, 3, 1), LocalDate.of(2024, 3, 31)),
+                plano.vencimentos(base));
+    }
+
+    @Test
+    public void testPlano_DivideEmCentavosSemSobra() {
+        Dinheiro[] partes = PlanoParcelamento.compila("30/60/90").divide(Dinheiro.de(10.0));
+
+        assertEquals(Dinheiro.deCentavos(334), partes[0]);
+        assertEquals(Dinheiro.deCentavos(333), partes[1]);
+        assertEquals(Dinheiro.deCentavos(333), partes[2]);
+        assertEquals(Dinheiro.de(10.0), partes[0].mais(partes[1]).mais(partes[2]));
+    }
+
+    @Test
+    public void testPlano_FormaInvalida_LancaExcecao() {
+        assertThrows(IllegalArgumentException.class, () -> PlanoParcelamento.compila("00/trinta"));
+        assertThrows(IllegalArgumentException.class, () -> PlanoParcelamento.compila(" "));
+    }
+
+    @Test
+    public void testPlano_ReaproveitaAteEditarOPagamentoTipo() {
+        PagamentoTipo tipo = new PagamentoTipo();
+        tipo.setCodigo(5L);
+        tipo.setFormaPagamento("00/30");
+
+        PlanoParcelamento primeiro = pagamentoTipoService.plano(tipo);
+        assertSame(primeiro, pagamentoTipoService.plano(tipo));
+
+        tipo.setFormaPagamento("30/60/90");
+        pagamentoTipoService.cadastrar(tipo);
+
+        PlanoParcelamento editado = pagamentoTipoService.plano(tipo);
+        assertNotSame(primeiro, editado);
+        assertEquals(3, editado.getQtdParcelas());
+        assertEquals(3, tipo.getQtd_parcelas());
+        verify(pagamentotipo).save(tipo);
+    }
+}
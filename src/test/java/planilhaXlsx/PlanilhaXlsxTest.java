@@ -0,0 +1,97 @@
+package planilhaXlsx;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+
+import net.originmobi.pdv.service.exportacao.PlanilhaXlsx;
+
+@DisplayName("PlanilhaXlsx — testes unitários")
+public class PlanilhaXlsxTest {
+
+    @Test
+    public void testClose_GeraAsPartesDaPlanilha() throws Exception {
+        ByteArrayOutputStream saida = new ByteArrayOutputStream();
+        try (PlanilhaXlsx planilha = new PlanilhaXlsx(saida)) {
+            planilha.cabecalho(new String[] { "venda", "cliente" });
+            planilha.linha(new Object[] { 1, "Maria" });
+        }
+
+        Map<String, String> partes = partes(saida.toByteArray());
+
+        assertEquals(
+                Set.of("xl/worksheets/sheet1.xml", "[Content_Types].xml", "_rels/.rels",
+                        "xl/workbook.xml", "xl/_rels/workbook.xml.rels", "xl/styles.xml"),
+                partes.keySet());
+
+        // todas as partes são XML bem formado
+        for (String xml : partes.values())
+            assertNotNull(documento(xml));
+
+        assertTrue(partes.get("xl/workbook.xml").contains("<sheet name=\"Planilha1\" sheetId=\"1\" r:id=\"rId1\"/>"));
+    }
+
+    @Test
+    public void testLinha_TiposDeValor_CelulasCorrespondentes() throws Exception {
+        ByteArrayOutputStream saida = new ByteArrayOutputStream();
+        try (PlanilhaXlsx planilha = new PlanilhaXlsx(saida)) {
+            planilha.cabecalho(new String[] { "codigo", "valor", "data", "vencimento", "observacao", "vazio" });
+            planilha.linha(new Object[] { 7, 10.5, Timestamp.valueOf("2026-01-01 12:00:00"), Date.valueOf("2026-01-02"),
+                    "Troca <urgente> & rápida\u0001", null });
+        }
+
+        String aba = partes(saida.toByteArray()).get("xl/worksheets/sheet1.xml");
+        documento(aba);
+
+        assertTrue(aba.contains("<row r=\"1\"><c t=\"inlineStr\"><is><t xml:space=\"preserve\">codigo</t></is></c>"));
+        assertTrue(aba.contains("<row r=\"2\"><c><v>7</v></c><c><v>10.5</v></c>"
+                + "<c s=\"2\"><v>46023.5</v></c><c s=\"1\"><v>46024</v></c>"
+                + "<c t=\"inlineStr\"><is><t xml:space=\"preserve\">Troca &lt;urgente&gt; &amp; rápida</t></is></c>"
+                + "<c/></row>"), aba);
+    }
+
+    @Test
+    public void testClose_SemLinhas_PlanilhaComUmaAbaVazia() throws Exception {
+        ByteArrayOutputStream saida = new ByteArrayOutputStream();
+        new PlanilhaXlsx(saida).close();
+
+        Map<String, String> partes = partes(saida.toByteArray());
+
+        assertEquals("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>"
+                + "<worksheet xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\"><sheetData>"
+                + "</sheetData></worksheet>", partes.get("xl/worksheets/sheet1.xml"));
+    }
+
+    private static Map<String, String> partes(byte[] xlsx) throws Exception {
+        Map<String, String> partes = new LinkedHashMap<>();
+
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(xlsx), StandardCharsets.UTF_8)) {
+            ZipEntry parte;
+            while ((parte = zip.getNextEntry()) != null)
+                partes.put(parte.getName(), new String(zip.readAllBytes(), StandardCharsets.UTF_8));
+        }
+
+        return partes;
+    }
+
+    private static Document documento(String xml) throws Exception {
+        return DocumentBuilderFactory.newInstance().newDocumentBuilder()
+                .parse(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+    }
+
+}
@@ -0,0 +1,304 @@
+package produtoService;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import net.originmobi.pdv.enumerado.EntradaSaida;
+import net.originmobi.pdv.enumerado.produto.EtiquetaBalancaTipo;
+import net.originmobi.pdv.enumerado.produto.ProdutoBalanca;
+import net.originmobi.pdv.enumerado.produto.ProdutoSubstTributaria;
+import net.originmobi.pdv.repository.ProdutoRepository;
+import net.originmobi.pdv.service.ProdutoService;
+import net.originmobi.pdv.service.produto.CatalogoVenda;
+import net.originmobi.pdv.service.produto.EtiquetaBalanca;
+import net.originmobi.pdv.service.produto.LeituraCodigoBarras;
+import net.originmobi.pdv.service.produto.ProdutoCatalogo;
+import net.originmobi.pdv.utilitarios.Dinheiro;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("ProdutoService — testes unitários")
+public class ProdutoServiceTest {
+
+    @InjectMocks
+    private ProdutoService produtoService;
+
+    @Mock private ProdutoRepository produtos;
+
+    @Spy
+    private EtiquetaBalanca etiquetas = new EtiquetaBalanca("2", 1, 5, 7, 5, EtiquetaBalancaTipo.PRECO);
+
+    private final List<ProdutoCatalogo> balanca = Arrays.asList(
+            new ProdutoCatalogo(12L, null, "Queijo Prato kg", 45.9, ProdutoBalanca.SIM),
+            new ProdutoCatalogo(13L, "2000990012340", "Pão de Queijo 1kg", 19.9, ProdutoBalanca.NAO),
+            new ProdutoCatalogo(14L, null, "Presunto kg", 39.9, ProdutoBalanca.NAO));
+
+    private final List<ProdutoCatalogo> vendaveis = Arrays.asList(
+            new ProdutoCatalogo(1L, "7891000100103", "Arroz", 20.0, ProdutoBalanca.NAO),
+            new ProdutoCatalogo(3L, "78910001", "Feijão Carioca 1kg", 8.5, ProdutoBalanca.NAO),
+            new ProdutoCatalogo(4L, null, "Feijão Preto 1kg", 9.0, ProdutoBalanca.NAO),
+            new ProdutoCatalogo(2L, null, "Queijo", 45.9, ProdutoBalanca.SIM));
+
+    @BeforeEach
+    public void setUp() {
+        ReflectionTestUtils.setField(produtoService, "maxProdutosCatalogo", 100);
+        ReflectionTestUtils.setField(produtoService, "segundosValidadeCatalogo", 600L);
+    }
+
+    @Test
+    public void testCatalogoVenda_ReaproveitaEntreRequisicoes() {
+        when(produtos.catalogoVenda()).thenReturn(vendaveis);
+
+        CatalogoVenda primeiro = produtoService.catalogoVenda();
+        CatalogoVenda segundo = produtoService.catalogoVenda();
+
+        assertSame(primeiro, segundo);
+        assertEquals(4, segundo.getTamanho());
+        assertEquals("Queijo", segundo.busca(2L).get().getDescricao());
+        verify(produtos, times(1)).catalogoVenda();
+    }
+
+    @Test
+    public void testCatalogoVenda_MergerGeraNovaVersao() {
+        when(produtos.catalogoVenda()).thenReturn(vendaveis);
+
+        CatalogoVenda antes = produtoService.catalogoVenda();
+
+        String msg = produtoService.merger(1L, 1L, 1L, 1L, 0, "Arroz", 10.0, 22.0, null, "SIM", "ATIVO", "UN",
+                ProdutoSubstTributaria.NAO, "", "", 1L, 1L, "SIM", null);
+
+        CatalogoVenda depois = produtoService.catalogoVenda();
+
+        assertEquals("Produto atualizado com sucesso", msg);
+        assertNotSame(antes, depois);
+        assertTrue(depois.getVersao() > antes.getVersao());
+        verify(produtos, times(2)).catalogoVenda();
+    }
+
+    @Test
+    public void testCatalogoVenda_AcimaDoLimite_NaoMantemEmMemoria() {
+        ReflectionTestUtils.setField(produtoService, "maxProdutosCatalogo", 1);
+        when(produtos.catalogoVenda()).thenReturn(vendaveis);
+
+        assertEquals(4, produtoService.catalogoVenda().getTamanho());
+        assertEquals(4, produtoService.catalogoVenda().getTamanho());
+
+        verify(produtos, times(2)).catalogoVenda();
+    }
+
+    @Test
+    public void testCatalogoVenda_Vencido_Recarrega() {
+        ReflectionTestUtils.setField(produtoService, "segundosValidadeCatalogo", 0L);
+        when(produtos.catalogoVenda()).thenReturn(vendaveis);
+
+        produtoService.catalogoVenda();
+        produtoService.catalogoVenda();
+
+        verify(produtos, times(2)).catalogoVenda();
+    }
+
+    @Test
+    public void testCatalogoVenda_BancoIndisponivelAposReinicio_UsaCopiaEmDisco(@TempDir Path pasta) {
+        ReflectionTestUtils.setField(produtoService, "diretorioContingencia", pasta.toString());
+        ReflectionTestUtils.setField(produtoService, "segundosValidadeCatalogo", 0L);
+        when(produtos.catalogoVenda()).thenReturn(vendaveis)
+                .thenThrow(new CannotGetJdbcConnectionException("Communications link failure"));
+
+        produtoService.catalogoVenda();
+
+        // reinício: nada em memória, só a cópia gravada na última carga
+        ReflectionTestUtils.setField(produtoService, "catalogo", null);
+        ReflectionTestUtils.setField(produtoService, "ultimoCatalogo", null);
+
+        CatalogoVenda reserva = produtoService.catalogoVenda();
+
+        assertEquals(vendaveis.size(), reserva.getTamanho());
+        assertEquals(vendaveis.get(0).getDescricao(), reserva.busca(vendaveis.get(0).getCodigo()).get().getDescricao());
+    }
+
+    @Test
+    public void testCatalogoVenda_BancoIndisponivelSemCopia_PropagaErro() {
+        when(produtos.catalogoVenda()).thenThrow(new CannotGetJdbcConnectionException("Communications link failure"));
+
+        assertThrows(CannotGetJdbcConnectionException.class, () -> produtoService.catalogoVenda());
+    }
+
+    @Test
+    public void testMerger_ErroAoAtualizar_MantemCatalogo() {
+        when(produtos.catalogoVenda()).thenReturn(vendaveis);
+        doThrow(new RuntimeException("falha")).when(produtos).atualiza(anyLong(), anyLong(), anyLong(), anyLong(),
+                anyInt(), any(), any(), any(), any(), any(), any(), any(), anyInt(), any(), any(), any(), any(),
+                any(), any());
+
+        CatalogoVenda antes = produtoService.catalogoVenda();
+
+        String msg = produtoService.merger(1L, 1L, 1L, 1L, 0, "Arroz", 10.0, 22.0, null, "SIM", "ATIVO", "UN",
+                ProdutoSubstTributaria.NAO, "", "", 1L, 1L, "SIM", null);
+
+        assertEquals("Erro a atualizar produto, chame o suporte", msg);
+        assertSame(antes, produtoService.catalogoVenda());
+    }
+
+    @Test
+    public void testLookup_CodigoDeBarrasECodigo_SemConsultarNovamente() {
+        when(produtos.catalogoVenda()).thenReturn(vendaveis);
+
+        List<ProdutoCatalogo> porBarras = produtoService.lookup("7891000100103", 20);
+        List<ProdutoCatalogo> porBarrasCurto = produtoService.lookup(" 78910001 ", 20);
+        List<ProdutoCatalogo> porCodigo = produtoService.lookup("2", 20);
+
+        assertEquals(1L, porBarras.get(0).getCodigo().longValue());
+        assertEquals(3L, porBarrasCurto.get(0).getCodigo().longValue());
+        assertEquals("Queijo", porCodigo.get(0).getDescricao());
+        verify(produtos, times(1)).catalogoVenda();
+        verifyNoMoreInteractions(produtos);
+    }
+
+    @Test
+    public void testLookup_PrefixoDasPalavrasDaDescricao() {
+        when(produtos.catalogoVenda()).thenReturn(vendaveis);
+
+        List<ProdutoCatalogo> feijoes = produtoService.lookup("feij", 20);
+        List<ProdutoCatalogo> preto = produtoService.lookup("FEIJAO pre", 20);
+        List<ProdutoCatalogo> limitado = produtoService.lookup("1k", 1);
+
+        assertEquals(Arrays.asList(3L, 4L), Arrays.asList(feijoes.get(0).getCodigo(), feijoes.get(1).getCodigo()));
+        assertEquals(1, preto.size());
+        assertEquals(4L, preto.get(0).getCodigo().longValue());
+        assertEquals(1, limitado.size());
+        assertTrue(produtoService.lookup("carne", 20).isEmpty());
+        assertTrue(produtoService.lookup("  ", 20).isEmpty());
+    }
+
+    @Test
+    public void testMerger_CodigoDeBarrasInvalido_NaoGrava() {
+        String msg = produtoService.merger(0L, 1L, 1L, 1L, 0, "Arroz", 10.0, 22.0, null, "SIM", "ATIVO", "UN",
+                ProdutoSubstTributaria.NAO, "", "", 1L, 1L, "SIM", "7891000100104");
+
+        assertEquals("Código de barras 7891000100104 inválido, verifique", msg);
+        verifyNoInteractions(produtos);
+    }
+
+    @Test
+    public void testMerger_CodigoDeBarrasDeOutroProduto_NaoGrava() {
+        when(produtos.codigoPorCodigoBarras("7891000100103")).thenReturn(1L);
+
+        String msg = produtoService.merger(5L, 1L, 1L, 1L, 0, "Arroz", 10.0, 22.0, null, "SIM", "ATIVO", "UN",
+                ProdutoSubstTributaria.NAO, "", "", 1L, 1L, "SIM", "7891000100103");
+
+        assertEquals("Código de barras 7891000100103 já cadastrado no produto 1", msg);
+        verify(produtos, never()).atualiza(anyLong(), anyLong(), anyLong(), anyLong(), anyInt(), any(), any(),
+                any(), any(), any(), any(), any(), anyInt(), any(), any(), any(), any(), any(), any());
+    }
+
+    @Test
+    public void testMerger_MesmoCodigoDeBarrasDoProduto_Atualiza() {
+        when(produtos.codigoPorCodigoBarras("7891000100103")).thenReturn(1L);
+
+        String msg = produtoService.merger(1L, 1L, 1L, 1L, 0, "Arroz", 10.0, 22.0, null, "SIM", "ATIVO", "UN",
+                ProdutoSubstTributaria.NAO, "", "", 1L, 1L, "SIM", "7891000100103");
+
+        assertEquals("Produto atualizado com sucesso", msg);
+        verify(produtos).atualiza(eq(1L), anyLong(), anyLong(), anyLong(), anyInt(), any(), any(), any(), any(),
+                any(), any(), any(), anyInt(), any(), any(), any(), any(), any(), eq("7891000100103"));
+    }
+
+    @Test
+    public void testLeCodigoBarras_EtiquetaComPreco_ValorDaEtiqueta() {
+        when(produtos.catalogoVenda()).thenReturn(balanca);
+
+        LeituraCodigoBarras leitura = produtoService.leCodigoBarras("2000120012349").get();
+
+        assertEquals(12L, leitura.getProduto().getCodigo().longValue());
+        assertEquals(Dinheiro.de(12.34), leitura.getValorBalanca());
+        assertTrue(leitura.isEtiquetaBalanca());
+    }
+
+    @Test
+    public void testLeCodigoBarras_EtiquetaComPeso_MultiplicaPeloPrecoDoQuilo() {
+        ReflectionTestUtils.setField(produtoService, "etiquetas",
+                new EtiquetaBalanca("2", 1, 5, 7, 5, EtiquetaBalancaTipo.PESO));
+        when(produtos.catalogoVenda()).thenReturn(balanca);
+
+        // 0,750 kg a 45,90 = 34,425
+        LeituraCodigoBarras leitura = produtoService.leCodigoBarras("2000120007505").get();
+
+        assertEquals(Dinheiro.de(34.43), leitura.getValorBalanca());
+    }
+
+    @Test
+    public void testLeCodigoBarras_PluNaoCadastrado_ProcuraComoCodigoDeBarras() {
+        when(produtos.catalogoVenda()).thenReturn(balanca);
+
+        LeituraCodigoBarras leitura = produtoService.leCodigoBarras("2000990012340").get();
+
+        assertEquals(13L, leitura.getProduto().getCodigo().longValue());
+        assertFalse(leitura.isEtiquetaBalanca());
+    }
+
+    @Test
+    public void testLeCodigoBarras_ProdutoSemBalancaOuDigitoErrado_NaoEncontra() {
+        when(produtos.catalogoVenda()).thenReturn(balanca);
+
+        // PLU 14 existe mas o produto não é de balança
+        assertFalse(produtoService.leCodigoBarras("2000140012343").isPresent());
+        assertFalse(produtoService.leCodigoBarras("2000120012348").isPresent());
+        assertFalse(produtoService.leCodigoBarras("abc").isPresent());
+    }
+
+    @Test
+    public void testEtiquetaBalanca_LeiauteInvalido_LancaExcecao() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new EtiquetaBalanca("2", 1, 5, 5, 5, EtiquetaBalancaTipo.PRECO));
+        assertThrows(IllegalArgumentException.class,
+                () -> new EtiquetaBalanca("2", 1, 5, 7, 6, EtiquetaBalancaTipo.PRECO));
+        assertThrows(IllegalArgumentException.class,
+                () -> new EtiquetaBalanca("20", 1, 5, 7, 5, EtiquetaBalancaTipo.PRECO));
+    }
+
+    @Test
+    public void testMovimentaEstoque_TravaOsSaldosNaOrdemDoCodigoAntesDaBaixa() {
+        // itens lançados fora de ordem
+        when(produtos.produtosEstoqueVenda(20L)).thenReturn(Arrays.asList(9L, 3L, 5L));
+        when(produtos.saldoEstoqueVenda(20L)).thenReturn(Arrays.asList(
+                new Object[] { 9L, "Arroz", 1, 10 }, new Object[] { 3L, "Feijão", 2, 10 },
+                new Object[] { 5L, "Café", 1, 10 }));
+        when(produtos.baixaEstoqueVenda(20L)).thenReturn(3);
+
+        produtoService.movimentaEstoque(20L, EntradaSaida.SAIDA);
+
+        InOrder ordem = inOrder(produtos);
+        ordem.verify(produtos).travaEstoque(Arrays.asList(3L, 5L, 9L));
+        ordem.verify(produtos).saldoEstoqueVenda(20L);
+        ordem.verify(produtos).baixaEstoqueVenda(20L);
+    }
+
+    @Test
+    public void testMovimentaEstoque_Estorno_TravaOsSaldosAntes() {
+        when(produtos.produtosEstoqueVenda(20L)).thenReturn(Arrays.asList(9L, 3L));
+
+        produtoService.movimentaEstoque(20L, EntradaSaida.ENTRADA);
+
+        InOrder ordem = inOrder(produtos);
+        ordem.verify(produtos).travaEstoque(Arrays.asList(3L, 9L));
+        ordem.verify(produtos).estornaEstoqueVenda(20L);
+    }
+
+}
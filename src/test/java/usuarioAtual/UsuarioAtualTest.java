@@ -0,0 +1,113 @@
+package usuarioAtual;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.util.Collections;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import net.originmobi.pdv.model.Usuario;
+import net.originmobi.pdv.security.UsuarioAtual;
+import net.originmobi.pdv.security.UsuarioSistema;
+import net.originmobi.pdv.service.UsuarioService;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("UsuarioAtual — testes unitários")
+public class UsuarioAtualTest {
+
+    @InjectMocks
+    private UsuarioAtual usuarioAtual;
+
+    @Mock
+    private UsuarioService usuarios;
+
+    @AfterEach
+    void limpa() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    public void testGetUsuario_UsuarioDaSessao_NaoConsultaBanco() {
+        autentica("ana", 7L);
+
+        Usuario usuario = usuarioAtual.getUsuario();
+
+        assertEquals(Long.valueOf(7L), usuario.getCodigo());
+        assertEquals("ana", usuario.getUser());
+        assertEquals("ana", usuarioAtual.getLogin());
+        verifyNoInteractions(usuarios);
+    }
+
+    @Test
+    public void testGetUsuario_AutenticacaoSemUsuarioSistema_ConsultaPeloLogin() {
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken("caixa1", null, Collections.emptyList()));
+        Usuario usuario = new Usuario();
+        when(usuarios.buscaUsuario("caixa1")).thenReturn(usuario);
+
+        assertSame(usuario, usuarioAtual.getUsuario());
+    }
+
+    @Test
+    public void testGetUsuario_SemAutenticacao_LancaExcecao() {
+        assertThrows(IllegalStateException.class, () -> usuarioAtual.getLogin());
+    }
+
+    @Test
+    public void testGetUsuario_RequisicoesSimultaneas_CadaUmaVeSeuUsuario() throws Exception {
+        ExecutorService threads = Executors.newFixedThreadPool(2);
+        CountDownLatch autenticadas = new CountDownLatch(2);
+
+        try {
+            Future<String> ana = threads.submit(requisicao("ana", 1L, autenticadas));
+            Future<String> bia = threads.submit(requisicao("bia", 2L, autenticadas));
+
+            assertEquals("ana:1", ana.get(5, TimeUnit.SECONDS));
+            assertEquals("bia:2", bia.get(5, TimeUnit.SECONDS));
+        } finally {
+            threads.shutdownNow();
+        }
+    }
+
+    // autentica e só lê o usuário depois que a outra requisição também autenticou
+    private Callable<String> requisicao(String login, Long codigo, CountDownLatch autenticadas) {
+        return () -> {
+            try {
+                autentica(login, codigo);
+                autenticadas.countDown();
+                autenticadas.await(5, TimeUnit.SECONDS);
+
+                Usuario usuario = usuarioAtual.getUsuario();
+                return usuarioAtual.getLogin() + ":" + usuario.getCodigo();
+            } finally {
+                SecurityContextHolder.clearContext();
+            }
+        };
+    }
+
+    private static void autentica(String login, Long codigo) {
+        Usuario usuario = new Usuario();
+        usuario.setCodigo(codigo);
+        usuario.setUser(login);
+
+        UsuarioSistema principal = new UsuarioSistema(login, login, "senha", Collections.emptyList(), usuario);
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities()));
+    }
+
+}
@@ -0,0 +1,168 @@
+package vendaProdutoService;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import bancoH2.BancoH2;
+import net.originmobi.pdv.model.Produto;
+import net.originmobi.pdv.model.VendaProduto;
+import net.originmobi.pdv.repository.ProdutoRepository;
+import net.originmobi.pdv.repository.VendaProdutosRepository;
+import net.originmobi.pdv.repository.VendaRepository;
+import net.originmobi.pdv.service.VendaProdutoService;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("VendaProdutoService — testes unitários")
+public class VendaProdutoServiceTest {
+
+    @InjectMocks
+    private VendaProdutoService vendaProdutoService;
+
+    @Mock private VendaProdutosRepository vendaProdutos;
+    @Mock private VendaRepository vendas;
+    @Mock private ProdutoRepository produtos;
+    @Mock private JdbcTemplate jdbc;
+
+    @BeforeEach
+    void setup() {
+        lenient().when(produtos.findByCodigoIn(anyLong())).thenAnswer(inv -> {
+            Produto produto = new Produto();
+            produto.setCodigo(inv.getArgument(0));
+            produto.setValor_venda(2.5);
+            return produto;
+        });
+    }
+
+    @Test
+    public void testSalvar_SomaOValorDoItemSemLerOTotal() {
+        vendaProdutoService.salvar(new VendaProduto(10L, 1L, 0.0, 3, null));
+        // item pesado, vale o valor da balança
+        vendaProdutoService.salvar(new VendaProduto(11L, 1L, 1.75, 2, null));
+
+        verify(vendas).somaValorProdutos(1L, 7.5);
+        verify(vendas).somaValorProdutos(1L, 3.5);
+        verify(vendas, never()).verificaValorProdutos(anyLong());
+        verify(vendas, never()).atualizaValorProdutos(anyDouble(), anyLong());
+    }
+
+    @Test
+    public void testSalvar_GuardaOValorDeVendaDoMomento() {
+        VendaProduto item = new VendaProduto(10L, 2L, 0.0, 3, null);
+
+        vendaProdutoService.salvar(item);
+
+        assertEquals(2.5, item.getValor_unitario(), 0.0001);
+        verify(vendaProdutos).save(item);
+    }
+
+    @Test
+    public void testSalvarLote_UmUpdatePorVenda() {
+        vendaProdutoService.salvarLote(Arrays.asList(new VendaProduto(10L, 1L, 0.0, 2, 2.5),
+                new VendaProduto(11L, 1L, 0.0, 1, 4.0), new VendaProduto(10L, 2L, 1.2, 1, 2.5)));
+
+        verify(jdbc).batchUpdate(startsWith("insert into venda_produtos"), any(BatchPreparedStatementSetter.class));
+        verify(vendas).somaValorProdutos(1L, 9.0);
+        verify(vendas).somaValorProdutos(2L, 1.2);
+        verifyNoMoreInteractions(vendas);
+    }
+
+    @Test
+    public void testRemoveProduto_EstornaAntesDeRemover() {
+        vendaProdutoService.removeProduto(5L);
+
+        // o estorno lê o valor gravado na linha, que precisa existir ainda
+        InOrder ordem = inOrder(vendaProdutos);
+        ordem.verify(vendaProdutos).estornaValorProduto(5L);
+        ordem.verify(vendaProdutos).removeProduto(5L);
+        verifyNoInteractions(produtos);
+    }
+
+    /*
+     * Lotes gravados e itens removidos ao mesmo tempo, contra um banco
+     * transacional: o total de cada venda é o inicial mais o que entrou menos
+     * o que saiu, e bate com a soma dos itens que ficaram
+     */
+    @Test
+    public void testSalvarLoteERemoveProduto_Concorrentes_TotalNaoDesvia() throws Exception {
+        try (BancoH2 banco = new BancoH2("vendaProdutos")) {
+            VendaProdutoService servico = new VendaProdutoService();
+            ReflectionTestUtils.setField(servico, "vendaProdutos", banco.repositorio(VendaProdutosRepository.class));
+            ReflectionTestUtils.setField(servico, "vendas", banco.repositorio(VendaRepository.class));
+            ReflectionTestUtils.setField(servico, "jdbc", banco.jdbc());
+
+            int itensIniciais = 20;
+            banco.jdbc().update("insert into produto (codigo) values (10), (11), (12)");
+            banco.jdbc().update("insert into venda (codigo, valor_produtos) values (1, ?), (2, 0.0)", itensIniciais * 2.0);
+            for (int i = 0; i < itensIniciais; i++)
+                banco.jdbc().update("insert into venda_produtos (produto_codigo, venda_codigo, qtd, valor_unitario) values (10, 1, 1, 2.0)");
+            List<Long> iniciais = banco.jdbc().queryForList("select codigo from venda_produtos", Long.class);
+
+            int lotes = 20;
+            ExecutorService executor = Executors.newFixedThreadPool(16);
+            CountDownLatch largada = new CountDownLatch(1);
+            List<Future<?>> tarefas = new ArrayList<>();
+
+            for (int t = 0; t < lotes; t++) {
+                tarefas.add(executor.submit(() -> {
+                    largada.await();
+                    // 2 x 2,5 na venda 1 e um item pesado de 1,5 na venda 2
+                    return banco.emTransacao(status -> {
+                        servico.salvarLote(Arrays.asList(new VendaProduto(11L, 1L, 0.0, 2, 2.5),
+                                new VendaProduto(12L, 2L, 1.5, 1, 3.0)));
+                        return null;
+                    });
+                }));
+            }
+            for (Long codigo : iniciais) {
+                tarefas.add(executor.submit(() -> {
+                    largada.await();
+                    return banco.emTransacao(status -> {
+                        servico.removeProduto(codigo);
+                        return null;
+                    });
+                }));
+            }
+
+            largada.countDown();
+            for (Future<?> tarefa : tarefas)
+                tarefa.get(60, TimeUnit.SECONDS);
+            executor.shutdown();
+
+            assertEquals(itensIniciais * 2.0 + lotes * 5.0 - itensIniciais * 2.0, valorProdutos(banco, 1L), 0.0001);
+            assertEquals(lotes * 1.5, valorProdutos(banco, 2L), 0.0001);
+            assertEquals(somaDosItens(banco, 1L), valorProdutos(banco, 1L), 0.0001);
+            assertEquals(somaDosItens(banco, 2L), valorProdutos(banco, 2L), 0.0001);
+        }
+    }
+
+    private static double valorProdutos(BancoH2 banco, Long venda) {
+        return banco.jdbc().queryForObject("select valor_produtos from venda where codigo = ?", Double.class, venda);
+    }
+
+    private static double somaDosItens(BancoH2 banco, Long venda) {
+        return banco.jdbc().queryForObject("select coalesce(sum(case when valor_balanca > 0 then valor_balanca "
+                + "else valor_unitario end * qtd), 0) from venda_produtos where venda_codigo = ?", Double.class, venda);
+    }
+}
@@ -4,9 +4,12 @@ import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -15,9 +18,9 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
-import org.mockito.MockedStatic;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.PlatformTransactionManager;
 
 import net.originmobi.pdv.controller.TituloService;
 import net.originmobi.pdv.enumerado.EntradaSaida;
@@ -27,24 +30,36 @@ import net.originmobi.pdv.filter.VendaFilter;
 import net.originmobi.pdv.model.Caixa;
 import net.originmobi.pdv.model.CaixaLancamento;
 import net.originmobi.pdv.model.PagamentoTipo;
+import net.originmobi.pdv.model.Parcela;
 import net.originmobi.pdv.model.Pessoa;
+import net.originmobi.pdv.model.Produto;
 import net.originmobi.pdv.model.Receber;
 import net.originmobi.pdv.model.Titulo;
 import net.originmobi.pdv.model.Usuario;
 import net.originmobi.pdv.model.Venda;
 import net.originmobi.pdv.model.VendaProduto;
+import net.originmobi.pdv.model.cartao.CartaoLancamento;
 import net.originmobi.pdv.repository.VendaRepository;
+import net.originmobi.pdv.security.UsuarioAtual;
 import net.originmobi.pdv.service.CaixaLancamentoService;
 import net.originmobi.pdv.service.CaixaService;
+import net.originmobi.pdv.service.EstoqueInsuficienteException;
 import net.originmobi.pdv.service.PagamentoTipoService;
 import net.originmobi.pdv.service.ParcelaService;
 import net.originmobi.pdv.service.ProdutoService;
 import net.originmobi.pdv.service.ReceberService;
-import net.originmobi.pdv.service.UsuarioService;
 import net.originmobi.pdv.service.VendaProdutoService;
 import net.originmobi.pdv.service.VendaService;
 import net.originmobi.pdv.service.VendaException;
 import net.originmobi.pdv.service.cartao.CartaoLancamentoService;
+import net.originmobi.pdv.service.contingencia.ContingenciaService;
+import net.originmobi.pdv.service.pagamento.PlanoParcelamento;
+import net.originmobi.pdv.service.painel.ContadoresPainel;
+import net.originmobi.pdv.service.produto.LeituraCodigoBarras;
+import net.originmobi.pdv.service.produto.ProdutoCatalogo;
+import net.originmobi.pdv.service.venda.CarrinhoVenda;
+import net.originmobi.pdv.service.venda.CarrinhoVendaService;
+import net.originmobi.pdv.utilitarios.Dinheiro;
 
 @ExtendWith(MockitoExtension.class)
 @DisplayName("VendaService — testes unitários")
@@ -54,7 +69,7 @@ public class VendaServiceTest {
     private VendaService vendaService;
 
     @Mock private VendaRepository vendas;
-    @Mock private UsuarioService usuarios;
+    @Mock private UsuarioAtual usuarioAtual;
     @Mock private VendaProdutoService vendaProdutos;
     @Mock private PagamentoTipoService formaPagamentos;
     @Mock private CaixaService caixas;
@@ -64,41 +79,43 @@ public class VendaServiceTest {
     @Mock private TituloService tituloService;
     @Mock private CartaoLancamentoService cartaoLancamento;
     @Mock private ProdutoService produtos;
+    @Mock private CarrinhoVendaService carrinhos;
+    @Mock private ContingenciaService contingencia;
+    @Mock private ContadoresPainel painel;
+    @Mock private PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    void setup() {
+        lenient().when(formaPagamentos.plano(any(PagamentoTipo.class))).thenAnswer(inv ->
+                PlanoParcelamento.compila(inv.<PagamentoTipo>getArgument(0).getFormaPagamento()));
+    }
 
     @Test
     public void testAbreVenda_SemCodigo_PreencheCamposBuscaUsuarioESalva() {
 
         Venda venda = new Venda();
 
-        try (MockedStatic<net.originmobi.pdv.singleton.Aplicacao> app =
-                     mockStatic(net.originmobi.pdv.singleton.Aplicacao.class)) {
-
-            net.originmobi.pdv.singleton.Aplicacao aplicacaoMock = mock(net.originmobi.pdv.singleton.Aplicacao.class);
-            app.when(net.originmobi.pdv.singleton.Aplicacao::getInstancia).thenReturn(aplicacaoMock);
-            when(aplicacaoMock.getUsuarioAtual()).thenReturn("natalia");
-
-            Usuario usuario = new Usuario();
-            usuario.setUser("natalia");
-            when(usuarios.buscaUsuario("natalia")).thenReturn(usuario);
+        Usuario usuario = new Usuario();
+        usuario.setUser("natalia");
+        when(usuarioAtual.getUsuario()).thenReturn(usuario);
 
-            when(vendas.save(any(Venda.class))).thenAnswer(inv -> {
-                Venda v = inv.getArgument(0);
-                v.setCodigo(123L);
-                return v;
-            });
+        when(vendas.save(any(Venda.class))).thenAnswer(inv -> {
+            Venda v = inv.getArgument(0);
+            v.setCodigo(123L);
+            return v;
+        });
 
-            Long idGerado = vendaService.abreVenda(venda);
+        Long idGerado = vendaService.abreVenda(venda);
 
-            assertEquals(123L, idGerado, "deve retornar o código atribuído pelo repository");
-            assertEquals(VendaSituacao.ABERTA, venda.getSituacao(), "deve marcar como ABERTA");
-            assertEquals(0.00, venda.getValor_produtos(), 0.0001, "deve iniciar valor_produtos em 0.00");
-            assertNotNull(venda.getData_cadastro(), "deve preencher data_cadastro");
-            assertSame(usuario, venda.getUsuario(), "deve vincular o usuário atual");
+        assertEquals(123L, idGerado, "deve retornar o código atribuído pelo repository");
+        assertEquals(VendaSituacao.ABERTA, venda.getSituacao(), "deve marcar como ABERTA");
+        assertEquals(0.00, venda.getValor_produtos(), 0.0001, "deve iniciar valor_produtos em 0.00");
+        assertNotNull(venda.getData_cadastro(), "deve preencher data_cadastro");
+        assertSame(usuario, venda.getUsuario(), "deve vincular o usuário atual");
 
-            verify(usuarios).buscaUsuario("natalia");
-            verify(vendas).save(same(venda));
-            verify(vendas, never()).updateDadosVenda(any(), any(), any());
-        }
+        verify(usuarioAtual).getUsuario();
+        verify(vendas).save(same(venda));
+        verify(vendas, never()).updateDadosVenda(any(), any(), any());
     }
 
     @Test
@@ -176,6 +193,118 @@ public class VendaServiceTest {
         verify(vendaProdutos, never()).salvar(any());
     }
 
+    @Test
+    public void testAddProduto_CarrinhoHabilitado_NaoGravaNoBanco() {
+        when(carrinhos.isHabilitado()).thenReturn(true);
+        when(carrinhos.adiciona(1L, 2L, 0.0, 1)).thenReturn(true);
+
+        String r = vendaService.addProduto(1L, 2L, 0.0);
+
+        assertEquals("ok", r);
+        verify(vendas, never()).verificaSituacao(anyLong());
+        verify(vendaProdutos, never()).salvar(any());
+    }
+
+    @Test
+    public void testAddProduto_CarrinhoHabilitadoVendaFechada_RetornaMensagem() {
+        when(carrinhos.isHabilitado()).thenReturn(true);
+        when(carrinhos.adiciona(1L, 2L, 0.0, 1)).thenReturn(false);
+
+        assertEquals("Venda fechada", vendaService.addProduto(1L, 2L, 0.0));
+    }
+
+    @Test
+    public void testAddProduto_Quantidade_GravaUmaLinhaComPrecoDoProduto() {
+        when(vendas.verificaSituacao(1L)).thenReturn(VendaSituacao.ABERTA.toString());
+        Produto produto = new Produto();
+        produto.setValor_venda(3.25);
+        when(produtos.busca(2L)).thenReturn(produto);
+
+        String r = vendaService.addProduto(1L, 2L, 0.0, 40);
+
+        assertEquals("ok", r);
+        ArgumentCaptor<VendaProduto> captor = ArgumentCaptor.forClass(VendaProduto.class);
+        verify(vendaProdutos, times(1)).salvar(captor.capture());
+        assertEquals(40, captor.getValue().getQtd().intValue());
+        assertEquals(3.25, captor.getValue().getValor_unitario(), 0.0001);
+    }
+
+    @Test
+    public void testAddProduto_QuantidadeInvalida_RetornaMensagem() {
+        assertEquals("Quantidade inválida", vendaService.addProduto(1L, 2L, 0.0, 0));
+        verifyNoInteractions(vendaProdutos, carrinhos);
+    }
+
+    @Test
+    public void testAddCodigoBarras_EtiquetaBalanca_AdicionaComValorDaEtiqueta() {
+        ProdutoCatalogo queijo = new ProdutoCatalogo(12L, null, "Queijo Prato kg", 45.9,
+                net.originmobi.pdv.enumerado.produto.ProdutoBalanca.SIM);
+        when(produtos.leCodigoBarras("2000120012349"))
+                .thenReturn(Optional.of(new LeituraCodigoBarras(queijo, Dinheiro.de(12.34))));
+        when(carrinhos.isHabilitado()).thenReturn(true);
+        when(carrinhos.adiciona(1L, 12L, 12.34, 1)).thenReturn(true);
+
+        assertEquals("ok", vendaService.addCodigoBarras(1L, "2000120012349"));
+        verify(carrinhos).adiciona(1L, 12L, 12.34, 1);
+    }
+
+    @Test
+    public void testAddCodigoBarras_SemProduto_RetornaMensagem() {
+        when(produtos.leCodigoBarras("7890000000000")).thenReturn(Optional.empty());
+
+        assertEquals("Produto não encontrado para o código 7890000000000",
+                vendaService.addCodigoBarras(1L, "7890000000000"));
+        verifyNoInteractions(carrinhos, vendaProdutos);
+    }
+
+    @Test
+    public void testListaProdutosVenda_MesmoProdutoNoCarrinho_AgrupaQuantidade() {
+        Venda venda = new Venda();
+        venda.setCodigo(6L);
+        venda.setValor_produtos(0.0);
+
+        CarrinhoVenda carrinho = new CarrinhoVenda(6L);
+        carrinho.adiciona(3L, "Produto", 2.0, null, 0.0, 1);
+        carrinho.adiciona(3L, "Produto", 2.0, null, 0.0, 4);
+        when(vendaProdutos.listaProdutosVenda(venda)).thenReturn(new java.util.ArrayList<>());
+        when(carrinhos.busca(6L)).thenReturn(Optional.of(carrinho));
+
+        List<Object> produtosVenda = vendaService.listaProdutosVenda(venda);
+
+        assertEquals(1, produtosVenda.size());
+        assertEquals(5, ((Object[]) produtosVenda.get(0))[6]);
+        assertEquals(10.0, venda.getValor_produtos_atual(), 0.0001);
+    }
+
+    @Test
+    public void testRemoveProduto_PosicaoDoCarrinho_RemoveDoCarrinho() {
+        when(carrinhos.remove(99L, -2L)).thenReturn(true);
+
+        String r = vendaService.removeProduto(-2L, 99L);
+
+        assertEquals("ok", r);
+        verify(vendas, never()).findByCodigoEquals(anyLong());
+        verify(vendaProdutos, never()).removeProduto(anyLong());
+    }
+
+    @Test
+    public void testListaProdutosVenda_SomaItensDoCarrinho() {
+        Venda venda = new Venda();
+        venda.setCodigo(5L);
+        venda.setValor_produtos(10.0);
+
+        CarrinhoVenda carrinho = new CarrinhoVenda(5L);
+        carrinho.adiciona(3L, "Produto", 4.5, null, 0.0, 1);
+        when(vendaProdutos.listaProdutosVenda(venda)).thenReturn(Arrays.asList(new Object[] { 1L }));
+        when(carrinhos.busca(5L)).thenReturn(Optional.of(carrinho));
+
+        List<Object> produtosVenda = vendaService.listaProdutosVenda(venda);
+
+        assertEquals(2, produtosVenda.size());
+        assertEquals(14.5, venda.getValor_produtos_atual(), 0.0001);
+        assertEquals(10.0, venda.getValor_produtos(), 0.0001);
+    }
+
     @Test
     public void testRemoveProduto_VendaAberta_RemoveERetornaOk() {
         Venda venda = mock(Venda.class);
@@ -238,48 +367,151 @@ public class VendaServiceTest {
         net.originmobi.pdv.model.TituloTipo tituloTipo = mock(net.originmobi.pdv.model.TituloTipo.class);
         when(titulo.getTipo()).thenReturn(tituloTipo);
         when(tituloTipo.getSigla()).thenReturn(TituloTipo.DIN.toString());
-        when(tituloService.busca(1L)).thenReturn(Optional.of(titulo));
+        when(tituloService.buscaTitulos(anyCollection())).thenReturn(Map.of(1L, titulo));
+
+        Caixa caixa = new Caixa();
+        when(caixas.caixaAberto()).thenReturn(Optional.of(caixa));
+
+        Usuario u = new Usuario();
+        u.setUser("natalia");
+        when(usuarioAtual.getUsuario()).thenReturn(u);
+
+        String msg = vendaService.fechaVenda(codVenda, codForma, vlProdutos, desconto, acrescimo, vlParcelas, titulos);
+
+        assertEquals("Venda finalizada com sucesso", msg);
+        double vlFinal = (vlProdutos + acrescimo) - desconto;
+
+        
+        verify(vendas, atLeastOnce()).fechaVenda(eq(codVenda), eq(VendaSituacao.FECHADA),
+                eq(vlFinal), eq(desconto), eq(acrescimo), any(), eq(forma));
+      
+        ArgumentCaptor<Receber> receberCaptor = ArgumentCaptor.forClass(Receber.class);
+        verify(receberServ).cadastrar(receberCaptor.capture());
+        assertEquals(vlFinal, receberCaptor.getValue().getValor_total(), 0.0001);
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<CaixaLancamento>> lancCaptor = ArgumentCaptor.forClass(List.class);
+        verify(lancamentos).lancamentoLote(same(caixa), lancCaptor.capture());
+        double valorEsperadoLanc = Double.valueOf(vlParcelas[0])
+                + (acrescimo / vlParcelas.length)
+                - (desconto / vlParcelas.length);
+        assertEquals(1, lancCaptor.getValue().size());
+        assertEquals(valorEsperadoLanc, lancCaptor.getValue().get(0).getValor(), 0.0001);
+
+        verify(produtos).movimentaEstoque(eq(codVenda), eq(EntradaSaida.SAIDA));
+        verify(parcelas).gerarParcelas(argThat(List::isEmpty));
+        verify(cartaoLancamento).salvarLote(argThat(List::isEmpty));
+
+        verify(venda).setPagamentotipo(forma);
+        verify(carrinhos).grava(codVenda);
+    }
+
+    @Test
+    public void testFechaVenda_ParcelasSomamEmCentavos_FechaVenda() {
+        Long codVenda = 8L;
+        Long codForma = 101L;
+        // 0.1 + 0.2 em double é 0.30000000000000004
+        String[] vlParcelas = new String[] {"0.10", "0.20"};
+        String[] titulos = new String[] {"1", "1"};
+
+        Venda venda = mock(Venda.class);
+        when(vendas.findByCodigoEquals(codVenda)).thenReturn(venda);
+        when(venda.isAberta()).thenReturn(true);
+
+        PagamentoTipo forma = new PagamentoTipo();
+        forma.setCodigo(codForma);
+        forma.setFormaPagamento("00/00");
+        when(formaPagamentos.busca(codForma)).thenReturn(forma);
+
+        Titulo titulo = mock(Titulo.class);
+        net.originmobi.pdv.model.TituloTipo tituloTipo = mock(net.originmobi.pdv.model.TituloTipo.class);
+        when(titulo.getTipo()).thenReturn(tituloTipo);
+        when(tituloTipo.getSigla()).thenReturn(TituloTipo.DIN.toString());
+        when(tituloService.buscaTitulos(anyCollection())).thenReturn(Map.of(1L, titulo));
+
+        Caixa caixa = new Caixa();
+        when(caixas.caixaAberto()).thenReturn(Optional.of(caixa));
+
+        String msg = vendaService.fechaVenda(codVenda, codForma, 0.3, 0.0, 0.0, vlParcelas, titulos);
+
+        assertEquals("Venda finalizada com sucesso", msg);
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<CaixaLancamento>> lancCaptor = ArgumentCaptor.forClass(List.class);
+        verify(lancamentos).lancamentoLote(same(caixa), lancCaptor.capture());
+        assertEquals(0.10, lancCaptor.getValue().get(0).getValor(), 0.0);
+        assertEquals(0.20, lancCaptor.getValue().get(1).getValor(), 0.0);
+    }
+
+    @Test
+    public void testFechaVenda_QuantidadeDeChamadasNaoCresceComParcelas() {
+        int umaParcelaDeCadaTipo = chamadasFechamento(1, 1);
+        int muitasParcelas = chamadasFechamento(4, 12);
+
+        assertEquals(VendaService.MAX_CHAMADAS_FECHAMENTO, umaParcelaDeCadaTipo);
+        assertEquals(umaParcelaDeCadaTipo, muitasParcelas);
+    }
+
+    /*
+     * Fecha uma venda com uma parcela no dinheiro, parcelas no cartão e
+     * parcelas a prazo e conta as chamadas feitas aos serviços e repositórios,
+     * o plano de parcelamento e o cálculo do lançamento de cartão não vão ao
+     * banco e ficam de fora
+     */
+    private int chamadasFechamento(int parcelasCartao, int parcelasPrazo) {
+        Long codVenda = 70L, codForma = 700L;
+        int total = 1 + parcelasCartao + parcelasPrazo;
+
+        String[] formaPagar = new String[total];
+        String[] vlParcelas = new String[total];
+        String[] titulos = new String[total];
+        Map<Long, Titulo> titulosVenda = new java.util.HashMap<>();
+
+        for (int i = 0; i < total; i++) {
+            String sigla = i == 0 ? TituloTipo.DIN.toString()
+                    : i <= parcelasCartao ? TituloTipo.CARTCRED.toString() : "DUP";
+
+            formaPagar[i] = i <= parcelasCartao ? "00" : String.valueOf(30 * (i - parcelasCartao));
+            vlParcelas[i] = "10.00";
+            titulos[i] = String.valueOf(i + 1);
+
+            Titulo titulo = mock(Titulo.class);
+            net.originmobi.pdv.model.TituloTipo tt = mock(net.originmobi.pdv.model.TituloTipo.class);
+            lenient().when(titulo.getTipo()).thenReturn(tt);
+            lenient().when(tt.getSigla()).thenReturn(sigla);
+            titulosVenda.put((long) i + 1, titulo);
+        }
+
+        Venda venda = mock(Venda.class);
+        when(vendas.findByCodigoEquals(codVenda)).thenReturn(venda);
+        when(venda.isAberta()).thenReturn(true);
+        when(venda.getPessoa()).thenReturn(new Pessoa());
 
-        when(caixas.caixaIsAberto()).thenReturn(true);
+        PagamentoTipo forma = new PagamentoTipo();
+        forma.setCodigo(codForma);
+        forma.setFormaPagamento(String.join("/", formaPagar));
+        when(formaPagamentos.busca(codForma)).thenReturn(forma);
+        when(tituloService.buscaTitulos(anyCollection())).thenReturn(titulosVenda);
         when(caixas.caixaAberto()).thenReturn(Optional.of(new Caixa()));
 
-        try (MockedStatic<net.originmobi.pdv.singleton.Aplicacao> app =
-                     mockStatic(net.originmobi.pdv.singleton.Aplicacao.class)) {
-            net.originmobi.pdv.singleton.Aplicacao aplicacaoMock = mock(net.originmobi.pdv.singleton.Aplicacao.class);
-            app.when(net.originmobi.pdv.singleton.Aplicacao::getInstancia).thenReturn(aplicacaoMock);
-            when(aplicacaoMock.getUsuarioAtual()).thenReturn("natalia");
-
-            Usuario u = new Usuario();
-            u.setUser("natalia");
-            when(usuarios.buscaUsuario("natalia")).thenReturn(u);
-
-            String msg = vendaService.fechaVenda(codVenda, codForma, vlProdutos, desconto, acrescimo, vlParcelas, titulos);
-
-            assertEquals("Venda finalizada com sucesso", msg);
-            double vlFinal = (vlProdutos + acrescimo) - desconto;
-
-            
-            verify(vendas, atLeastOnce()).fechaVenda(eq(codVenda), eq(VendaSituacao.FECHADA),
-                    eq(vlFinal), eq(desconto), eq(acrescimo), any(), eq(forma));
-          
-            ArgumentCaptor<Receber> receberCaptor = ArgumentCaptor.forClass(Receber.class);
-            verify(receberServ).cadastrar(receberCaptor.capture());
-            assertEquals(vlFinal, receberCaptor.getValue().getValor_total(), 0.0001);
-
-            ArgumentCaptor<CaixaLancamento> lancCaptor = ArgumentCaptor.forClass(CaixaLancamento.class);
-            verify(lancamentos).lancamento(lancCaptor.capture());
-            double valorEsperadoLanc = Double.valueOf(vlParcelas[0])
-                    + (acrescimo / vlParcelas.length)
-                    - (desconto / vlParcelas.length);
-            assertEquals(valorEsperadoLanc, lancCaptor.getValue().getValor(), 0.0001);
-
-            verify(produtos).movimentaEstoque(eq(codVenda), eq(EntradaSaida.SAIDA));
-            verify(parcelas, never()).gerarParcela(anyDouble(), anyDouble(), anyDouble(), anyDouble(), anyDouble(),
-                    any(Receber.class), anyInt(), anyInt(), any(), any());
-            verify(cartaoLancamento, never()).lancamento(anyDouble(), any());
-
-            verify(venda).setPagamentotipo(forma);
+        when(usuarioAtual.getUsuario()).thenReturn(new Usuario());
+
+        Object[] colaboradores = { vendas, usuarioAtual, vendaProdutos, formaPagamentos, caixas, receberServ, parcelas,
+                lancamentos, tituloService, cartaoLancamento, produtos, carrinhos };
+        clearInvocations(colaboradores);
+
+        String msg = vendaService.fechaVenda(codVenda, codForma, 10.0 * total, 0.0, 0.0, vlParcelas, titulos);
+        assertEquals("Venda finalizada com sucesso", msg);
+
+        int chamadas = 0;
+        for (Object colaborador : colaboradores) {
+            chamadas += (int) mockingDetails(colaborador).getInvocations().stream()
+                    .map(invocacao -> invocacao.getMethod().getName())
+                    .filter(metodo -> !metodo.equals("calcula") && !metodo.equals("plano"))
+                    .count();
         }
+
+        return chamadas;
     }
 
     @Test
@@ -308,6 +540,25 @@ public class VendaServiceTest {
         assertEquals("Venda sem valor, verifique", ex.getMessage());
     }
 
+    @Test
+    public void testFechaVenda_EstoqueInsuficiente_FalhaAntesDosLancamentos() {
+        Long codVenda = 1L;
+        Venda venda = mock(Venda.class);
+        when(vendas.findByCodigoEquals(codVenda)).thenReturn(venda);
+        when(venda.isAberta()).thenReturn(true);
+
+        doThrow(new EstoqueInsuficienteException("Produtos sem estoque suficiente, verifique: 5 - A, 7 - B",
+                Arrays.asList(5L, 7L))).when(produtos).movimentaEstoque(codVenda, EntradaSaida.SAIDA);
+
+        EstoqueInsuficienteException ex = assertThrows(EstoqueInsuficienteException.class, () ->
+                vendaService.fechaVenda(codVenda, 10L, 100.0, 0.0, 0.0,
+                        new String[]{"100.0"}, new String[]{"1"}));
+
+        assertEquals(Arrays.asList(5L, 7L), ex.getProdutos());
+        verifyNoInteractions(formaPagamentos, receberServ, parcelas, lancamentos, cartaoLancamento);
+        verify(vendas, never()).fechaVenda(any(), any(), any(), any(), any(), any(), any());
+    }
+
     @Test
     public void testFechaVenda_CaixaFechadoAVistaDinheiro_LancaVendaException() {
         Long codVenda = 2L;
@@ -324,9 +575,9 @@ public class VendaServiceTest {
         net.originmobi.pdv.model.TituloTipo tituloTipo = mock(net.originmobi.pdv.model.TituloTipo.class);
         when(titulo.getTipo()).thenReturn(tituloTipo);
         when(tituloTipo.getSigla()).thenReturn(TituloTipo.DIN.toString());
-        when(tituloService.busca(1L)).thenReturn(Optional.of(titulo));
+        when(tituloService.buscaTitulos(anyCollection())).thenReturn(Map.of(1L, titulo));
 
-        when(caixas.caixaIsAberto()).thenReturn(false);
+        when(caixas.caixaAberto()).thenReturn(Optional.empty());
 
         VendaException ex = assertThrows(VendaException.class, () ->
                 vendaService.fechaVenda(codVenda, 20L, 100.0, 0.0, 0.0,
@@ -349,7 +600,7 @@ public class VendaServiceTest {
         forma.setCodigo(codForma);
         forma.setFormaPagamento("30");
         when(formaPagamentos.busca(codForma)).thenReturn(forma);
-        when(tituloService.busca(1L)).thenReturn(Optional.of(mock(Titulo.class)));
+        when(tituloService.buscaTitulos(anyCollection())).thenReturn(Map.of(1L, mock(Titulo.class)));
 
         VendaException ex = assertThrows(VendaException.class, () ->
                 vendaService.fechaVenda(codVenda, codForma, 100.0, 0.0, 0.0, vlParcelas, titulos)
@@ -373,7 +624,8 @@ public class VendaServiceTest {
         forma.setFormaPagamento("30/60");
         when(formaPagamentos.busca(codForma)).thenReturn(forma);
 
-        when(tituloService.busca(anyLong())).thenReturn(Optional.of(mock(Titulo.class)));
+        when(tituloService.buscaTitulos(anyCollection()))
+                .thenReturn(Map.of(1L, mock(Titulo.class), 2L, mock(Titulo.class)));
 
         double vlProdutos = 200.00;
         double desconto = 10.0;
@@ -383,16 +635,19 @@ public class VendaServiceTest {
 
         assertEquals("Venda finalizada com sucesso", msg);
 
-        ArgumentCaptor<Double> valorParcelaCaptor = ArgumentCaptor.forClass(Double.class);
-        verify(parcelas, atLeast(2)).gerarParcela(
-                valorParcelaCaptor.capture(),
-                anyDouble(), anyDouble(), anyDouble(), anyDouble(),
-                any(Receber.class), anyInt(), anyInt(), any(), any());
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Parcela>> parcelasCaptor = ArgumentCaptor.forClass(List.class);
+        verify(parcelas).gerarParcelas(parcelasCaptor.capture());
 
         double valorEsperadoParcela = 100.00
                 + (acrescimo / vlParcelas.length)
                 - (desconto / vlParcelas.length);
-        assertEquals(valorEsperadoParcela, valorParcelaCaptor.getAllValues().get(0), 0.0001);
+        List<Parcela> geradas = parcelasCaptor.getValue();
+        assertEquals(2, geradas.size());
+        assertEquals(valorEsperadoParcela, geradas.get(0).getValor_total(), 0.0001);
+        assertEquals(1, geradas.get(0).getSequencia());
+        assertEquals(2, geradas.get(1).getSequencia());
+        verify(vendas, times(1)).fechaVenda(any(), any(), any(), any(), any(), any(), any());
 
         double vlFinal = (vlProdutos + acrescimo) - desconto;
         verify(vendas, atLeastOnce()).fechaVenda(eq(codVenda), eq(VendaSituacao.FECHADA), eq(vlFinal),
@@ -422,13 +677,16 @@ public class VendaServiceTest {
         net.originmobi.pdv.model.TituloTipo tt = mock(net.originmobi.pdv.model.TituloTipo.class);
         when(titulo.getTipo()).thenReturn(tt);
         when(tt.getSigla()).thenReturn(TituloTipo.CARTDEB.toString());
-        when(tituloService.busca(1L)).thenReturn(Optional.of(titulo));
+        when(tituloService.buscaTitulos(anyCollection())).thenReturn(Map.of(1L, titulo));
+
+        CartaoLancamento cartao = new CartaoLancamento();
+        when(cartaoLancamento.calcula(150.00, titulo)).thenReturn(cartao);
 
         String msg = vendaService.fechaVenda(codVenda, codForma, 150.00, 0.0, 0.0, vlParcelas, titulos);
 
         assertEquals("Venda finalizada com sucesso", msg);
-        verify(cartaoLancamento).lancamento(eq(150.00), any());
-        verify(lancamentos, never()).lancamento(any(CaixaLancamento.class));
+        verify(cartaoLancamento).salvarLote(List.of(cartao));
+        verify(lancamentos, never()).lancamentoLote(any(), any());
         verify(produtos).movimentaEstoque(eq(codVenda), eq(EntradaSaida.SAIDA));
 
         verify(venda).setPagamentotipo(forma);
@@ -454,13 +712,16 @@ public class VendaServiceTest {
         net.originmobi.pdv.model.TituloTipo tt = mock(net.originmobi.pdv.model.TituloTipo.class);
         when(titulo.getTipo()).thenReturn(tt);
         when(tt.getSigla()).thenReturn(TituloTipo.CARTCRED.toString());
-        when(tituloService.busca(1L)).thenReturn(Optional.of(titulo));
+        when(tituloService.buscaTitulos(anyCollection())).thenReturn(Map.of(1L, titulo));
+
+        CartaoLancamento cartao = new CartaoLancamento();
+        when(cartaoLancamento.calcula(120.00, titulo)).thenReturn(cartao);
 
         String msg = vendaService.fechaVenda(codVenda, codForma, 120.00, 0.0, 0.0, vlParcelas, titulos);
 
         assertEquals("Venda finalizada com sucesso", msg);
-        verify(cartaoLancamento).lancamento(eq(120.00), any());
-        verify(lancamentos, never()).lancamento(any(CaixaLancamento.class));
+        verify(cartaoLancamento).salvarLote(List.of(cartao));
+        verify(lancamentos, never()).lancamentoLote(any(), any());
         verify(produtos).movimentaEstoque(eq(codVenda), eq(EntradaSaida.SAIDA));
         verify(venda).setPagamentotipo(forma);
     }
@@ -478,6 +739,12 @@ public class VendaServiceTest {
         forma.setFormaPagamento("00");
         when(formaPagamentos.busca(codForma)).thenReturn(forma);
 
+        Titulo titulo = mock(Titulo.class);
+        net.originmobi.pdv.model.TituloTipo tt = mock(net.originmobi.pdv.model.TituloTipo.class);
+        when(titulo.getTipo()).thenReturn(tt);
+        when(tt.getSigla()).thenReturn(TituloTipo.CARTDEB.toString());
+        when(tituloService.buscaTitulos(anyCollection())).thenReturn(Map.of(1L, titulo));
+
         doThrow(new RuntimeException("falha qualquer"))
                 .when(receberServ).cadastrar(any(Receber.class));
 
@@ -507,28 +774,21 @@ public class VendaServiceTest {
         net.originmobi.pdv.model.TituloTipo tt = mock(net.originmobi.pdv.model.TituloTipo.class);
         when(titulo.getTipo()).thenReturn(tt);
         when(tt.getSigla()).thenReturn(TituloTipo.DIN.toString());
-        when(tituloService.busca(1L)).thenReturn(Optional.of(titulo));
+        when(tituloService.buscaTitulos(anyCollection())).thenReturn(Map.of(1L, titulo));
 
-        when(caixas.caixaIsAberto()).thenReturn(true);
         when(caixas.caixaAberto()).thenReturn(Optional.of(new Caixa()));
 
-        try (MockedStatic<net.originmobi.pdv.singleton.Aplicacao> app =
-                     mockStatic(net.originmobi.pdv.singleton.Aplicacao.class)) {
-            net.originmobi.pdv.singleton.Aplicacao aplicacaoMock = mock(net.originmobi.pdv.singleton.Aplicacao.class);
-            app.when(net.originmobi.pdv.singleton.Aplicacao::getInstancia).thenReturn(aplicacaoMock);
-            when(aplicacaoMock.getUsuarioAtual()).thenReturn("tester");
-            when(usuarios.buscaUsuario("tester")).thenReturn(new Usuario());
-
-            doThrow(new RuntimeException("falhou fechar"))
-                    .when(vendas).fechaVenda(eq(codVenda), eq(VendaSituacao.FECHADA),
-                    anyDouble(), anyDouble(), anyDouble(),
-                    any(java.sql.Timestamp.class), eq(forma));
-
-            RuntimeException ex = assertThrows(RuntimeException.class, () ->
-                    vendaService.fechaVenda(codVenda, codForma, 200.0, 0.0, 0.0, vlParcelas, titulos)
-            );
-            assertEquals("falhou fechar", ex.getMessage());
-        }
+        when(usuarioAtual.getUsuario()).thenReturn(new Usuario());
+
+        doThrow(new RuntimeException("falhou fechar"))
+                .when(vendas).fechaVenda(eq(codVenda), eq(VendaSituacao.FECHADA),
+                anyDouble(), anyDouble(), anyDouble(),
+                any(java.sql.Timestamp.class), eq(forma));
+
+        RuntimeException ex = assertThrows(RuntimeException.class, () ->
+                vendaService.fechaVenda(codVenda, codForma, 200.0, 0.0, 0.0, vlParcelas, titulos)
+        );
+        assertEquals("falhou fechar", ex.getMessage());
     }
 
     @Test
@@ -547,7 +807,7 @@ public class VendaServiceTest {
         forma.setFormaPagamento("30");
         when(formaPagamentos.busca(codForma)).thenReturn(forma);
 
-        when(tituloService.busca(1L)).thenReturn(Optional.of(mock(Titulo.class)));
+        when(tituloService.buscaTitulos(anyCollection())).thenReturn(Map.of(1L, mock(Titulo.class)));
 
         VendaException ex = assertThrows(VendaException.class, () ->
                 vendaService.fechaVenda(codVenda, codForma, 100.0, 0.0, 0.0, vlParcelas, titulos)
@@ -575,9 +835,8 @@ public class VendaServiceTest {
         net.originmobi.pdv.model.TituloTipo tt = mock(net.originmobi.pdv.model.TituloTipo.class);
         when(titulo.getTipo()).thenReturn(tt);
         when(tt.getSigla()).thenReturn(TituloTipo.DIN.toString());
-        when(tituloService.busca(1L)).thenReturn(Optional.of(titulo));
+        when(tituloService.buscaTitulos(anyCollection())).thenReturn(Map.of(1L, titulo));
 
-        when(caixas.caixaIsAberto()).thenReturn(true);
 
         VendaException ex = assertThrows(VendaException.class, () ->
                 vendaService.fechaVenda(codVenda, codForma, 100.0, 0.0, 0.0, vlParcelas, titulos)
@@ -607,9 +866,8 @@ public class VendaServiceTest {
         net.originmobi.pdv.model.TituloTipo tt = mock(net.originmobi.pdv.model.TituloTipo.class);
         when(titulo.getTipo()).thenReturn(tt);
         when(tt.getSigla()).thenReturn(TituloTipo.DIN.toString());
-        when(tituloService.busca(1L)).thenReturn(Optional.of(titulo));
+        when(tituloService.buscaTitulos(anyCollection())).thenReturn(Map.of(1L, titulo));
 
-        when(caixas.caixaIsAberto()).thenReturn(true);
 
         VendaException ex = assertThrows(VendaException.class, () ->
                 vendaService.fechaVenda(codVenda, codForma, 100.0, 0.0, 0.0, vlParcelas, titulos)
@@ -635,7 +893,7 @@ public class VendaServiceTest {
         forma.setFormaPagamento("00");
         when(formaPagamentos.busca(codForma)).thenReturn(forma);
 
-        when(tituloService.busca(1L)).thenReturn(Optional.empty());
+        when(tituloService.buscaTitulos(anyCollection())).thenReturn(Collections.emptyMap());
 
         VendaException ex = assertThrows(VendaException.class, () ->
                 vendaService.fechaVenda(codVenda, codForma, 100.0, 0.0, 0.0, vlParcelas, titulos)
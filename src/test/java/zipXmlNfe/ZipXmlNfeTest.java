@@ -0,0 +1,119 @@
+package zipXmlNfe;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import net.originmobi.pdv.service.notafiscal.ZipXmlNfe;
+import net.originmobi.pdv.xml.nfe.ArquivoXmlNfe;
+
+@DisplayName("ZipXmlNfe — zip com os XMLs ainda compactados")
+public class ZipXmlNfeTest {
+
+    private static final String XML = "<?xml version=\"1.0\" encoding=\"UTF-8\"?><enviNFe><NFe>"
+            + "<det><prod><xProd>Pão de queijo</xProd></prod></det>".repeat(20) + "</NFe></enviNFe>";
+
+    @TempDir
+    Path pasta;
+
+    @Test
+    public void testXmlsEManifesto_LidosPeloZipDoJava() throws Exception {
+        Path zip = pasta.resolve("notas.zip");
+
+        try (ArquivoXmlNfe arquivo = new ArquivoXmlNfe(pasta.resolve("xml"), ArquivoXmlNfe.TAMANHO_SEGMENTO);
+                ZipXmlNfe saida = new ZipXmlNfe(Files.newOutputStream(zip), LocalDateTime.of(2026, 9, 30, 18, 45, 10))) {
+            arquivo.grava("1", XML.getBytes(StandardCharsets.UTF_8));
+            arquivo.grava("2", "<NFe/>".getBytes(StandardCharsets.UTF_8));
+
+            ArquivoXmlNfe.Compactado primeira = arquivo.compactado("1").get();
+            assertEquals(XML.getBytes(StandardCharsets.UTF_8).length, primeira.getTamanho());
+            assertTrue(primeira.getTamanhoCompactado() < primeira.getTamanho() / 5);
+
+            saida.xml("1-nfe.xml", primeira);
+            saida.xml("2-nfe.xml", arquivo.compactado("2").get());
+            try (OutputStream manifesto = saida.entrada("manifesto.csv")) {
+                manifesto.write("chave;numero\r\n1;1\r\n2;2\r\n".getBytes(StandardCharsets.UTF_8));
+            }
+        }
+
+        try (ZipFile arquivoZip = new ZipFile(zip.toFile())) {
+            assertEquals(3, arquivoZip.size());
+            assertEquals(XML, texto(arquivoZip.getInputStream(arquivoZip.getEntry("1-nfe.xml"))));
+            assertEquals("<NFe/>", texto(arquivoZip.getInputStream(arquivoZip.getEntry("2-nfe.xml"))));
+            assertEquals("chave;numero\r\n1;1\r\n2;2\r\n",
+                    texto(arquivoZip.getInputStream(arquivoZip.getEntry("manifesto.csv"))));
+            assertEquals(LocalDateTime.of(2026, 9, 30, 18, 45, 10),
+                    arquivoZip.getEntry("1-nfe.xml").getTimeLocal());
+        }
+
+        // lido na sequência, como faz quem recebe o download, só pelos cabeçalhos locais
+        try (ZipInputStream entrada = new ZipInputStream(Files.newInputStream(zip))) {
+            assertEquals("1-nfe.xml", entrada.getNextEntry().getName());
+            assertEquals(XML, texto(entrada));
+            assertEquals("2-nfe.xml", entrada.getNextEntry().getName());
+            assertEquals("manifesto.csv", entrada.getNextEntry().getName());
+            assertEquals("chave;numero\r\n1;1\r\n2;2\r\n", texto(entrada));
+            assertNull(entrada.getNextEntry());
+        }
+    }
+
+    @Test
+    public void testMaisDe65535Notas_DiretorioZip64() throws Exception {
+        Path zip = pasta.resolve("notas.zip");
+        int notas = 70_000;
+
+        try (ArquivoXmlNfe arquivo = new ArquivoXmlNfe(pasta.resolve("xml"), ArquivoXmlNfe.TAMANHO_SEGMENTO);
+                ZipXmlNfe saida = new ZipXmlNfe(Files.newOutputStream(zip))) {
+            arquivo.grava("nota", "<NFe/>".getBytes(StandardCharsets.UTF_8));
+            ArquivoXmlNfe.Compactado xml = arquivo.compactado("nota").get();
+
+            for (int i = 0; i < notas; i++)
+                saida.xml(i + "-nfe.xml", xml);
+        }
+
+        try (ZipFile arquivoZip = new ZipFile(zip.toFile())) {
+            assertEquals(notas, arquivoZip.size());
+
+            ZipEntry ultima = arquivoZip.getEntry((notas - 1) + "-nfe.xml");
+            CRC32 crc = new CRC32();
+            crc.update("<NFe/>".getBytes(StandardCharsets.UTF_8));
+            assertEquals(crc.getValue(), ultima.getCrc());
+            assertEquals("<NFe/>", texto(arquivoZip.getInputStream(ultima)));
+        }
+    }
+
+    @Test
+    public void testEntradaAberta_NaoAceitaOutra() throws Exception {
+        try (ZipXmlNfe saida = new ZipXmlNfe(new ByteArrayOutputStream())) {
+            OutputStream manifesto = saida.entrada("manifesto.csv");
+
+            assertThrows(IllegalStateException.class, () -> saida.entrada("outro.csv"));
+
+            manifesto.close();
+        }
+    }
+
+    private static String texto(InputStream entrada) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] bloco = new byte[8192];
+        int lidos;
+        while ((lidos = entrada.read(bloco)) > 0)
+            bytes.write(bloco, 0, lidos);
+        return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+}